@@ -0,0 +1,42 @@
+#!/usr/bin/env python3
+"""Before/after table for two JMH JSON result files (java -jar benchmarks.jar -rf json -rff <file>).
+
+Usage: benchmarks/compare.py before.json after.json
+Prints time per op and bytes allocated per op (gc.alloc.rate.norm) with the relative change.
+"""
+import json
+import sys
+
+
+def load(path):
+    results = {}
+    for run in json.load(open(path)):
+        params = ",".join(f"{k}={v}" for k, v in sorted((run.get("params") or {}).items()))
+        name = run["benchmark"].rsplit(".", 2)
+        key = f"{name[-2]}.{name[-1]}" + (f" [{params}]" if params else "")
+        alloc = run.get("secondaryMetrics", {}).get("gc.alloc.rate.norm", {}).get("score")
+        results[key] = (run["primaryMetric"]["score"], run["primaryMetric"]["scoreUnit"], alloc)
+    return results
+
+
+def change(before, after):
+    if before is None or after is None or before == 0:
+        return ""
+    return f"{(after - before) / before * 100:+.1f}%"
+
+
+def main(before_path, after_path):
+    before, after = load(before_path), load(after_path)
+    print(f"{'benchmark':<58} {'before':>12} {'after':>12} {'':>8} {'B/op before':>12} {'B/op after':>12} {'':>8}")
+    for key in sorted(before.keys() | after.keys()):
+        b_score, unit, b_alloc = before.get(key, (None, "", None))
+        a_score, a_unit, a_alloc = after.get(key, (None, unit, None))
+        fmt = lambda v: "-" if v is None else f"{v:,.2f}"
+        print(f"{key:<58} {fmt(b_score):>12} {fmt(a_score):>12} {change(b_score, a_score):>8} "
+              f"{fmt(b_alloc):>12} {fmt(a_alloc):>12} {change(b_alloc, a_alloc):>8}  {unit or a_unit}")
+
+
+if __name__ == "__main__":
+    if len(sys.argv) != 3:
+        sys.exit(__doc__)
+    main(sys.argv[1], sys.argv[2])
@@ -0,0 +1,118 @@
+package com.jmontagne.bedrock.benchmarks;
+
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlockDelta;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlockDeltaEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlockStopEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.ConversationRole;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseStreamMetadataEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseStreamOutput;
+import software.amazon.awssdk.services.bedrockruntime.model.MessageStartEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.MessageStopEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.StopReason;
+import software.amazon.awssdk.services.bedrockruntime.model.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic response fixtures shaped like real Claude streams: one text delta per token,
+ * 1-7 characters each (~4 on average), so a 4k-token answer arrives as ~4k small deltas.
+ */
+public final class Fixtures {
+
+    /**
+     * Output length of the simulated response.
+     */
+    public enum Size {
+        /** A one-line answer. */
+        SHORT(40),
+        /** A long answer close to a typical max_tokens of 4096. */
+        LONG(4096);
+
+        private final int tokens;
+
+        Size(int tokens) {
+            this.tokens = tokens;
+        }
+
+        public int tokens() {
+            return tokens;
+        }
+    }
+
+    public static final ModelType MODEL = ModelType.CLAUDE_3_HAIKU;
+    public static final int INPUT_TOKENS = 350;
+
+    private static final String[] PIECES = {
+            " la", " pâte", " doit", " repo", "ser", " au", " froid", ",", " puis", " on", " fa",
+            "çonne", " les", " baguettes", ".", " Le", " four", " est", " à", " 250", "°C", " avec",
+            " de", " la", " vapeur", " pour", " une", " croûte", " croust", "illante", "\n\n", " Bon", "jour"
+    };
+
+    private Fixtures() {
+    }
+
+    public static List<String> deltas(Size size) {
+        Random random = new Random(42);
+        List<String> deltas = new ArrayList<>(size.tokens());
+        for (int i = 0; i < size.tokens(); i++) {
+            deltas.add(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return deltas;
+    }
+
+    public static String content(Size size) {
+        return String.join("", deltas(size));
+    }
+
+    /**
+     * The SDK events of one ConverseStream call, in wire order.
+     */
+    public static ConverseStreamOutput[] sdkEvents(Size size) {
+        List<ConverseStreamOutput> events = new ArrayList<>(size.tokens() + 4);
+        events.add(MessageStartEvent.builder().role(ConversationRole.ASSISTANT).build());
+        for (String text : deltas(size)) {
+            events.add(ContentBlockDeltaEvent.builder()
+                    .contentBlockIndex(0)
+                    .delta(ContentBlockDelta.fromText(text))
+                    .build());
+        }
+        events.add(ContentBlockStopEvent.builder().contentBlockIndex(0).build());
+        events.add(MessageStopEvent.builder().stopReason(StopReason.END_TURN).build());
+        events.add(ConverseStreamMetadataEvent.builder()
+                .usage(TokenUsage.builder()
+                        .inputTokens(INPUT_TOKENS)
+                        .outputTokens(size.tokens())
+                        .totalTokens(INPUT_TOKENS + size.tokens())
+                        .build())
+                .build());
+        return events.toArray(ConverseStreamOutput[]::new);
+    }
+
+    /**
+     * The {@link StreamEvent}s {@code BedrockStreamingClient} emits for the same call.
+     */
+    public static List<StreamEvent> streamEvents(Size size) {
+        List<StreamEvent> events = new ArrayList<>(size.tokens() + 2);
+        for (String text : deltas(size)) {
+            events.add(new StreamEvent.Token(text));
+        }
+        events.add(new StreamEvent.Stop("end_turn"));
+        events.add(new StreamEvent.Metrics(metrics(size)));
+        return events;
+    }
+
+    public static PerformanceMetrics metrics(Size size) {
+        return PerformanceMetrics.builder()
+                .timeToFirstTokenMs(420)
+                .totalGenerationTimeMs(420 + size.tokens() * 8L)
+                .inputTokens(INPUT_TOKENS)
+                .outputTokens(size.tokens())
+                .modelType(MODEL)
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.jmontagne.bedrock.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.controller.InferenceController.StreamResponse;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response body serialization with the same {@code ObjectMapper} configuration Spring MVC uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"SHORT", "LONG"})
+    public Fixtures.Size size;
+
+    private ObjectMapper mapper;
+    private InferenceResponse inferenceResponse;
+    private StreamResponse streamResponse;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        String content = Fixtures.content(size);
+        inferenceResponse = InferenceResponse.of(content, Fixtures.MODEL, Fixtures.metrics(size), "end_turn");
+        streamResponse = new StreamResponse(content, Fixtures.MODEL.name(), Fixtures.MODEL.getDisplayName(), size.tokens());
+    }
+
+    @Benchmark
+    public byte[] inferenceResponse() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(inferenceResponse);
+    }
+
+    @Benchmark
+    public byte[] streamResponse() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(streamResponse);
+    }
+}
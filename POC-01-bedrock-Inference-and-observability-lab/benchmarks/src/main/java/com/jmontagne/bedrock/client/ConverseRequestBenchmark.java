@@ -0,0 +1,68 @@
+package com.jmontagne.bedrock.client;
+
+import com.jmontagne.bedrock.benchmarks.Fixtures;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseStreamRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link BedrockStreamingClient#buildConverseRequest}: SDK builders for the
+ * messages, inference configuration and (cached) persona system blocks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConverseRequestBenchmark {
+
+    /**
+     * Earlier session turns sent ahead of the new message.
+     */
+    @Param({"0", "10"})
+    public int historyTurns;
+
+    private BedrockStreamingClient client;
+    private InferenceRequest request;
+
+    @Setup
+    public void setUp() {
+        PromptCachePolicy cachePolicy = new PromptCachePolicy(ModelCatalog.defaults(), PersonaRegistry.defaults(), true, 1024);
+        client = new BedrockStreamingClient(null, new LatencyTelemetry(), cachePolicy, BedrockStreamingClient.DEFAULT_PREFETCH);
+
+        List<ConversationTurn> history = new ArrayList<>(historyTurns);
+        for (int i = 0; i < historyTurns; i++) {
+            history.add(i % 2 == 0
+                    ? ConversationTurn.user("Question " + i + " about proofing times?")
+                    : ConversationTurn.assistant(Fixtures.content(Fixtures.Size.SHORT)));
+        }
+        InferenceRequest base = InferenceRequest.withJacquesMontagne(
+                "How long should baguette dough rest?", Fixtures.MODEL, InferenceParameters.DEFAULT);
+        request = new InferenceRequest(base.systemPrompt(), base.userMessage(), base.modelType(), base.parameters(), history);
+    }
+
+    @Benchmark
+    public ConverseStreamRequest build() {
+        return client.buildConverseRequest(request);
+    }
+}
@@ -0,0 +1,93 @@
+package com.jmontagne.bedrock.client;
+
+import com.jmontagne.bedrock.benchmarks.Fixtures;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+import reactor.util.context.Context;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseStreamOutput;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-token event handling: {@link ConverseStreamState#onEvent} type dispatch, timing and
+ * telemetry for every SDK event of one response, then {@link ConverseStreamState#complete}.
+ *
+ * <p>{@code direct} isolates the handler; {@code viaFlux} adds the {@code Flux.handle} operator
+ * the client actually runs it in.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamEventHandlingBenchmark {
+
+    @Param({"SHORT", "LONG"})
+    public Fixtures.Size size;
+
+    private ConverseStreamOutput[] events;
+    private LatencyTelemetry telemetry;
+
+    @Setup
+    public void setUp() {
+        events = Fixtures.sdkEvents(size);
+        telemetry = new LatencyTelemetry();
+    }
+
+    @Benchmark
+    public void direct(Blackhole blackhole) {
+        ConverseStreamState state = new ConverseStreamState(Fixtures.MODEL, telemetry, System.nanoTime());
+        BlackholeSink sink = new BlackholeSink(blackhole);
+        for (ConverseStreamOutput event : events) {
+            state.onEvent(event, sink);
+        }
+        blackhole.consume(state.complete());
+    }
+
+    @Benchmark
+    public void viaFlux(Blackhole blackhole) {
+        ConverseStreamState state = new ConverseStreamState(Fixtures.MODEL, telemetry, System.nanoTime());
+        Flux.fromArray(events)
+                .<StreamEvent>handle(state::onEvent)
+                .concatWith(Flux.defer(() -> Flux.just(state.complete())))
+                .subscribe(blackhole::consume);
+    }
+
+    private record BlackholeSink(Blackhole blackhole) implements SynchronousSink<StreamEvent> {
+
+        @Override
+        public void next(StreamEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        @Override
+        public void error(Throwable error) {
+            throw new IllegalStateException(error);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Context currentContext() {
+            return Context.empty();
+        }
+    }
+}
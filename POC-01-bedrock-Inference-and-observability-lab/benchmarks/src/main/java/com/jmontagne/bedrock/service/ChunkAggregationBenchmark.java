@@ -0,0 +1,102 @@
+package com.jmontagne.bedrock.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.benchmarks.Fixtures;
+import com.jmontagne.bedrock.controller.InferenceController.StreamResponse;
+import com.jmontagne.bedrock.controller.StreamResponseWriter;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folding a finished stream into one response, the way the non-SSE endpoints do it:
+ * <ul>
+ *   <li>{@code collectListJoin}: {@code InferenceController} stream endpoints -
+ *       {@code collectList()} then {@code String.join};</li>
+ *   <li>{@code accumulator}: {@code InferenceService#infer} - {@link ResponseAccumulator}
+ *       over the typed events;</li>
+ *   <li>{@code collectListJoinJson} vs {@code responseBufferJson}: the buffered
+ *       {@code /stream/{modelType}} body end to end, before (list, join, {@code ObjectMapper})
+ *       and after (pre-sized {@link ResponseBuffer}, {@link StreamResponseWriter}).</li>
+ * </ul>
+ *
+ * <p>Run with {@code -prof gc} (the default in {@code BenchmarkRunner}) and compare
+ * {@code gc.alloc.rate.norm}, the bytes allocated per operation.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkAggregationBenchmark {
+
+    @Param({"SHORT", "LONG"})
+    public Fixtures.Size size;
+
+    private List<String> chunks;
+    private List<StreamEvent> events;
+    private ObjectMapper mapper;
+    private OutputSizeEstimator outputSizes;
+    private InferenceParameters parameters;
+
+    @Setup
+    public void setUp() {
+        chunks = Fixtures.deltas(size);
+        events = Fixtures.streamEvents(size);
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        parameters = InferenceParameters.DEFAULT.withMaxTokens(size.tokens());
+        // Warm history, as after some traffic: the estimate has converged on this answer length
+        outputSizes = new OutputSizeEstimator();
+        for (int i = 0; i < 50; i++) {
+            outputSizes.record(Fixtures.MODEL, Fixtures.content(size).length());
+        }
+    }
+
+    @Benchmark
+    public String collectListJoin() {
+        List<String> collected = Flux.fromIterable(chunks).collectList().block();
+        return String.join("", collected);
+    }
+
+    @Benchmark
+    public InferenceResponse accumulator() {
+        return Flux.fromIterable(events)
+                .collect(ResponseAccumulator::new, ResponseAccumulator::accept)
+                .map(accumulator -> accumulator.toResponse(Fixtures.MODEL))
+                .block();
+    }
+
+    @Benchmark
+    public byte[] collectListJoinJson() throws JsonProcessingException {
+        List<String> collected = Flux.fromIterable(chunks).collectList().block();
+        return mapper.writeValueAsBytes(new StreamResponse(String.join("", collected),
+                Fixtures.MODEL.name(), Fixtures.MODEL.getDisplayName(), collected.size()));
+    }
+
+    @Benchmark
+    public byte[] responseBufferJson() {
+        ResponseBuffer buffer = Flux.fromIterable(chunks)
+                .collect(() -> new ResponseBuffer(outputSizes.initialCapacity(Fixtures.MODEL, parameters)),
+                        ResponseBuffer::append)
+                .block();
+        return StreamResponseWriter.toBytes(buffer, Fixtures.MODEL);
+    }
+}
@@ -0,0 +1,36 @@
+package com.jmontagne.bedrock.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-model arrivals: a Poisson process, so gaps between intended start times are
+ * exponentially distributed with mean {@code 1 / rate}. Arrivals do not wait for earlier
+ * requests to finish, which is what lets queueing show up in the latencies instead of
+ * silently lowering the offered load the way a closed loop of N workers does.
+ */
+public final class ArrivalSchedule {
+
+    private final double ratePerSecond;
+    private final Random random;
+
+    public ArrivalSchedule(double ratePerSecond, Random random) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.random = random;
+    }
+
+    /**
+     * Gap to the next intended start, by inverse transform sampling of the exponential.
+     */
+    public long nextIntervalNanos() {
+        double seconds = -Math.log(1.0 - random.nextDouble()) / ratePerSecond;
+        return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public double ratePerSecond() {
+        return ratePerSecond;
+    }
+}
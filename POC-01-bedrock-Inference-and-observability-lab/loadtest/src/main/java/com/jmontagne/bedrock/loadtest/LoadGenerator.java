@@ -0,0 +1,225 @@
+package com.jmontagne.bedrock.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-loop load generator for {@code /api/v1/inference/*}. Each step offers a fixed Poisson
+ * arrival rate for a warmup plus a measured window, then drains in-flight requests before the
+ * next, higher rate. One virtual thread per request means a slow response never delays the
+ * next arrival; latency is recorded against the intended start (see {@link StepStats}).
+ *
+ * <p>Point the lab at the local Bedrock emulator ({@code scripts/load-test.sh} does both) so
+ * no real model or AWS account is involved.
+ */
+public final class LoadGenerator {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String API_KEY_HEADER = "X-Api-Key";
+    private static final Set<String> THROTTLE_CODES =
+            Set.of("ThrottlingException", "QuotaExceededException", "ConcurrencyLimitExceededException");
+    // Non-zero so the lab's response cache and request coalescer stay out of the measurement
+    private static final double TEMPERATURE = 0.7;
+
+    private final LoadOptions options;
+    private final HttpClient client;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+    private final Random random;
+    private final URI uri;
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.random = new Random(options.seed());
+        this.uri = URI.create(options.baseUrl() + options.mode().path(options.model()));
+        // HTTP/1.1: one connection per in-flight stream, as a browser or SDK client would use
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(requests)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.print(LoadOptions.usage());
+            return;
+        }
+        LoadOptions options = LoadOptions.parse(args);
+        System.out.println("Load test: " + options);
+
+        Report report = new LoadGenerator(options).run();
+        report.printSummary(System.out);
+        report.write(options.report());
+        System.out.println("Report written to " + options.report().toAbsolutePath());
+        System.exit(0);
+    }
+
+    public Report run() throws InterruptedException {
+        Instant startedAt = Instant.now();
+        List<StepResult> steps = new ArrayList<>();
+        Report.printHeader(System.out);
+        for (double rate : options.rates()) {
+            StepResult step = runStep(rate);
+            steps.add(step);
+            Report.printStep(System.out, step);
+            if (!step.withinSlo() && options.stopAfterBreach()) {
+                break;
+            }
+        }
+        requests.shutdown();
+        return Report.of(startedAt, options, steps);
+    }
+
+    /**
+     * Issues requests on the arrival schedule from this thread: park until the intended start,
+     * hand the request to a fresh virtual thread, draw the next gap. Requests whose intended
+     * start falls in the warmup are sent but recorded into a discarded {@link StepStats}.
+     */
+    StepResult runStep(double rate) throws InterruptedException {
+        ArrivalSchedule schedule = new ArrivalSchedule(rate, random);
+        StepStats warmupStats = new StepStats(rate);
+        StepStats stats = new StepStats(rate);
+        long warmupNanos = options.warmup().toNanos();
+        long windowNanos = options.stepDuration().toNanos();
+
+        long start = System.nanoTime();
+        long measuredFrom = start + warmupNanos;
+        long end = measuredFrom + windowNanos;
+        for (long intended = start + schedule.nextIntervalNanos(); intended < end; intended += schedule.nextIntervalNanos()) {
+            parkUntil(intended);
+            StepStats target = intended >= measuredFrom ? stats : warmupStats;
+            long scheduled = intended;
+            target.onIssued(scheduled, System.nanoTime());
+            PromptMix.Entry prompt = options.promptMix().pick(random);
+            requests.execute(() -> execute(target, scheduled, prompt));
+        }
+
+        int unfinished = drain(warmupStats, stats);
+        return stats.result(windowNanos, unfinished, options);
+    }
+
+    private void execute(StepStats stats, long intended, PromptMix.Entry prompt) {
+        long sent = System.nanoTime();
+        long firstToken = -1;
+        StepStats.Outcome outcome;
+        try {
+            HttpRequest request = request(prompt);
+            if (options.mode() == LoadOptions.Mode.SSE) {
+                HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+                try (Stream<String> lines = response.body()) {
+                    if (response.statusCode() != 200) {
+                        outcome = statusOutcome(response.statusCode());
+                    } else {
+                        SseResult result = readSse(lines.iterator());
+                        firstToken = result.firstTokenNanos();
+                        outcome = result.outcome();
+                    }
+                }
+            } else {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                outcome = response.statusCode() == 200 ? StepStats.Outcome.OK : statusOutcome(response.statusCode());
+            }
+        } catch (HttpTimeoutException e) {
+            outcome = StepStats.Outcome.TIMEOUT;
+        } catch (IOException | RuntimeException e) {
+            outcome = StepStats.Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = StepStats.Outcome.ERROR;
+        }
+        stats.onCompleted(outcome, intended, sent, firstToken, System.nanoTime());
+    }
+
+    private record SseResult(StepStats.Outcome outcome, long firstTokenNanos) {}
+
+    /**
+     * Reads {@code event:} / {@code data:} lines as they arrive. A stream is OK only when it
+     * reaches the final {@code metrics} event; an {@code error} event is classified by its code.
+     */
+    private static SseResult readSse(Iterator<String> lines) {
+        long firstToken = -1;
+        String event = null;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.startsWith("event:")) {
+                event = line.substring("event:".length()).trim();
+                if (firstToken < 0 && event.equals("token")) {
+                    firstToken = System.nanoTime();
+                }
+            } else if (line.startsWith("data:") && "error".equals(event)) {
+                return new SseResult(errorOutcome(line.substring("data:".length())), firstToken);
+            } else if (line.startsWith("data:") && "metrics".equals(event)) {
+                return new SseResult(StepStats.Outcome.OK, firstToken);
+            }
+        }
+        return new SseResult(StepStats.Outcome.ERROR, firstToken);
+    }
+
+    private static StepStats.Outcome errorOutcome(String data) {
+        try {
+            JsonNode code = MAPPER.readTree(data).path("code");
+            return THROTTLE_CODES.contains(code.asText()) ? StepStats.Outcome.THROTTLED : StepStats.Outcome.ERROR;
+        } catch (IOException e) {
+            return StepStats.Outcome.ERROR;
+        }
+    }
+
+    private static StepStats.Outcome statusOutcome(int status) {
+        return status == 429 ? StepStats.Outcome.THROTTLED : StepStats.Outcome.ERROR;
+    }
+
+    private HttpRequest request(PromptMix.Entry prompt) throws IOException {
+        ObjectNode body = MAPPER.createObjectNode()
+                .put("message", prompt.prompt())
+                .put("maxTokens", options.maxTokens())
+                .put("temperature", TEMPERATURE);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(options.requestTimeout())
+                .header("Content-Type", "application/json")
+                .header("Accept", options.mode().accept())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)));
+        if (options.apiKey() != null) {
+            builder.header(API_KEY_HEADER, options.apiKey());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Waits for the step's requests to finish so they do not overlap the next rate. Returns how
+     * many measured requests were still running at the request timeout.
+     */
+    private int drain(StepStats warmupStats, StepStats stats) throws InterruptedException {
+        long deadline = System.nanoTime() + options.requestTimeout().toNanos();
+        while ((warmupStats.inFlight() > 0 || stats.inFlight() > 0) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return stats.inFlight();
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.jmontagne.bedrock.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line of {@link LoadGenerator}, as {@code --name=value} pairs. Every option has a
+ * default, so a bare {@code java -jar loadtest.jar} runs the standard step sequence against
+ * {@code localhost:8080}.
+ */
+public record LoadOptions(
+        URI baseUrl,
+        Mode mode,
+        String model,
+        List<Double> rates,
+        Duration stepDuration,
+        Duration warmup,
+        int maxTokens,
+        PromptMix promptMix,
+        Duration ttftSlo,
+        double maxErrorRate,
+        boolean stopAfterBreach,
+        Duration requestTimeout,
+        Path report,
+        long seed,
+        String apiKey
+) {
+
+    /**
+     * Which endpoint every request hits. All of them are POSTs with the same JSON body.
+     */
+    public enum Mode {
+        /** {@code /stream/{model}} with {@code Accept: text/event-stream}: TTFT is the first token event. */
+        SSE,
+        /** {@code /stream/{model}} buffered JSON: only total latency is meaningful. */
+        BUFFERED,
+        /** {@code /auto}: routed, buffered JSON. */
+        AUTO;
+
+        String path(String model) {
+            return switch (this) {
+                case SSE, BUFFERED -> "/api/v1/inference/stream/" + model;
+                case AUTO -> "/api/v1/inference/auto";
+            };
+        }
+
+        String accept() {
+            return this == SSE ? "text/event-stream" : "application/json";
+        }
+    }
+
+    private static final String USAGE = """
+            Usage: java -jar loadtest.jar [--name=value ...]
+              --base-url=http://localhost:8080   lab under test
+              --mode=sse|buffered|auto           endpoint (default sse)
+              --model=CLAUDE_3_HAIKU             ModelType for the /stream endpoints
+              --rates=2,5,10,20,40               arrival rate of each step, requests per second
+              --step-duration=60s                measured window of each step
+              --warmup=10s                       unmeasured load at the start of each step
+              --max-tokens=512                   maxTokens of every request
+              --prompt-mix=short:60,medium:30,long:10
+              --ttft-slo=2000ms                  TTFT p99 a step must meet (total latency in buffered modes)
+              --max-error-rate=0.01              error share a step must stay under
+              --stop-after-breach=true           skip the remaining steps once one breaches the SLO
+              --request-timeout=120s             per request, also the drain timeout between steps
+              --report=target/load-report.json   JSON report path
+              --seed=42                          arrival and prompt-mix randomness
+              --api-key=                         sent as X-Api-Key (per-caller quotas)
+            """;
+
+    public static LoadOptions defaults() {
+        return parse(new String[0]);
+    }
+
+    public static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got '" + arg + "'\n" + USAGE);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadOptions options = new LoadOptions(
+                URI.create(stripTrailingSlash(take(values, "base-url", "http://localhost:8080"))),
+                Mode.valueOf(take(values, "mode", "sse").toUpperCase(Locale.ROOT)),
+                take(values, "model", "CLAUDE_3_HAIKU"),
+                parseRates(take(values, "rates", "2,5,10,20,40")),
+                parseDuration(take(values, "step-duration", "60s")),
+                parseDuration(take(values, "warmup", "10s")),
+                Integer.parseInt(take(values, "max-tokens", "512")),
+                PromptMix.parse(take(values, "prompt-mix", "short:60,medium:30,long:10")),
+                parseDuration(take(values, "ttft-slo", "2000ms")),
+                Double.parseDouble(take(values, "max-error-rate", "0.01")),
+                Boolean.parseBoolean(take(values, "stop-after-breach", "true")),
+                parseDuration(take(values, "request-timeout", "120s")),
+                Path.of(take(values, "report", "target/load-report.json")),
+                Long.parseLong(take(values, "seed", "42")),
+                emptyToNull(take(values, "api-key", ""))
+        );
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown option(s) " + values.keySet() + "\n" + USAGE);
+        }
+        return options;
+    }
+
+    public static String usage() {
+        return USAGE;
+    }
+
+    /**
+     * Accepts {@code 500ms}, {@code 30s}, {@code 2m}, or an ISO-8601 duration.
+     */
+    static Duration parseDuration(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        return Duration.parse(value);
+    }
+
+    private static List<Double> parseRates(String value) {
+        List<Double> rates = new ArrayList<>();
+        for (String rate : value.split(",")) {
+            double parsed = Double.parseDouble(rate.trim());
+            if (parsed <= 0) {
+                throw new IllegalArgumentException("Rates must be positive: " + value);
+            }
+            rates.add(parsed);
+        }
+        return List.copyOf(rates);
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isBlank() ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return "%s %s%s, rates %s req/s, %ss steps (+%ss warmup), maxTokens %d, prompts %s".formatted(
+                mode, baseUrl, mode.path(model), Arrays.toString(rates.toArray()),
+                stepDuration.toSeconds(), warmup.toSeconds(), maxTokens, promptMix);
+    }
+}
@@ -0,0 +1,92 @@
+package com.jmontagne.bedrock.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Weighted prompt sizes. Input length drives prefill time and therefore TTFT, so a single
+ * fixed prompt would hide the spread a real caller population produces.
+ */
+public record PromptMix(List<Entry> entries, double totalWeight) {
+
+    /**
+     * Named prompt sizes, in words of filler text (roughly 1.3 tokens each).
+     */
+    public enum Size {
+        SHORT(20),
+        MEDIUM(250),
+        LONG(1_500);
+
+        private final int words;
+
+        Size(int words) {
+            this.words = words;
+        }
+
+        public int words() {
+            return words;
+        }
+    }
+
+    public record Entry(Size size, double weight, String prompt) {}
+
+    private static final String[] FILLER = {
+            "latency", "throughput", "stream", "token", "model", "region", "quota", "buffer",
+            "request", "response", "percentile", "queue", "arrival", "service", "capacity", "budget"
+    };
+
+    public PromptMix {
+        entries = List.copyOf(entries);
+        if (entries.isEmpty() || totalWeight <= 0) {
+            throw new IllegalArgumentException("Prompt mix needs at least one positive weight");
+        }
+    }
+
+    /**
+     * Parses {@code short:60,medium:30,long:10}; weights are relative, they need not sum to 100.
+     */
+    public static PromptMix parse(String spec) {
+        List<Entry> entries = new ArrayList<>();
+        double total = 0;
+        for (String part : spec.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            Size size = Size.valueOf(nameAndWeight[0].trim().toUpperCase(Locale.ROOT));
+            double weight = nameAndWeight.length > 1 ? Double.parseDouble(nameAndWeight[1].trim()) : 1;
+            if (weight > 0) {
+                entries.add(new Entry(size, weight, prompt(size)));
+                total += weight;
+            }
+        }
+        return new PromptMix(entries, total);
+    }
+
+    public Entry pick(Random random) {
+        double point = random.nextDouble() * totalWeight;
+        for (Entry entry : entries) {
+            point -= entry.weight();
+            if (point < 0) {
+                return entry;
+            }
+        }
+        return entries.getLast();
+    }
+
+    private static String prompt(Size size) {
+        StringBuilder prompt = new StringBuilder(size.words() * 10)
+                .append("Summarize the following notes in a few sentences:");
+        for (int i = 0; i < size.words(); i++) {
+            prompt.append(' ').append(FILLER[i % FILLER.length]);
+        }
+        return prompt.toString();
+    }
+
+    @Override
+    public String toString() {
+        return entries.stream()
+                .map(entry -> entry.size().name().toLowerCase(Locale.ROOT) + ":" + (int) entry.weight())
+                .collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,76 @@
+package com.jmontagne.bedrock.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Step table on stdout and the same numbers as JSON, plus the capacity verdict: the highest
+ * arrival rate whose TTFT p99 and error rate stayed within the SLO.
+ */
+public record Report(
+        String startedAt,
+        String target,
+        long ttftSloMs,
+        double maxErrorRate,
+        Double maxRateWithinSlo,
+        List<StepResult> steps
+) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static Report of(Instant startedAt, LoadOptions options, List<StepResult> steps) {
+        Double maxRate = steps.stream()
+                .filter(StepResult::withinSlo)
+                .map(StepResult::targetRate)
+                .max(Double::compare)
+                .orElse(null);
+        return new Report(startedAt.toString(), options.toString(), options.ttftSlo().toMillis(), options.maxErrorRate(),
+                maxRate, List.copyOf(steps));
+    }
+
+    public static void printHeader(PrintStream out) {
+        out.printf(Locale.ROOT, "%8s %8s %8s %7s %7s | %9s %9s %9s %9s | %9s %9s | %9s | %8s %7s %8s %s%n",
+                "rate/s", "offered", "ok/s", "err%", "429%",
+                "ttft p50", "ttft p90", "ttft p99", "ttft max",
+                "tot p50", "tot p99", "svc p99",
+                "mean-c", "max-c", "lag ms", "slo");
+    }
+
+    public static void printStep(PrintStream out, StepResult step) {
+        double throttleShare = step.issued() > 0 ? step.throttled() / (double) step.issued() : 0;
+        out.printf(Locale.ROOT,
+                "%8.1f %8.1f %8.1f %7.2f %7.2f | %9.0f %9.0f %9.0f %9.0f | %9.0f %9.0f | %9.0f | %8.1f %7d %8.1f %s%n",
+                step.targetRate(), step.offeredRate(), step.goodput(), step.errorRate() * 100, throttleShare * 100,
+                step.ttft().p50(), step.ttft().p90(), step.ttft().p99(), step.ttft().max(),
+                step.total().p50(), step.total().p99(), step.serviceTtft().p99(),
+                step.meanConcurrency(), step.maxInFlight(), step.maxSchedulingLagMs(),
+                step.withinSlo() ? "ok" : "BREACH");
+    }
+
+    public void printSummary(PrintStream out) {
+        out.println();
+        out.printf(Locale.ROOT, "Highest rate within SLO (TTFT p99 <= %d ms, errors <= %.1f%%): %s%n",
+                ttftSloMs, maxErrorRate * 100,
+                Optional.ofNullable(maxRateWithinSlo)
+                        .map(rate -> String.format(Locale.ROOT, "%.1f req/s", rate))
+                        .orElse("none"));
+        out.println("ttft/tot: from intended start (coordinated-omission corrected); svc: TTFT from actual send");
+    }
+
+    public void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        MAPPER.writeValue(path.toFile(), this);
+    }
+}
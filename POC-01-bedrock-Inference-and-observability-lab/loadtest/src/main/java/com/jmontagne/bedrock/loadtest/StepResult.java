@@ -0,0 +1,53 @@
+package com.jmontagne.bedrock.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Outcome of one rate step, as printed and written to the JSON report. Latencies are in
+ * milliseconds from the intended start; {@code errorRate} includes throttles and timeouts.
+ *
+ * @param meanConcurrency average requests in flight over the window (Little's law: rate x time)
+ * @param maxSchedulingLagMs worst delay between an intended start and the actual send; when
+ *                           large, the generator itself was saturated
+ */
+public record StepResult(
+        double targetRate,
+        double offeredRate,
+        double goodput,
+        long issued,
+        long ok,
+        long errors,
+        long throttled,
+        long timeouts,
+        double errorRate,
+        Percentiles ttft,
+        Percentiles total,
+        Percentiles serviceTtft,
+        double meanConcurrency,
+        int maxInFlight,
+        double maxSchedulingLagMs,
+        boolean withinSlo
+) {
+
+    public record Percentiles(long count, double p50, double p90, double p99, double p999, double max, double mean) {
+
+        static Percentiles of(Histogram micros) {
+            if (micros.getTotalCount() == 0) {
+                return new Percentiles(0, 0, 0, 0, 0, 0, 0);
+            }
+            return new Percentiles(
+                    micros.getTotalCount(),
+                    millis(micros.getValueAtPercentile(50)),
+                    millis(micros.getValueAtPercentile(90)),
+                    millis(micros.getValueAtPercentile(99)),
+                    millis(micros.getValueAtPercentile(99.9)),
+                    millis(micros.getMaxValue()),
+                    micros.getMean() / 1_000
+            );
+        }
+
+        private static double millis(long micros) {
+            return micros / 1_000.0;
+        }
+    }
+}
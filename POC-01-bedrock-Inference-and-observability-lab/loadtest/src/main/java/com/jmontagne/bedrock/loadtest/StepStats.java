@@ -0,0 +1,122 @@
+package com.jmontagne.bedrock.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one rate step, recorded concurrently by the request threads.
+ *
+ * <p>Latencies are taken from the <em>intended</em> start time on the arrival schedule, not
+ * from when the request was actually sent. If the generator or the client stalls, the wait is
+ * charged to the request instead of disappearing (coordinated omission). The service-time TTFT,
+ * from the actual send, is kept beside it so the two can be compared.
+ */
+public final class StepStats {
+
+    /**
+     * How a request ended. Throttled covers 429s and throttling/quota errors sent as SSE events.
+     */
+    public enum Outcome { OK, ERROR, THROTTLED, TIMEOUT }
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final double targetRate;
+    private final Histogram ttft = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Histogram total = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Histogram serviceTtft = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong maxSchedulingLagNanos = new AtomicLong();
+
+    public StepStats(double targetRate) {
+        this.targetRate = targetRate;
+    }
+
+    /**
+     * Called by the generator thread just before handing the request to its thread.
+     */
+    public void onIssued(long intendedNanos, long nowNanos) {
+        issued.increment();
+        maxSchedulingLagNanos.accumulateAndGet(nowNanos - intendedNanos, Math::max);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * @param firstTokenNanos when the first token arrived, or {@code -1} when there was none
+     *                        or the mode does not stream
+     */
+    public void onCompleted(Outcome outcome, long intendedNanos, long sentNanos, long firstTokenNanos, long endNanos) {
+        inFlight.decrementAndGet();
+        busyNanos.add(endNanos - sentNanos);
+        switch (outcome) {
+            case OK -> ok.increment();
+            case ERROR -> errors.increment();
+            case THROTTLED -> throttled.increment();
+            case TIMEOUT -> timeouts.increment();
+        }
+        if (outcome != Outcome.OK) {
+            return;
+        }
+        total.recordValue(micros(endNanos - intendedNanos));
+        if (firstTokenNanos >= 0) {
+            ttft.recordValue(micros(firstTokenNanos - intendedNanos));
+            serviceTtft.recordValue(micros(firstTokenNanos - sentNanos));
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @param windowNanos length of the measured window, used for the rates and Little's law
+     * @param unfinished  requests still running after the drain timeout, counted as errors
+     */
+    public StepResult result(long windowNanos, int unfinished, LoadOptions options) {
+        double seconds = windowNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        long issuedCount = issued.sum();
+        long failed = errors.sum() + throttled.sum() + timeouts.sum() + unfinished;
+        double errorRate = issuedCount > 0 ? failed / (double) issuedCount : 0;
+        StepResult.Percentiles ttftPercentiles = StepResult.Percentiles.of(ttft);
+        StepResult.Percentiles totalPercentiles = StepResult.Percentiles.of(total);
+        // Buffered modes have no token events: hold them to the SLO on the whole response
+        StepResult.Percentiles sloBasis = ttftPercentiles.count() > 0 ? ttftPercentiles : totalPercentiles;
+        boolean withinSlo = ok.sum() > 0
+                && sloBasis.p99() <= options.ttftSlo().toMillis()
+                && errorRate <= options.maxErrorRate();
+
+        return new StepResult(
+                targetRate,
+                issuedCount / seconds,
+                ok.sum() / seconds,
+                issuedCount,
+                ok.sum(),
+                errors.sum() + unfinished,
+                throttled.sum(),
+                timeouts.sum(),
+                errorRate,
+                ttftPercentiles,
+                totalPercentiles,
+                StepResult.Percentiles.of(serviceTtft),
+                busyNanos.sum() / (double) windowNanos,
+                maxInFlight.get(),
+                maxSchedulingLagNanos.get() / 1e6,
+                withinSlo
+        );
+    }
+
+    private static long micros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+}
@@ -0,0 +1,46 @@
+package com.jmontagne.bedrock.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ArrivalScheduleTest {
+
+    @Test
+    void nextIntervalNanos_poisson_meanIsInverseRateAndCoefficientOfVariationIsOne() {
+        ArrivalSchedule schedule = new ArrivalSchedule(20, new Random(42));
+
+        int samples = 50_000;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < samples; i++) {
+            double millis = schedule.nextIntervalNanos() / 1e6;
+            sum += millis;
+            sumOfSquares += millis * millis;
+        }
+        double mean = sum / samples;
+        double deviation = Math.sqrt(sumOfSquares / samples - mean * mean);
+
+        assertThat(mean).isCloseTo(50.0, within(1.0));
+        assertThat(deviation / mean).isCloseTo(1.0, within(0.03));
+    }
+
+    @Test
+    void promptMix_pick_followsWeights() {
+        PromptMix mix = PromptMix.parse("short:75,long:25");
+        Random random = new Random(7);
+
+        int longs = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (mix.pick(random).size() == PromptMix.Size.LONG) {
+                longs++;
+            }
+        }
+
+        assertThat(longs).isBetween(2_300, 2_700);
+        assertThat(mix.pick(random).prompt()).startsWith("Summarize");
+    }
+}
@@ -0,0 +1,63 @@
+package com.jmontagne.bedrock.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class StepStatsTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void onCompleted_lateSend_chargesWaitToIntendedStartLatency() {
+        StepStats stats = new StepStats(1);
+        stats.onIssued(0, 300 * MS);
+        stats.onCompleted(StepStats.Outcome.OK, 0, 300 * MS, 400 * MS, 900 * MS);
+
+        StepResult result = stats.result(WINDOW, 0, LoadOptions.defaults());
+
+        assertThat(result.ttft().p99()).isCloseTo(400.0, within(1.0));
+        assertThat(result.serviceTtft().p99()).isCloseTo(100.0, within(1.0));
+        assertThat(result.total().max()).isCloseTo(900.0, within(1.0));
+        assertThat(result.maxSchedulingLagMs()).isEqualTo(300.0);
+    }
+
+    @Test
+    void result_errorsThrottlesAndUnfinished_countTowardErrorRateAndSlo() {
+        StepStats stats = new StepStats(2);
+        for (int i = 0; i < 97; i++) {
+            stats.onIssued(0, 0);
+            stats.onCompleted(StepStats.Outcome.OK, 0, 0, 100 * MS, 500 * MS);
+        }
+        stats.onIssued(0, 0);
+        stats.onCompleted(StepStats.Outcome.THROTTLED, 0, 0, -1, 10 * MS);
+        stats.onIssued(0, 0);
+        stats.onCompleted(StepStats.Outcome.ERROR, 0, 0, -1, 10 * MS);
+        stats.onIssued(0, 0);
+
+        StepResult result = stats.result(WINDOW, stats.inFlight(), LoadOptions.defaults());
+
+        assertThat(result.issued()).isEqualTo(100);
+        assertThat(result.errors()).isEqualTo(2);
+        assertThat(result.throttled()).isEqualTo(1);
+        assertThat(result.errorRate()).isEqualTo(0.03);
+        assertThat(result.goodput()).isEqualTo(9.7);
+        assertThat(result.withinSlo()).isFalse();
+    }
+
+    @Test
+    void result_bufferedMode_holdsTotalLatencyToSlo() {
+        StepStats stats = new StepStats(1);
+        stats.onIssued(0, 0);
+        stats.onCompleted(StepStats.Outcome.OK, 0, 0, -1, 2_500 * MS);
+
+        StepResult result = stats.result(WINDOW, 0, LoadOptions.defaults());
+
+        assertThat(result.ttft().count()).isZero();
+        assertThat(result.withinSlo()).isFalse();
+    }
+}
@@ -0,0 +1,95 @@
+#!/usr/bin/env bash
+#
+# Compares init and invoke durations of the two Lambda entry points:
+#   StreamLambdaHandler   - serverless-java-container servlet proxy
+#   FunctionLambdaHandler - HttpApiV2ProxyRequest routed straight to InferenceService
+#
+# Runs against $LATEST, where SnapStart does not apply, so "Init Duration" is the full
+# Spring start of each handler. For every cold iteration the script changes an environment
+# variable (forcing a new execution environment), invokes once to read Init Duration and
+# the cold Duration, then invokes WARM more times for the warm Duration.
+#
+# Usage: scripts/lambda-handler-benchmark.sh <function-name> [cold-iterations] [warm-invokes]
+# Needs: aws CLI v2, jq. BENCH_PATH picks the route (default: the health check, no Bedrock call).
+
+set -euo pipefail
+
+FUNCTION_NAME="${1:?usage: $0 <function-name> [cold-iterations] [warm-invokes]}"
+ITERATIONS="${2:-5}"
+WARM="${3:-20}"
+BENCH_PATH="${BENCH_PATH:-/api/v1/inference/health}"
+HANDLERS=(
+  "com.jmontagne.bedrock.StreamLambdaHandler::handleRequest"
+  "com.jmontagne.bedrock.FunctionLambdaHandler::handleRequest"
+)
+
+ORIGINAL_HANDLER=$(aws lambda get-function-configuration --function-name "$FUNCTION_NAME" --query Handler --output text)
+PAYLOAD_FILE="$(mktemp)"
+RESPONSE_FILE="$(mktemp)"
+trap 'rm -f "$PAYLOAD_FILE" "$RESPONSE_FILE"' EXIT
+
+jq -n --arg path "$BENCH_PATH" '{
+  version: "2.0",
+  routeKey: "GET /api/v1/inference/{proxy+}",
+  rawPath: ($path | split("?")[0]),
+  rawQueryString: (($path | split("?"))[1] // ""),
+  headers: {accept: "application/json"},
+  requestContext: {http: {method: "GET", path: ($path | split("?")[0]), sourceIp: "127.0.0.1"}, stage: "$default"},
+  isBase64Encoded: false
+}' > "$PAYLOAD_FILE"
+
+# Replaces the handler and a nonce env var in one update, which recycles execution environments
+reconfigure() {
+  local handler="$1" variables
+  variables=$(aws lambda get-function-configuration --function-name "$FUNCTION_NAME" \
+    --query 'Environment.Variables' --output json \
+    | jq -c --arg nonce "$(date +%s%N)" '{Variables: (. + {BENCH_NONCE: $nonce})}')
+  aws lambda update-function-configuration --function-name "$FUNCTION_NAME" \
+    --handler "$handler" --environment "$variables" > /dev/null
+  aws lambda wait function-updated --function-name "$FUNCTION_NAME"
+}
+
+# Prints the REPORT line of one invoke
+invoke() {
+  aws lambda invoke --function-name "$FUNCTION_NAME" \
+    --cli-binary-format raw-in-base64-out --payload "file://$PAYLOAD_FILE" \
+    --log-type Tail --query LogResult --output text "$RESPONSE_FILE" \
+    | base64 --decode | grep '^REPORT'
+}
+
+field() {
+  sed -n "s/.*\t$1: \([0-9.]*\) .*/\1/p" <<< "$2"
+}
+
+percentile() {
+  local p="$1"
+  sort -n | awk -v p="$p" '{ v[NR] = $1 } END { i = int((NR - 1) * p / 100) + 1; print v[i] }'
+}
+
+summary() {
+  local label="$1" unit="$2"; shift 2
+  printf '  %-12s p50=%8s %s  p90=%8s %s\n' "$label" \
+    "$(printf '%s\n' "$@" | percentile 50)" "$unit" "$(printf '%s\n' "$@" | percentile 90)" "$unit"
+}
+
+for handler in "${HANDLERS[@]}"; do
+  inits=() colds=() warms=() memory=()
+  echo "== ${handler%%::*} (${BENCH_PATH}) =="
+  for i in $(seq 1 "$ITERATIONS"); do
+    reconfigure "$handler"
+    report=$(invoke)
+    inits+=("$(field 'Init Duration' "$report")")
+    colds+=("$(field 'Duration' "$report")")
+    memory+=("$(field 'Max Memory Used' "$report")")
+    echo "  cold ${i}: init=${inits[-1]} ms, invoke=${colds[-1]} ms, memory=${memory[-1]} MB"
+    for _ in $(seq 1 "$WARM"); do
+      warms+=("$(field 'Duration' "$(invoke)")")
+    done
+  done
+  summary "init" ms "${inits[@]}"
+  summary "cold invoke" ms "${colds[@]}"
+  summary "warm invoke" ms "${warms[@]}"
+  summary "memory" MB "${memory[@]}"
+done
+
+reconfigure "$ORIGINAL_HANDLER"
@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+#
+# Open-loop load test of the lab against the local Bedrock emulator, no AWS account needed:
+#   1. starts BedrockEmulator on $EMULATOR_PORT (latency profile from EMULATOR_ARGS)
+#   2. starts the lab with the server profile, its Bedrock client pointed at the emulator
+#   3. runs loadtest.jar: Poisson arrivals at each --rates step, HdrHistogram TTFT / latency
+#      per step, report in loadtest/target/load-report.json
+#
+# Usage: scripts/load-test.sh [loadtest options, e.g. --rates=5,10,20,40 --mode=sse]
+# Env:   EMULATOR_ARGS  bedrock.emulator.* overrides, e.g. "--profile.ttft-p50=300ms --max-concurrent-streams=100"
+#        APP_ARGS       extra lab properties (the local RPM/TPM quotas are off unless re-enabled here)
+#        APP_PORT, EMULATOR_PORT
+# The lab's own TTFT percentiles: http://localhost:$APP_PORT/actuator/metrics/bedrock.inference.ttft
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+APP_PORT="${APP_PORT:-8080}"
+EMULATOR_PORT="${EMULATOR_PORT:-8089}"
+EMULATOR_ARGS="${EMULATOR_ARGS:-}"
+APP_ARGS="${APP_ARGS:-}"
+LAB_JAR="target/bedrock-inference-lab-1.0.0-SNAPSHOT.jar"
+LOADTEST_JAR="loadtest/target/loadtest.jar"
+LOG_DIR="loadtest/target"
+
+[[ -f "$LAB_JAR" ]] || mvn -B -q -DskipTests package
+[[ -f "$LOADTEST_JAR" ]] || (cd loadtest && mvn -B -q -DskipTests package)
+mkdir -p "$LOG_DIR"
+
+PIDS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null || true' EXIT
+
+# $EMULATOR_ARGS / $APP_ARGS are deliberately word-split into separate arguments
+# shellcheck disable=SC2086
+java --enable-preview -cp "$LAB_JAR" com.jmontagne.bedrock.emulator.BedrockEmulator \
+  --port="$EMULATOR_PORT" $EMULATOR_ARGS > "$LOG_DIR/emulator.log" 2>&1 &
+PIDS+=($!)
+
+# shellcheck disable=SC2086
+SPRING_PROFILES_ACTIVE=server java --enable-preview -cp "$LAB_JAR" com.jmontagne.bedrock.BedrockInferenceApplication \
+  --server.port="$APP_PORT" \
+  --bedrock.client.endpoint-override="http://127.0.0.1:$EMULATOR_PORT" \
+  --bedrock.client.emulator-credentials=true \
+  --bedrock.quota.enabled=false \
+  --logging.level.com.jmontagne=WARN \
+  $APP_ARGS > "$LOG_DIR/app.log" 2>&1 &
+PIDS+=($!)
+
+echo "Waiting for the lab on :$APP_PORT (logs in $LOG_DIR)..."
+for _ in $(seq 1 60); do
+  curl -sf "http://localhost:$APP_PORT/api/v1/inference/health" > /dev/null && break
+  sleep 1
+done
+curl -sf "http://localhost:$APP_PORT/api/v1/inference/health" > /dev/null \
+  || { echo "Lab did not start, see $LOG_DIR/app.log" >&2; exit 1; }
+
+java -jar "$LOADTEST_JAR" --base-url="http://localhost:$APP_PORT" --report="$LOG_DIR/load-report.json" "$@"
+
+echo
+echo "Emulator counters:"
+curl -s "http://127.0.0.1:$EMULATOR_PORT/emulator/stats"
+echo
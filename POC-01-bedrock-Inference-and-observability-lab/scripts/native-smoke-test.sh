@@ -0,0 +1,188 @@
+#!/usr/bin/env bash
+#
+# Smoke test for the native build: runs target/bedrock-inference-lab exactly as the provided.al2023
+# runtime would, against a fake Lambda Runtime API and the local ConverseStream stub, and checks the
+# handler answers one inference request. No AWS account or network access needed.
+#
+#   scripts/native-smoke-test.sh            native executable only (run by `mvn -Pnative verify`)
+#   scripts/native-smoke-test.sh --compare  also runs the shaded JVM jar the same way and prints
+#                                           init time, first-invoke time and peak RSS side by side
+#
+# Init = process start -> first /invocation/next poll (Spring context + handler ready).
+# Peak RSS is VmHWM from /proc, so the comparison needs Linux. Needs java and python3 on PATH.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+COMPARE="${1:-}"
+NATIVE_BIN="target/bedrock-inference-lab"
+JAR=$(ls target/bedrock-inference-lab-*.jar | grep -v -e '-native-lambda' -e '^target/original-' | head -n 1)
+HANDLER="com.jmontagne.bedrock.FunctionLambdaHandler::handleRequest"
+STUB_PORT="${STUB_PORT:-18089}"
+RUNTIME_PORT="${RUNTIME_PORT:-19001}"
+WORK_DIR="$(mktemp -d)"
+PIDS=()
+
+cleanup() {
+  for pid in "${PIDS[@]}"; do kill "$pid" 2> /dev/null || true; done
+  rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+[[ -x "$NATIVE_BIN" ]] || { echo "Missing $NATIVE_BIN - run: mvn -Pnative package" >&2; exit 1; }
+
+# --- Fake Lambda Runtime API: serves one event, records init/response timestamps -------------------
+cat > "$WORK_DIR/runtime_api.py" <<'PY'
+import json, sys, threading, time
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+port, event_file, out_file = int(sys.argv[1]), sys.argv[2], sys.argv[3]
+event = open(event_file, "rb").read()
+lock = threading.Lock()
+polls = [0]
+
+def record(**fields):
+    fields["at_ms"] = int(time.time() * 1000)
+    with lock, open(out_file, "a") as out:
+        out.write(json.dumps(fields) + "\n")
+
+class RuntimeApi(BaseHTTPRequestHandler):
+    protocol_version = "HTTP/1.1"
+
+    def log_message(self, *args):
+        pass
+
+    def do_GET(self):
+        if not self.path.endswith("/invocation/next"):
+            self.send_error(404)
+            return
+        with lock:
+            polls[0] += 1
+            first = polls[0] == 1
+        if not first:
+            time.sleep(3600)  # one invocation only; the script kills the runtime
+            return
+        record(kind="next")
+        self.send_response(200)
+        self.send_header("Lambda-Runtime-Aws-Request-Id", "smoke-1")
+        self.send_header("Lambda-Runtime-Deadline-Ms", str(int(time.time() * 1000) + 60000))
+        self.send_header("Lambda-Runtime-Invoked-Function-Arn", "arn:aws:lambda:us-east-1:000000000000:function:smoke")
+        self.send_header("Lambda-Runtime-Trace-Id", "Root=1-00000000-000000000000000000000000;Sampled=0")
+        self.send_header("Content-Type", "application/json")
+        self.send_header("Content-Length", str(len(event)))
+        self.end_headers()
+        self.wfile.write(event)
+
+    def do_POST(self):
+        if self.headers.get("Transfer-Encoding", "").lower() == "chunked":
+            body = b""
+            while True:
+                size = int(self.rfile.readline().strip(), 16)
+                if size == 0:
+                    self.rfile.readline()
+                    break
+                body += self.rfile.read(size)
+                self.rfile.readline()
+        else:
+            body = self.rfile.read(int(self.headers.get("Content-Length", 0)))
+        record(kind="response" if self.path.endswith("/response") else "error", path=self.path, body=body.decode())
+        self.send_response(202)
+        self.send_header("Content-Length", "0")
+        self.end_headers()
+
+server = ThreadingHTTPServer(("127.0.0.1", port), RuntimeApi)
+server.daemon_threads = True
+server.serve_forever()
+PY
+
+cat > "$WORK_DIR/event.json" <<'JSON'
+{
+  "version": "2.0",
+  "routeKey": "POST /api/v1/inference/stream/{modelType}",
+  "rawPath": "/api/v1/inference/stream/CLAUDE_3_HAIKU",
+  "headers": {"content-type": "application/json", "x-api-key": "smoke-test"},
+  "requestContext": {"http": {"method": "POST", "path": "/api/v1/inference/stream/CLAUDE_3_HAIKU", "sourceIp": "127.0.0.1"}},
+  "body": "{\"message\":\"Bonjour ?\",\"maxTokens\":16}",
+  "isBase64Encoded": false
+}
+JSON
+
+wait_for_port() {
+  for _ in $(seq 1 100); do
+    (exec 3<> "/dev/tcp/127.0.0.1/$1") 2> /dev/null && return 0
+    sleep 0.1
+  done
+  echo "Nothing listening on port $1" >&2
+  return 1
+}
+
+# --- Bedrock side: the ConverseStream stub from the JVM jar ----------------------------------------
+java -cp "$JAR" com.jmontagne.bedrock.priming.ConverseStreamStub "$STUB_PORT" > "$WORK_DIR/stub.log" 2>&1 &
+PIDS+=($!)
+wait_for_port "$STUB_PORT"
+
+# Runs one runtime command through a single invocation; prints "<init ms> <invoke ms> <peak RSS MB>"
+run_runtime() {
+  local label="$1"; shift
+  local out="$WORK_DIR/$label.ndjson" start pid line
+  # Everything started here is redirected: this runs inside $(...), which waits for stdout to close
+  python3 "$WORK_DIR/runtime_api.py" "$RUNTIME_PORT" "$WORK_DIR/event.json" "$out" > "$WORK_DIR/$label-api.log" 2>&1 &
+  local api_pid=$!
+  wait_for_port "$RUNTIME_PORT"
+
+  start=$(date +%s%3N)
+  env AWS_LAMBDA_RUNTIME_API="127.0.0.1:$RUNTIME_PORT" \
+      _HANDLER="$HANDLER" \
+      LAMBDA_TASK_ROOT="$PWD/target" \
+      AWS_LAMBDA_FUNCTION_NAME=smoke AWS_LAMBDA_FUNCTION_VERSION='$LATEST' AWS_LAMBDA_FUNCTION_MEMORY_SIZE=2048 \
+      AWS_LAMBDA_LOG_GROUP_NAME=/aws/lambda/smoke AWS_LAMBDA_LOG_STREAM_NAME=smoke \
+      AWS_REGION=us-east-1 AWS_ACCESS_KEY_ID=smoke AWS_SECRET_ACCESS_KEY=smoke \
+      SPRING_PROFILES_ACTIVE=lambda \
+      BEDROCK_ENDPOINT_OVERRIDE="http://127.0.0.1:$STUB_PORT" \
+      "$@" > "$WORK_DIR/$label.log" 2>&1 &
+  pid=$!
+
+  for _ in $(seq 1 600); do
+    grep -q '"kind": "\(response\|error\)"' "$out" 2> /dev/null && break
+    kill -0 "$pid" 2> /dev/null || break
+    sleep 0.1
+  done
+
+  line=$(grep '"kind": "\(response\|error\)"' "$out" 2> /dev/null || true)
+  if ! grep -q '"kind": "response"' <<< "$line" || ! grep -q 'statusCode.*200' <<< "$line" \
+      || ! grep -q 'Bonjour' <<< "$line"; then
+    echo "[$label] smoke test FAILED" >&2
+    echo "--- runtime API ---" >&2; cat "$out" >&2 2> /dev/null || true
+    echo "--- $label output ---" >&2; tail -n 50 "$WORK_DIR/$label.log" >&2
+    kill "$pid" "$api_pid" 2> /dev/null || true
+    exit 1
+  fi
+
+  local next_at response_at rss_kb
+  next_at=$(grep '"kind": "next"' "$out" | sed 's/.*"at_ms": \([0-9]*\).*/\1/')
+  response_at=$(sed 's/.*"at_ms": \([0-9]*\).*/\1/' <<< "$line")
+  rss_kb=$(awk '/VmHWM/ { print $2 }' "/proc/$pid/status" 2> /dev/null || echo 0)
+  kill "$pid" "$api_pid" 2> /dev/null || true
+  wait "$pid" "$api_pid" 2> /dev/null || true
+
+  echo "$((next_at - start)) $((response_at - next_at)) $((rss_kb / 1024))"
+}
+
+native=$(run_runtime native "$NATIVE_BIN" "$HANDLER")
+echo "native: smoke test passed"
+
+if [[ "$COMPARE" == "--compare" ]]; then
+  RIC_VERSION=$(mvn -q help:evaluate -Dexpression=aws.lambda.ric.version -DforceStdout)
+  mvn -q dependency:copy -Dartifact="com.amazonaws:aws-lambda-java-runtime-interface-client:$RIC_VERSION" \
+    -DoutputDirectory="$WORK_DIR/ric"
+  jvm=$(run_runtime jvm java -XX:+TieredCompilation -XX:TieredStopAtLevel=1 \
+    -cp "$JAR:$WORK_DIR/ric/*" com.amazonaws.services.lambda.runtime.api.client.AWSLambda "$HANDLER")
+  echo "jvm: smoke test passed"
+
+  printf '\n%-8s %10s %14s %14s\n' runtime "init (ms)" "invoke (ms)" "peak RSS (MB)"
+  read -r n_init n_invoke n_rss <<< "$native"
+  read -r j_init j_invoke j_rss <<< "$jvm"
+  printf '%-8s %10s %14s %14s\n' jvm "$j_init" "$j_invoke" "$j_rss"
+  printf '%-8s %10s %14s %14s\n' native "$n_init" "$n_invoke" "$n_rss"
+  printf '%-8s %10s %14s %14s\n' binary "" "" "$(du -m "$NATIVE_BIN" | cut -f1) MB on disk"
+fi
@@ -0,0 +1,87 @@
+#!/usr/bin/env bash
+#
+# Compares SnapStart restore and first-invoke latency with and without CRaC priming.
+#
+# For each mode (primed / unprimed) the script flips BEDROCK_PRIMING_ENABLED, then
+# publishes N fresh versions. Every new version is a new snapshot, so its first invoke
+# is a guaranteed restore. The REPORT line of that invoke gives "Restore Duration"
+# and "Duration" (the first request, including any lazy class loading and TLS setup).
+#
+# Usage: scripts/snapstart-restore-benchmark.sh <function-name> [iterations]
+# Needs: aws CLI v2, jq. Each iteration publishes a version and makes one Bedrock call.
+
+set -euo pipefail
+
+FUNCTION_NAME="${1:?usage: $0 <function-name> [iterations]}"
+ITERATIONS="${2:-5}"
+PAYLOAD_FILE="$(mktemp)"
+trap 'rm -f "$PAYLOAD_FILE" /tmp/snapstart-bench-response.json' EXIT
+
+cat > "$PAYLOAD_FILE" <<'JSON'
+{
+  "version": "2.0",
+  "routeKey": "POST /api/v1/inference/{modelType}",
+  "rawPath": "/api/v1/inference/CLAUDE_3_HAIKU",
+  "headers": {"content-type": "application/json"},
+  "requestContext": {"http": {"method": "POST", "path": "/api/v1/inference/CLAUDE_3_HAIKU"}},
+  "body": "{\"message\":\"Say bonjour in one word.\",\"maxTokens\":16}",
+  "isBase64Encoded": false
+}
+JSON
+
+set_priming() {
+  local enabled="$1"
+  local variables
+  variables=$(aws lambda get-function-configuration --function-name "$FUNCTION_NAME" \
+    --query 'Environment.Variables' --output json \
+    | jq -c --arg v "$enabled" '{Variables: (. + {BEDROCK_PRIMING_ENABLED: $v})}')
+  aws lambda update-function-configuration --function-name "$FUNCTION_NAME" \
+    --environment "$variables" > /dev/null
+  aws lambda wait function-updated --function-name "$FUNCTION_NAME"
+}
+
+# Prints "<restore ms> <duration ms>" for the first invoke of a freshly published version
+measure_once() {
+  local label="$1" iteration="$2" version report
+  aws lambda update-function-configuration --function-name "$FUNCTION_NAME" \
+    --description "snapstart-bench ${label} ${iteration} $(date +%s)" > /dev/null
+  aws lambda wait function-updated --function-name "$FUNCTION_NAME"
+
+  version=$(aws lambda publish-version --function-name "$FUNCTION_NAME" --query Version --output text)
+  aws lambda wait published-version-active --function-name "$FUNCTION_NAME" --qualifier "$version"
+
+  report=$(aws lambda invoke --function-name "$FUNCTION_NAME" --qualifier "$version" \
+    --cli-binary-format raw-in-base64-out --payload "file://$PAYLOAD_FILE" \
+    --log-type Tail --query LogResult --output text /tmp/snapstart-bench-response.json \
+    | base64 --decode | grep '^REPORT')
+
+  echo "$(sed -n 's/.*Restore Duration: \([0-9.]*\) ms.*/\1/p' <<< "$report") \
+$(sed -n 's/.*\tDuration: \([0-9.]*\) ms.*/\1/p' <<< "$report")"
+}
+
+percentile() {
+  local p="$1"
+  sort -n | awk -v p="$p" '{ v[NR] = $1 } END { i = int((NR - 1) * p / 100) + 1; print v[i] }'
+}
+
+run_mode() {
+  local label="$1" enabled="$2" restores=() durations=() line
+  echo "== ${label} (BEDROCK_PRIMING_ENABLED=${enabled}) =="
+  set_priming "$enabled"
+  for i in $(seq 1 "$ITERATIONS"); do
+    line=$(measure_once "$label" "$i")
+    echo "  run ${i}: restore=${line% *} ms, first invoke=${line#* } ms"
+    restores+=("${line% *}")
+    durations+=("${line#* }")
+  done
+  printf '  restore  p50=%s ms p90=%s ms\n' \
+    "$(printf '%s\n' "${restores[@]}" | percentile 50)" "$(printf '%s\n' "${restores[@]}" | percentile 90)"
+  printf '  invoke   p50=%s ms p90=%s ms\n' \
+    "$(printf '%s\n' "${durations[@]}" | percentile 50)" "$(printf '%s\n' "${durations[@]}" | percentile 90)"
+}
+
+run_mode unprimed false
+run_mode primed true
+
+# Leave the function in its deployed state
+set_priming true
@@ -1,9 +1,14 @@
 package com.jmontagne.bedrock;
 
+import com.jmontagne.bedrock.config.NativeImageHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(NativeImageHints.class)
 public class BedrockInferenceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,79 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.HttpApiV2ProxyRequest;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.exception.BedrockExceptionHandler;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.service.InferenceService;
+import com.jmontagne.bedrock.service.ModelComparator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import software.amazon.lambda.powertools.logging.Logging;
+import software.amazon.lambda.powertools.metrics.Metrics;
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+/**
+ * AWS Lambda handler that calls InferenceService directly, without serverless-java-container.
+ *
+ * StreamLambdaHandler runs every event through SpringBootLambdaContainerHandler.proxy, which
+ * builds a mock servlet request, dispatches it through Spring MVC and serializes the servlet
+ * response back. This handler is a plain function from HttpApiV2ProxyRequest to AwsProxyResponse:
+ * InferenceRoutes matches the path and calls the service, so there is no servlet emulation per
+ * invoke and the Spring context is started without a web application type (no DispatcherServlet,
+ * MVC infrastructure or embedded container to initialize).
+ *
+ * Serves the /api/v1/inference routes with the same request and response format as
+ * InferenceController. Batch and session endpoints still need StreamLambdaHandler.
+ *
+ * Switch with the Terraform variable lambda_handler; compare both with
+ * scripts/lambda-handler-benchmark.sh.
+ */
+public class FunctionLambdaHandler implements RequestHandler<HttpApiV2ProxyRequest, AwsProxyResponse> {
+
+    private static final Logger log = LoggerFactory.getLogger(FunctionLambdaHandler.class);
+
+    private static final InferenceRoutes routes;
+
+    static {
+        log.info("Initializing Spring context for function handler...");
+        // No servlet container and no MVC: routes are dispatched by InferenceRoutes
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BedrockInferenceApplication.class)
+                .run("--spring.main.web-application-type=none");
+        routes = new InferenceRoutes(
+                context.getBean(InferenceService.class),
+                context.getBean(ModelCatalog.class),
+                context.getBean(PersonaRegistry.class),
+                context.getBean(ModelComparator.class),
+                context.getBean(CostTracker.class),
+                context.getBean(BedrockExceptionHandler.class),
+                context.getBean(ObjectMapper.class)
+        );
+        log.info("Function handler initialized successfully");
+    }
+
+    /**
+     * Lambda entry point, with the same Powertools annotations as StreamLambdaHandler so the
+     * two handlers differ only in how the request reaches InferenceService.
+     */
+    @Override
+    @Logging(logEvent = true)
+    @Tracing
+    @Metrics(captureColdStart = true)
+    public AwsProxyResponse handleRequest(HttpApiV2ProxyRequest input, Context context) {
+        log.info("Processing request: {} {}",
+                input.getRequestContext().getHttp().getMethod(),
+                input.getRequestContext().getHttp().getPath());
+
+        AwsProxyResponse response = routes.handle(input);
+
+        log.info("Request completed with status: {}", response.getStatusCode());
+        return response;
+    }
+}
@@ -0,0 +1,334 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.HttpApiV2ProxyRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.controller.InferenceController.CompareRequestBody;
+import com.jmontagne.bedrock.controller.InferenceController.HealthResponse;
+import com.jmontagne.bedrock.controller.InferenceController.InferenceRequestBody;
+import com.jmontagne.bedrock.controller.InferenceController.ModelInfo;
+import com.jmontagne.bedrock.controller.StreamResponseWriter;
+import com.jmontagne.bedrock.exception.BedrockExceptionHandler;
+import com.jmontagne.bedrock.exception.BedrockExceptionHandler.ErrorResponse;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.ComparisonRequest;
+import com.jmontagne.bedrock.model.ComparisonResult;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import com.jmontagne.bedrock.resilience.CircuitOpenException;
+import com.jmontagne.bedrock.resilience.ConcurrencyLimitExceededException;
+import com.jmontagne.bedrock.resilience.QuotaExceededException;
+import com.jmontagne.bedrock.service.InferenceService;
+import com.jmontagne.bedrock.service.ModelComparator;
+import com.jmontagne.bedrock.service.ResponseBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.bedrockruntime.model.AccessDeniedException;
+import software.amazon.awssdk.services.bedrockruntime.model.BedrockRuntimeException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelNotReadyException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelTimeoutException;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+import software.amazon.awssdk.services.bedrockruntime.model.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Maps API Gateway HTTP API (v2) events straight onto {@link InferenceService}, without the
+ * mock servlet request/response that serverless-java-container builds around every call.
+ *
+ * <p>Covers the {@code /api/v1/inference} routes of {@code InferenceController} with the same
+ * parameters, defaults and JSON bodies; errors go through {@link BedrockExceptionHandler} so
+ * status codes, {@code Retry-After} headers and error bodies are identical. Batch, session and
+ * actuator routes stay on {@link StreamLambdaHandler} and answer 404 here.</p>
+ */
+final class InferenceRoutes {
+
+    private static final Logger log = LoggerFactory.getLogger(InferenceRoutes.class);
+
+    static final String PATH_PREFIX = "/api/v1/inference/";
+    private static final String STREAM_PREFIX = "stream/";
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    private static final String JSON = "application/json";
+    private static final String TEXT = "text/plain;charset=UTF-8";
+
+    private final InferenceService inferenceService;
+    private final ModelCatalog modelCatalog;
+    private final PersonaRegistry personas;
+    private final ModelComparator comparator;
+    private final CostTracker costTracker;
+    private final BedrockExceptionHandler exceptionHandler;
+    private final ObjectMapper mapper;
+
+    InferenceRoutes(InferenceService inferenceService, ModelCatalog modelCatalog, PersonaRegistry personas,
+                    ModelComparator comparator, CostTracker costTracker, BedrockExceptionHandler exceptionHandler,
+                    ObjectMapper mapper) {
+        this.inferenceService = inferenceService;
+        this.modelCatalog = modelCatalog;
+        this.personas = personas;
+        this.comparator = comparator;
+        this.costTracker = costTracker;
+        this.exceptionHandler = exceptionHandler;
+        this.mapper = mapper;
+    }
+
+    AwsProxyResponse handle(HttpApiV2ProxyRequest request) {
+        String method = request.getRequestContext().getHttp().getMethod();
+        String path = request.getRequestContext().getHttp().getPath();
+
+        try {
+            Object body = route("POST".equalsIgnoreCase(method), path, request);
+            if (body == null) {
+                return errorResponse(ResponseEntity.status(404).body(new ErrorResponse(
+                        404, "NOT_FOUND", "No route for " + method + " " + path, Instant.now().toString())));
+            }
+            return switch (body) {
+                case String text -> response(200, TEXT, text);
+                case RawJson json -> response(200, JSON, json.body());
+                default -> response(200, JSON, mapper.writeValueAsString(body));
+            };
+        } catch (RuntimeException e) {
+            return errorResponse(toErrorEntity(unwrap(e)));
+        } catch (JsonProcessingException e) {
+            return errorResponse(exceptionHandler.handleGenericException(e));
+        }
+    }
+
+    /**
+     * Returns the response body, or {@code null} when nothing matches (404).
+     */
+    private Object route(boolean post, String path, HttpApiV2ProxyRequest request) {
+        if (path == null || !path.startsWith(PATH_PREFIX)) {
+            return null;
+        }
+        String route = path.substring(PATH_PREFIX.length());
+
+        if (route.startsWith(STREAM_PREFIX)) {
+            ModelType modelType = ModelType.valueOf(route.substring(STREAM_PREFIX.length()));
+            return post ? streamPost(modelType, request) : streamGet(modelType, request);
+        }
+        if (post) {
+            return switch (route) {
+                case "auto" -> autoPost(request);
+                case "compare" -> comparePost(request);
+                default -> null;
+            };
+        }
+        return switch (route) {
+            case "health" -> new HealthResponse("OK", "bedrock-inference-lab");
+            case "models" -> models();
+            case "personas" -> List.copyOf(personas.personas().keySet());
+            case "costs" -> costTracker.report();
+            case "auto" -> autoGet(request);
+            case "compare" -> compare(request);
+            default -> route.isEmpty() || route.contains("/") ? null : inference(ModelType.valueOf(route), request);
+        };
+    }
+
+    private RawJson streamGet(ModelType modelType, HttpApiV2ProxyRequest request) {
+        Map<String, String> query = query(request);
+        InferenceParameters parameters = new InferenceParameters(
+                Double.valueOf(query.getOrDefault("temperature", "0.7")),
+                Double.valueOf(query.getOrDefault("topP", "0.9")),
+                Integer.valueOf(query.getOrDefault("maxTokens", "2048")),
+                List.of(),
+                OutputBudget.of(
+                        query.containsKey("maxOutputChars") ? Integer.valueOf(query.get("maxOutputChars")) : null,
+                        query.containsKey("maxWallTimeMs") ? Long.valueOf(query.get("maxWallTimeMs")) : null
+                )
+        );
+
+        return collect(modelType, inferenceService.bufferWithJacquesMontagne(required(query, "message"), modelType, parameters),
+                request, "stream");
+    }
+
+    private RawJson streamPost(ModelType modelType, HttpApiV2ProxyRequest request) {
+        InferenceRequestBody body = body(request);
+        InferenceParameters parameters = body.toParameters();
+        String systemPrompt = body.resolveSystemPrompt(personas);
+
+        Mono<ResponseBuffer> response = systemPrompt != null
+                ? inferenceService.bufferCustom(systemPrompt, body.message(), modelType, parameters)
+                : inferenceService.bufferWithJacquesMontagne(body.message(), modelType, parameters);
+        return collect(modelType, response, request, "stream");
+    }
+
+    private Object inference(ModelType modelType, HttpApiV2ProxyRequest request) {
+        Map<String, String> query = query(request);
+        InferenceParameters parameters = InferenceParameters.withTemperature(
+                Double.valueOf(query.getOrDefault("temperature", "0.7")));
+
+        return block(inferenceService.inferWithJacquesMontagne(required(query, "message"), modelType, parameters),
+                request, "inference");
+    }
+
+    private Object autoGet(HttpApiV2ProxyRequest request) {
+        Map<String, String> query = query(request);
+        InferenceParameters parameters = InferenceParameters
+                .withTemperature(Double.valueOf(query.getOrDefault("temperature", "0.7")))
+                .withMaxTokens(Integer.valueOf(query.getOrDefault("maxTokens", "2048")));
+
+        return block(inferenceService.inferRouted(null, required(query, "message"), parameters), request, "auto");
+    }
+
+    private Object autoPost(HttpApiV2ProxyRequest request) {
+        InferenceRequestBody body = body(request);
+        return block(inferenceService.inferRouted(body.resolveSystemPrompt(personas), body.message(), body.toParameters()),
+                request, "auto");
+    }
+
+    private ComparisonResult compare(HttpApiV2ProxyRequest request) {
+        Map<String, String> query = query(request);
+        List<ModelType> models = query.containsKey("models")
+                ? Arrays.stream(query.get("models").split(",")).map(String::trim).map(ModelType::valueOf).toList()
+                : null;
+        CompareRequestBody body = new CompareRequestBody(required(query, "message"), null, null, models, null,
+                Double.valueOf(query.getOrDefault("temperature", "0.0")), null,
+                Integer.valueOf(query.getOrDefault("maxTokens", "2048")),
+                Integer.valueOf(query.getOrDefault("runs", "1")),
+                Integer.valueOf(query.getOrDefault("warmup", "0")),
+                query.containsKey("timeoutMs") ? Long.valueOf(query.get("timeoutMs")) : null);
+
+        return compare(body.toRequest(personas), request);
+    }
+
+    private ComparisonResult comparePost(HttpApiV2ProxyRequest request) {
+        return compare(body(request, CompareRequestBody.class).toRequest(personas), request);
+    }
+
+    private ComparisonResult compare(ComparisonRequest comparison, HttpApiV2ProxyRequest request) {
+        return comparator.compare(comparison)
+                .contextWrite(CallerContext.of(header(request, CallerContext.API_KEY_HEADER), "compare").asContext())
+                .block(comparator.maxDuration(comparison).plus(TIMEOUT));
+    }
+
+    private List<ModelInfo> models() {
+        return Arrays.stream(ModelType.values())
+                .map(type -> new ModelInfo(type.name(), type.getModelId(), type.getDisplayName(),
+                        type.getProvider(), modelCatalog.profile(type)))
+                .toList();
+    }
+
+    /**
+     * Same body as {@code InferenceController}'s stream endpoints, written from the buffer.
+     */
+    private static RawJson collect(ModelType modelType, Mono<ResponseBuffer> response, HttpApiV2ProxyRequest request,
+                                   String endpoint) {
+        ResponseBuffer buffer = block(response, request, endpoint);
+        return new RawJson(StreamResponseWriter.toJson(buffer != null ? buffer : new ResponseBuffer(0), modelType));
+    }
+
+    private static <T> T block(Mono<T> mono, HttpApiV2ProxyRequest request, String endpoint) {
+        return mono
+                .contextWrite(CallerContext.of(header(request, CallerContext.API_KEY_HEADER), endpoint).asContext())
+                .block(TIMEOUT);
+    }
+
+    private InferenceRequestBody body(HttpApiV2ProxyRequest request) {
+        return body(request, InferenceRequestBody.class);
+    }
+
+    private <T> T body(HttpApiV2ProxyRequest request, Class<T> type) {
+        String raw = request.getBody();
+        if (raw == null) {
+            throw new IllegalArgumentException("Required request body is missing");
+        }
+        if (request.isBase64Encoded()) {
+            raw = new String(Base64.getDecoder().decode(raw), StandardCharsets.UTF_8);
+        }
+        try {
+            return mapper.readValue(raw, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid request body: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static Map<String, String> query(HttpApiV2ProxyRequest request) {
+        return request.getQueryStringParameters() != null ? request.getQueryStringParameters() : Map.of();
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Required parameter '" + name + "' is missing");
+        }
+        return value;
+    }
+
+    /**
+     * HTTP API v2 lowercases header names.
+     */
+    private static String header(HttpApiV2ProxyRequest request, String name) {
+        return request.getHeaders() != null ? request.getHeaders().get(name.toLowerCase()) : null;
+    }
+
+    /**
+     * Same dispatch Spring MVC does over the {@code @ExceptionHandler} methods: most specific type first.
+     */
+    private ResponseEntity<ErrorResponse> toErrorEntity(RuntimeException error) {
+        return switch (error) {
+            case ThrottlingException e -> exceptionHandler.handleThrottling(e);
+            case ModelNotReadyException e -> exceptionHandler.handleModelNotReady(e);
+            case ModelTimeoutException e -> exceptionHandler.handleModelTimeout(e);
+            case ValidationException e -> exceptionHandler.handleValidation(e);
+            case AccessDeniedException e -> exceptionHandler.handleAccessDenied(e);
+            case BedrockRuntimeException e -> exceptionHandler.handleBedrockException(e);
+            case ConcurrencyLimitExceededException e -> exceptionHandler.handleConcurrencyLimit(e);
+            case QuotaExceededException e -> exceptionHandler.handleQuotaExceeded(e);
+            case CircuitOpenException e -> exceptionHandler.handleCircuitOpen(e);
+            case IllegalArgumentException e -> exceptionHandler.handleIllegalArgument(e);
+            default -> exceptionHandler.handleGenericException(error);
+        };
+    }
+
+    /**
+     * SDK failures can surface wrapped in the {@code CompletionException} of the async call.
+     */
+    private static RuntimeException unwrap(RuntimeException error) {
+        return error instanceof CompletionException && error.getCause() instanceof RuntimeException cause
+                ? cause
+                : error;
+    }
+
+    private AwsProxyResponse errorResponse(ResponseEntity<ErrorResponse> entity) {
+        Map<String, String> headers = new HashMap<>(entity.getHeaders().toSingleValueMap());
+        headers.put("Content-Type", JSON);
+        try {
+            AwsProxyResponse response = new AwsProxyResponse();
+            response.setStatusCode(entity.getStatusCode().value());
+            response.setHeaders(headers);
+            response.setBody(mapper.writeValueAsString(entity.getBody()));
+            return response;
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize error response", e);
+            return response(500, JSON, "{\"status\":500,\"code\":\"INTERNAL_ERROR\"}");
+        }
+    }
+
+    /**
+     * A body that is already serialized JSON.
+     */
+    private record RawJson(String body) {}
+
+    private static AwsProxyResponse response(int status, String contentType, String body) {
+        AwsProxyResponse response = new AwsProxyResponse();
+        response.setStatusCode(status);
+        response.setHeaders(Map.of("Content-Type", contentType));
+        response.setBody(body);
+        return response;
+    }
+}
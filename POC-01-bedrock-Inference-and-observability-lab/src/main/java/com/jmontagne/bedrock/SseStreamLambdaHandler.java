@@ -0,0 +1,232 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.serverless.proxy.internal.LambdaContainerHandler;
+import com.amazonaws.serverless.proxy.model.HttpApiV2ProxyRequest;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.controller.InferenceController.InferenceRequestBody;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import com.jmontagne.bedrock.model.StreamEvent;
+import com.jmontagne.bedrock.service.InferenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * AWS Lambda response-streaming handler for true token-by-token SSE.
+ *
+ * StreamLambdaHandler goes through the serverless-java-container proxy, which buffers the
+ * whole servlet response. This handler instead writes each StreamEvent to the response
+ * stream and flushes it immediately, so the client sees the first token at TTFT.
+ *
+ * The managed java21 runtime client buffers a RequestStreamHandler's output until it returns,
+ * so this handler runs under StreamingRuntime, which posts to the Runtime API in streaming mode.
+ * The stream is an HTTP integration response for a Function URL with invoke mode
+ * RESPONSE_STREAM: a prelude (status + headers JSON followed by 8 NUL bytes), then the
+ * text/event-stream body. See the sse_stream function in terraform/lambda.tf.
+ *
+ * Routes: GET and POST /api/v1/inference/stream/{modelType}, same parameters as
+ * InferenceController.
+ */
+public class SseStreamLambdaHandler implements RequestStreamHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(SseStreamLambdaHandler.class);
+
+    private static final String STREAM_PATH_PREFIX = "/api/v1/inference/stream/";
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration ERROR_FRAME_MARGIN = Duration.ofSeconds(1);
+    private static final byte[] PRELUDE_DELIMITER = new byte[8];
+
+    private static final ObjectMapper mapper = LambdaContainerHandler.getObjectMapper();
+
+    private final InferenceService inferenceService;
+    private final PersonaRegistry personas;
+
+    /**
+     * Lambda entry point; StreamingRuntime creates the handler once, during the init phase.
+     */
+    public SseStreamLambdaHandler() {
+        this(SpringContext.CONTEXT.getBean(InferenceService.class), SpringContext.CONTEXT.getBean(PersonaRegistry.class));
+    }
+
+    SseStreamLambdaHandler(InferenceService inferenceService, PersonaRegistry personas) {
+        this.inferenceService = inferenceService;
+        this.personas = personas;
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        HttpApiV2ProxyRequest request = mapper.readValue(input, HttpApiV2ProxyRequest.class);
+        String method = request.getRequestContext().getHttp().getMethod();
+        String path = request.getRequestContext().getHttp().getPath();
+        log.info("Processing SSE request: {} {}", method, path);
+
+        if (path == null || !path.startsWith(STREAM_PATH_PREFIX)) {
+            writeError(output, 404, "NOT_FOUND", "No streaming route for " + path);
+            return;
+        }
+
+        Flux<StreamEvent> events;
+        try {
+            ModelType modelType = ModelType.valueOf(path.substring(STREAM_PATH_PREFIX.length()));
+            events = "POST".equalsIgnoreCase(method)
+                    ? postEvents(request, modelType)
+                    : getEvents(request, modelType);
+        } catch (IllegalArgumentException e) {
+            writeError(output, 400, "INVALID_ARGUMENT", e.getMessage());
+            return;
+        }
+
+        writePrelude(output, 200, Map.of(
+                "Content-Type", "text/event-stream",
+                "Cache-Control", "no-cache"
+        ));
+
+        Duration limit = streamLimit(context);
+        // The failure becomes the last event: the blocking iterator would throw it ahead of tokens still queued
+        Flux<StreamEvent> attributed = withDeadline(events, limit)
+                .contextWrite(CallerContext.of(header(request, CallerContext.API_KEY_HEADER), "stream-sse").asContext())
+                .onErrorResume(error -> {
+                    log.warn("SSE stream failed: {}", error.getMessage());
+                    return Flux.just(StreamEvent.Error.from(error));
+                });
+        // Closing the stream cancels the call, so a client that has gone away (failed write) stops generation
+        try (Stream<StreamEvent> stream = attributed.toStream()) {
+            for (Iterator<StreamEvent> it = stream.iterator(); it.hasNext(); ) {
+                writeEvent(output, it.next());
+            }
+        }
+
+        output.close();
+    }
+
+    /**
+     * TIMEOUT for the whole stream, like the MVC emitter, but ending early enough before the
+     * invocation deadline to write the error frame.
+     */
+    private static Duration streamLimit(Context context) {
+        if (context == null) {
+            return TIMEOUT;
+        }
+        Duration remaining = Duration.ofMillis(context.getRemainingTimeInMillis()).minus(ERROR_FRAME_MARGIN);
+        return remaining.isNegative() ? Duration.ZERO : remaining.compareTo(TIMEOUT) < 0 ? remaining : TIMEOUT;
+    }
+
+    /**
+     * A limit on the whole stream rather than on the gap between events, so a model that
+     * trickles tokens is still stopped.
+     */
+    private static Flux<StreamEvent> withDeadline(Flux<StreamEvent> events, Duration limit) {
+        return Flux.defer(() -> {
+            long deadline = System.nanoTime() + limit.toNanos();
+            return events.timeout(Mono.delay(limit),
+                    event -> Mono.delay(Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))),
+                    Flux.error(new TimeoutException("SSE stream exceeded " + limit.toMillis() + " ms")));
+        });
+    }
+
+    private Flux<StreamEvent> getEvents(HttpApiV2ProxyRequest request, ModelType modelType) {
+        Map<String, String> query = request.getQueryStringParameters() != null
+                ? request.getQueryStringParameters()
+                : Map.of();
+
+        String message = query.get("message");
+        if (message == null) {
+            throw new IllegalArgumentException("Required parameter 'message' is missing");
+        }
+
+        InferenceParameters parameters = new InferenceParameters(
+                Double.valueOf(query.getOrDefault("temperature", "0.7")),
+                Double.valueOf(query.getOrDefault("topP", "0.9")),
+                Integer.valueOf(query.getOrDefault("maxTokens", "2048")),
+                List.of(),
+                OutputBudget.of(
+                        query.containsKey("maxOutputChars") ? Integer.valueOf(query.get("maxOutputChars")) : null,
+                        query.containsKey("maxWallTimeMs") ? Long.valueOf(query.get("maxWallTimeMs")) : null
+                )
+        );
+
+        return inferenceService.streamEventsWithJacquesMontagne(message, modelType, parameters);
+    }
+
+    private Flux<StreamEvent> postEvents(HttpApiV2ProxyRequest request, ModelType modelType) {
+        InferenceRequestBody body;
+        try {
+            String raw = request.getBody();
+            if (request.isBase64Encoded() && raw != null) {
+                raw = new String(Base64.getDecoder().decode(raw), StandardCharsets.UTF_8);
+            }
+            body = mapper.readValue(raw, InferenceRequestBody.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid request body: " + e.getMessage(), e);
+        }
+
+        InferenceParameters parameters = body.toParameters();
+        String systemPrompt = body.resolveSystemPrompt(personas);
+        return systemPrompt != null
+                ? inferenceService.streamCustomEvents(systemPrompt, body.message(), modelType, parameters)
+                : inferenceService.streamEventsWithJacquesMontagne(body.message(), modelType, parameters);
+    }
+
+    /**
+     * HTTP API v2 lowercases header names.
+     */
+    private static String header(HttpApiV2ProxyRequest request, String name) {
+        return request.getHeaders() != null ? request.getHeaders().get(name.toLowerCase()) : null;
+    }
+
+    private void writePrelude(OutputStream output, int status, Map<String, String> headers) throws IOException {
+        output.write(mapper.writeValueAsBytes(Map.of("statusCode", status, "headers", headers)));
+        output.write(PRELUDE_DELIMITER);
+        output.flush();
+    }
+
+    private void writeEvent(OutputStream output, StreamEvent event) throws IOException {
+        String frame = "event: " + event.eventName() + "\n"
+                + "data: " + mapper.writeValueAsString(event.payload()) + "\n\n";
+        output.write(frame.getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    private void writeError(OutputStream output, int status, String code, String message) throws IOException {
+        writePrelude(output, status, Map.of("Content-Type", "application/json"));
+        output.write(mapper.writeValueAsBytes(Map.of("status", status, "code", code, "message", String.valueOf(message))));
+        output.close();
+    }
+
+    /**
+     * Started on first use, so tests can build the handler around their own InferenceService.
+     */
+    private static final class SpringContext {
+
+        static final ConfigurableApplicationContext CONTEXT;
+
+        static {
+            log.info("Initializing Spring context for SSE streaming handler...");
+            // No servlet container: this handler talks to InferenceService directly
+            CONTEXT = new SpringApplicationBuilder(BedrockInferenceApplication.class)
+                    .run("--spring.main.web-application-type=none");
+            log.info("SSE streaming handler initialized successfully");
+        }
+    }
+}
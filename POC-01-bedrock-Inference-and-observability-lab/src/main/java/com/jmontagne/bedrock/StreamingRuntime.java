@@ -0,0 +1,228 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Lambda custom runtime loop for response-streaming handlers such as SseStreamLambdaHandler.
+ *
+ * The managed java21 runtime client collects everything a RequestStreamHandler writes and posts
+ * it when the handler returns, so flushing per event streams nothing. This loop talks to the
+ * Runtime API itself and posts each response with Lambda-Runtime-Function-Response-Mode: streaming
+ * as a chunked body: every flush() of the handler's OutputStream goes out as one chunk. The body
+ * is typed as an HTTP integration response, so a Function URL with invoke mode RESPONSE_STREAM
+ * takes status and headers from the handler's prelude.
+ *
+ * Started by src/main/lambda/stream-runtime, the AWS_LAMBDA_EXEC_WRAPPER of the sse_stream
+ * function in terraform/lambda.tf, in place of the runtime's own client. The handler class is
+ * read from _HANDLER as usual.
+ */
+public final class StreamingRuntime {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingRuntime.class);
+
+    static final String RESPONSE_MODE_HEADER = "Lambda-Runtime-Function-Response-Mode";
+    static final String HTTP_INTEGRATION_CONTENT_TYPE = "application/vnd.awslambda.http-integration-response";
+
+    private static final String API_VERSION = "/2018-06-01/runtime";
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String endpoint;
+    private final RequestStreamHandler handler;
+
+    StreamingRuntime(String runtimeApi, RequestStreamHandler handler) {
+        this.endpoint = "http://" + runtimeApi + API_VERSION;
+        this.handler = handler;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String runtimeApi = System.getenv("AWS_LAMBDA_RUNTIME_API");
+
+        RequestStreamHandler handler;
+        try {
+            handler = loadHandler(System.getenv("_HANDLER"));
+        } catch (Throwable e) {
+            log.error("Handler initialization failed", e);
+            postError("http://" + runtimeApi + API_VERSION + "/init/error", e);
+            System.exit(1);
+            return;
+        }
+
+        StreamingRuntime runtime = new StreamingRuntime(runtimeApi, handler);
+        while (true) {
+            runtime.invokeNext();
+        }
+    }
+
+    /**
+     * Accepts the usual "class::method" handler string; the method is always handleRequest.
+     */
+    static RequestStreamHandler loadHandler(String handlerName) throws ReflectiveOperationException {
+        int separator = handlerName.indexOf("::");
+        String className = separator >= 0 ? handlerName.substring(0, separator) : handlerName;
+        return (RequestStreamHandler) Class.forName(className).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Waits for the next invocation and streams the handler's output back as the response.
+     */
+    void invokeNext() throws IOException {
+        HttpURLConnection next = open(endpoint + "/invocation/next");
+        byte[] event;
+        try (InputStream body = next.getInputStream()) {
+            event = body.readAllBytes();
+        }
+        String requestId = next.getHeaderField("Lambda-Runtime-Aws-Request-Id");
+        String traceId = next.getHeaderField("Lambda-Runtime-Trace-Id");
+        if (traceId != null) {
+            System.setProperty("com.amazonaws.xray.traceHeader", traceId);
+        }
+        Context context = new InvocationContext(requestId,
+                next.getHeaderFieldLong("Lambda-Runtime-Deadline-Ms", Long.MAX_VALUE),
+                next.getHeaderField("Lambda-Runtime-Invoked-Function-Arn"));
+
+        HttpURLConnection response = open(endpoint + "/invocation/" + requestId + "/response");
+        response.setRequestMethod("POST");
+        response.setDoOutput(true);
+        response.setChunkedStreamingMode(CHUNK_SIZE);
+        response.setRequestProperty(RESPONSE_MODE_HEADER, "streaming");
+        response.setRequestProperty("Content-Type", HTTP_INTEGRATION_CONTENT_TYPE);
+
+        try (OutputStream body = response.getOutputStream()) {
+            handler.handleRequest(new ByteArrayInputStream(event), body, context);
+        } catch (IOException | RuntimeException e) {
+            // The response is already streaming, so the client just sees it end early
+            log.error("Handler failed for request {}", requestId, e);
+        }
+
+        int status = response.getResponseCode();
+        if (status != HttpURLConnection.HTTP_ACCEPTED) {
+            log.warn("Runtime API rejected the response for request {}: HTTP {}", requestId, status);
+        }
+        drain(response);
+    }
+
+    private static void postError(String url, Throwable error) throws IOException {
+        HttpURLConnection connection = open(url);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Lambda-Runtime-Function-Error-Type", error.getClass().getSimpleName());
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(mapper.writeValueAsBytes(Map.of(
+                    "errorMessage", String.valueOf(error.getMessage()),
+                    "errorType", error.getClass().getName())));
+        }
+        connection.getResponseCode();
+        drain(connection);
+    }
+
+    /**
+     * Reads the body to the end so the keep-alive connection is reused for the next poll.
+     */
+    private static void drain(HttpURLConnection connection) throws IOException {
+        InputStream body = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (body) {
+                body.readAllBytes();
+            }
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        // /invocation/next blocks until there is an event
+        connection.setReadTimeout(0);
+        return connection;
+    }
+
+    /**
+     * Context for one invocation; function settings come from the standard runtime environment.
+     */
+    private record InvocationContext(String requestId, long deadlineMs, String invokedFunctionArn) implements Context {
+
+        private static final LambdaLogger LOGGER = new LambdaLogger() {
+            @Override
+            public void log(String message) {
+                System.out.print(message);
+            }
+
+            @Override
+            public void log(byte[] message) {
+                System.out.print(new String(message, StandardCharsets.UTF_8));
+            }
+        };
+
+        @Override
+        public String getAwsRequestId() {
+            return requestId;
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return System.getenv("AWS_LAMBDA_LOG_GROUP_NAME");
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return System.getenv("AWS_LAMBDA_LOG_STREAM_NAME");
+        }
+
+        @Override
+        public String getFunctionName() {
+            return System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return System.getenv("AWS_LAMBDA_FUNCTION_VERSION");
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return invokedFunctionArn;
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return (int) Math.max(0, Math.min(Integer.MAX_VALUE, deadlineMs - System.currentTimeMillis()));
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            String memory = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+            return memory != null ? Integer.parseInt(memory) : 0;
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return LOGGER;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jmontagne.bedrock.batch;
+
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Persisted state of a batch job ({@code jobs/<jobId>/job.json} in {@link BatchStorage}).
+ *
+ * @param bedrockJobArns one Bedrock model invocation job per model, in {@link Mode#BEDROCK} mode
+ */
+public record BatchJob(
+        String jobId,
+        Mode mode,
+        Status status,
+        ModelType defaultModel,
+        int totalRecords,
+        int completedRecords,
+        int failedRecords,
+        List<String> bedrockJobArns,
+        Instant createdAt,
+        Instant updatedAt
+) {
+    public enum Mode {
+        /** Fan-out over the streaming client from this service. */
+        DIRECT,
+        /** Bedrock batch inference ({@code CreateModelInvocationJob}) over JSONL in S3. */
+        BEDROCK
+    }
+
+    public enum Status {
+        RUNNING, SUBMITTED, COMPLETED, PARTIALLY_FAILED, FAILED
+    }
+
+    public BatchJob withProgress(Status newStatus, int completed, int failed) {
+        return new BatchJob(jobId, mode, newStatus, defaultModel, totalRecords, completed, failed,
+                bedrockJobArns, createdAt, Instant.now());
+    }
+
+    public BatchJob withBedrockJobs(List<String> arns) {
+        return new BatchJob(jobId, mode, Status.SUBMITTED, defaultModel, totalRecords, completedRecords,
+                failedRecords, List.copyOf(arns), createdAt, Instant.now());
+    }
+
+    /**
+     * Whether the job has finished. Not a bean getter, so it stays out of {@code job.json}.
+     */
+    public boolean terminal() {
+        return status == Status.COMPLETED || status == Status.PARTIALLY_FAILED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,486 @@
+package com.jmontagne.bedrock.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.resilience.CircuitOpenException;
+import com.jmontagne.bedrock.resilience.ConcurrencyLimitExceededException;
+import com.jmontagne.bedrock.resilience.QuotaExceededException;
+import com.jmontagne.bedrock.service.InferenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobStatus;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batch jobs: a JSONL file of {@link BatchRecord}s in, an NDJSON file of
+ * {@link BatchResult}s out.
+ *
+ * <h2>Direct mode</h2>
+ * Records fan out over {@link InferenceService} with at most {@code parallelism} in flight,
+ * so they go through the same quota buckets and adaptive concurrency limit as interactive
+ * traffic and cannot starve it. A record rejected locally (quota or concurrency limit) is
+ * retried with backoff; any other failure is recorded as a failed result.
+ *
+ * <p>Results are checkpointed every {@code checkpoint-every} records as a new part file
+ * ({@code jobs/<id>/results/part-NNNNN.ndjson}), since object storage cannot append.
+ * {@link #resume} re-runs only records without a successful result, which covers both failed
+ * records and a process that died mid-job.</p>
+ *
+ * <h2>Bedrock mode</h2>
+ * Jobs above {@code direct-max-records} (or with {@code mode=BEDROCK}) are handed to Bedrock
+ * batch inference via {@link BedrockBatchJobs}, one model invocation job per model. Requires
+ * S3 storage and {@code bedrock.batch.role-arn}. Status is polled lazily by {@link #find}, at most
+ * once per {@code poll-interval} per job, which imports the output once every Bedrock job has
+ * finished. Only one request at a time polls or imports a given job; concurrent reads get the
+ * stored state instead of waiting on Bedrock. The import always writes the same part file, so
+ * repeating it (e.g. from another instance) replaces the results rather than duplicating them.
+ */
+@Service
+public class BatchJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchJobService.class);
+
+    private static final String JOBS = "jobs/";
+    private static final int MAX_LOCAL_RETRIES = 5;
+    private static final String BEDROCK_RESULTS_PART = "part-bedrock.ndjson";
+    private static final Set<ModelInvocationJobStatus> BEDROCK_TERMINAL = Set.of(
+            ModelInvocationJobStatus.COMPLETED,
+            ModelInvocationJobStatus.PARTIALLY_COMPLETED,
+            ModelInvocationJobStatus.FAILED,
+            ModelInvocationJobStatus.STOPPED,
+            ModelInvocationJobStatus.EXPIRED
+    );
+
+    private final InferenceService inferenceService;
+    private final BatchStorage storage;
+    private final BedrockBatchJobs bedrockJobs;
+    private final PersonaRegistry personas;
+    private final ObjectMapper mapper;
+    private final int parallelism;
+    private final int checkpointEvery;
+    private final int directMaxRecords;
+    private final Duration retryBackoff;
+    private final long pollIntervalNanos;
+
+    private final Map<String, Disposable> running = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastPolled = new ConcurrentHashMap<>();
+
+    public BatchJobService(InferenceService inferenceService, BatchStorage storage, BedrockBatchJobs bedrockJobs,
+                           PersonaRegistry personas, ObjectMapper mapper,
+                           @Value("${bedrock.batch.parallelism:4}") int parallelism,
+                           @Value("${bedrock.batch.checkpoint-every:50}") int checkpointEvery,
+                           @Value("${bedrock.batch.direct-max-records:1000}") int directMaxRecords,
+                           @Value("${bedrock.batch.retry-backoff:PT1S}") Duration retryBackoff,
+                           @Value("${bedrock.batch.poll-interval:PT15S}") Duration pollInterval) {
+        this.inferenceService = inferenceService;
+        this.storage = storage;
+        this.bedrockJobs = bedrockJobs;
+        this.personas = personas;
+        this.mapper = mapper;
+        this.parallelism = parallelism;
+        this.checkpointEvery = checkpointEvery;
+        this.directMaxRecords = directMaxRecords;
+        this.retryBackoff = retryBackoff;
+        this.pollIntervalNanos = pollInterval.toNanos();
+    }
+
+    /**
+     * Stores the input and starts the job.
+     *
+     * @param mode {@code null} to pick Bedrock mode for large jobs when it is available
+     */
+    public BatchJob submit(byte[] jsonl, ModelType defaultModel, BatchJob.Mode mode, CallerContext caller) {
+        List<BatchRecord> records = parse(jsonl);
+        BatchJob.Mode resolved = resolveMode(mode, records.size());
+
+        Instant now = Instant.now();
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), resolved, BatchJob.Status.RUNNING, defaultModel,
+                records.size(), 0, 0, List.of(), now, now);
+        storage.put(inputKey(job.jobId()), jsonl);
+        save(job);
+        log.info("Batch job {} accepted: {} records, {} mode", job.jobId(), records.size(), resolved);
+
+        return resolved == BatchJob.Mode.BEDROCK
+                ? submitToBedrock(job, records)
+                : startDirect(job, records, caller);
+    }
+
+    /**
+     * Current state of a job; for a submitted Bedrock job this polls Bedrock (unless it was
+     * polled within {@code poll-interval} or is being polled right now) and imports the output
+     * once it is done.
+     */
+    public Optional<BatchJob> find(String jobId) {
+        return load(jobId).map(job -> job.mode() == BatchJob.Mode.BEDROCK && job.status() == BatchJob.Status.SUBMITTED
+                ? refreshBedrock(job)
+                : job);
+    }
+
+    /**
+     * Re-runs the records of a direct job that have no successful result yet.
+     */
+    public Optional<BatchJob> resume(String jobId, CallerContext caller) {
+        return load(jobId).map(job -> {
+            if (job.mode() == BatchJob.Mode.BEDROCK) {
+                throw new IllegalArgumentException("Bedrock batch jobs cannot be resumed: " + jobId);
+            }
+            if (job.status() == BatchJob.Status.COMPLETED) {
+                return job;
+            }
+            return startDirect(job, parse(storage.get(inputKey(jobId)).orElseThrow()), caller);
+        });
+    }
+
+    /**
+     * Writes the latest result of every record as NDJSON, in input order. Records without a
+     * result yet are omitted.
+     *
+     * @return {@code false} if the job does not exist
+     */
+    public boolean writeResults(String jobId, OutputStream output) throws IOException {
+        Optional<byte[]> input = storage.get(inputKey(validJobId(jobId)));
+        if (input.isEmpty()) {
+            return false;
+        }
+
+        Map<String, BatchResult> results = results(jobId);
+        for (BatchRecord record : parse(input.get())) {
+            BatchResult result = results.get(record.recordId());
+            if (result != null) {
+                output.write(mapper.writeValueAsBytes(result));
+                output.write('\n');
+            }
+        }
+        output.flush();
+        return true;
+    }
+
+    boolean isRunning(String jobId) {
+        return running.containsKey(jobId);
+    }
+
+    private BatchJob.Mode resolveMode(BatchJob.Mode requested, int records) {
+        boolean bedrockAvailable = bedrockJobs.isConfigured() && storage.uri("").startsWith("s3://");
+        if (requested == BatchJob.Mode.BEDROCK && !bedrockAvailable) {
+            throw new IllegalArgumentException("Bedrock batch mode needs bedrock.batch.role-arn and S3 batch storage");
+        }
+        if (requested != null) {
+            return requested;
+        }
+        return records > directMaxRecords && bedrockAvailable ? BatchJob.Mode.BEDROCK : BatchJob.Mode.DIRECT;
+    }
+
+    private BatchJob startDirect(BatchJob job, List<BatchRecord> records, CallerContext caller) {
+        String jobId = job.jobId();
+        Disposable.Swap slot = Disposables.swap();
+        if (running.putIfAbsent(jobId, slot) != null) {
+            throw new IllegalArgumentException("Batch job is already running: " + jobId);
+        }
+
+        Set<String> done = new HashSet<>();
+        results(jobId).values().stream()
+                .filter(BatchResult::succeeded)
+                .forEach(result -> done.add(result.recordId()));
+        List<BatchRecord> pending = records.stream()
+                .filter(record -> !done.contains(record.recordId()))
+                .toList();
+
+        AtomicInteger completed = new AtomicInteger(done.size());
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger part = new AtomicInteger(storage.list(resultsPrefix(jobId)).size());
+        BatchJob started = job.withProgress(BatchJob.Status.RUNNING, completed.get(), 0);
+        save(started);
+
+        slot.update(Flux.fromIterable(pending)
+                .flatMap(record -> process(record, job.defaultModel()), parallelism)
+                .doOnNext(result -> (result.succeeded() ? completed : failed).incrementAndGet())
+                .buffer(checkpointEvery)
+                .concatMap(chunk -> Mono.fromRunnable(() -> {
+                            writePart(jobId, part.getAndIncrement(), chunk);
+                            save(started.withProgress(BatchJob.Status.RUNNING, completed.get(), failed.get()));
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .contextWrite(caller.asContext())
+                .doFinally(signal -> running.remove(jobId, slot))
+                .subscribe(
+                        null,
+                        error -> {
+                            log.error("Batch job {} failed: {}", jobId, error.getMessage());
+                            save(started.withProgress(BatchJob.Status.FAILED, completed.get(), failed.get()));
+                        },
+                        () -> {
+                            BatchJob.Status status = failed.get() == 0
+                                    ? BatchJob.Status.COMPLETED
+                                    : BatchJob.Status.PARTIALLY_FAILED;
+                            log.info("Batch job {} finished: {} completed, {} failed", jobId, completed.get(), failed.get());
+                            save(started.withProgress(status, completed.get(), failed.get()));
+                        }));
+        return started;
+    }
+
+    private Mono<BatchResult> process(BatchRecord record, ModelType defaultModel) {
+        ModelType modelType = record.modelTypeOr(defaultModel);
+        InferenceRequest request = new InferenceRequest(systemPrompt(record), record.message(), modelType,
+                record.toParameters());
+
+        return Mono.defer(() -> inferenceService.infer(request))
+                .retryWhen(Retry.backoff(MAX_LOCAL_RETRIES, retryBackoff).filter(BatchJobService::isLocalRejection))
+                .map(response -> {
+                    PerformanceMetrics metrics = response.metrics();
+                    return new BatchResult(record.recordId(), response.modelType(), response.content(),
+                            response.finishReason(), metrics.inputTokens(), metrics.outputTokens(), null);
+                })
+                .onErrorResume(error -> {
+                    Throwable cause = Exceptions.isRetryExhausted(error) && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    log.warn("Batch record {} failed: {}", record.recordId(), cause.getMessage());
+                    return Mono.just(BatchResult.failure(record.recordId(), modelType,
+                            cause.getClass().getSimpleName() + ": " + cause.getMessage()));
+                });
+    }
+
+    private static boolean isLocalRejection(Throwable error) {
+        return error instanceof QuotaExceededException || error instanceof ConcurrencyLimitExceededException
+                || error instanceof CircuitOpenException;
+    }
+
+    private BatchJob submitToBedrock(BatchJob job, List<BatchRecord> records) {
+        String jobId = job.jobId();
+        Map<ModelType, StringBuilder> inputs = new EnumMap<>(ModelType.class);
+        for (BatchRecord record : records) {
+            inputs.computeIfAbsent(record.modelTypeOr(job.defaultModel()), model -> new StringBuilder())
+                    .append(bedrockJobs.toInputLine(record, systemPrompt(record), record.toParameters()))
+                    .append('\n');
+        }
+
+        List<String> arns = new ArrayList<>();
+        try {
+            for (Map.Entry<ModelType, StringBuilder> input : inputs.entrySet()) {
+                ModelType modelType = input.getKey();
+                String inputKey = JOBS + jobId + "/bedrock/input/" + modelType.name() + ".jsonl";
+                storage.put(inputKey, input.getValue().toString().getBytes(StandardCharsets.UTF_8));
+                arns.add(bedrockJobs.submit(
+                        "batch-" + jobId.substring(0, 8) + "-"
+                                + modelType.name().toLowerCase(Locale.ROOT).replace('_', '-'),
+                        modelType,
+                        storage.uri(inputKey),
+                        storage.uri(bedrockOutputPrefix(jobId) + modelType.name() + "/")));
+            }
+        } catch (RuntimeException e) {
+            save(job.withProgress(BatchJob.Status.FAILED, 0, 0));
+            throw e;
+        }
+
+        BatchJob submitted = job.withBedrockJobs(arns);
+        save(submitted);
+        return submitted;
+    }
+
+    private BatchJob refreshBedrock(BatchJob job) {
+        String jobId = job.jobId();
+        if (!refreshing.add(jobId)) {
+            return job;
+        }
+        try {
+            // Another request may have imported the output since this one loaded the job
+            BatchJob current = load(jobId).orElse(job);
+            if (current.status() != BatchJob.Status.SUBMITTED || !pollDue(jobId)) {
+                return current;
+            }
+            boolean finished = current.bedrockJobArns().stream()
+                    .map(bedrockJobs::status)
+                    .allMatch(BEDROCK_TERMINAL::contains);
+            if (!finished) {
+                return current;
+            }
+            BatchJob imported = importBedrockOutput(current);
+            lastPolled.remove(jobId);
+            return imported;
+        } finally {
+            refreshing.remove(jobId);
+        }
+    }
+
+    private boolean pollDue(String jobId) {
+        long now = System.nanoTime();
+        Long previous = lastPolled.get(jobId);
+        if (previous != null && now - previous < pollIntervalNanos) {
+            return false;
+        }
+        lastPolled.put(jobId, now);
+        return true;
+    }
+
+    private BatchJob importBedrockOutput(BatchJob job) {
+        String outputPrefix = bedrockOutputPrefix(job.jobId());
+        List<BatchResult> imported = new ArrayList<>();
+        for (String key : storage.list(outputPrefix)) {
+            if (!key.endsWith(".jsonl.out")) {
+                continue;
+            }
+            String relative = key.substring(outputPrefix.length());
+            ModelType modelType = ModelType.valueOf(relative.substring(0, relative.indexOf('/')));
+            for (String line : lines(storage.get(key).orElseThrow())) {
+                imported.add(bedrockJobs.fromOutputLine(line, modelType));
+            }
+        }
+        putResults(resultsPrefix(job.jobId()) + BEDROCK_RESULTS_PART, imported);
+
+        int completed = (int) imported.stream().filter(BatchResult::succeeded).count();
+        BatchJob.Status status = completed == job.totalRecords()
+                ? BatchJob.Status.COMPLETED
+                : completed == 0 ? BatchJob.Status.FAILED : BatchJob.Status.PARTIALLY_FAILED;
+        BatchJob finished = job.withProgress(status, completed, job.totalRecords() - completed);
+        save(finished);
+        log.info("Bedrock batch job {} finished: {} of {} records completed", job.jobId(), completed, job.totalRecords());
+        return finished;
+    }
+
+    private List<BatchRecord> parse(byte[] jsonl) {
+        List<BatchRecord> records = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        List<String> lines = lines(jsonl);
+        for (int i = 0; i < lines.size(); i++) {
+            BatchRecord record;
+            try {
+                record = mapper.readValue(lines.get(i), BatchRecord.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid batch record on line " + (i + 1) + ": "
+                        + e.getOriginalMessage(), e);
+            }
+            if (!ids.add(record.recordId())) {
+                throw new IllegalArgumentException("Duplicate recordId: " + record.recordId());
+            }
+            systemPrompt(record);
+            records.add(record);
+        }
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("Batch input contains no records");
+        }
+        return records;
+    }
+
+    private String systemPrompt(BatchRecord record) {
+        if (record.systemPrompt() != null && !record.systemPrompt().isBlank()) {
+            return record.systemPrompt();
+        }
+        return personas.systemPrompt(record.persona() != null ? record.persona() : PersonaRegistry.DEFAULT_PERSONA);
+    }
+
+    /**
+     * Latest result per record id across all part files (later parts win).
+     */
+    private Map<String, BatchResult> results(String jobId) {
+        Map<String, BatchResult> results = new LinkedHashMap<>();
+        for (String key : storage.list(resultsPrefix(jobId))) {
+            for (String line : lines(storage.get(key).orElseThrow())) {
+                BatchResult result = read(line, BatchResult.class);
+                results.put(result.recordId(), result);
+            }
+        }
+        return results;
+    }
+
+    private void writePart(String jobId, int part, List<BatchResult> results) {
+        putResults(resultsPrefix(jobId) + String.format("part-%05d.ndjson", part), results);
+    }
+
+    private void putResults(String key, List<BatchResult> results) {
+        StringBuilder ndjson = new StringBuilder();
+        for (BatchResult result : results) {
+            ndjson.append(write(result)).append('\n');
+        }
+        storage.put(key, ndjson.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Optional<BatchJob> load(String jobId) {
+        return storage.get(jobKey(validJobId(jobId)))
+                .map(bytes -> read(new String(bytes, StandardCharsets.UTF_8), BatchJob.class));
+    }
+
+    private void save(BatchJob job) {
+        storage.put(jobKey(job.jobId()), write(job).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String validJobId(String jobId) {
+        return UUID.fromString(jobId).toString();
+    }
+
+    private static String inputKey(String jobId) {
+        return JOBS + jobId + "/input.jsonl";
+    }
+
+    private static String jobKey(String jobId) {
+        return JOBS + jobId + "/job.json";
+    }
+
+    private static String resultsPrefix(String jobId) {
+        return JOBS + jobId + "/results/";
+    }
+
+    private static String bedrockOutputPrefix(String jobId) {
+        return JOBS + jobId + "/bedrock/output/";
+    }
+
+    private static List<String> lines(byte[] content) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isBlank()).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return mapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable batch " + type.getSimpleName(), e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
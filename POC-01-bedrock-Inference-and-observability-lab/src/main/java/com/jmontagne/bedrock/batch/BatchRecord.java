@@ -0,0 +1,42 @@
+package com.jmontagne.bedrock.batch;
+
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.util.List;
+
+/**
+ * One line of a batch JSONL input. Only {@code recordId} and {@code message} are required;
+ * the rest default to the job's model and {@link InferenceParameters#DEFAULT}.
+ */
+public record BatchRecord(
+        String recordId,
+        String message,
+        String systemPrompt,
+        String persona,
+        ModelType modelType,
+        Double temperature,
+        Integer maxTokens
+) {
+    public BatchRecord {
+        if (recordId == null || recordId.isBlank()) {
+            throw new IllegalArgumentException("Batch record without recordId");
+        }
+        if (message == null || message.isBlank()) {
+            throw new IllegalArgumentException("Batch record " + recordId + " has no message");
+        }
+    }
+
+    public ModelType modelTypeOr(ModelType jobDefault) {
+        return modelType != null ? modelType : jobDefault;
+    }
+
+    public InferenceParameters toParameters() {
+        return new InferenceParameters(
+                temperature != null ? temperature : InferenceParameters.DEFAULT.temperature(),
+                InferenceParameters.DEFAULT.topP(),
+                maxTokens != null ? maxTokens : InferenceParameters.DEFAULT.maxTokens(),
+                List.of()
+        );
+    }
+}
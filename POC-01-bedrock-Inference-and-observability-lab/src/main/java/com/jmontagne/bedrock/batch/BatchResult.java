@@ -0,0 +1,25 @@
+package com.jmontagne.bedrock.batch;
+
+import com.jmontagne.bedrock.model.ModelType;
+
+/**
+ * One line of a batch NDJSON output. {@code error} is set instead of {@code content} when the
+ * record failed; failed records are retried on resume.
+ */
+public record BatchResult(
+        String recordId,
+        ModelType modelType,
+        String content,
+        String stopReason,
+        int inputTokens,
+        int outputTokens,
+        String error
+) {
+    public static BatchResult failure(String recordId, ModelType modelType, String error) {
+        return new BatchResult(recordId, modelType, null, null, 0, 0, error);
+    }
+
+    public boolean succeeded() {
+        return error == null;
+    }
+}
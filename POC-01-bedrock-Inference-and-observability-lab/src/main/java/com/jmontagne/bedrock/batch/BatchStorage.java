@@ -0,0 +1,27 @@
+package com.jmontagne.bedrock.batch;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Object storage for batch inputs, checkpoints and outputs, addressed by {@code /}-separated keys.
+ *
+ * <p>Deliberately S3-shaped (whole-object put/get, prefix listing, no append) so the local
+ * filesystem stand-in behaves like the real thing in tests.</p>
+ */
+public interface BatchStorage {
+
+    void put(String key, byte[] content);
+
+    Optional<byte[]> get(String key);
+
+    /**
+     * Keys under {@code prefix}, sorted.
+     */
+    List<String> list(String prefix);
+
+    /**
+     * Location of {@code key} as understood by Bedrock batch inference ({@code s3://bucket/key}).
+     */
+    String uri(String key);
+}
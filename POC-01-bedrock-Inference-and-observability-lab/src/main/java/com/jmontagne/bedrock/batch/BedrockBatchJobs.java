@@ -0,0 +1,140 @@
+package com.jmontagne.bedrock.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.bedrock.BedrockAsyncClient;
+import software.amazon.awssdk.services.bedrock.model.CreateModelInvocationJobRequest;
+import software.amazon.awssdk.services.bedrock.model.GetModelInvocationJobRequest;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobInputDataConfig;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobOutputDataConfig;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobS3InputDataConfig;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobS3OutputDataConfig;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobStatus;
+import software.amazon.awssdk.services.bedrock.model.S3InputFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Bedrock batch inference ({@code CreateModelInvocationJob}) for large batch jobs: roughly half
+ * the on-demand price and no RPM/TPM pressure on interactive traffic, in exchange for
+ * completion within hours instead of seconds.
+ *
+ * <p>Translates {@link BatchRecord}s into the batch JSONL format ({@code recordId} plus the
+ * Anthropic Messages {@code modelInput} body) and the {@code .jsonl.out} lines back into
+ * {@link BatchResult}s. One job per model, since a job targets a single model ID.</p>
+ */
+@Component
+public class BedrockBatchJobs {
+
+    private static final Logger log = LoggerFactory.getLogger(BedrockBatchJobs.class);
+
+    static final String ANTHROPIC_VERSION = "bedrock-2023-05-31";
+
+    private final BedrockAsyncClient bedrock;
+    private final ObjectMapper mapper;
+    private final String roleArn;
+
+    public BedrockBatchJobs(@Lazy BedrockAsyncClient bedrock, ObjectMapper mapper,
+                            @Value("${bedrock.batch.role-arn:}") String roleArn) {
+        this.bedrock = bedrock;
+        this.mapper = mapper;
+        this.roleArn = roleArn;
+    }
+
+    /**
+     * Bedrock mode needs a service role that can read the input and write the output location.
+     */
+    public boolean isConfigured() {
+        return roleArn != null && !roleArn.isBlank();
+    }
+
+    public String submit(String jobName, ModelType modelType, String inputUri, String outputUri) {
+        CreateModelInvocationJobRequest request = CreateModelInvocationJobRequest.builder()
+                .jobName(jobName)
+                .modelId(modelType.getModelId())
+                .roleArn(roleArn)
+                .inputDataConfig(ModelInvocationJobInputDataConfig.fromS3InputDataConfig(
+                        ModelInvocationJobS3InputDataConfig.builder()
+                                .s3Uri(inputUri)
+                                .s3InputFormat(S3InputFormat.JSONL)
+                                .build()))
+                .outputDataConfig(ModelInvocationJobOutputDataConfig.fromS3OutputDataConfig(
+                        ModelInvocationJobS3OutputDataConfig.builder()
+                                .s3Uri(outputUri)
+                                .build()))
+                .build();
+
+        String jobArn = bedrock.createModelInvocationJob(request).join().jobArn();
+        log.info("Submitted Bedrock batch job {} for {} ({})", jobName, modelType.getDisplayName(), jobArn);
+        return jobArn;
+    }
+
+    public ModelInvocationJobStatus status(String jobArn) {
+        return bedrock.getModelInvocationJob(GetModelInvocationJobRequest.builder()
+                        .jobIdentifier(jobArn)
+                        .build())
+                .join()
+                .status();
+    }
+
+    String toInputLine(BatchRecord record, String systemPrompt, InferenceParameters parameters) {
+        ObjectNode body = mapper.createObjectNode()
+                .put("anthropic_version", ANTHROPIC_VERSION)
+                .put("max_tokens", parameters.maxTokens())
+                .put("temperature", parameters.temperature())
+                .put("top_p", parameters.topP())
+                .put("system", systemPrompt);
+        ObjectNode message = body.putArray("messages").addObject().put("role", "user");
+        message.putArray("content").addObject()
+                .put("type", "text")
+                .put("text", record.message());
+
+        ObjectNode line = mapper.createObjectNode().put("recordId", record.recordId());
+        line.set("modelInput", body);
+        return write(line);
+    }
+
+    BatchResult fromOutputLine(String line, ModelType modelType) {
+        try {
+            JsonNode node = mapper.readTree(line);
+            String recordId = node.path("recordId").asText();
+            if (node.hasNonNull("error")) {
+                return BatchResult.failure(recordId, modelType, node.get("error").toString());
+            }
+
+            JsonNode output = node.path("modelOutput");
+            StringBuilder content = new StringBuilder();
+            for (JsonNode block : output.path("content")) {
+                content.append(block.path("text").asText(""));
+            }
+            return new BatchResult(
+                    recordId,
+                    modelType,
+                    content.toString(),
+                    output.path("stop_reason").asText(null),
+                    output.path("usage").path("input_tokens").asInt(),
+                    output.path("usage").path("output_tokens").asInt(),
+                    null
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable batch output line", e);
+        }
+    }
+
+    private String write(JsonNode node) {
+        try {
+            return mapper.writeValueAsString(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.jmontagne.bedrock.batch;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link BatchStorage} in an S3 bucket under a key prefix. Required for Bedrock batch mode,
+ * which reads its input from and writes its output to S3.
+ *
+ * <p>Uses the async client on the Netty HTTP client already on the classpath and joins, since
+ * batch work runs on bounded-elastic threads.</p>
+ */
+public class S3BatchStorage implements BatchStorage {
+
+    private final S3AsyncClient s3;
+    private final String bucket;
+    private final String prefix;
+
+    public S3BatchStorage(S3AsyncClient s3, String bucket, String prefix) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        if (prefix == null || prefix.isEmpty()) {
+            this.prefix = "";
+        } else {
+            this.prefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] content) {
+        s3.putObject(PutObjectRequest.builder().bucket(bucket).key(prefix + key).build(),
+                AsyncRequestBody.fromBytes(content)).join();
+    }
+
+    @Override
+    public Optional<byte[]> get(String key) {
+        try {
+            return Optional.of(s3.getObject(GetObjectRequest.builder().bucket(bucket).key(prefix + key).build(),
+                    AsyncResponseTransformer.toBytes()).join().asByteArray());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NoSuchKeyException) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> list(String keyPrefix) {
+        List<String> keys = Collections.synchronizedList(new ArrayList<>());
+        s3.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(prefix + keyPrefix).build())
+                .contents()
+                .subscribe(object -> keys.add(object.key().substring(prefix.length())))
+                .join();
+        return keys.stream().sorted().toList();
+    }
+
+    @Override
+    public String uri(String key) {
+        return "s3://" + bucket + "/" + prefix + key;
+    }
+}
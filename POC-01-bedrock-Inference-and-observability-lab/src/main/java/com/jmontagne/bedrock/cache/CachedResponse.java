@@ -0,0 +1,54 @@
+package com.jmontagne.bedrock.cache;
+
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A completed generation, kept chunk by chunk so streaming hits replay the original
+ * token boundaries.
+ */
+public record CachedResponse(
+        List<String> chunks,
+        String stopReason,
+        PerformanceMetrics originalMetrics
+) {
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int CHUNK_OVERHEAD_BYTES = 40;
+
+    /**
+     * Approximate retained heap: UTF-16 chars plus per-String and per-entry overhead.
+     */
+    public int weightBytes() {
+        long bytes = ENTRY_OVERHEAD_BYTES;
+        for (String chunk : chunks) {
+            bytes += CHUNK_OVERHEAD_BYTES + 2L * chunk.length();
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Replays the response as a stream. Metrics keep the original token counts but report
+     * zero latency, since no model call was made.
+     */
+    public Flux<StreamEvent> replay() {
+        return Flux.defer(() -> {
+            List<StreamEvent> events = new ArrayList<>(chunks.size() + 2);
+            for (String chunk : chunks) {
+                events.add(new StreamEvent.Token(chunk));
+            }
+            if (stopReason != null) {
+                events.add(new StreamEvent.Stop(stopReason));
+            }
+            events.add(new StreamEvent.Metrics(PerformanceMetrics.builder()
+                    .inputTokens(originalMetrics.inputTokens())
+                    .outputTokens(originalMetrics.outputTokens())
+                    .modelType(originalMetrics.modelType())
+                    .build()));
+            return Flux.fromIterable(events);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.jmontagne.bedrock.cache;
+
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical in-flight deterministic requests.
+ *
+ * <p>The first caller for a {@link RequestKey} opens the upstream {@code converseStream}; every
+ * concurrent caller with the same key subscribes to the same call. The shared stream is a
+ * {@code replay().refCount(1)}, so late joiners first receive every token emitted so far and then
+ * follow live. The entry is removed as soon as the upstream terminates, before subscribers see
+ * the completion: a caller reacting to it (a retry, a follow-up request) must open its own call,
+ * because subscribing to the finished {@code refCount} would silently re-run the upstream. From
+ * then on the {@link ResponseCache} answers repeats. If every subscriber cancels, the upstream
+ * call is cancelled too.</p>
+ *
+ * <p>Publishes {@code bedrock.inference.coalesced} (callers that joined an existing call) and
+ * {@code bedrock.inference.inflight.shared} (calls currently shared).</p>
+ */
+@Component
+public class RequestCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final boolean enabled;
+    private final Map<RequestKey, Flux<StreamEvent>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public RequestCoalescer(MeterRegistry registry, @Value("${bedrock.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.coalesced = Counter.builder("bedrock.inference.coalesced")
+                .description("Requests that joined an identical in-flight Bedrock call instead of opening their own")
+                .register(registry);
+        Gauge.builder("bedrock.inference.inflight.shared", inFlight, Map::size)
+                .description("Distinct in-flight calls currently available for coalescing")
+                .register(registry);
+    }
+
+    public Flux<StreamEvent> coalesce(RequestKey key, Supplier<Flux<StreamEvent>> upstream) {
+        if (!enabled) {
+            return upstream.get();
+        }
+
+        return Flux.defer(() -> {
+            AtomicReference<Flux<StreamEvent>> created = new AtomicReference<>();
+
+            Flux<StreamEvent> shared = inFlight.computeIfAbsent(key, k -> {
+                Runnable remove = () -> inFlight.remove(k, created.get());
+                Flux<StreamEvent> flux = upstream.get()
+                        .doOnTerminate(remove)
+                        .doOnCancel(remove)
+                        .replay()
+                        .refCount(1);
+                created.set(flux);
+                return flux;
+            });
+
+            if (created.get() == null) {
+                coalesced.increment();
+                log.debug("Coalesced request onto in-flight call {}", key.hash());
+            }
+            return shared;
+        });
+    }
+
+    public long coalescedCount() {
+        return (long) coalesced.count();
+    }
+}
@@ -0,0 +1,47 @@
+package com.jmontagne.bedrock.cache;
+
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Exact-match identity of an inference request: SHA-256 over model id, system prompt,
+ * conversation history, user message and sampling parameters. Two requests with the same key are guaranteed
+ * to send byte-identical Converse requests.
+ */
+public record RequestKey(String hash) {
+
+    private static final char SEPARATOR = '\u0000';
+
+    public static RequestKey of(InferenceRequest request) {
+        InferenceParameters params = request.parameters();
+
+        StringBuilder material = new StringBuilder(256 + request.promptChars())
+                .append(request.modelType().getModelId()).append(SEPARATOR)
+                .append(request.systemPrompt()).append(SEPARATOR);
+        for (ConversationTurn turn : request.history()) {
+            material.append(turn.role()).append(SEPARATOR).append(turn.text()).append(SEPARATOR);
+        }
+        material.append(request.userMessage()).append(SEPARATOR)
+                .append(params.temperature()).append(SEPARATOR)
+                .append(params.topP()).append(SEPARATOR)
+                .append(params.maxTokens()).append(SEPARATOR)
+                .append(params.stopSequences());
+
+        return new RequestKey(sha256(material.toString()));
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
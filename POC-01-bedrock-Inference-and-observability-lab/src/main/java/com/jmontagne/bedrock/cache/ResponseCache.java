@@ -0,0 +1,135 @@
+package com.jmontagne.bedrock.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded exact-match cache for deterministic (temperature 0) inference.
+ *
+ * <p>Backed by Caffeine: entries are weighted by {@link CachedResponse#weightBytes()} against
+ * {@code bedrock.cache.max-weight-bytes}, expire after {@code bedrock.cache.ttl}, and are
+ * admitted through Caffeine's W-TinyLFU policy, so a burst of one-off prompts cannot flush
+ * the frequently repeated ones.</p>
+ *
+ * <p>Hit/miss/eviction counters are published through Micrometer as
+ * {@code cache.gets{cache=bedrock.response,result=hit|miss}}, {@code cache.evictions}, etc.</p>
+ */
+@Component
+public class ResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+    static final String CACHE_NAME = "bedrock.response";
+
+    private final boolean enabled;
+    private final Cache<RequestKey, CachedResponse> cache;
+
+    public ResponseCache(
+            MeterRegistry registry,
+            @Value("${bedrock.cache.enabled:true}") boolean enabled,
+            @Value("${bedrock.cache.max-weight-bytes:67108864}") long maxWeightBytes,
+            @Value("${bedrock.cache.ttl:PT1H}") Duration ttl
+    ) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((RequestKey key, CachedResponse value) -> value.weightBytes())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Only deterministic, unbudgeted requests are safe to answer from a previous generation.
+     */
+    public boolean isCacheable(InferenceRequest request) {
+        OutputBudget budget = request.parameters().budget();
+        return enabled
+                && request.parameters().temperature() != null
+                && request.parameters().temperature() == 0.0
+                && (budget == null || budget.isUnlimited());
+    }
+
+    public Optional<CachedResponse> get(RequestKey key) {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    public void put(RequestKey key, CachedResponse response) {
+        cache.put(key, response);
+    }
+
+    /**
+     * Passes {@code events} through unchanged and stores the response once the stream
+     * completes with its metrics event. Failed or cancelled streams are not cached.
+     */
+    public Flux<StreamEvent> cacheOnComplete(RequestKey key, Flux<StreamEvent> events) {
+        return cacheOnComplete(key, null, events);
+    }
+
+    /**
+     * Like {@link #cacheOnComplete(RequestKey, Flux)}, but only stores responses actually produced
+     * by {@code requestedModel}: a hedge answered by a fallback model must not be replayed as the
+     * requested model's answer.
+     */
+    public Flux<StreamEvent> cacheOnComplete(RequestKey key, ModelType requestedModel, Flux<StreamEvent> events) {
+        return Flux.defer(() -> {
+            List<String> chunks = new ArrayList<>();
+            String[] stopReason = new String[1];
+
+            return events.doOnNext(event -> {
+                switch (event) {
+                    case StreamEvent.Token token -> chunks.add(token.text());
+                    case StreamEvent.Stop stop -> stopReason[0] = stop.stopReason();
+                    case StreamEvent.Metrics metrics -> {
+                        if (requestedModel == null || requestedModel == metrics.metrics().modelType()) {
+                            store(key, chunks, stopReason[0], metrics.metrics());
+                        }
+                    }
+                    case StreamEvent.Error error -> { }
+                }
+            });
+        });
+    }
+
+    public CacheStats stats() {
+        var stats = cache.stats();
+        return new CacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.estimatedSize());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private void store(RequestKey key, List<String> chunks, String stopReason, PerformanceMetrics metrics) {
+        if (OutputBudget.STOP_REASON.equals(stopReason)) {
+            return;
+        }
+        put(key, new CachedResponse(List.copyOf(chunks), stopReason, metrics));
+        log.debug("Cached response for key {} ({} chunks)", key.hash(), chunks.size());
+    }
+
+    public record CacheStats(
+            long hits,
+            long misses,
+            long evictions,
+            long size
+    ) {}
+}
@@ -1,38 +1,69 @@
 package com.jmontagne.bedrock.client;
 
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ConversationTurn;
 import com.jmontagne.bedrock.model.InferenceParameters;
 import com.jmontagne.bedrock.model.InferenceRequest;
-import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
 import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.core.async.SdkPublisher;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.model.*;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Reactive bridge between the Bedrock Converse Stream API and Project Reactor.
  *
- * <p>Converts the AWS SDK's callback-based {@link ConverseStreamResponseHandler} into a
- * reactive {@code Flux<String>} using {@link Sinks.Many}. This enables backpressure-aware
- * streaming and composability with Spring WebFlux.</p>
+ * <p>Converts the AWS SDK's {@link ConverseStreamResponseHandler} into a typed reactive
+ * {@code Flux<StreamEvent>}: one {@link StreamEvent.Token} per text delta, a {@link StreamEvent.Stop}
+ * carrying the stop reason, and a final {@link StreamEvent.Metrics}. {@link #streamConverse} is
+ * the text-only view of the same stream.</p>
+ *
+ * <h3>Backpressure</h3>
+ * <p>The SDK's event {@link SdkPublisher} is a Reactive Streams publisher, so it is subscribed
+ * with {@code Flux.from(publisher)} rather than a callback that requests {@code Long.MAX_VALUE}.
+ * Downstream demand is propagated to the SDK and bounded by {@code bedrock.client.stream-prefetch},
+ * which keeps memory per in-flight stream constant however slowly the client reads.</p>
+ *
+ * <h3>Cancellation</h3>
+ * <p>Cancelling the returned {@code Flux} (client disconnect, a {@code block(timeout)} expiring,
+ * or the request's {@link OutputBudget} being spent) cancels the SDK subscription and the
+ * {@code converseStream} future, which closes the HTTP stream so the model stops generating
+ * billable tokens and the connection-pool slot is freed.</p>
  *
  * <h3>TTFT Measurement</h3>
  * <p>Tracks <b>Time-To-First-Token (TTFT)</b> independently of total generation time.
  * The first {@link ContentBlockDeltaEvent} triggers a timestamp capture, giving an
- * accurate measure of model inference latency without including network or generation time.</p>
+ * accurate measure of model inference latency without including network or generation time.
+ * All timing uses the monotonic {@link System#nanoTime()} clock; TTFT, every inter-token gap,
+ * total time and tokens/sec are fed to {@link LatencyTelemetry} for percentile reporting.</p>
  *
  * <h3>Token Usage Tracking</h3>
  * <p>Extracts input/output token counts from {@link ConverseStreamMetadataEvent} for
- * cost calculation and observability. Metrics are captured via {@link PerformanceMetrics}
- * and logged on stream completion.</p>
+ * cost calculation and observability. Metrics are captured via {@link PerformanceMetrics},
+ * logged on stream completion and emitted as the last event, so every caller gets the
+ * per-request TTFT and token counts of its own call. Prompt-cache read/write token counts
+ * are captured the same way.</p>
+ *
+ * <h3>Conversation History</h3>
+ * <p>Earlier turns of a session ({@link InferenceRequest#history()}) are sent as alternating
+ * user/assistant messages ahead of the new user message.</p>
+ *
+ * <h3>Prompt Caching</h3>
+ * <p>System blocks come from {@link PromptCachePolicy}, which appends a cache point after long,
+ * stable system prompts (registered personas are pre-built once) on models that support it.</p>
  *
  * @see InferenceService High-level orchestration layer
  */
@@ -41,101 +72,138 @@ public class BedrockStreamingClient {
 
     private static final Logger log = LoggerFactory.getLogger(BedrockStreamingClient.class);
 
+    static final int DEFAULT_PREFETCH = 32;
+
     private final BedrockRuntimeAsyncClient bedrockClient;
+    private final LatencyTelemetry telemetry;
+    private final int prefetch;
+    private final PromptCachePolicy promptCachePolicy;
+
+    @Autowired
+    public BedrockStreamingClient(
+            BedrockRuntimeAsyncClient bedrockClient,
+            LatencyTelemetry telemetry,
+            PromptCachePolicy promptCachePolicy,
+            @Value("${bedrock.client.stream-prefetch:" + DEFAULT_PREFETCH + "}") int prefetch
+    ) {
+        this.bedrockClient = bedrockClient;
+        this.telemetry = telemetry;
+        this.promptCachePolicy = promptCachePolicy;
+        this.prefetch = prefetch;
+    }
 
     public BedrockStreamingClient(BedrockRuntimeAsyncClient bedrockClient) {
-        this.bedrockClient = bedrockClient;
+        this(bedrockClient, new LatencyTelemetry(), PromptCachePolicy.disabled(), DEFAULT_PREFETCH);
     }
 
     public Flux<String> streamConverse(InferenceRequest request) {
-        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
-
-        long startTime = System.currentTimeMillis();
-        AtomicBoolean firstTokenReceived = new AtomicBoolean(false);
-        AtomicLong ttftMs = new AtomicLong(0);
-        AtomicInteger inputTokens = new AtomicInteger(0);
-        AtomicInteger outputTokens = new AtomicInteger(0);
-
-        ConverseStreamRequest converseRequest = buildConverseRequest(request);
-
-        log.info("Starting streaming inference with model: {}", request.modelType().getDisplayName());
-
-        ConverseStreamResponseHandler handler = ConverseStreamResponseHandler.builder()
-                .onEventStream(publisher -> publisher.subscribe(event -> {
-                    handleStreamEvent(event, sink, startTime, firstTokenReceived, ttftMs, inputTokens, outputTokens, request.modelType());
-                }))
-                .onError(error -> {
-                    log.error("Streaming error for model {}: {}", request.modelType().getDisplayName(), error.getMessage());
-                    sink.tryEmitError(error);
-                })
-                .onComplete(() -> {
-                    long totalTime = System.currentTimeMillis() - startTime;
-                    PerformanceMetrics metrics = PerformanceMetrics.builder()
-                            .timeToFirstTokenMs(ttftMs.get())
-                            .totalGenerationTimeMs(totalTime)
-                            .inputTokens(inputTokens.get())
-                            .outputTokens(outputTokens.get())
-                            .modelType(request.modelType())
-                            .build();
-
-                    log.info("Streaming completed: {}", metrics);
-                    sink.tryEmitComplete();
-                })
-                .build();
+        return streamEvents(request)
+                .ofType(StreamEvent.Token.class)
+                .map(StreamEvent.Token::text);
+    }
 
-        bedrockClient.converseStream(converseRequest, handler)
-                .exceptionally(throwable -> {
-                    log.error("Failed to initiate streaming: {}", throwable.getMessage());
-                    sink.tryEmitError(throwable);
+    public Flux<StreamEvent> streamEvents(InferenceRequest request) {
+        return Flux.defer(() -> {
+            ConverseStreamState state = new ConverseStreamState(request.modelType(), telemetry, System.nanoTime());
+            Sinks.One<SdkPublisher<ConverseStreamOutput>> eventStream = Sinks.one();
+            // Errors after onEventStream cannot go through eventStream any more, which already
+            // holds the publisher; they end the event flux through this sink instead
+            Sinks.Empty<Void> streamFailure = Sinks.empty();
+
+            ConverseStreamResponseHandler handler = ConverseStreamResponseHandler.builder()
+                    .onEventStream(eventStream::tryEmitValue)
+                    .onError(error -> {
+                        log.error("Streaming error for model {}: {}", request.modelType().getDisplayName(), error.getMessage());
+                        fail(eventStream, streamFailure, error);
+                    })
+                    .build();
+
+            log.info("Starting streaming inference with model: {}", request.modelType().getDisplayName());
+
+            CompletableFuture<Void> call = bedrockClient.converseStream(buildConverseRequest(request), handler);
+            call.exceptionally(throwable -> {
+                if (call.isCancelled()) {
                     return null;
-                });
+                }
+                // onError has usually logged this already; only a call that never started is news
+                if (fail(eventStream, streamFailure, throwable)) {
+                    log.error("Failed to initiate streaming for model {}: {}",
+                            request.modelType().getDisplayName(), throwable.getMessage());
+                } else {
+                    log.debug("Streaming call for model {} ended with: {}",
+                            request.modelType().getDisplayName(), throwable.toString());
+                }
+                return null;
+            });
+
+            // Flux.from keeps the SDK subscription demand-driven: downstream request(n) is
+            // forwarded to the SDK publisher, capped at `prefetch` events in flight.
+            Flux<StreamEvent> events = eventStream.asMono()
+                    .flatMapMany(publisher -> Flux.from(publisher).limitRate(prefetch))
+                    .takeUntilOther(streamFailure.asMono())
+                    .<StreamEvent>handle(state::onEvent)
+                    .doOnCancel(() -> {
+                        // Client gone, controller timeout or budget hit: stop the model generating
+                        log.info("Cancelling Bedrock stream for model {} after {} chars",
+                                request.modelType().getDisplayName(), state.outputChars());
+                        call.cancel(true);
+                    });
+
+            return applyBudget(events, request.parameters().budget(), state)
+                    .concatWith(Flux.defer(() -> state.budgetExceeded()
+                            ? Flux.<StreamEvent>just(new StreamEvent.Stop(OutputBudget.STOP_REASON), state.complete())
+                            : Flux.<StreamEvent>just(state.complete())));
+        });
+    }
 
-        return sink.asFlux();
+    /**
+     * Fails the stream whether or not it has started. The SDK usually also signals a mid-stream
+     * error through the event publisher; whichever arrives first ends the flux. Returns whether
+     * this error is what ended a stream that had not started.
+     */
+    private static boolean fail(Sinks.One<SdkPublisher<ConverseStreamOutput>> eventStream, Sinks.Empty<Void> streamFailure,
+                                Throwable error) {
+        if (eventStream.tryEmitError(error).isSuccess()) {
+            return true;
+        }
+        Sinks.EmitResult result = streamFailure.tryEmitError(error);
+        if (result.isFailure()) {
+            log.debug("Stream already terminated, dropping error ({}): {}", result, error.toString());
+        }
+        return false;
     }
 
-    private void handleStreamEvent(
-            ConverseStreamOutput event,
-            Sinks.Many<String> sink,
-            long startTime,
-            AtomicBoolean firstTokenReceived,
-            AtomicLong ttftMs,
-            AtomicInteger inputTokens,
-            AtomicInteger outputTokens,
-            ModelType modelType
-    ) {
-        if (event instanceof ContentBlockDeltaEvent deltaEvent) {
-            if (!firstTokenReceived.getAndSet(true)) {
-                ttftMs.set(System.currentTimeMillis() - startTime);
-                log.debug("Time to first token: {}ms for model {}", ttftMs.get(), modelType.getDisplayName());
-            }
-
-            ContentBlockDelta delta = deltaEvent.delta();
-            if (delta != null && delta.text() != null) {
-                sink.tryEmitNext(delta.text());
-            }
-        } else if (event instanceof MessageStopEvent stopEvent) {
-            log.debug("Message stop received with reason: {}", stopEvent.stopReason());
-        } else if (event instanceof ConverseStreamMetadataEvent metadataEvent) {
-            TokenUsage usage = metadataEvent.usage();
-            if (usage != null) {
-                inputTokens.set(usage.inputTokens());
-                outputTokens.set(usage.outputTokens());
-                log.debug("Token usage - Input: {}, Output: {}", usage.inputTokens(), usage.outputTokens());
-            }
+    /**
+     * Truncates the stream once the output budget is spent. Both operators cancel upstream,
+     * which reaches {@code doOnCancel} above and aborts the SDK call.
+     */
+    private Flux<StreamEvent> applyBudget(Flux<StreamEvent> events, OutputBudget budget, ConverseStreamState state) {
+        if (budget == null || budget.isUnlimited()) {
+            return events;
+        }
+        if (budget.maxChars() != null) {
+            events = events.takeUntil(event -> state.exceedsChars(budget.maxChars()));
+        }
+        if (budget.maxWallTime() != null) {
+            events = events.takeUntilOther(Mono.delay(budget.maxWallTime())
+                    .doOnNext(tick -> state.markBudgetExceeded()));
         }
+        return events;
     }
 
-    private ConverseStreamRequest buildConverseRequest(InferenceRequest request) {
+    /**
+     * Package-private for the JMH benchmarks in {@code benchmarks/}.
+     */
+    ConverseStreamRequest buildConverseRequest(InferenceRequest request) {
         InferenceParameters params = request.parameters();
 
-        Message userMessage = Message.builder()
-                .role(ConversationRole.USER)
-                .content(ContentBlock.fromText(request.userMessage()))
-                .build();
-
-        SystemContentBlock systemBlock = SystemContentBlock.builder()
-                .text(request.systemPrompt())
-                .build();
+        List<Message> messages = new ArrayList<>(request.history().size() + 1);
+        for (ConversationTurn turn : request.history()) {
+            messages.add(message(turn.role() == ConversationTurn.Role.USER
+                    ? ConversationRole.USER
+                    : ConversationRole.ASSISTANT, turn.text()));
+        }
+        messages.add(message(ConversationRole.USER, request.userMessage()));
 
         InferenceConfiguration.Builder inferenceConfig = InferenceConfiguration.builder()
                 .maxTokens(params.maxTokens())
@@ -148,13 +216,16 @@ public class BedrockStreamingClient {
 
         return ConverseStreamRequest.builder()
                 .modelId(request.modelType().getModelId())
-                .messages(List.of(userMessage))
-                .system(List.of(systemBlock))
+                .messages(messages)
+                .system(promptCachePolicy.systemBlocks(request.systemPrompt(), request.modelType()))
                 .inferenceConfig(inferenceConfig.build())
                 .build();
     }
 
-    public PerformanceMetrics getLastMetrics() {
-        return null;
+    private static Message message(ConversationRole role, String text) {
+        return Message.builder()
+                .role(role)
+                .content(ContentBlock.fromText(text))
+                .build();
     }
 }
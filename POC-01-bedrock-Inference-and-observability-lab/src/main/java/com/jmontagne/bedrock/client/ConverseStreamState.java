@@ -0,0 +1,132 @@
+package com.jmontagne.bedrock.client;
+
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.SynchronousSink;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlockDelta;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlockDeltaEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseStreamMetadataEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseStreamOutput;
+import software.amazon.awssdk.services.bedrockruntime.model.MessageStopEvent;
+import software.amazon.awssdk.services.bedrockruntime.model.TokenUsage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call state that turns raw {@link ConverseStreamOutput} events into {@link StreamEvent}s
+ * while timing the stream.
+ *
+ * <p>One instance per subscription. Reactive Streams guarantees {@code onNext} signals are
+ * serial, so plain fields are enough here — no atomics on the per-token path.</p>
+ */
+public final class ConverseStreamState {
+
+    private static final Logger log = LoggerFactory.getLogger(ConverseStreamState.class);
+
+    private final ModelType modelType;
+    private final LatencyTelemetry telemetry;
+    private final long startNanos;
+
+    private long ttftNanos;
+    private long lastTokenNanos;
+    private int inputTokens;
+    private int outputTokens;
+    private int cacheReadInputTokens;
+    private int cacheWriteInputTokens;
+    private long outputChars;
+    private volatile boolean budgetExceeded;
+
+    public ConverseStreamState(ModelType modelType, LatencyTelemetry telemetry, long startNanos) {
+        this.modelType = modelType;
+        this.telemetry = telemetry;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * {@code Flux.handle} callback: emits at most one {@link StreamEvent} per SDK event.
+     */
+    public void onEvent(ConverseStreamOutput event, SynchronousSink<StreamEvent> sink) {
+        if (event instanceof ContentBlockDeltaEvent deltaEvent) {
+            long now = System.nanoTime();
+            if (lastTokenNanos == 0) {
+                ttftNanos = now - startNanos;
+                telemetry.recordTimeToFirstToken(modelType, ttftNanos);
+                log.debug("Time to first token: {}ms for model {}",
+                        TimeUnit.NANOSECONDS.toMillis(ttftNanos), modelType.getDisplayName());
+            } else {
+                telemetry.recordInterTokenGap(modelType, now - lastTokenNanos);
+            }
+            lastTokenNanos = now;
+
+            ContentBlockDelta delta = deltaEvent.delta();
+            if (delta != null && delta.text() != null) {
+                outputChars += delta.text().length();
+                sink.next(new StreamEvent.Token(delta.text()));
+            }
+        } else if (event instanceof MessageStopEvent stopEvent) {
+            log.debug("Message stop received with reason: {}", stopEvent.stopReason());
+            sink.next(new StreamEvent.Stop(stopEvent.stopReasonAsString()));
+        } else if (event instanceof ConverseStreamMetadataEvent metadataEvent) {
+            TokenUsage usage = metadataEvent.usage();
+            if (usage != null) {
+                inputTokens = usage.inputTokens();
+                outputTokens = usage.outputTokens();
+                cacheReadInputTokens = usage.cacheReadInputTokens() != null ? usage.cacheReadInputTokens() : 0;
+                cacheWriteInputTokens = usage.cacheWriteInputTokens() != null ? usage.cacheWriteInputTokens() : 0;
+                log.debug("Token usage - Input: {}, Output: {}, Cache read: {}, Cache write: {}",
+                        inputTokens, outputTokens, cacheReadInputTokens, cacheWriteInputTokens);
+            }
+        }
+    }
+
+    public long outputChars() {
+        return outputChars;
+    }
+
+    public boolean exceedsChars(int maxChars) {
+        if (outputChars >= maxChars) {
+            budgetExceeded = true;
+        }
+        return budgetExceeded;
+    }
+
+    public void markBudgetExceeded() {
+        budgetExceeded = true;
+    }
+
+    public boolean budgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * Builds the final metrics once the event stream has completed.
+     *
+     * <p>A stream cut short by the output budget never receives its metadata event, so output
+     * tokens are estimated from the characters received (~4 chars per token) and input tokens
+     * are left at 0 for {@code CostTracker} to estimate from the request.</p>
+     */
+    public StreamEvent.Metrics complete() {
+        if (outputTokens == 0 && outputChars > 0) {
+            outputTokens = (int) ((outputChars + 3) / 4);
+        }
+        long totalNanos = System.nanoTime() - startNanos;
+        telemetry.recordGeneration(modelType, totalNanos, outputTokens);
+
+        PerformanceMetrics metrics = PerformanceMetrics.builder()
+                .timeToFirstTokenMs(TimeUnit.NANOSECONDS.toMillis(ttftNanos))
+                .totalGenerationTimeMs(TimeUnit.NANOSECONDS.toMillis(totalNanos))
+                .inputTokens(inputTokens)
+                .outputTokens(outputTokens)
+                .cacheReadInputTokens(cacheReadInputTokens)
+                .cacheWriteInputTokens(cacheWriteInputTokens)
+                .modelType(modelType)
+                .build();
+
+        log.info("Streaming completed: {}", metrics);
+        return new StreamEvent.Metrics(metrics);
+    }
+}
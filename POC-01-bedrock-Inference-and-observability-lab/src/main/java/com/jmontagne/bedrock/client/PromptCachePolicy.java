@@ -0,0 +1,85 @@
+package com.jmontagne.bedrock.client;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.model.ModelType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.bedrockruntime.model.CachePointBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.CachePointType;
+import software.amazon.awssdk.services.bedrockruntime.model.SystemContentBlock;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the {@code system} blocks of a Converse request, appending a Bedrock prompt-cache
+ * point after prompts worth caching.
+ *
+ * <p>A cache point lets Bedrock reuse the processed prefix on the next request with the same
+ * prefix: cached tokens are billed at a fraction of the input price and skipped on the TTFT
+ * path. It is only added when the model supports it ({@code prompt-caching} in the
+ * {@link ModelCatalog}) and the prompt is at least {@code bedrock.prompt-cache.min-tokens} long
+ * (estimated at 4 chars per token) — shorter prefixes are rejected or not cached by Bedrock.</p>
+ *
+ * <p>System blocks for {@link PersonaRegistry} prompts are built once per model at startup; SDK
+ * model objects are immutable, so the same list is shared by every request.</p>
+ */
+@Component
+public class PromptCachePolicy {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private static final SystemContentBlock CACHE_POINT = SystemContentBlock.fromCachePoint(
+            CachePointBlock.builder().type(CachePointType.DEFAULT).build());
+
+    private final ModelCatalog catalog;
+    private final boolean enabled;
+    private final int minTokens;
+    private final Map<ModelType, Map<String, List<SystemContentBlock>>> personaBlocks = new EnumMap<>(ModelType.class);
+
+    @Autowired
+    public PromptCachePolicy(
+            ModelCatalog catalog,
+            PersonaRegistry personas,
+            @Value("${bedrock.prompt-cache.enabled:true}") boolean enabled,
+            @Value("${bedrock.prompt-cache.min-tokens:1024}") int minTokens) {
+        this.catalog = catalog;
+        this.enabled = enabled;
+        this.minTokens = minTokens;
+
+        for (ModelType modelType : ModelType.values()) {
+            Map<String, List<SystemContentBlock>> blocks = new HashMap<>();
+            for (String prompt : personas.personas().values()) {
+                blocks.put(prompt, build(prompt, modelType));
+            }
+            personaBlocks.put(modelType, blocks);
+        }
+    }
+
+    /**
+     * Never adds cache points; for clients built outside Spring.
+     */
+    public static PromptCachePolicy disabled() {
+        return new PromptCachePolicy(ModelCatalog.defaults(), PersonaRegistry.defaults(), false, Integer.MAX_VALUE);
+    }
+
+    public List<SystemContentBlock> systemBlocks(String systemPrompt, ModelType modelType) {
+        List<SystemContentBlock> prebuilt = personaBlocks.get(modelType).get(systemPrompt);
+        return prebuilt != null ? prebuilt : build(systemPrompt, modelType);
+    }
+
+    public boolean cachesPrefix(String systemPrompt, ModelType modelType) {
+        return enabled
+                && catalog.profile(modelType).promptCaching()
+                && systemPrompt.length() / CHARS_PER_TOKEN >= minTokens;
+    }
+
+    private List<SystemContentBlock> build(String systemPrompt, ModelType modelType) {
+        SystemContentBlock text = SystemContentBlock.builder().text(systemPrompt).build();
+        return cachesPrefix(systemPrompt, modelType) ? List.of(text, CACHE_POINT) : List.of(text);
+    }
+}
@@ -0,0 +1,64 @@
+package com.jmontagne.bedrock.config;
+
+import com.jmontagne.bedrock.batch.BatchStorage;
+import com.jmontagne.bedrock.batch.LocalBatchStorage;
+import com.jmontagne.bedrock.batch.S3BatchStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrock.BedrockAsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.nio.file.Path;
+
+/**
+ * Batch inference storage and the Bedrock control-plane client.
+ *
+ * <p>Storage is the local filesystem by default; Bedrock batch mode needs {@code storage: s3}
+ * because the model invocation job reads and writes S3 directly. The control-plane client is
+ * lazy so interactive-only deployments (and Lambda cold starts) never build it.</p>
+ */
+@Configuration
+public class BatchConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchConfig.class);
+
+    @Value("${aws.region:us-east-1}")
+    private String awsRegion;
+
+    @Bean
+    @ConditionalOnProperty(name = "bedrock.batch.storage", havingValue = "local", matchIfMissing = true)
+    public BatchStorage localBatchStorage(
+            @Value("${bedrock.batch.local-root:${java.io.tmpdir}/bedrock-batch}") String localRoot) {
+        log.info("Batch storage: local directory {}", localRoot);
+        return new LocalBatchStorage(Path.of(localRoot));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "bedrock.batch.storage", havingValue = "s3")
+    public BatchStorage s3BatchStorage(@Value("${bedrock.batch.bucket}") String bucket,
+                                       @Value("${bedrock.batch.prefix:bedrock-batch/}") String prefix) {
+        log.info("Batch storage: s3://{}/{}", bucket, prefix);
+        S3AsyncClient s3 = S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .build();
+        return new S3BatchStorage(s3, bucket, prefix);
+    }
+
+    @Bean
+    @Lazy
+    public BedrockAsyncClient bedrockAsyncClient() {
+        log.info("Initializing BedrockAsyncClient for region: {}", awsRegion);
+        return BedrockAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .build();
+    }
+}
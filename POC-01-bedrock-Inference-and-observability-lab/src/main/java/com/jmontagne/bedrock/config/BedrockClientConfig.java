@@ -1,11 +1,14 @@
 package com.jmontagne.bedrock.config;
 
+import com.jmontagne.bedrock.priming.PrimingRedirect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.core.retry.RetryMode;
 import software.amazon.awssdk.core.retry.RetryPolicy;
@@ -15,7 +18,9 @@ import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClientBuilder;
 
+import java.net.URI;
 import java.time.Duration;
 
 @Configuration
@@ -35,8 +40,42 @@ public class BedrockClientConfig {
     @Value("${bedrock.client.max-retries:3}")
     private int maxRetries;
 
+    @Value("${bedrock.client.max-concurrency:50}")
+    private int maxConcurrency;
+
+    @Value("${bedrock.client.endpoint-override:}")
+    private String endpointOverride;
+
+    /**
+     * Sign with fixed dummy credentials instead of the default chain, for an endpoint override
+     * that ignores signatures (the Bedrock emulator) on machines without AWS credentials.
+     */
+    @Value("${bedrock.client.emulator-credentials:false}")
+    private boolean emulatorCredentials;
+
+    /**
+     * Lets SnapStart priming point the production client at a loopback stub; a pass-through otherwise.
+     */
     @Bean
-    public BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient() {
+    public PrimingRedirect primingRedirect() {
+        return new PrimingRedirect();
+    }
+
+    /**
+     * Shared with priming, which re-opens pooled connections after a snapshot restore.
+     */
+    @Bean(destroyMethod = "close")
+    public SdkAsyncHttpClient bedrockHttpClient() {
+        return NettyNioAsyncHttpClient.builder()
+                .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                .readTimeout(Duration.ofMillis(readTimeoutMs))
+                .maxConcurrency(maxConcurrency)
+                .build();
+    }
+
+    @Bean
+    public BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient(SdkAsyncHttpClient bedrockHttpClient,
+                                                               PrimingRedirect primingRedirect) {
         log.info("Initializing BedrockRuntimeAsyncClient for region: {}", awsRegion);
 
         RetryPolicy retryPolicy = RetryPolicy.builder(RetryMode.ADAPTIVE)
@@ -52,19 +91,21 @@ public class BedrockClientConfig {
                 .apiCallTimeout(Duration.ofMillis(readTimeoutMs))
                 .apiCallAttemptTimeout(Duration.ofMillis(readTimeoutMs))
                 .retryPolicy(retryPolicy)
+                .addExecutionInterceptor(primingRedirect)
                 .build();
 
-        SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
-                .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
-                .readTimeout(Duration.ofMillis(readTimeoutMs))
-                .maxConcurrency(50)
-                .build();
-
-        return BedrockRuntimeAsyncClient.builder()
+        BedrockRuntimeAsyncClientBuilder builder = BedrockRuntimeAsyncClient.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(emulatorCredentials
+                        ? StaticCredentialsProvider.create(AwsBasicCredentials.create("emulator", "emulator"))
+                        : DefaultCredentialsProvider.create())
                 .overrideConfiguration(overrideConfig)
-                .httpClient(httpClient)
-                .build();
+                .httpClient(bedrockHttpClient);
+
+        if (!endpointOverride.isBlank()) {
+            log.info("Bedrock Runtime endpoint overridden: {}", endpointOverride);
+            builder.endpointOverride(URI.create(endpointOverride));
+        }
+        return builder.build();
     }
 }
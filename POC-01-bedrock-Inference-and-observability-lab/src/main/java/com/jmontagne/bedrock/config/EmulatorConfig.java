@@ -0,0 +1,22 @@
+package com.jmontagne.bedrock.config;
+
+import com.jmontagne.bedrock.emulator.BedrockEmulator;
+import com.jmontagne.bedrock.emulator.EmulatorSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Starts the in-process {@link BedrockEmulator} when {@code bedrock.emulator.enabled} is set, as
+ * the {@code emulator} profile does together with pointing {@code bedrock.client.endpoint-override}
+ * at it. The Bedrock client only connects on the first call, so start order does not matter.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bedrock.emulator.enabled", havingValue = "true")
+public class EmulatorConfig {
+
+    @Bean(destroyMethod = "close")
+    public BedrockEmulator bedrockEmulator(EmulatorSettings settings) throws InterruptedException {
+        return BedrockEmulator.start(settings);
+    }
+}
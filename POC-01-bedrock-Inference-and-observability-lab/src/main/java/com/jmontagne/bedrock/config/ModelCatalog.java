@@ -0,0 +1,146 @@
+package com.jmontagne.bedrock.config;
+
+import com.jmontagne.bedrock.model.ModelProfile;
+import com.jmontagne.bedrock.model.ModelType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-model cost and limits: the built-in profiles below, with overrides bound from
+ * {@code bedrock.models.<MODEL_TYPE>.*}.
+ *
+ * <p>{@link ModelType} stays the identity used throughout the code (model ID, display name);
+ * this catalog carries what changes per account and region. The defaults are the public us-east-1
+ * on-demand prices and default quotas, and are the only copy of them: an override sets just the
+ * fields it changes, e.g. {@code bedrock.models.CLAUDE_3_5_SONNET.requests-per-minute: 250}.
+ * Limits must be positive; a bad value fails startup naming the property.</p>
+ */
+@ConfigurationProperties(prefix = "bedrock")
+public class ModelCatalog {
+
+    private static final Map<ModelType, ModelProfile> DEFAULTS = Map.of(
+            ModelType.CLAUDE_3_5_SONNET, new ModelProfile(3.00, 15.00, 0.30, 3.75, 200_000, 8_192, 2, 50, 400_000, false),
+            ModelType.CLAUDE_3_HAIKU, new ModelProfile(0.25, 1.25, 0.03, 0.30, 200_000, 4_096, 1, 1_000, 2_000_000, false)
+    );
+
+    private final Map<ModelType, ModelProfile> models;
+
+    public ModelCatalog(Map<ModelType, ProfileOverride> models) {
+        Map<ModelType, ModelProfile> merged = new EnumMap<>(DEFAULTS);
+        if (models != null) {
+            models.forEach((modelType, override) -> merged.put(modelType, override.applyTo(modelType, DEFAULTS.get(modelType))));
+        }
+        this.models = Collections.unmodifiableMap(merged);
+    }
+
+    public static ModelCatalog defaults() {
+        return new ModelCatalog(null);
+    }
+
+    /**
+     * The defaults with {@code profiles} replacing whole entries.
+     */
+    public static ModelCatalog of(Map<ModelType, ModelProfile> profiles) {
+        Map<ModelType, ProfileOverride> overrides = new EnumMap<>(ModelType.class);
+        profiles.forEach((modelType, profile) -> overrides.put(modelType, ProfileOverride.of(profile)));
+        return new ModelCatalog(overrides);
+    }
+
+    public Map<ModelType, ModelProfile> models() {
+        return models;
+    }
+
+    public ModelProfile profile(ModelType modelType) {
+        return models.get(modelType);
+    }
+
+    /**
+     * All catalogued models, cheapest first.
+     */
+    public List<ModelType> byCost() {
+        return models.keySet().stream()
+                .sorted(Comparator.comparingDouble(type -> profile(type).blendedPricePerMillion()))
+                .toList();
+    }
+
+    /**
+     * The fields of a {@link ModelProfile} set under {@code bedrock.models.<MODEL_TYPE>}; {@code null}
+     * keeps the built-in value.
+     */
+    public record ProfileOverride(
+            Double inputPricePerMillion,
+            Double outputPricePerMillion,
+            Double cacheReadPricePerMillion,
+            Double cacheWritePricePerMillion,
+            Integer contextWindow,
+            Integer maxOutputTokens,
+            Integer qualityTier,
+            Long requestsPerMinute,
+            Long tokensPerMinute,
+            Boolean promptCaching
+    ) {
+        static ProfileOverride of(ModelProfile profile) {
+            return new ProfileOverride(profile.inputPricePerMillion(), profile.outputPricePerMillion(),
+                    profile.cacheReadPricePerMillion(), profile.cacheWritePricePerMillion(), profile.contextWindow(),
+                    profile.maxOutputTokens(), profile.qualityTier(), profile.requestsPerMinute(),
+                    profile.tokensPerMinute(), profile.promptCaching());
+        }
+
+        ModelProfile applyTo(ModelType modelType, ModelProfile base) {
+            FieldResolver field = new FieldResolver(modelType, base);
+            return new ModelProfile(
+                    field.price("input-price-per-million", inputPricePerMillion, ModelProfile::inputPricePerMillion),
+                    field.price("output-price-per-million", outputPricePerMillion, ModelProfile::outputPricePerMillion),
+                    field.price("cache-read-price-per-million", cacheReadPricePerMillion, ModelProfile::cacheReadPricePerMillion),
+                    field.price("cache-write-price-per-million", cacheWritePricePerMillion, ModelProfile::cacheWritePricePerMillion),
+                    (int) field.limit("context-window", contextWindow, ModelProfile::contextWindow),
+                    (int) field.limit("max-output-tokens", maxOutputTokens, ModelProfile::maxOutputTokens),
+                    (int) field.limit("quality-tier", qualityTier, ModelProfile::qualityTier),
+                    field.limit("requests-per-minute", requestsPerMinute, ModelProfile::requestsPerMinute),
+                    field.limit("tokens-per-minute", tokensPerMinute, ModelProfile::tokensPerMinute),
+                    promptCaching != null ? promptCaching
+                            : base != null && base.promptCaching());
+        }
+    }
+
+    /**
+     * Resolves one override field against the built-in profile, naming the property when the
+     * result is unusable.
+     */
+    private record FieldResolver(ModelType modelType, ModelProfile base) {
+
+        double price(String property, Double value, ToDoubleFunction<ModelProfile> builtIn) {
+            double resolved = value != null ? value : builtIn.applyAsDouble(required(property));
+            if (resolved < 0) {
+                throw invalid(property, "must not be negative, was " + resolved);
+            }
+            return resolved;
+        }
+
+        long limit(String property, Number value, ToLongFunction<ModelProfile> builtIn) {
+            long resolved = value != null ? value.longValue() : builtIn.applyAsLong(required(property));
+            if (resolved <= 0) {
+                throw invalid(property, "must be positive, was " + resolved);
+            }
+            return resolved;
+        }
+
+        private ModelProfile required(String property) {
+            if (base == null) {
+                throw invalid(property, "is required: " + modelType + " has no built-in profile");
+            }
+            return base;
+        }
+
+        private IllegalArgumentException invalid(String property, String problem) {
+            return new IllegalArgumentException("bedrock.models." + modelType + "." + property + " " + problem);
+        }
+    }
+}
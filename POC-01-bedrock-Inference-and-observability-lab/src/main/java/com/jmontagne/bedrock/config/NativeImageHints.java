@@ -0,0 +1,100 @@
+package com.jmontagne.bedrock.config;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.HttpApiV2ProxyRequest;
+import com.jmontagne.bedrock.FunctionLambdaHandler;
+import com.jmontagne.bedrock.batch.BatchJob;
+import com.jmontagne.bedrock.batch.BatchRecord;
+import com.jmontagne.bedrock.batch.BatchResult;
+import com.jmontagne.bedrock.controller.InferenceController;
+import com.jmontagne.bedrock.exception.BedrockExceptionHandler;
+import com.jmontagne.bedrock.model.ComparisonResult;
+import com.jmontagne.bedrock.model.CostReport;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.RoutedInferenceResponse;
+import com.jmontagne.bedrock.model.StreamEvent;
+import com.jmontagne.bedrock.session.SessionReply;
+import com.jmontagne.bedrock.session.SessionView;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/**
+ * GraalVM reachability metadata that Spring AOT cannot infer from bean definitions, written to
+ * {@code target/spring-aot} by {@code mvn -Pnative package}.
+ *
+ * <p>Spring already covers controller signatures and configuration properties. This adds what is
+ * reached through reflection outside the bean graph:</p>
+ * <ul>
+ *   <li>the Lambda runtime interface client, which instantiates {@link FunctionLambdaHandler} by
+ *       name and (de)serializes its {@link HttpApiV2ProxyRequest} / {@link AwsProxyResponse}
+ *       with its own Jackson;</li>
+ *   <li>JSON payloads written with a plain {@code ObjectMapper}: Lambda route responses, SSE
+ *       events, batch job state and session views;</li>
+ *   <li>AWS SDK interceptor lists loaded as classpath resources, and the Powertools / CloudWatch
+ *       EMF types that the Powertools annotations pull in.</li>
+ * </ul>
+ *
+ * <p>Netty, Caffeine and the SDK's own reflection are covered by the metadata those libraries
+ * ship and by the GraalVM reachability metadata repository enabled in the {@code native} profile.</p>
+ */
+public class NativeImageHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> JSON_TYPES = List.of(
+            HttpApiV2ProxyRequest.class,
+            AwsProxyResponse.class,
+            InferenceController.InferenceRequestBody.class,
+            InferenceController.StreamResponse.class,
+            InferenceController.HealthResponse.class,
+            InferenceController.ModelInfo.class,
+            InferenceController.CompareRequestBody.class,
+            InferenceController.CandidateBody.class,
+            BedrockExceptionHandler.ErrorResponse.class,
+            InferenceResponse.class,
+            RoutedInferenceResponse.class,
+            ComparisonResult.class,
+            CostReport.class,
+            CostReport.Spend.class,
+            StreamEvent.Token.class,
+            StreamEvent.Stop.class,
+            StreamEvent.Error.class,
+            BatchJob.class,
+            BatchRecord.class,
+            BatchResult.class,
+            SessionReply.class,
+            SessionView.class
+    );
+
+    private static final List<String> POWERTOOLS_TYPES = List.of(
+            "software.amazon.lambda.powertools.logging.Logging",
+            "software.amazon.lambda.powertools.tracing.Tracing",
+            "software.amazon.lambda.powertools.metrics.Metrics",
+            "software.amazon.cloudwatchlogs.emf.model.RootNode",
+            "software.amazon.cloudwatchlogs.emf.model.Metadata",
+            "software.amazon.cloudwatchlogs.emf.model.MetricDirective",
+            "software.amazon.cloudwatchlogs.emf.model.MetricDefinition"
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(FunctionLambdaHandler.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        BindingReflectionHintsRegistrar binding = new BindingReflectionHintsRegistrar();
+        binding.registerReflectionHints(hints.reflection(), JSON_TYPES.toArray(Class<?>[]::new));
+
+        // Only registered when present, so trimming a Powertools module does not break the build
+        for (String type : POWERTOOLS_TYPES) {
+            hints.reflection().registerTypeIfPresent(classLoader, type,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS,
+                    MemberCategory.DECLARED_FIELDS);
+        }
+
+        hints.resources()
+                .registerPattern("software/amazon/awssdk/global/handlers/execution.interceptors")
+                .registerPattern("software/amazon/awssdk/services/*/execution.interceptors");
+    }
+}
@@ -0,0 +1,42 @@
+package com.jmontagne.bedrock.config;
+
+import com.jmontagne.bedrock.model.InferenceRequest;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named, reusable system prompts, bound from {@code bedrock.personas.<name>}.
+ *
+ * <p>Persona prompts are byte-for-byte stable across requests, which is what makes them good
+ * Bedrock prompt-cache prefixes: {@code PromptCachePolicy} pre-builds their system blocks once.
+ * The built-in {@value #DEFAULT_PERSONA} persona is always registered.</p>
+ */
+@ConfigurationProperties(prefix = "bedrock")
+public record PersonaRegistry(Map<String, String> personas) {
+
+    public static final String DEFAULT_PERSONA = "jacques-montagne";
+
+    public PersonaRegistry {
+        Map<String, String> merged = new LinkedHashMap<>();
+        merged.put(DEFAULT_PERSONA, InferenceRequest.JACQUES_MONTAGNE_SYSTEM_PROMPT);
+        if (personas != null) {
+            merged.putAll(personas);
+        }
+        personas = Collections.unmodifiableMap(merged);
+    }
+
+    public static PersonaRegistry defaults() {
+        return new PersonaRegistry(null);
+    }
+
+    public String systemPrompt(String persona) {
+        String prompt = personas.get(persona);
+        if (prompt == null) {
+            throw new IllegalArgumentException("Unknown persona: " + persona);
+        }
+        return prompt;
+    }
+}
@@ -0,0 +1,75 @@
+package com.jmontagne.bedrock.controller;
+
+import com.jmontagne.bedrock.batch.BatchJob;
+import com.jmontagne.bedrock.batch.BatchJobService;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.ModelType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Bulk inference over JSONL input.
+ *
+ * POST a JSONL body (one {"recordId", "message", ...} object per line) to start a job, then
+ * poll GET /{jobId} and download GET /{jobId}/results as NDJSON. Direct-mode jobs run in the
+ * background of this process, so they need a long-running server; on Lambda the invocation
+ * freezes as soon as the 202 is returned. Bedrock-mode jobs run entirely inside Bedrock.
+ */
+@RestController
+@RequestMapping("/api/v1/batch")
+public class BatchController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final BatchJobService batchJobService;
+
+    public BatchController(BatchJobService batchJobService) {
+        this.batchJobService = batchJobService;
+    }
+
+    /**
+     * Starts a batch job. Without {@code mode}, jobs above bedrock.batch.direct-max-records go
+     * to Bedrock batch inference when it is configured, the rest run directly.
+     */
+    @PostMapping(consumes = {"application/x-ndjson", "application/jsonl", MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<BatchJob> submit(
+            @RequestBody byte[] jsonl,
+            @RequestParam(defaultValue = "CLAUDE_3_HAIKU") ModelType modelType,
+            @RequestParam(required = false) BatchJob.Mode mode,
+            @RequestHeader(value = CallerContext.API_KEY_HEADER, required = false) String apiKey) {
+
+        BatchJob job = batchJobService.submit(jsonl, modelType, mode, CallerContext.of(apiKey, "batch"));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<BatchJob> status(@PathVariable String jobId) {
+        return ResponseEntity.of(batchJobService.find(jobId));
+    }
+
+    /**
+     * Re-runs the records of a direct job that failed or never ran (e.g. after a restart).
+     */
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<BatchJob> resume(
+            @PathVariable String jobId,
+            @RequestHeader(value = CallerContext.API_KEY_HEADER, required = false) String apiKey) {
+
+        return batchJobService.resume(jobId, CallerContext.of(apiKey, "batch"))
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{jobId}/results")
+    public ResponseEntity<StreamingResponseBody> results(@PathVariable String jobId) {
+        if (batchJobService.find(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = output -> batchJobService.writeResults(jobId, output);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
@@ -1,18 +1,44 @@
 package com.jmontagne.bedrock.controller;
 
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.CandidateResult;
+import com.jmontagne.bedrock.model.ComparisonCandidate;
+import com.jmontagne.bedrock.model.ComparisonRequest;
+import com.jmontagne.bedrock.model.ComparisonResult;
+import com.jmontagne.bedrock.model.CostReport;
 import com.jmontagne.bedrock.model.InferenceParameters;
 import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.ModelProfile;
 import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import com.jmontagne.bedrock.model.RoutedInferenceResponse;
+import com.jmontagne.bedrock.model.StreamEvent;
 import com.jmontagne.bedrock.service.InferenceService;
+import com.jmontagne.bedrock.service.ModelComparator;
+import com.jmontagne.bedrock.service.ResponseBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * REST controller for Bedrock inference operations.
@@ -20,6 +46,17 @@ import java.util.List;
  * Uses blocking calls (.block()) for Lambda servlet adapter compatibility.
  * The aws-serverless-java-container-springboot3 library doesn't properly
  * handle reactive types (Mono/Flux), so we convert to synchronous responses.
+ *
+ * The text/event-stream variants of /stream/{modelType} are the exception: they
+ * forward each token through an SseEmitter as soon as Bedrock produces it, for
+ * standalone servers. On Lambda the same events are served by SseStreamLambdaHandler.
+ *
+ * When block(TIMEOUT) expires or an SSE client disconnects, the subscription is
+ * disposed and BedrockStreamingClient cancels the Bedrock call. The optional
+ * maxOutputChars / maxWallTimeMs budget ends generation early the same way.
+ *
+ * Every stream carries a CallerContext (X-Api-Key header + endpoint) in its Reactor
+ * context for per-caller quotas and cost attribution (GET /costs).
  */
 @RestController
 @RequestMapping("/api/v1/inference")
@@ -29,80 +66,113 @@ public class InferenceController {
     private static final Duration TIMEOUT = Duration.ofSeconds(60);
 
     private final InferenceService inferenceService;
+    private final ModelCatalog modelCatalog;
+    private final PersonaRegistry personas;
+    private final ModelComparator comparator;
+    private final CostTracker costTracker;
 
-    public InferenceController(InferenceService inferenceService) {
+    public InferenceController(InferenceService inferenceService, ModelCatalog modelCatalog, PersonaRegistry personas,
+                               ModelComparator comparator, CostTracker costTracker) {
         this.inferenceService = inferenceService;
+        this.modelCatalog = modelCatalog;
+        this.personas = personas;
+        this.comparator = comparator;
+        this.costTracker = costTracker;
     }
 
     /**
      * Streaming inference endpoint - collects all chunks and returns complete response.
      * Note: True SSE streaming is not supported through API Gateway + Lambda without
      * Lambda Response Streaming. This endpoint buffers the full response.
+     *
+     * The body is a {@link StreamResponse}, written by {@link StreamResponseWriter} directly
+     * from the pre-sized {@link ResponseBuffer} the chunks were appended to.
      */
     @GetMapping(value = "/stream/{modelType}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<StreamResponse> streamInference(
+    public ResponseEntity<byte[]> streamInference(
             @PathVariable ModelType modelType,
             @RequestParam String message,
             @RequestParam(defaultValue = "0.7") Double temperature,
             @RequestParam(defaultValue = "0.9") Double topP,
-            @RequestParam(defaultValue = "2048") Integer maxTokens
+            @RequestParam(defaultValue = "2048") Integer maxTokens,
+            @RequestParam(required = false) Integer maxOutputChars,
+            @RequestParam(required = false) Long maxWallTimeMs
     ) {
         log.info("Streaming inference request - Model: {}, Message: {}",
                 modelType.getDisplayName(),
                 message.substring(0, Math.min(50, message.length())));
 
-        InferenceParameters parameters = new InferenceParameters(temperature, topP, maxTokens, List.of());
+        InferenceParameters parameters = new InferenceParameters(temperature, topP, maxTokens, List.of(),
+                OutputBudget.of(maxOutputChars, maxWallTimeMs));
 
-        List<String> chunks = inferenceService.streamWithJacquesMontagne(message, modelType, parameters)
-                .collectList()
+        ResponseBuffer buffer = inferenceService.bufferWithJacquesMontagne(message, modelType, parameters)
+                .contextWrite(callerContext("stream"))
                 .block(TIMEOUT);
 
-        String fullResponse = chunks != null ? String.join("", chunks) : "";
-
-        return ResponseEntity.ok(new StreamResponse(
-                fullResponse,
-                modelType.name(),
-                modelType.getDisplayName(),
-                chunks != null ? chunks.size() : 0
-        ));
+        return streamResponse(buffer, modelType);
     }
 
     /**
      * Streaming inference via POST with custom system prompt support.
      */
     @PostMapping(value = "/stream/{modelType}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<StreamResponse> streamInferencePost(
+    public ResponseEntity<byte[]> streamInferencePost(
             @PathVariable ModelType modelType,
             @RequestBody InferenceRequestBody body
     ) {
         log.info("Streaming inference POST request - Model: {}", modelType.getDisplayName());
 
-        InferenceParameters parameters = new InferenceParameters(
-                body.temperature() != null ? body.temperature() : 0.7,
-                body.topP() != null ? body.topP() : 0.9,
-                body.maxTokens() != null ? body.maxTokens() : 2048,
-                body.stopSequences() != null ? body.stopSequences() : List.of()
-        );
-
-        List<String> chunks;
-        if (body.systemPrompt() != null) {
-            chunks = inferenceService.streamCustom(body.systemPrompt(), body.message(), modelType, parameters)
-                    .collectList()
-                    .block(TIMEOUT);
-        } else {
-            chunks = inferenceService.streamWithJacquesMontagne(body.message(), modelType, parameters)
-                    .collectList()
-                    .block(TIMEOUT);
-        }
+        InferenceParameters parameters = body.toParameters();
+        String systemPrompt = body.resolveSystemPrompt(personas);
+
+        Mono<ResponseBuffer> response = systemPrompt != null
+                ? inferenceService.bufferCustom(systemPrompt, body.message(), modelType, parameters)
+                : inferenceService.bufferWithJacquesMontagne(body.message(), modelType, parameters);
+        ResponseBuffer buffer = response
+                .contextWrite(callerContext("stream"))
+                .block(TIMEOUT);
 
-        String fullResponse = chunks != null ? String.join("", chunks) : "";
+        return streamResponse(buffer, modelType);
+    }
 
-        return ResponseEntity.ok(new StreamResponse(
-                fullResponse,
-                modelType.name(),
-                modelType.getDisplayName(),
-                chunks != null ? chunks.size() : 0
-        ));
+    /**
+     * True SSE streaming - one "token" event per content delta, then a final "metrics" event.
+     * Selected over the buffered handler by sending {@code Accept: text/event-stream}.
+     */
+    @GetMapping(value = "/stream/{modelType}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInferenceSse(
+            @PathVariable ModelType modelType,
+            @RequestParam String message,
+            @RequestParam(defaultValue = "0.7") Double temperature,
+            @RequestParam(defaultValue = "0.9") Double topP,
+            @RequestParam(defaultValue = "2048") Integer maxTokens,
+            @RequestParam(required = false) Integer maxOutputChars,
+            @RequestParam(required = false) Long maxWallTimeMs
+    ) {
+        log.info("SSE inference request - Model: {}", modelType.getDisplayName());
+
+        InferenceParameters parameters = new InferenceParameters(temperature, topP, maxTokens, List.of(),
+                OutputBudget.of(maxOutputChars, maxWallTimeMs));
+        return toSseEmitter(inferenceService.streamEventsWithJacquesMontagne(message, modelType, parameters));
+    }
+
+    /**
+     * True SSE streaming via POST with custom system prompt support.
+     */
+    @PostMapping(value = "/stream/{modelType}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInferencePostSse(
+            @PathVariable ModelType modelType,
+            @RequestBody InferenceRequestBody body
+    ) {
+        log.info("SSE inference POST request - Model: {}", modelType.getDisplayName());
+
+        InferenceParameters parameters = body.toParameters();
+        String systemPrompt = body.resolveSystemPrompt(personas);
+        Flux<StreamEvent> events = systemPrompt != null
+                ? inferenceService.streamCustomEvents(systemPrompt, body.message(), modelType, parameters)
+                : inferenceService.streamEventsWithJacquesMontagne(body.message(), modelType, parameters);
+
+        return toSseEmitter(events);
     }
 
     /**
@@ -118,26 +188,126 @@ public class InferenceController {
 
         InferenceParameters parameters = InferenceParameters.withTemperature(temperature);
         InferenceResponse response = inferenceService.inferWithJacquesMontagne(message, modelType, parameters)
+                .contextWrite(callerContext("inference"))
                 .block(TIMEOUT);
 
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Compare responses from multiple models.
+     * Auto-routed inference - the service picks the model; the response says which and why.
      */
-    @GetMapping("/compare")
-    public ResponseEntity<String> compareModels(
+    @GetMapping(value = "/auto", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RoutedInferenceResponse> autoInference(
             @RequestParam String message,
-            @RequestParam(defaultValue = "0.0") Double temperature
+            @RequestParam(defaultValue = "0.7") Double temperature,
+            @RequestParam(defaultValue = "2048") Integer maxTokens
     ) {
-        log.info("Model comparison request");
+        log.info("Auto-routed inference request");
 
-        InferenceParameters parameters = InferenceParameters.withTemperature(temperature);
-        String result = inferenceService.compareModels(message, parameters)
+        InferenceParameters parameters = InferenceParameters.withTemperature(temperature).withMaxTokens(maxTokens);
+        RoutedInferenceResponse response = inferenceService.inferRouted(null, message, parameters)
+                .contextWrite(callerContext("auto"))
                 .block(TIMEOUT);
 
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Auto-routed inference via POST with custom system prompt support.
+     */
+    @PostMapping(value = "/auto", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RoutedInferenceResponse> autoInferencePost(@RequestBody InferenceRequestBody body) {
+        log.info("Auto-routed inference POST request");
+
+        RoutedInferenceResponse response = inferenceService
+                .inferRouted(body.resolveSystemPrompt(personas), body.message(), body.toParameters())
+                .contextWrite(callerContext("auto"))
+                .block(TIMEOUT);
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Compare models side by side. {@code models} defaults to every {@link ModelType}; with
+     * {@code runs > 1} each model is called that many times after {@code warmup} discarded calls
+     * and the result carries latency distributions.
+     */
+    @GetMapping(value = "/compare", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ComparisonResult> compareModels(
+            @RequestParam String message,
+            @RequestParam(defaultValue = "0.0") Double temperature,
+            @RequestParam(defaultValue = "2048") Integer maxTokens,
+            @RequestParam(required = false) List<ModelType> models,
+            @RequestParam(defaultValue = "1") Integer runs,
+            @RequestParam(defaultValue = "0") Integer warmup,
+            @RequestParam(required = false) Long timeoutMs
+    ) {
+        log.info("Model comparison request");
+
+        CompareRequestBody body = new CompareRequestBody(message, null, null, models, null,
+                temperature, null, maxTokens, runs, warmup, timeoutMs);
+        return ResponseEntity.ok(compare(body.toRequest(personas)));
+    }
+
+    /**
+     * Compare any set of models and parameter variants, e.g. one model at two temperatures.
+     */
+    @PostMapping(value = "/compare", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ComparisonResult> compareModelsPost(@RequestBody CompareRequestBody body) {
+        log.info("Model comparison POST request");
+
+        return ResponseEntity.ok(compare(body.toRequest(personas)));
+    }
+
+    /**
+     * Streamed comparison: one "result" event per candidate as soon as it has finished all of
+     * its runs, then a "summary" event with the whole {@link ComparisonResult}.
+     */
+    @PostMapping(value = "/compare", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter compareModelsSse(@RequestBody CompareRequestBody body) {
+        log.info("Streamed model comparison request");
+
+        ComparisonRequest request = body.toRequest(personas);
+        SseEmitter emitter = openEmitter(comparator.maxDuration(request).plus(TIMEOUT));
+        List<CandidateResult> results = new CopyOnWriteArrayList<>();
+
+        Disposable subscription = comparator.compareEach(request)
+                .contextWrite(callerContext("compare-sse"))
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(
+                        result -> {
+                            results.add(result);
+                            send(emitter, "result", result);
+                        },
+                        error -> {
+                            log.warn("Streamed comparison failed: {}", error.getMessage());
+                            StreamEvent.Error event = StreamEvent.Error.from(error);
+                            try {
+                                send(emitter, event.eventName(), event.payload());
+                                emitter.complete();
+                            } catch (UncheckedIOException e) {
+                                emitter.completeWithError(error);
+                            }
+                        },
+                        () -> {
+                            send(emitter, "summary", ComparisonResult.of(request, results));
+                            emitter.complete();
+                        }
+                );
+
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
+    /**
+     * List registered personas usable as {@code persona} in POST bodies.
+     */
+    @GetMapping(value = "/personas", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<String> getPersonas() {
+        return List.copyOf(personas.personas().keySet());
     }
 
     /**
@@ -151,11 +321,20 @@ public class InferenceController {
                         type.name(),
                         type.getModelId(),
                         type.getDisplayName(),
-                        type.getProvider()
+                        type.getProvider(),
+                        modelCatalog.profile(type)
                 ))
                 .toList();
     }
 
+    /**
+     * Spend since startup by model, endpoint and caller, and the recent spend rate.
+     */
+    @GetMapping(value = "/costs", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CostReport costs() {
+        return costTracker.report();
+    }
+
     /**
      * Health check endpoint.
      */
@@ -165,27 +344,204 @@ public class InferenceController {
         return new HealthResponse("OK", "bedrock-inference-lab");
     }
 
+    /**
+     * Sends events from a background thread so the Netty event loop that delivers
+     * Bedrock chunks never blocks on a slow client socket. A failed write (client gone)
+     * or an emitter timeout disposes the subscription.
+     */
+    private SseEmitter toSseEmitter(Flux<StreamEvent> events) {
+        SseEmitter emitter = openEmitter(TIMEOUT);
+
+        Disposable subscription = events
+                .contextWrite(callerContext("stream-sse"))
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(
+                        event -> send(emitter, event),
+                        error -> {
+                            log.warn("SSE stream failed: {}", error.getMessage());
+                            try {
+                                send(emitter, StreamEvent.Error.from(error));
+                                emitter.complete();
+                            } catch (UncheckedIOException e) {
+                                emitter.completeWithError(error);
+                            }
+                        },
+                        emitter::complete
+                );
+
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
+    /**
+     * Spring commits an SSE response on its first send, so until the first token the client
+     * would not even get the headers. An opening comment line, which SSE clients ignore, sends
+     * them as soon as the handler returns.
+     */
+    private static SseEmitter openEmitter(Duration timeout) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        try {
+            emitter.send(SseEmitter.event().comment("open"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return emitter;
+    }
+
+    private static ResponseEntity<byte[]> streamResponse(ResponseBuffer buffer, ModelType modelType) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(StreamResponseWriter.toBytes(buffer != null ? buffer : new ResponseBuffer(0), modelType));
+    }
+
+    /**
+     * Captured on the request thread, before the pipeline hops to Netty or boundedElastic threads.
+     */
+    private static Context callerContext(String endpoint) {
+        String apiKey = RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest().getHeader(CallerContext.API_KEY_HEADER)
+                : null;
+        return CallerContext.of(apiKey, endpoint).asContext();
+    }
+
+    /**
+     * Waits at most as long as the slowest candidate's runs can take, plus the usual timeout.
+     */
+    private ComparisonResult compare(ComparisonRequest request) {
+        return comparator.compare(request)
+                .contextWrite(callerContext("compare"))
+                .block(comparator.maxDuration(request).plus(TIMEOUT));
+    }
+
+    private static void send(SseEmitter emitter, StreamEvent event) {
+        send(emitter, event.eventName(), event.payload());
+    }
+
+    private static void send(SseEmitter emitter, String name, Object payload) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(name)
+                    .data(payload, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public record HealthResponse(
             String status,
             String service
     ) {}
 
+    /**
+     * {@code persona} names a {@link PersonaRegistry} system prompt; an explicit
+     * {@code systemPrompt} takes precedence. Neither means the default persona.
+     */
     public record InferenceRequestBody(
             String message,
             String systemPrompt,
+            String persona,
             Double temperature,
             Double topP,
             Integer maxTokens,
-            List<String> stopSequences
-    ) {}
+            List<String> stopSequences,
+            Integer maxOutputChars,
+            Long maxWallTimeMs
+    ) {
+        public InferenceParameters toParameters() {
+            return new InferenceParameters(
+                    temperature != null ? temperature : 0.7,
+                    topP != null ? topP : 0.9,
+                    maxTokens != null ? maxTokens : 2048,
+                    stopSequences != null ? stopSequences : List.of(),
+                    OutputBudget.of(maxOutputChars, maxWallTimeMs)
+            );
+        }
+
+        public String resolveSystemPrompt(PersonaRegistry registry) {
+            if (systemPrompt != null) {
+                return systemPrompt;
+            }
+            return persona != null ? registry.systemPrompt(persona) : null;
+        }
+    }
+
+    /**
+     * Body of the {@code /compare} endpoints. Either list {@code candidates} (model plus its own
+     * parameters) or just {@code models}, which all get the shared parameters; neither means
+     * every {@link ModelType}. Shared parameters also fill in what a candidate leaves out.
+     * Temperature defaults to 0 so runs compare the models rather than sampling noise.
+     */
+    public record CompareRequestBody(
+            String message,
+            String systemPrompt,
+            String persona,
+            List<ModelType> models,
+            List<CandidateBody> candidates,
+            Double temperature,
+            Double topP,
+            Integer maxTokens,
+            Integer runs,
+            Integer warmupRuns,
+            Long timeoutMs
+    ) {
+        public ComparisonRequest toRequest(PersonaRegistry registry) {
+            InferenceParameters shared = new InferenceParameters(
+                    temperature != null ? temperature : 0.0,
+                    topP != null ? topP : 0.9,
+                    maxTokens != null ? maxTokens : 2048,
+                    List.of());
+
+            List<ComparisonCandidate> resolved;
+            if (candidates != null && !candidates.isEmpty()) {
+                resolved = candidates.stream().map(candidate -> candidate.toCandidate(shared)).toList();
+            } else {
+                List<ModelType> selected = models != null && !models.isEmpty() ? models : List.of(ModelType.values());
+                resolved = selected.stream().map(model -> ComparisonCandidate.of(model, shared)).toList();
+            }
+
+            String resolvedSystemPrompt = systemPrompt != null
+                    ? systemPrompt
+                    : persona != null ? registry.systemPrompt(persona) : null;
+            return new ComparisonRequest(resolvedSystemPrompt, message, resolved,
+                    runs != null ? runs : 1,
+                    warmupRuns != null ? warmupRuns : 0,
+                    timeoutMs != null ? Duration.ofMillis(timeoutMs) : null);
+        }
+    }
+
+    public record CandidateBody(
+            String label,
+            ModelType model,
+            Double temperature,
+            Double topP,
+            Integer maxTokens,
+            Long timeoutMs
+    ) {
+        ComparisonCandidate toCandidate(InferenceParameters shared) {
+            InferenceParameters parameters = new InferenceParameters(
+                    temperature != null ? temperature : shared.temperature(),
+                    topP != null ? topP : shared.topP(),
+                    maxTokens != null ? maxTokens : shared.maxTokens(),
+                    List.of());
+            return new ComparisonCandidate(label, model, parameters,
+                    timeoutMs != null ? Duration.ofMillis(timeoutMs) : null);
+        }
+    }
 
     public record ModelInfo(
             String enumName,
             String modelId,
             String displayName,
-            String provider
+            String provider,
+            ModelProfile profile
     ) {}
 
+    /**
+     * Body of the buffered {@code /stream/{modelType}} endpoints. Written field by field by
+     * {@link StreamResponseWriter}; kept as the documented shape of that JSON.
+     */
     public record StreamResponse(
             String content,
             String model,
@@ -0,0 +1,80 @@
+package com.jmontagne.bedrock.controller;
+
+import com.jmontagne.bedrock.controller.InferenceController.InferenceRequestBody;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.session.SessionReply;
+import com.jmontagne.bedrock.session.SessionService;
+import com.jmontagne.bedrock.session.SessionView;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+/**
+ * Multi-turn conversations with server-side history.
+ *
+ * Create a session, then POST only the new message for each turn: the service adds the
+ * budgeted history itself. Like InferenceController, turns block until the reply is complete.
+ */
+@RestController
+@RequestMapping("/api/v1/sessions")
+public class SessionController {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final SessionService sessionService;
+
+    public SessionController(SessionService sessionService) {
+        this.sessionService = sessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<SessionView> create(@RequestBody(required = false) CreateSessionBody body) {
+        CreateSessionBody request = body != null ? body : new CreateSessionBody(null, null, null);
+        SessionView session = sessionService.create(
+                request.modelType() != null ? request.modelType() : ModelType.CLAUDE_3_HAIKU,
+                request.persona(),
+                request.systemPrompt());
+        return ResponseEntity.status(HttpStatus.CREATED).body(session);
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<SessionView> get(@PathVariable String sessionId) {
+        return ResponseEntity.of(sessionService.find(sessionId));
+    }
+
+    /**
+     * One turn: {"message": "..."} plus the usual optional sampling parameters.
+     */
+    @PostMapping("/{sessionId}/messages")
+    public ResponseEntity<SessionReply> send(
+            @PathVariable String sessionId,
+            @RequestBody InferenceRequestBody body,
+            @RequestHeader(value = CallerContext.API_KEY_HEADER, required = false) String apiKey) {
+
+        if (body.message() == null || body.message().isBlank()) {
+            throw new IllegalArgumentException("Required field 'message' is missing");
+        }
+
+        SessionReply reply = sessionService.send(sessionId, body.message(), body.toParameters())
+                .contextWrite(CallerContext.of(apiKey, "session").asContext())
+                .block(TIMEOUT);
+
+        return reply != null ? ResponseEntity.ok(reply) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> delete(@PathVariable String sessionId) {
+        return sessionService.delete(sessionId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    public record CreateSessionBody(
+            ModelType modelType,
+            String persona,
+            String systemPrompt
+    ) {}
+}
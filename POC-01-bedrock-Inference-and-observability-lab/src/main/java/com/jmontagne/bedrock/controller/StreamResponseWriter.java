@@ -0,0 +1,71 @@
+package com.jmontagne.bedrock.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.service.ResponseBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the {@link InferenceController.StreamResponse} JSON body straight from a
+ * {@link ResponseBuffer} with Jackson's streaming generator.
+ *
+ * <p>Going through {@code ObjectMapper} would first need the content as a {@code String} and
+ * then let the generator grow its output from a small default buffer. Here the content is
+ * escaped from the buffer's {@code char[]} into an output sized from
+ * {@link ResponseBuffer#jsonLength}, so it never grows, and the field names and order are the
+ * same as the record's.</p>
+ */
+public final class StreamResponseWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /** Room for the field names, model names and chunk count around the content. */
+    private static final int ENVELOPE_SIZE = 128;
+
+    private StreamResponseWriter() {
+    }
+
+    /**
+     * UTF-8 bytes, for servlet responses.
+     */
+    public static byte[] toBytes(ResponseBuffer content, ModelType modelType) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.jsonLength() + ENVELOPE_SIZE);
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            write(generator, content, modelType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A string, for the Lambda proxy response body.
+     */
+    public static String toJson(ResponseBuffer content, ModelType modelType) {
+        // At least one byte per written char, so the UTF-8 length is enough room
+        CharArrayWriter out = new CharArrayWriter(content.jsonLength() + ENVELOPE_SIZE);
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            write(generator, content, modelType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static void write(JsonGenerator generator, ResponseBuffer content, ModelType requested) throws IOException {
+        // A fallback answer is labelled with the model that produced it
+        ModelType modelType = content.answeredBy() != null ? content.answeredBy() : requested;
+        generator.writeStartObject();
+        generator.writeFieldName("content");
+        content.writeJsonString(generator);
+        generator.writeStringField("model", modelType.name());
+        generator.writeStringField("modelDisplayName", modelType.getDisplayName());
+        generator.writeNumberField("chunksReceived", content.chunks());
+        generator.writeEndObject();
+    }
+}
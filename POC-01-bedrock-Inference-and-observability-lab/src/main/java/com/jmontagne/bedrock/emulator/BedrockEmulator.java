@@ -0,0 +1,130 @@
+package com.jmontagne.bedrock.emulator;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the Bedrock Runtime Converse and ConverseStream APIs, on Netty.
+ *
+ * <p>Speaks the same wire protocol as the real service: REST JSON requests on
+ * {@code /model/{modelId}/converse[-stream]}, AWS event stream frames
+ * ({@link com.jmontagne.bedrock.priming.EventStreamEncoder}) for streaming responses, and modeled
+ * errors through the {@code x-amzn-ErrorType} header. The unmodified SDK client reaches it through
+ * {@code bedrock.client.endpoint-override}, so the whole lab (client, Netty pool, quotas,
+ * limiter, cache, controllers) runs against it. Latency, answer length and failures come from
+ * {@link LatencyProfile}s.</p>
+ *
+ * <p>Runs in-process with the {@code emulator} Spring profile, or standalone:</p>
+ * <pre>
+ * java -cp target/bedrock-inference-lab-1.0.0-SNAPSHOT.jar com.jmontagne.bedrock.emulator.BedrockEmulator \
+ *     --port=8089 --profile.ttft-p50=400ms --profile.ttft-p99=1500ms --profile.tokens-per-second=80
+ * </pre>
+ * Arguments are {@code bedrock.emulator.*} properties without the prefix.
+ */
+public final class BedrockEmulator implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BedrockEmulator.class);
+
+    /** Small enough that a client that stops reading pauses its stream within a few deltas. */
+    private static final WriteBufferWaterMark WATER_MARK = new WriteBufferWaterMark(32 * 1024, 64 * 1024);
+    private static final int MAX_REQUEST_BYTES = 10 * 1024 * 1024;
+
+    private final EventLoopGroup group;
+    private final Channel server;
+    private final EmulatorStats.Counters counters;
+
+    private BedrockEmulator(EventLoopGroup group, Channel server, EmulatorStats.Counters counters) {
+        this.group = group;
+        this.server = server;
+        this.counters = counters;
+    }
+
+    public static BedrockEmulator start(EmulatorSettings settings) throws InterruptedException {
+        Random random = settings.seed() != null ? new Random(settings.seed()) : new Random();
+        EmulatorStats.Counters counters = new EmulatorStats.Counters();
+        EventLoopGroup group = new NioEventLoopGroup();
+        try {
+            Channel server = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, WATER_MARK)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel channel) {
+                            channel.pipeline()
+                                    .addLast(new HttpServerCodec())
+                                    .addLast(new HttpObjectAggregator(MAX_REQUEST_BYTES))
+                                    .addLast(new EmulatorHandler(settings, random, counters));
+                        }
+                    })
+                    .bind(settings.host(), settings.port())
+                    .sync()
+                    .channel();
+            BedrockEmulator emulator = new BedrockEmulator(group, server, counters);
+            log.info("Bedrock emulator listening on {}", emulator.endpoint());
+            return emulator;
+        } catch (InterruptedException | RuntimeException e) {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs until killed; see the class comment for arguments.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("bedrock.emulator.port", "8089");
+        for (String arg : args) {
+            String property = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = property.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            properties.put("bedrock.emulator." + property.substring(0, separator), property.substring(separator + 1));
+        }
+        EmulatorSettings settings = new Binder(new MapConfigurationPropertySource(properties))
+                .bind("bedrock.emulator", EmulatorSettings.class)
+                .orElseGet(EmulatorSettings::defaults);
+
+        BedrockEmulator emulator = start(settings);
+        System.out.println("Bedrock emulator listening on " + emulator.endpoint());
+        emulator.server.closeFuture().sync();
+    }
+
+    public URI endpoint() {
+        InetSocketAddress address = (InetSocketAddress) server.localAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    public EmulatorStats stats() {
+        return counters.snapshot();
+    }
+
+    @Override
+    public void close() {
+        server.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+}
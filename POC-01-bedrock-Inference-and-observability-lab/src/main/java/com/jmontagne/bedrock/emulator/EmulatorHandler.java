@@ -0,0 +1,327 @@
+package com.jmontagne.bedrock.emulator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.priming.EventStreamEncoder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.random.RandomGenerator;
+
+/**
+ * One per connection. Serves {@code POST /model/{modelId}/converse-stream} as an AWS event stream
+ * and {@code POST /model/{modelId}/converse} as a single JSON document, both paced by the model's
+ * {@link LatencyProfile}, plus {@code GET /emulator/stats}.
+ *
+ * <p>All timing runs on the connection's event loop with {@code schedule}, so thousands of
+ * concurrent streams need no extra threads. The SDK's HTTP/1.1 connections carry one call at a
+ * time, so there is at most one {@link Generation} per handler.</p>
+ */
+final class EmulatorHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(EmulatorHandler.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern OPERATION = Pattern.compile("^/model/([^/]+)/(converse|converse-stream)$");
+    private static final String EVENT_STREAM = "application/vnd.amazon.eventstream";
+    private static final String JSON = "application/json";
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /** One token each; ASCII without quotes or backslashes, so deltas need no JSON escaping. */
+    private static final List<String> TOKENS = List.of(
+            "Le ", "se", "cret ", "d'une ", "ome", "lette ", "est ", "le ", "beu", "rre ", "noi", "sette, ",
+            "un ", "feu ", "vif ", "et ", "la ", "pa", "tience. ", "Bat", "tez ", "les ", "oeufs ", "sans ",
+            "ex", "ces. ");
+
+    private final EmulatorSettings settings;
+    private final RandomGenerator random;
+    private final EmulatorStats.Counters counters;
+
+    private Generation current;
+
+    EmulatorHandler(EmulatorSettings settings, RandomGenerator random, EmulatorStats.Counters counters) {
+        this.settings = settings;
+        this.random = random;
+        this.counters = counters;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        String path = new QueryStringDecoder(request.uri()).rawPath();
+
+        if (request.method().equals(HttpMethod.GET) && "/emulator/stats".equals(path)) {
+            respond(ctx, HttpResponseStatus.OK, null, json(counters.snapshot()), keepAlive);
+            return;
+        }
+
+        Matcher operation = OPERATION.matcher(path);
+        if (!request.method().equals(HttpMethod.POST) || !operation.matches()) {
+            error(ctx, HttpResponseStatus.NOT_FOUND, "UnknownOperationException",
+                    "No operation for " + request.method() + " " + path, keepAlive);
+            return;
+        }
+        counters.requests.increment();
+
+        String modelId = QueryStringDecoder.decodeComponent(operation.group(1));
+        boolean streaming = "converse-stream".equals(operation.group(2));
+        LatencyProfile profile = settings.profileFor(modelId);
+        String body = request.content().toString(StandardCharsets.UTF_8);
+
+        int maxTokens;
+        try {
+            maxTokens = MAPPER.readTree(body).path("inferenceConfig").path("maxTokens").asInt(Integer.MAX_VALUE);
+        } catch (JsonProcessingException e) {
+            error(ctx, HttpResponseStatus.BAD_REQUEST, "ValidationException", "Malformed request body", keepAlive);
+            return;
+        }
+
+        if (random.nextDouble() < profile.throttleRate() || !counters.tryAcquire(settings.maxConcurrentStreams())) {
+            counters.throttled.increment();
+            error(ctx, HttpResponseStatus.TOO_MANY_REQUESTS, "ThrottlingException",
+                    "Too many requests, please wait before trying again.", keepAlive);
+            return;
+        }
+        if (random.nextDouble() < profile.errorRate()) {
+            counters.release();
+            counters.failed.increment();
+            error(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "InternalServerException",
+                    "Injected internal server error", keepAlive);
+            return;
+        }
+
+        int sampled = profile.sampleOutputTokens(random);
+        current = new Generation(ctx, profile, Math.max(1, Math.min(sampled, maxTokens)), sampled > maxTokens,
+                Math.max(1, body.length() / CHARS_PER_TOKEN), keepAlive);
+        if (streaming) {
+            current.startStream(random.nextDouble() < profile.midStreamErrorRate());
+        } else {
+            current.startConverse();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable() && current != null && current.waitingForWritability) {
+            current.waitingForWritability = false;
+            ctx.executor().execute(current::emitNext);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (current != null) {
+            current.cancel();
+        }
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("Emulator connection failed: {}", cause.getMessage());
+        ctx.close();
+    }
+
+    /**
+     * One Converse or ConverseStream call: holds a stream slot from start to finish or cancel.
+     */
+    private final class Generation {
+        private final ChannelHandlerContext ctx;
+        private final LatencyProfile profile;
+        private final int outputTokens;
+        private final boolean truncated;
+        private final int inputTokens;
+        private final boolean keepAlive;
+        private final long startNanos = System.nanoTime();
+
+        private int emitted;
+        private int failAfter = -1;
+        private boolean finished;
+        private boolean waitingForWritability;
+        private ScheduledFuture<?> next;
+
+        Generation(ChannelHandlerContext ctx, LatencyProfile profile, int outputTokens, boolean truncated,
+                   int inputTokens, boolean keepAlive) {
+            this.ctx = ctx;
+            this.profile = profile;
+            this.outputTokens = outputTokens;
+            this.truncated = truncated;
+            this.inputTokens = inputTokens;
+            this.keepAlive = keepAlive;
+        }
+
+        void startStream(boolean failMidStream) {
+            if (failMidStream) {
+                failAfter = random.nextInt(outputTokens);
+            }
+            HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            head.headers().set(HttpHeaderNames.CONTENT_TYPE, EVENT_STREAM);
+            head.headers().set("x-amzn-RequestId", UUID.randomUUID().toString());
+            HttpUtil.setTransferEncodingChunked(head, true);
+            HttpUtil.setKeepAlive(head, keepAlive);
+            ctx.write(head);
+            write(EventStreamEncoder.event("messageStart", "{\"role\":\"assistant\"}"));
+            next = ctx.executor().schedule(this::emitNext, profile.sampleTtftNanos(random), TimeUnit.NANOSECONDS);
+        }
+
+        void startConverse() {
+            long deltas = (outputTokens + profile.tokensPerDelta() - 1) / profile.tokensPerDelta();
+            long delay = profile.sampleTtftNanos(random) + Math.max(0, deltas - 1) * profile.deltaIntervalNanos();
+            next = ctx.executor().schedule(this::completeConverse, delay, TimeUnit.NANOSECONDS);
+        }
+
+        void emitNext() {
+            if (finished || !ctx.channel().isActive()) {
+                return;
+            }
+            if (!ctx.channel().isWritable()) {
+                // Client is not reading: pause instead of queueing frames in memory
+                waitingForWritability = true;
+                counters.backpressureStalls.increment();
+                return;
+            }
+            if (failAfter >= 0 && emitted >= failAfter) {
+                write(EventStreamEncoder.exception("modelStreamErrorException", "Injected mid-stream failure"));
+                counters.midStreamFailures.increment();
+                finish();
+                return;
+            }
+
+            int count = Math.min(profile.tokensPerDelta(), outputTokens - emitted);
+            write(EventStreamEncoder.event("contentBlockDelta",
+                    "{\"contentBlockIndex\":0,\"delta\":{\"text\":\"" + text(count) + "\"}}"));
+            emitted += count;
+            counters.outputTokens.add(count);
+
+            if (emitted < outputTokens) {
+                next = ctx.executor().schedule(this::emitNext, profile.deltaIntervalNanos(), TimeUnit.NANOSECONDS);
+                return;
+            }
+            write(EventStreamEncoder.event("contentBlockStop", "{\"contentBlockIndex\":0}"));
+            write(EventStreamEncoder.event("messageStop", "{\"stopReason\":\"" + stopReason() + "\"}"));
+            write(EventStreamEncoder.event("metadata", "{\"usage\":" + usage() + ",\"metrics\":{\"latencyMs\":"
+                    + elapsedMillis() + "}}"));
+            counters.completed.increment();
+            finish();
+        }
+
+        void completeConverse() {
+            if (finished || !ctx.channel().isActive()) {
+                return;
+            }
+            counters.outputTokens.add(outputTokens);
+            counters.completed.increment();
+            String body = "{\"output\":{\"message\":{\"role\":\"assistant\",\"content\":[{\"text\":\""
+                    + text(outputTokens) + "\"}]}},\"stopReason\":\"" + stopReason() + "\",\"usage\":" + usage()
+                    + ",\"metrics\":{\"latencyMs\":" + elapsedMillis() + "}}";
+            finished = true;
+            counters.release();
+            current = null;
+            respond(ctx, HttpResponseStatus.OK, null, body.getBytes(StandardCharsets.UTF_8), keepAlive);
+        }
+
+        void cancel() {
+            if (!finished) {
+                finished = true;
+                if (next != null) {
+                    next.cancel(false);
+                }
+                counters.cancelled.increment();
+                counters.release();
+            }
+            current = null;
+        }
+
+        private void finish() {
+            finished = true;
+            counters.release();
+            current = null;
+            ChannelFuture lastWrite = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            if (!keepAlive) {
+                lastWrite.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        private void write(byte[] frame) {
+            ctx.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(frame)));
+        }
+
+        private String text(int tokens) {
+            StringBuilder text = new StringBuilder(tokens * CHARS_PER_TOKEN);
+            for (int i = 0; i < tokens; i++) {
+                text.append(TOKENS.get(random.nextInt(TOKENS.size())));
+            }
+            return text.toString();
+        }
+
+        private String stopReason() {
+            return truncated ? "max_tokens" : "end_turn";
+        }
+
+        private String usage() {
+            return "{\"inputTokens\":" + inputTokens + ",\"outputTokens\":" + outputTokens
+                    + ",\"totalTokens\":" + (inputTokens + outputTokens) + "}";
+        }
+
+        private long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+    private static void error(ChannelHandlerContext ctx, HttpResponseStatus status, String errorType, String message,
+                              boolean keepAlive) {
+        byte[] body = ("{\"message\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        respond(ctx, status, errorType, body, keepAlive);
+    }
+
+    private static void respond(ChannelHandlerContext ctx, HttpResponseStatus status, String errorType, byte[] body,
+                                boolean keepAlive) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.wrappedBuffer(body));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, JSON);
+        response.headers().set("x-amzn-RequestId", UUID.randomUUID().toString());
+        if (errorType != null) {
+            response.headers().set("x-amzn-ErrorType", errorType);
+        }
+        HttpUtil.setContentLength(response, body.length);
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture write = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            write.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static byte[] json(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.jmontagne.bedrock.emulator;
+
+import com.jmontagne.bedrock.model.ModelType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Bedrock emulator configuration, bound from {@code bedrock.emulator.*}.
+ *
+ * <p>A model answers with its entry in {@code models}, else {@code profile} when set, else its
+ * built-in profile ({@link LatencyProfile#SONNET} / {@link LatencyProfile#HAIKU}). Model IDs the
+ * lab does not know get {@code profile} or {@link LatencyProfile#HAIKU}. With
+ * {@code maxConcurrentStreams > 0}, calls beyond that many in-flight streams are throttled, like
+ * an account concurrency quota. A {@code seed} makes sampled latencies and lengths repeatable.</p>
+ */
+@ConfigurationProperties(prefix = "bedrock.emulator")
+public record EmulatorSettings(
+        boolean enabled,
+        String host,
+        int port,
+        int maxConcurrentStreams,
+        Long seed,
+        LatencyProfile profile,
+        Map<ModelType, LatencyProfile> models
+) {
+    private static final Map<ModelType, LatencyProfile> DEFAULTS = Map.of(
+            ModelType.CLAUDE_3_5_SONNET, LatencyProfile.SONNET,
+            ModelType.CLAUDE_3_HAIKU, LatencyProfile.HAIKU
+    );
+
+    public EmulatorSettings {
+        host = host != null && !host.isBlank() ? host : "127.0.0.1";
+        Map<ModelType, LatencyProfile> merged = new EnumMap<>(ModelType.class);
+        if (models != null) {
+            merged.putAll(models);
+        }
+        models = Collections.unmodifiableMap(merged);
+    }
+
+    public static EmulatorSettings defaults() {
+        return new EmulatorSettings(false, null, 0, 0, null, null, null);
+    }
+
+    /**
+     * Every model answers with {@code profile}, on an ephemeral loopback port.
+     */
+    public static EmulatorSettings withProfile(LatencyProfile profile) {
+        return new EmulatorSettings(false, null, 0, 0, null, profile, null);
+    }
+
+    public EmulatorSettings withMaxConcurrentStreams(int maxConcurrentStreams) {
+        return new EmulatorSettings(enabled, host, port, maxConcurrentStreams, seed, profile, models);
+    }
+
+    public EmulatorSettings withSeed(long seed) {
+        return new EmulatorSettings(enabled, host, port, maxConcurrentStreams, seed, profile, models);
+    }
+
+    public LatencyProfile profileFor(String modelId) {
+        for (ModelType modelType : ModelType.values()) {
+            if (modelType.getModelId().equals(modelId)) {
+                return models.getOrDefault(modelType, profile != null ? profile : DEFAULTS.get(modelType));
+            }
+        }
+        return profile != null ? profile : LatencyProfile.HAIKU;
+    }
+}
@@ -0,0 +1,61 @@
+package com.jmontagne.bedrock.emulator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the emulator has served since it started; also returned by {@code GET /emulator/stats}.
+ *
+ * <p>{@code backpressureStalls} counts the times a stream paused because the client was not
+ * reading (the Netty channel stopped being writable). Generation resumes when it reads again, so a
+ * slow consumer holds at most one write buffer per stream in the emulator.</p>
+ */
+public record EmulatorStats(
+        long requests,
+        long throttled,
+        long failed,
+        long midStreamFailures,
+        long completed,
+        long cancelled,
+        int activeStreams,
+        int peakActiveStreams,
+        long backpressureStalls,
+        long outputTokens
+) {
+
+    static final class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder midStreamFailures = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder cancelled = new LongAdder();
+        final LongAdder backpressureStalls = new LongAdder();
+        final LongAdder outputTokens = new LongAdder();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger peakActive = new AtomicInteger();
+
+        /**
+         * Takes a stream slot; {@code false} when {@code limit} (if positive) is already reached.
+         */
+        boolean tryAcquire(int limit) {
+            int now = active.incrementAndGet();
+            if (limit > 0 && now > limit) {
+                active.decrementAndGet();
+                return false;
+            }
+            peakActive.accumulateAndGet(now, Math::max);
+            return true;
+        }
+
+        void release() {
+            active.decrementAndGet();
+        }
+
+        EmulatorStats snapshot() {
+            return new EmulatorStats(requests.sum(), throttled.sum(), failed.sum(), midStreamFailures.sum(),
+                    completed.sum(), cancelled.sum(), active.get(), peakActive.get(), backpressureStalls.sum(),
+                    outputTokens.sum());
+        }
+    }
+}
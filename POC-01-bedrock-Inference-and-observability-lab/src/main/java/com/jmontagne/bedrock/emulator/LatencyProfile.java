@@ -0,0 +1,96 @@
+package com.jmontagne.bedrock.emulator;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * How the emulator answers for one model: time to first token, generation speed, answer
+ * length and injected failures.
+ *
+ * <ul>
+ *   <li>TTFT is log-normal through {@code ttftP50} and {@code ttftP99} (fixed when they are equal),
+ *       which matches the long right tail of real first-token latency;</li>
+ *   <li>deltas of {@code tokensPerDelta} tokens are sent at {@code tokensPerSecond}
+ *       ({@code 0} = as fast as the client reads);</li>
+ *   <li>the answer is {@code minOutputTokens}..{@code maxOutputTokens} tokens, capped by the
+ *       request's {@code maxTokens};</li>
+ *   <li>{@code throttleRate} and {@code errorRate} are the share of calls rejected up front with
+ *       {@code ThrottlingException} (429) and {@code InternalServerException} (500);
+ *       {@code midStreamErrorRate} is the share of streams that fail after some tokens with a
+ *       {@code modelStreamErrorException} event.</li>
+ * </ul>
+ */
+public record LatencyProfile(
+        Duration ttftP50,
+        Duration ttftP99,
+        double tokensPerSecond,
+        int minOutputTokens,
+        int maxOutputTokens,
+        int tokensPerDelta,
+        double throttleRate,
+        double errorRate,
+        double midStreamErrorRate
+) {
+    /** Roughly Claude 3 Haiku on-demand in us-east-1. */
+    public static final LatencyProfile HAIKU = new LatencyProfile(
+            Duration.ofMillis(350), Duration.ofMillis(1_200), 120, 150, 600, 3, 0, 0, 0);
+
+    /** Roughly Claude 3.5 Sonnet on-demand in us-east-1. */
+    public static final LatencyProfile SONNET = new LatencyProfile(
+            Duration.ofMillis(800), Duration.ofMillis(2_500), 55, 200, 800, 3, 0, 0, 0);
+
+    /** No latency at all: measures the lab's own overhead. */
+    public static final LatencyProfile INSTANT = new LatencyProfile(
+            Duration.ZERO, Duration.ZERO, 0, 100, 100, 1, 0, 0, 0);
+
+    private static final double Z_99 = 2.3263;
+
+    public LatencyProfile {
+        ttftP50 = ttftP50 != null ? ttftP50 : Duration.ZERO;
+        ttftP99 = ttftP99 != null && ttftP99.compareTo(ttftP50) > 0 ? ttftP99 : ttftP50;
+        minOutputTokens = Math.max(1, minOutputTokens);
+        maxOutputTokens = Math.max(minOutputTokens, maxOutputTokens);
+        tokensPerDelta = Math.max(1, tokensPerDelta);
+    }
+
+    public LatencyProfile withTtft(Duration p50, Duration p99) {
+        return new LatencyProfile(p50, p99, tokensPerSecond, minOutputTokens, maxOutputTokens, tokensPerDelta,
+                throttleRate, errorRate, midStreamErrorRate);
+    }
+
+    public LatencyProfile withOutput(int minTokens, int maxTokens, int tokensPerDelta) {
+        return new LatencyProfile(ttftP50, ttftP99, tokensPerSecond, minTokens, maxTokens, tokensPerDelta,
+                throttleRate, errorRate, midStreamErrorRate);
+    }
+
+    public LatencyProfile withTokensPerSecond(double tokensPerSecond) {
+        return new LatencyProfile(ttftP50, ttftP99, tokensPerSecond, minOutputTokens, maxOutputTokens, tokensPerDelta,
+                throttleRate, errorRate, midStreamErrorRate);
+    }
+
+    public LatencyProfile withFailures(double throttleRate, double errorRate, double midStreamErrorRate) {
+        return new LatencyProfile(ttftP50, ttftP99, tokensPerSecond, minOutputTokens, maxOutputTokens, tokensPerDelta,
+                throttleRate, errorRate, midStreamErrorRate);
+    }
+
+    long sampleTtftNanos(RandomGenerator random) {
+        long p50 = ttftP50.toNanos();
+        if (p50 == 0 || ttftP99.equals(ttftP50)) {
+            return p50;
+        }
+        double mu = Math.log(p50);
+        double sigma = (Math.log(ttftP99.toNanos()) - mu) / Z_99;
+        return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    int sampleOutputTokens(RandomGenerator random) {
+        return minOutputTokens + random.nextInt(maxOutputTokens - minOutputTokens + 1);
+    }
+
+    /**
+     * Gap between two deltas; {@code 0} when the speed is unbounded.
+     */
+    long deltaIntervalNanos() {
+        return tokensPerSecond > 0 ? Math.round(tokensPerDelta * 1_000_000_000.0 / tokensPerSecond) : 0;
+    }
+}
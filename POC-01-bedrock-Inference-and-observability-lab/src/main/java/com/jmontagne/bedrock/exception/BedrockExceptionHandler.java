@@ -1,5 +1,8 @@
 package com.jmontagne.bedrock.exception;
 
+import com.jmontagne.bedrock.resilience.CircuitOpenException;
+import com.jmontagne.bedrock.resilience.ConcurrencyLimitExceededException;
+import com.jmontagne.bedrock.resilience.QuotaExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -36,6 +39,54 @@ public class BedrockExceptionHandler {
                 .body(error);
     }
 
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleConcurrencyLimit(ConcurrencyLimitExceededException ex) {
+        log.warn("Concurrency limit reached: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                "CONCURRENCY_LIMIT",
+                ex.getMessage() + ". Please retry after the indicated delay.",
+                Instant.now().toString()
+        );
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(ex.getRetryAfter().toSeconds()))
+                .body(error);
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<ErrorResponse> handleQuotaExceeded(QuotaExceededException ex) {
+        log.warn("Local quota exhausted: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                "QUOTA_EXCEEDED",
+                ex.getMessage() + ". Please retry after the indicated delay.",
+                Instant.now().toString()
+        );
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(ex.getRetryAfter().toSeconds()))
+                .body(error);
+    }
+
+    @ExceptionHandler(CircuitOpenException.class)
+    public ResponseEntity<ErrorResponse> handleCircuitOpen(CircuitOpenException ex) {
+        log.warn("Circuit open: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "CIRCUIT_OPEN",
+                ex.getMessage() + ": the model is failing or slow. Please retry after the indicated delay.",
+                Instant.now().toString()
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(error);
+    }
+
     @ExceptionHandler(ModelNotReadyException.class)
     public ResponseEntity<ErrorResponse> handleModelNotReady(ModelNotReadyException ex) {
         log.warn("Model not ready: {}", ex.getMessage());
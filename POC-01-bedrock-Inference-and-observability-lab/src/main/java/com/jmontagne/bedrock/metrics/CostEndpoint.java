@@ -0,0 +1,26 @@
+package com.jmontagne.bedrock.metrics;
+
+import com.jmontagne.bedrock.model.CostReport;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/costs}: the {@link CostTracker} spend report, next to the
+ * {@code bedrock.cost} meters under {@code /actuator/metrics}.
+ */
+@Component
+@Endpoint(id = "costs")
+public class CostEndpoint {
+
+    private final CostTracker costTracker;
+
+    public CostEndpoint(CostTracker costTracker) {
+        this.costTracker = costTracker;
+    }
+
+    @ReadOperation
+    public CostReport costs() {
+        return costTracker.report();
+    }
+}
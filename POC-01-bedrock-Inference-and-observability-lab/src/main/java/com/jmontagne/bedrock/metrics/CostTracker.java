@@ -0,0 +1,407 @@
+package com.jmontagne.bedrock.metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.CostReport;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * What every Bedrock call cost, from the usage in its final {@link StreamEvent.Metrics}
+ * ({@code ConverseStreamMetadataEvent}) priced with the {@link ModelCatalog}: uncached input,
+ * output, prompt-cache reads and writes each at their own rate.
+ *
+ * <p>Spend is kept in nano-USD {@link LongAdder}s, so recording on the Netty event loop is a
+ * few uncontended striped increments. It is aggregated per model and endpoint (never evicted,
+ * also published as Micrometer counters) and per caller (the {@code X-Api-Key} from the
+ * {@link CallerContext}, bounded by {@code bedrock.costs.max-callers}; rarely used keys are
+ * evicted first).</p>
+ *
+ * <h3>Calls without usage</h3>
+ * <p>Bedrock bills a call it started even when its metadata event never arrives: a losing hedge
+ * or a disconnected client cancels the stream, a stream fails after output was generated, and
+ * the output budget cuts it short. Those are
+ * priced from the request's estimated input tokens (prompt chars / 4, as the quota reserves)
+ * plus the output received, and also counted in {@code bedrock.cost.estimated} and the report's
+ * {@code estimated} share.</p>
+ *
+ * <h3>Runaway spend</h3>
+ * <p>A ring of time slots per model holds the spend of the last {@code bedrock.costs.window},
+ * published as the {@code bedrock.cost.rate} gauge (USD/hour). With
+ * {@code bedrock.costs.alert-usd-per-hour} set, a rate above it is logged as a warning at most
+ * once per window and flagged in {@link #report()}, minutes after the spike rather than on the
+ * monthly bill:</p>
+ * <pre>
+ * GET /actuator/costs
+ * GET /actuator/metrics/bedrock.cost?tag=model:CLAUDE_3_5_SONNET
+ * </pre>
+ */
+@Component
+public class CostTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(CostTracker.class);
+
+    private static final double NANOS_PER_USD = 1_000_000_000.0;
+    private static final int WINDOW_SLOTS = 10;
+    private static final int SHORTENED_KEY_LENGTH = 12;
+
+    private final ModelCatalog catalog;
+    private final MeterRegistry registry;
+    private final LongSupplier clock;
+    private volatile Instant since = Instant.now();
+    private final long windowNanos;
+    private final double alertUsdPerHour;
+    private final int topCallers;
+    private final Map<CellKey, SpendCounter> cells = new ConcurrentHashMap<>();
+    private final Cache<String, SpendCounter> callers;
+    private final Map<ModelType, SpendWindow> windows = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, SpendCounter> estimated = new EnumMap<>(ModelType.class);
+    private final AtomicLong lastAlertNanos;
+
+    @Autowired
+    public CostTracker(
+            ModelCatalog catalog,
+            MeterRegistry registry,
+            @Value("${bedrock.costs.window:PT5M}") Duration window,
+            @Value("${bedrock.costs.alert-usd-per-hour:0}") double alertUsdPerHour,
+            @Value("${bedrock.costs.max-callers:10000}") long maxCallers,
+            @Value("${bedrock.costs.top-callers:20}") int topCallers) {
+        this(catalog, registry, window, alertUsdPerHour, maxCallers, topCallers, System::nanoTime);
+    }
+
+    public CostTracker(ModelCatalog catalog, MeterRegistry registry, Duration window, double alertUsdPerHour,
+                       long maxCallers, int topCallers, LongSupplier clock) {
+        this.catalog = catalog;
+        this.registry = registry;
+        this.clock = clock;
+        this.windowNanos = window.toNanos();
+        this.alertUsdPerHour = alertUsdPerHour;
+        this.topCallers = topCallers;
+        this.callers = Caffeine.newBuilder()
+                .maximumSize(maxCallers)
+                .build();
+        this.lastAlertNanos = new AtomicLong(clock.getAsLong() - windowNanos);
+
+        for (ModelType modelType : ModelType.values()) {
+            SpendWindow spendWindow = new SpendWindow(windowNanos / WINDOW_SLOTS);
+            windows.put(modelType, spendWindow);
+            Gauge.builder("bedrock.cost.rate", spendWindow, w -> usdPerHour(w.sum(clock.getAsLong())))
+                    .description("Spend over the recent window, projected to USD per hour")
+                    .baseUnit("usd.per.hour")
+                    .tag("model", modelType.name())
+                    .register(registry);
+
+            SpendCounter estimatedSpend = new SpendCounter();
+            estimated.put(modelType, estimatedSpend);
+            FunctionCounter.builder("bedrock.cost.estimated", estimatedSpend, c -> c.nanoUsd.sum() / NANOS_PER_USD)
+                    .description("Part of bedrock.cost priced from estimated tokens, for calls without a usage report")
+                    .baseUnit("usd")
+                    .tag("model", modelType.name())
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Records the cost of {@code events}, the Bedrock stream for {@code request}, when its usage
+     * arrives, attributed to the subscriber's {@link CallerContext}. A stream cancelled before then,
+     * one that fails after streaming tokens, or one whose metrics carry no input tokens (cut short by
+     * the output budget), is priced from estimated tokens. A failure before any token is taken to
+     * be a rejected call and not priced. Wrap the raw Bedrock stream, so cache hits and calls rejected before
+     * reaching Bedrock are never counted.
+     */
+    public Flux<StreamEvent> track(InferenceRequest request, Flux<StreamEvent> events) {
+        return events.transformDeferredContextual((flux, context) -> {
+            CallerContext caller = CallerContext.from(context);
+            AtomicBoolean metered = new AtomicBoolean();
+            AtomicLong streamedChars = new AtomicLong();
+            return flux
+                    .doOnNext(event -> {
+                        if (event instanceof StreamEvent.Token token) {
+                            streamedChars.addAndGet(token.text().length());
+                        } else if (event instanceof StreamEvent.Metrics metrics && metered.compareAndSet(false, true)) {
+                            PerformanceMetrics usage = metrics.metrics();
+                            if (usage.inputTokens() + usage.cacheReadInputTokens() + usage.cacheWriteInputTokens() > 0) {
+                                record(caller, usage);
+                            } else {
+                                record(caller, estimatedUsage(request, usage.outputTokens()), true);
+                            }
+                        }
+                    })
+                    .doFinally(signal -> {
+                        boolean billed = signal == SignalType.CANCEL
+                                || signal == SignalType.ON_ERROR && streamedChars.get() > 0;
+                        if (billed && metered.compareAndSet(false, true)) {
+                            record(caller, estimatedUsage(request, (int) ((streamedChars.get() + 3) / 4)), true);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Prices one call's usage and adds it to its model, endpoint and caller. Returns the cost in USD.
+     */
+    public double record(CallerContext caller, PerformanceMetrics usage) {
+        return record(caller, usage, false);
+    }
+
+    private double record(CallerContext caller, PerformanceMetrics usage, boolean estimate) {
+        ModelType modelType = usage.modelType();
+        if (modelType == null) {
+            return 0;
+        }
+        double costUsd = catalog.profile(modelType).costOf(usage);
+        long nanoUsd = Math.round(costUsd * NANOS_PER_USD);
+
+        cells.computeIfAbsent(new CellKey(modelType, caller.endpoint()), this::newCell).add(usage, nanoUsd);
+        callers.get(caller.caller(), key -> new SpendCounter()).add(usage, nanoUsd);
+        if (estimate) {
+            estimated.get(modelType).add(usage, nanoUsd);
+        }
+
+        long now = clock.getAsLong();
+        windows.get(modelType).add(now, nanoUsd);
+        if (alertUsdPerHour > 0) {
+            checkRate(now);
+        }
+        return costUsd;
+    }
+
+    public CostReport report() {
+        long now = clock.getAsLong();
+        Map<String, CostReport.Spend> byModel = new LinkedHashMap<>();
+        Map<String, CostReport.Spend> byEndpoint = new LinkedHashMap<>();
+        CostReport.Spend total = CostReport.Spend.NONE;
+        for (Map.Entry<CellKey, SpendCounter> cell : cells.entrySet()) {
+            CostReport.Spend spend = cell.getValue().snapshot();
+            byModel.merge(cell.getKey().modelType().name(), spend, CostReport.Spend::plus);
+            byEndpoint.merge(cell.getKey().endpoint(), spend, CostReport.Spend::plus);
+            total = total.plus(spend);
+        }
+
+        Map<String, CostReport.Spend> topCallersBySpend = new LinkedHashMap<>();
+        callers.asMap().entrySet().stream()
+                .map(entry -> Map.entry(shorten(entry.getKey()), entry.getValue().snapshot()))
+                .sorted(Comparator.comparingDouble((Map.Entry<String, CostReport.Spend> entry) -> entry.getValue().costUsd())
+                        .reversed())
+                .limit(topCallers)
+                .forEach(entry -> topCallersBySpend.merge(entry.getKey(), entry.getValue(), CostReport.Spend::plus));
+
+        CostReport.Spend estimatedTotal = estimated.values().stream()
+                .map(SpendCounter::snapshot)
+                .reduce(CostReport.Spend.NONE, CostReport.Spend::plus);
+
+        double windowUsd = windowNanoUsd(now) / NANOS_PER_USD;
+        double usdPerHour = usdPerHour(windowNanoUsd(now));
+        return new CostReport(
+                since.toString(),
+                total,
+                estimatedTotal,
+                Duration.ofNanos(windowNanos).toSeconds(),
+                windowUsd,
+                usdPerHour,
+                alertUsdPerHour,
+                alertUsdPerHour > 0 && usdPerHour > alertUsdPerHour,
+                sortedByCost(byModel),
+                sortedByCost(byEndpoint),
+                topCallersBySpend
+        );
+    }
+
+    /**
+     * Zeroes all spend in place, keeping the registered meters.
+     */
+    public void reset() {
+        cells.values().forEach(SpendCounter::reset);
+        callers.invalidateAll();
+        windows.values().forEach(SpendWindow::reset);
+        estimated.values().forEach(SpendCounter::reset);
+        since = Instant.now();
+    }
+
+    /**
+     * Usage for a call Bedrock did not report: the request's estimated input and
+     * {@code outputTokens} estimated from what was streamed.
+     */
+    private static PerformanceMetrics estimatedUsage(InferenceRequest request, int outputTokens) {
+        return PerformanceMetrics.builder()
+                .inputTokens(request.estimatedInputTokens())
+                .outputTokens(outputTokens)
+                .modelType(request.modelType())
+                .build();
+    }
+
+    private void checkRate(long now) {
+        long last = lastAlertNanos.get();
+        if (now - last < windowNanos) {
+            return;
+        }
+        double usdPerHour = usdPerHour(windowNanoUsd(now));
+        if (usdPerHour > alertUsdPerHour && lastAlertNanos.compareAndSet(last, now)) {
+            log.warn("Bedrock spend at {} USD/hour over the last {}s, above the {} USD/hour alert threshold",
+                    String.format("%.2f", usdPerHour), Duration.ofNanos(windowNanos).toSeconds(), alertUsdPerHour);
+        }
+    }
+
+    private long windowNanoUsd(long now) {
+        long sum = 0;
+        for (SpendWindow window : windows.values()) {
+            sum += window.sum(now);
+        }
+        return sum;
+    }
+
+    private double usdPerHour(long windowNanoUsd) {
+        return windowNanoUsd / NANOS_PER_USD * Duration.ofHours(1).toNanos() / windowNanos;
+    }
+
+    private SpendCounter newCell(CellKey key) {
+        SpendCounter counter = new SpendCounter();
+        String model = key.modelType().name();
+        FunctionCounter.builder("bedrock.cost", counter, c -> c.nanoUsd.sum() / NANOS_PER_USD)
+                .description("Bedrock spend computed from reported token usage")
+                .baseUnit("usd")
+                .tags("model", model, "endpoint", key.endpoint())
+                .register(registry);
+        registerTokens(key, counter, "input", c -> c.inputTokens.sum());
+        registerTokens(key, counter, "output", c -> c.outputTokens.sum());
+        registerTokens(key, counter, "cache_read", c -> c.cacheReadInputTokens.sum());
+        registerTokens(key, counter, "cache_write", c -> c.cacheWriteInputTokens.sum());
+        return counter;
+    }
+
+    private void registerTokens(CellKey key, SpendCounter counter, String type, ToLongFunction<SpendCounter> tokens) {
+        FunctionCounter.builder("bedrock.cost.tokens", counter, tokens::applyAsLong)
+                .description("Billed tokens by kind")
+                .baseUnit("tokens")
+                .tags("model", key.modelType().name(), "endpoint", key.endpoint(), "type", type)
+                .register(registry);
+    }
+
+    private static Map<String, CostReport.Spend> sortedByCost(Map<String, CostReport.Spend> spend) {
+        Map<String, CostReport.Spend> sorted = new LinkedHashMap<>();
+        spend.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, CostReport.Spend> entry) -> entry.getValue().costUsd())
+                        .reversed())
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    /**
+     * Long API keys are reported as their first and last four characters; short ones are
+     * taken to be labels such as {@code team-a} and reported as is.
+     */
+    static String shorten(String caller) {
+        return caller.length() <= SHORTENED_KEY_LENGTH
+                ? caller
+                : caller.substring(0, 4) + "..." + caller.substring(caller.length() - 4);
+    }
+
+    private record CellKey(ModelType modelType, String endpoint) {}
+
+    private static final class SpendCounter {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final LongAdder cacheReadInputTokens = new LongAdder();
+        private final LongAdder cacheWriteInputTokens = new LongAdder();
+        private final LongAdder nanoUsd = new LongAdder();
+
+        void add(PerformanceMetrics usage, long cost) {
+            requests.increment();
+            inputTokens.add(usage.inputTokens());
+            outputTokens.add(usage.outputTokens());
+            cacheReadInputTokens.add(usage.cacheReadInputTokens());
+            cacheWriteInputTokens.add(usage.cacheWriteInputTokens());
+            nanoUsd.add(cost);
+        }
+
+        void reset() {
+            requests.reset();
+            inputTokens.reset();
+            outputTokens.reset();
+            cacheReadInputTokens.reset();
+            cacheWriteInputTokens.reset();
+            nanoUsd.reset();
+        }
+
+        CostReport.Spend snapshot() {
+            return new CostReport.Spend(requests.sum(), inputTokens.sum(), outputTokens.sum(),
+                    cacheReadInputTokens.sum(), cacheWriteInputTokens.sum(), nanoUsd.sum() / NANOS_PER_USD);
+        }
+    }
+
+    /**
+     * Nano-USD per time slot over the last {@code WINDOW_SLOTS} slots. A slot is reclaimed by the
+     * first writer of a new period; an add racing with that reset can be lost, which is fine for
+     * an alerting rate.
+     */
+    static final class SpendWindow {
+        private final long slotNanos;
+        private final AtomicLongArray periods = new AtomicLongArray(WINDOW_SLOTS);
+        private final LongAdder[] amounts = new LongAdder[WINDOW_SLOTS];
+
+        SpendWindow(long slotNanos) {
+            this.slotNanos = Math.max(1, slotNanos);
+            for (int i = 0; i < WINDOW_SLOTS; i++) {
+                periods.set(i, Long.MIN_VALUE);
+                amounts[i] = new LongAdder();
+            }
+        }
+
+        void add(long nowNanos, long amount) {
+            long period = Math.floorDiv(nowNanos, slotNanos);
+            int slot = (int) Math.floorMod(period, WINDOW_SLOTS);
+            long seen = periods.get(slot);
+            if (seen != period && periods.compareAndSet(slot, seen, period)) {
+                amounts[slot].reset();
+            }
+            amounts[slot].add(amount);
+        }
+
+        void reset() {
+            for (int i = 0; i < WINDOW_SLOTS; i++) {
+                periods.set(i, Long.MIN_VALUE);
+                amounts[i].reset();
+            }
+        }
+
+        long sum(long nowNanos) {
+            long period = Math.floorDiv(nowNanos, slotNanos);
+            long sum = 0;
+            for (int i = 0; i < WINDOW_SLOTS; i++) {
+                if (periods.get(i) > period - WINDOW_SLOTS) {
+                    sum += amounts[i].sum();
+                }
+            }
+            return sum;
+        }
+    }
+}
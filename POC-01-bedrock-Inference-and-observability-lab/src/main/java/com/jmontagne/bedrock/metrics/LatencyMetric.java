@@ -0,0 +1,49 @@
+package com.jmontagne.bedrock.metrics;
+
+/**
+ * Streaming latency dimensions recorded per {@link com.jmontagne.bedrock.model.ModelType}.
+ *
+ * <p>Values are recorded as longs in {@link #recordedUnit} and divided by {@link #scale}
+ * when published, so sub-millisecond and fractional tokens/sec precision survive the
+ * integer histogram buckets.</p>
+ */
+public enum LatencyMetric {
+    TIME_TO_FIRST_TOKEN("bedrock.inference.ttft", "Time from request to first content delta", "milliseconds", "nanoseconds", 1_000_000.0),
+    INTER_TOKEN_LATENCY("bedrock.inference.inter.token.latency", "Gap between consecutive content deltas", "milliseconds", "nanoseconds", 1_000_000.0),
+    GENERATION_TIME("bedrock.inference.generation.time", "Total time from request to stream completion", "milliseconds", "nanoseconds", 1_000_000.0),
+    OUTPUT_TOKENS_PER_SECOND("bedrock.inference.output.tokens.per.second", "Output tokens divided by generation time", "tokens/s", "milli-tokens/s", 1_000.0);
+
+    private final String meterName;
+    private final String description;
+    private final String baseUnit;
+    private final String recordedUnit;
+    private final double scale;
+
+    LatencyMetric(String meterName, String description, String baseUnit, String recordedUnit, double scale) {
+        this.meterName = meterName;
+        this.description = description;
+        this.baseUnit = baseUnit;
+        this.recordedUnit = recordedUnit;
+        this.scale = scale;
+    }
+
+    public String getMeterName() {
+        return meterName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getBaseUnit() {
+        return baseUnit;
+    }
+
+    public String getRecordedUnit() {
+        return recordedUnit;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+}
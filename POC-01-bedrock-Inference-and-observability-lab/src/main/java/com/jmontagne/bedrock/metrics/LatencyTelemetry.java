@@ -0,0 +1,115 @@
+package com.jmontagne.bedrock.metrics;
+
+import com.jmontagne.bedrock.model.ModelType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming latency percentiles per {@link ModelType}, backed by HdrHistograms.
+ *
+ * <p>{@code BedrockStreamingClient} records TTFT, every inter-token gap, total generation time
+ * and output tokens/sec using {@link System#nanoTime()}. Recording is wait-free (see
+ * {@link RollingHistogram}), so it is safe on the SDK's event-loop threads.</p>
+ *
+ * <h3>Publishing</h3>
+ * <p>p50/p90/p99/p999 over a sliding window are registered as Micrometer gauges, tagged with
+ * {@code model} and {@code quantile}, and are therefore visible through the actuator
+ * {@code metrics} endpoint:</p>
+ * <pre>
+ * GET /actuator/metrics/bedrock.inference.ttft?tag=model:CLAUDE_3_HAIKU&amp;tag=quantile:0.99
+ * </pre>
+ */
+@Component
+public class LatencyTelemetry {
+
+    static final double[] PUBLISHED_PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<ModelType, Map<LatencyMetric, RollingHistogram>> histograms = new EnumMap<>(ModelType.class);
+
+    @Autowired
+    public LatencyTelemetry(
+            MeterRegistry registry,
+            @Value("${bedrock.telemetry.window-seconds:60}") int windowSeconds,
+            @Value("${bedrock.telemetry.window-slots:6}") int windowSlots
+    ) {
+        long slotNanos = TimeUnit.SECONDS.toNanos(windowSeconds) / windowSlots;
+
+        for (ModelType modelType : ModelType.values()) {
+            Map<LatencyMetric, RollingHistogram> perModel = new EnumMap<>(LatencyMetric.class);
+            for (LatencyMetric metric : LatencyMetric.values()) {
+                RollingHistogram histogram = new RollingHistogram(windowSlots, slotNanos, REFRESH_NANOS);
+                perModel.put(metric, histogram);
+                registerGauges(registry, modelType, metric, histogram);
+            }
+            histograms.put(modelType, perModel);
+        }
+    }
+
+    /**
+     * Standalone instance with a private registry, for callers built outside Spring.
+     */
+    public LatencyTelemetry() {
+        this(new SimpleMeterRegistry(), 60, 6);
+    }
+
+    public void recordTimeToFirstToken(ModelType modelType, long nanos) {
+        histogram(modelType, LatencyMetric.TIME_TO_FIRST_TOKEN).record(nanos);
+    }
+
+    public void recordInterTokenGap(ModelType modelType, long nanos) {
+        histogram(modelType, LatencyMetric.INTER_TOKEN_LATENCY).record(nanos);
+    }
+
+    public void recordGeneration(ModelType modelType, long totalNanos, int outputTokens) {
+        histogram(modelType, LatencyMetric.GENERATION_TIME).record(totalNanos);
+        if (totalNanos > 0 && outputTokens > 0) {
+            long milliTokensPerSecond = Math.round(outputTokens * 1_000.0 * TimeUnit.SECONDS.toNanos(1) / totalNanos);
+            histogram(modelType, LatencyMetric.OUTPUT_TOKENS_PER_SECOND).record(milliTokensPerSecond);
+        }
+    }
+
+    /**
+     * Percentile over the current window, in the metric's published base unit.
+     */
+    public double percentile(ModelType modelType, LatencyMetric metric, double percentile) {
+        return histogram(modelType, metric).valueAtPercentile(percentile) / metric.getScale();
+    }
+
+    public double mean(ModelType modelType, LatencyMetric metric) {
+        return histogram(modelType, metric).mean() / metric.getScale();
+    }
+
+    public long sampleCount(ModelType modelType, LatencyMetric metric) {
+        return histogram(modelType, metric).count();
+    }
+
+    public void reset() {
+        histograms.values().forEach(perModel -> perModel.values().forEach(RollingHistogram::reset));
+    }
+
+    private RollingHistogram histogram(ModelType modelType, LatencyMetric metric) {
+        return histograms.get(modelType).get(metric);
+    }
+
+    private static void registerGauges(MeterRegistry registry, ModelType modelType, LatencyMetric metric, RollingHistogram histogram) {
+        for (double percentile : PUBLISHED_PERCENTILES) {
+            Gauge.builder(metric.getMeterName(), histogram, h -> h.valueAtPercentile(percentile) / metric.getScale())
+                    .description(metric.getDescription())
+                    .baseUnit(metric.getBaseUnit())
+                    .tag("model", modelType.name())
+                    .tag("quantile", BigDecimal.valueOf(percentile).movePointLeft(2).stripTrailingZeros().toPlainString())
+                    .register(registry);
+        }
+    }
+}
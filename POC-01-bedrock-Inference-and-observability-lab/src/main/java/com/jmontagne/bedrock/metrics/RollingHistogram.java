@@ -0,0 +1,95 @@
+package com.jmontagne.bedrock.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Wait-free-to-record HdrHistogram over a sliding time window.
+ *
+ * <p>Writers go through a {@link Recorder}, whose {@code recordValue} never blocks or takes a
+ * lock, so recording on the Netty event loop costs a few atomic increments. Readers fold the
+ * recorder's interval histograms into a ring of time slots and serve percentiles from the sum
+ * of those slots; all reader-side work is synchronized and cached for {@code refreshNanos}.</p>
+ */
+class RollingHistogram {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram[] slots;
+    private final long slotNanos;
+    private final long refreshNanos;
+    private final Histogram window = new Histogram(SIGNIFICANT_DIGITS);
+
+    private Histogram recycled;
+    private int currentSlot;
+    private long slotStartNanos;
+    private long lastRefreshNanos;
+
+    RollingHistogram(int slotCount, long slotNanos, long refreshNanos) {
+        this.slots = new Histogram[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Histogram(SIGNIFICANT_DIGITS);
+        }
+        this.slotNanos = slotNanos;
+        this.refreshNanos = refreshNanos;
+        this.slotStartNanos = System.nanoTime();
+        this.lastRefreshNanos = slotStartNanos - refreshNanos;
+    }
+
+    void record(long value) {
+        if (value >= 0) {
+            recorder.recordValue(value);
+        }
+    }
+
+    synchronized double valueAtPercentile(double percentile) {
+        return refresh().getValueAtPercentile(percentile);
+    }
+
+    synchronized long count() {
+        return refresh().getTotalCount();
+    }
+
+    synchronized double mean() {
+        return refresh().getMean();
+    }
+
+    synchronized void reset() {
+        recorder.reset();
+        for (Histogram slot : slots) {
+            slot.reset();
+        }
+        window.reset();
+    }
+
+    private Histogram refresh() {
+        long now = System.nanoTime();
+        if (now - lastRefreshNanos < refreshNanos) {
+            return window;
+        }
+        lastRefreshNanos = now;
+
+        if (now - slotStartNanos >= slotNanos * slots.length) {
+            // Idle for longer than the whole window: everything has expired
+            for (Histogram slot : slots) {
+                slot.reset();
+            }
+            slotStartNanos = now;
+        }
+        while (now - slotStartNanos >= slotNanos) {
+            currentSlot = (currentSlot + 1) % slots.length;
+            slots[currentSlot].reset();
+            slotStartNanos += slotNanos;
+        }
+
+        recycled = recorder.getIntervalHistogram(recycled);
+        slots[currentSlot].add(recycled);
+
+        window.reset();
+        for (Histogram slot : slots) {
+            window.add(slot);
+        }
+        return window;
+    }
+}
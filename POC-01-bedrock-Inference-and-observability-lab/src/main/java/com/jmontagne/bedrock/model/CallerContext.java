@@ -0,0 +1,41 @@
+package com.jmontagne.bedrock.model;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Who is calling and through which endpoint, carried in the Reactor {@link Context} of an
+ * inference stream so quota and accounting code deep in the pipeline can attribute usage
+ * without threading extra parameters through every service method.
+ *
+ * <p>The caller is the {@code X-Api-Key} header value when present, {@code anonymous} otherwise.</p>
+ */
+public record CallerContext(String caller, String endpoint) {
+
+    public static final String API_KEY_HEADER = "X-Api-Key";
+    public static final CallerContext ANONYMOUS = new CallerContext("anonymous", "unknown");
+
+    private static final Object KEY = CallerContext.class;
+
+    public static CallerContext of(String apiKey, String endpoint) {
+        return new CallerContext(
+                apiKey == null || apiKey.isBlank() ? ANONYMOUS.caller() : apiKey,
+                endpoint
+        );
+    }
+
+    public static CallerContext from(ContextView context) {
+        return context.getOrDefault(KEY, ANONYMOUS);
+    }
+
+    public boolean isAnonymous() {
+        return ANONYMOUS.caller().equals(caller);
+    }
+
+    /**
+     * For {@code flux.contextWrite(caller.asContext())}.
+     */
+    public Context asContext() {
+        return Context.of(KEY, this);
+    }
+}
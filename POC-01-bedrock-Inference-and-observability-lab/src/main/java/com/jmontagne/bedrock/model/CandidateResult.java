@@ -0,0 +1,34 @@
+package com.jmontagne.bedrock.model;
+
+/**
+ * Outcome of one {@link ComparisonCandidate}. {@code response} is the last successful run;
+ * distributions cover every successful measured run (warmup runs excluded).
+ *
+ * @param status       {@code OK}, {@code PARTIAL} (some runs failed), {@code TIMEOUT} or {@code FAILED}
+ * @param error        last failure, {@code null} when every run succeeded
+ * @param costUsd      mean on-demand cost of one run, from the model catalog prices
+ * @param ttftMs       time to first token
+ * @param totalMs      time to the end of the stream
+ */
+public record CandidateResult(
+        String label,
+        ModelType modelType,
+        InferenceParameters parameters,
+        Status status,
+        String error,
+        InferenceResponse response,
+        int runs,
+        int succeeded,
+        int timedOut,
+        double costUsd,
+        SampleDistribution ttftMs,
+        SampleDistribution totalMs,
+        SampleDistribution tokensPerSecond,
+        SampleDistribution outputTokens
+) {
+    public enum Status { OK, PARTIAL, TIMEOUT, FAILED }
+
+    public boolean hasData() {
+        return succeeded > 0;
+    }
+}
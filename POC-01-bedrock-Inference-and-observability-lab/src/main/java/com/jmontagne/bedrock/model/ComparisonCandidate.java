@@ -0,0 +1,33 @@
+package com.jmontagne.bedrock.model;
+
+import java.time.Duration;
+
+/**
+ * One arm of a model comparison: a model with its own parameters, so the same model can be
+ * compared against itself at another temperature or {@code maxTokens}.
+ *
+ * @param label   name in the results; defaults to the model name
+ * @param timeout per-run limit for this candidate; {@code null} means the comparison's timeout
+ */
+public record ComparisonCandidate(
+        String label,
+        ModelType modelType,
+        InferenceParameters parameters,
+        Duration timeout
+) {
+    public ComparisonCandidate {
+        if (modelType == null) {
+            throw new IllegalArgumentException("Comparison candidate needs a model");
+        }
+        label = label != null && !label.isBlank() ? label : modelType.name();
+        parameters = parameters != null ? parameters : InferenceParameters.DEFAULT;
+    }
+
+    public static ComparisonCandidate of(ModelType modelType, InferenceParameters parameters) {
+        return new ComparisonCandidate(null, modelType, parameters, null);
+    }
+
+    public ComparisonCandidate withLabel(String label) {
+        return new ComparisonCandidate(label, modelType, parameters, timeout);
+    }
+}
@@ -0,0 +1,72 @@
+package com.jmontagne.bedrock.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prompt sent to every candidate. With {@code runs > 1} each candidate is called that many
+ * times, one after another, after {@code warmupRuns} discarded calls, and the results carry
+ * latency distributions instead of a single sample.
+ *
+ * @param systemPrompt {@code null} means the default persona
+ * @param timeout      per-run limit for candidates without their own
+ */
+public record ComparisonRequest(
+        String systemPrompt,
+        String userMessage,
+        List<ComparisonCandidate> candidates,
+        int runs,
+        int warmupRuns,
+        Duration timeout
+) {
+    public ComparisonRequest {
+        if (userMessage == null || userMessage.isBlank()) {
+            throw new IllegalArgumentException("Comparison needs a message");
+        }
+        if (candidates == null || candidates.isEmpty()) {
+            throw new IllegalArgumentException("Comparison needs at least one candidate");
+        }
+        if (runs < 1 || warmupRuns < 0) {
+            throw new IllegalArgumentException("Comparison needs runs >= 1 and warmupRuns >= 0");
+        }
+        candidates = uniqueLabels(candidates);
+    }
+
+    /**
+     * The same parameters on every model, one run each.
+     */
+    public static ComparisonRequest of(String userMessage, List<ModelType> models, InferenceParameters parameters) {
+        return new ComparisonRequest(null, userMessage,
+                models.stream().map(model -> ComparisonCandidate.of(model, parameters)).toList(), 1, 0, null);
+    }
+
+    public ComparisonRequest withRuns(int runs, int warmupRuns) {
+        return new ComparisonRequest(systemPrompt, userMessage, candidates, runs, warmupRuns, timeout);
+    }
+
+    public ComparisonRequest withTimeout(Duration timeout) {
+        return new ComparisonRequest(systemPrompt, userMessage, candidates, runs, warmupRuns, timeout);
+    }
+
+    public InferenceRequest toInferenceRequest(ComparisonCandidate candidate) {
+        return systemPrompt != null
+                ? new InferenceRequest(systemPrompt, userMessage, candidate.modelType(), candidate.parameters())
+                : InferenceRequest.withJacquesMontagne(userMessage, candidate.modelType(), candidate.parameters());
+    }
+
+    /**
+     * Results are keyed by label, so two variants of one model become {@code MODEL} and {@code MODEL-2}.
+     */
+    private static List<ComparisonCandidate> uniqueLabels(List<ComparisonCandidate> candidates) {
+        Map<String, Integer> seen = new HashMap<>();
+        List<ComparisonCandidate> unique = new ArrayList<>(candidates.size());
+        for (ComparisonCandidate candidate : candidates) {
+            int count = seen.merge(candidate.label(), 1, Integer::sum);
+            unique.add(count == 1 ? candidate : candidate.withLabel(candidate.label() + "-" + count));
+        }
+        return List.copyOf(unique);
+    }
+}
@@ -0,0 +1,45 @@
+package com.jmontagne.bedrock.model;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Every candidate's result in request order, plus the label that won each dimension among
+ * candidates with at least one successful run ({@code null} when none had).
+ */
+public record ComparisonResult(
+        int runs,
+        int warmupRuns,
+        List<CandidateResult> candidates,
+        String fastestTtft,
+        String fastestTotal,
+        String highestTokensPerSecond,
+        String cheapest
+) {
+    public static ComparisonResult of(ComparisonRequest request, List<CandidateResult> results) {
+        List<String> order = request.candidates().stream().map(ComparisonCandidate::label).toList();
+        List<CandidateResult> ordered = results.stream()
+                .sorted(Comparator.comparingInt(result -> order.indexOf(result.label())))
+                .toList();
+
+        return new ComparisonResult(
+                request.runs(),
+                request.warmupRuns(),
+                ordered,
+                best(ordered, result -> result.ttftMs().p50(), false),
+                best(ordered, result -> result.totalMs().p50(), false),
+                best(ordered, result -> result.tokensPerSecond().p50(), true),
+                best(ordered, CandidateResult::costUsd, false)
+        );
+    }
+
+    private static String best(List<CandidateResult> results, ToDoubleFunction<CandidateResult> metric, boolean highest) {
+        Comparator<CandidateResult> comparator = Comparator.comparingDouble(metric);
+        return results.stream()
+                .filter(CandidateResult::hasData)
+                .min(highest ? comparator.reversed() : comparator)
+                .map(CandidateResult::label)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,19 @@
+package com.jmontagne.bedrock.model;
+
+/**
+ * One earlier message of a multi-turn conversation, sent to Converse ahead of the new user message.
+ */
+public record ConversationTurn(Role role, String text) {
+
+    public enum Role {
+        USER, ASSISTANT
+    }
+
+    public static ConversationTurn user(String text) {
+        return new ConversationTurn(Role.USER, text);
+    }
+
+    public static ConversationTurn assistant(String text) {
+        return new ConversationTurn(Role.ASSISTANT, text);
+    }
+}
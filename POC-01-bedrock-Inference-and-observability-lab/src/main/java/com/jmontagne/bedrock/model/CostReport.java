@@ -0,0 +1,61 @@
+package com.jmontagne.bedrock.model;
+
+import java.util.Map;
+
+/**
+ * Spend since startup from the token usage Bedrock reported, broken down by model, endpoint and
+ * caller (most expensive first), plus the recent spend rate used to spot runaway cost.
+ *
+ * @param since             when accounting started (ISO-8601)
+ * @param total             all calls, including {@code estimated}
+ * @param estimated         the share of {@code total} priced from estimated tokens: calls that
+ *                          ended without Bedrock's usage report (hedge losers, disconnected
+ *                          clients, output-budget truncations), which Bedrock still bills
+ * @param windowSeconds     length of the recent window
+ * @param windowUsd         spend within the recent window
+ * @param usdPerHour        {@code windowUsd} projected to an hour
+ * @param alertUsdPerHour   configured alert threshold, 0 when disabled
+ * @param alerting          whether {@code usdPerHour} is above the threshold
+ * @param byModel           per {@link ModelType}
+ * @param byEndpoint        per API endpoint
+ * @param topCallers        per API key (long keys shortened), most expensive first
+ */
+public record CostReport(
+        String since,
+        Spend total,
+        Spend estimated,
+        long windowSeconds,
+        double windowUsd,
+        double usdPerHour,
+        double alertUsdPerHour,
+        boolean alerting,
+        Map<String, Spend> byModel,
+        Map<String, Spend> byEndpoint,
+        Map<String, Spend> topCallers
+) {
+
+    /**
+     * Usage and cost of a set of calls.
+     */
+    public record Spend(
+            long requests,
+            long inputTokens,
+            long outputTokens,
+            long cacheReadInputTokens,
+            long cacheWriteInputTokens,
+            double costUsd
+    ) {
+        public static final Spend NONE = new Spend(0, 0, 0, 0, 0, 0);
+
+        public Spend plus(Spend other) {
+            return new Spend(
+                    requests + other.requests,
+                    inputTokens + other.inputTokens,
+                    outputTokens + other.outputTokens,
+                    cacheReadInputTokens + other.cacheReadInputTokens,
+                    cacheWriteInputTokens + other.cacheWriteInputTokens,
+                    costUsd + other.costUsd
+            );
+        }
+    }
+}
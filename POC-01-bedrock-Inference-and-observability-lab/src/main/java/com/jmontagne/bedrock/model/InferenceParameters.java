@@ -6,7 +6,8 @@ public record InferenceParameters(
         Double temperature,
         Double topP,
         Integer maxTokens,
-        List<String> stopSequences
+        List<String> stopSequences,
+        OutputBudget budget
 ) {
     public static final InferenceParameters DEFAULT = new InferenceParameters(
             0.7,
@@ -15,6 +16,10 @@ public record InferenceParameters(
             List.of()
     );
 
+    public InferenceParameters(Double temperature, Double topP, Integer maxTokens, List<String> stopSequences) {
+        this(temperature, topP, maxTokens, stopSequences, OutputBudget.UNLIMITED);
+    }
+
     public static InferenceParameters withTemperature(double temperature) {
         return new InferenceParameters(temperature, DEFAULT.topP(), DEFAULT.maxTokens(), DEFAULT.stopSequences());
     }
@@ -24,10 +29,14 @@ public record InferenceParameters(
     }
 
     public InferenceParameters withMaxTokens(int maxTokens) {
-        return new InferenceParameters(this.temperature, this.topP, maxTokens, this.stopSequences);
+        return new InferenceParameters(this.temperature, this.topP, maxTokens, this.stopSequences, this.budget);
     }
 
     public InferenceParameters withStopSequences(List<String> stopSequences) {
-        return new InferenceParameters(this.temperature, this.topP, this.maxTokens, stopSequences);
+        return new InferenceParameters(this.temperature, this.topP, this.maxTokens, stopSequences, this.budget);
+    }
+
+    public InferenceParameters withBudget(OutputBudget budget) {
+        return new InferenceParameters(this.temperature, this.topP, this.maxTokens, this.stopSequences, budget);
     }
 }
@@ -1,10 +1,17 @@
 package com.jmontagne.bedrock.model;
 
+import java.util.List;
+
+/**
+ * @param history earlier turns of a session, oldest first, alternating user/assistant; empty
+ *                for single-shot requests
+ */
 public record InferenceRequest(
         String systemPrompt,
         String userMessage,
         ModelType modelType,
-        InferenceParameters parameters
+        InferenceParameters parameters,
+        List<ConversationTurn> history
 ) {
     public static final String JACQUES_MONTAGNE_SYSTEM_PROMPT = """
             You are Jacques Montagne, a distinguished French master chef with over 40 years of culinary experience.
@@ -26,6 +33,14 @@ public record InferenceRequest(
             Remember: "La cuisine, c'est de l'amour rendu visible" (Cooking is love made visible).
             """;
 
+    public InferenceRequest {
+        history = history != null ? List.copyOf(history) : List.of();
+    }
+
+    public InferenceRequest(String systemPrompt, String userMessage, ModelType modelType, InferenceParameters parameters) {
+        this(systemPrompt, userMessage, modelType, parameters, List.of());
+    }
+
     public static InferenceRequest withJacquesMontagne(String userMessage, ModelType modelType) {
         return new InferenceRequest(
                 JACQUES_MONTAGNE_SYSTEM_PROMPT,
@@ -45,6 +60,28 @@ public record InferenceRequest(
     }
 
     public InferenceRequest withParameters(InferenceParameters newParameters) {
-        return new InferenceRequest(this.systemPrompt, this.userMessage, this.modelType, newParameters);
+        return new InferenceRequest(this.systemPrompt, this.userMessage, this.modelType, newParameters, this.history);
+    }
+
+    public InferenceRequest withModelType(ModelType newModelType) {
+        return new InferenceRequest(this.systemPrompt, this.userMessage, newModelType, this.parameters, this.history);
+    }
+
+    /**
+     * Input tokens before Bedrock has reported them: ~4 prompt characters per token.
+     */
+    public int estimatedInputTokens() {
+        return Math.max(1, promptChars() / 4);
+    }
+
+    /**
+     * Prompt size in characters: system prompt, history and the new message.
+     */
+    public int promptChars() {
+        int chars = userMessage.length() + (systemPrompt != null ? systemPrompt.length() : 0);
+        for (ConversationTurn turn : history) {
+            chars += turn.text().length();
+        }
+        return chars;
     }
 }
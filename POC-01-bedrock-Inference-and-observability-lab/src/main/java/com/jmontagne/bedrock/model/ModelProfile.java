@@ -0,0 +1,51 @@
+package com.jmontagne.bedrock.model;
+
+/**
+ * Configurable attributes of a {@link ModelType}: on-demand price, context limits, a relative
+ * quality tier for routing, the account's Bedrock RPM/TPM quotas and prompt-caching support.
+ *
+ * @param inputPricePerMillion      USD per million input tokens
+ * @param outputPricePerMillion     USD per million output tokens
+ * @param cacheReadPricePerMillion  USD per million input tokens read from the prompt cache
+ * @param cacheWritePricePerMillion USD per million input tokens written to the prompt cache
+ * @param contextWindow             max input + output tokens
+ * @param maxOutputTokens           max tokens the model will generate
+ * @param qualityTier               1 = fast/cheap, higher = more capable
+ * @param requestsPerMinute         on-demand RPM quota
+ * @param tokensPerMinute           on-demand TPM quota
+ * @param promptCaching             whether the model accepts Converse cache points
+ */
+public record ModelProfile(
+        double inputPricePerMillion,
+        double outputPricePerMillion,
+        double cacheReadPricePerMillion,
+        double cacheWritePricePerMillion,
+        int contextWindow,
+        int maxOutputTokens,
+        int qualityTier,
+        long requestsPerMinute,
+        long tokensPerMinute,
+        boolean promptCaching
+) {
+    public double costOf(long inputTokens, long outputTokens) {
+        return (inputTokens * inputPricePerMillion + outputTokens * outputPricePerMillion) / 1_000_000.0;
+    }
+
+    /**
+     * What one call was billed, from the usage Bedrock reported for it: uncached input, output,
+     * and prompt-cache reads and writes, each at its own price.
+     */
+    public double costOf(PerformanceMetrics usage) {
+        return (usage.inputTokens() * inputPricePerMillion
+                + usage.outputTokens() * outputPricePerMillion
+                + usage.cacheReadInputTokens() * cacheReadPricePerMillion
+                + usage.cacheWriteInputTokens() * cacheWritePricePerMillion) / 1_000_000.0;
+    }
+
+    /**
+     * Blended price of a typical request, used to rank models by cost.
+     */
+    public double blendedPricePerMillion() {
+        return (3 * inputPricePerMillion + outputPricePerMillion) / 4;
+    }
+}
@@ -0,0 +1,28 @@
+package com.jmontagne.bedrock.model;
+
+import java.time.Duration;
+
+/**
+ * Client-side cap on a single generation. When either limit is hit the stream is cancelled,
+ * which cancels the SDK call and closes the HTTP stream, so Bedrock stops generating (and
+ * billing) output nobody will read. {@code null} means no limit.
+ */
+public record OutputBudget(
+        Integer maxChars,
+        Duration maxWallTime
+) {
+    public static final OutputBudget UNLIMITED = new OutputBudget(null, null);
+
+    public static final String STOP_REASON = "client_budget_exceeded";
+
+    public static OutputBudget of(Integer maxChars, Long maxWallTimeMs) {
+        if (maxChars == null && maxWallTimeMs == null) {
+            return UNLIMITED;
+        }
+        return new OutputBudget(maxChars, maxWallTimeMs != null ? Duration.ofMillis(maxWallTimeMs) : null);
+    }
+
+    public boolean isUnlimited() {
+        return maxChars == null && maxWallTime == null;
+    }
+}
@@ -7,6 +7,8 @@ public record PerformanceMetrics(
         long totalGenerationTimeMs,
         int inputTokens,
         int outputTokens,
+        int cacheReadInputTokens,
+        int cacheWriteInputTokens,
         ModelType modelType
 ) {
     public double tokensPerSecond() {
@@ -26,15 +28,25 @@ public record PerformanceMetrics(
         return inputTokens + outputTokens;
     }
 
+    /**
+     * Share of the prompt served from the Bedrock prompt cache.
+     */
+    public double cacheHitRatio() {
+        int prompt = inputTokens + cacheReadInputTokens + cacheWriteInputTokens;
+        return prompt == 0 ? 0 : (double) cacheReadInputTokens / prompt;
+    }
+
     @Override
     public String toString() {
         return String.format(
-                "PerformanceMetrics[model=%s, TTFT=%dms, total=%dms, tokens=%d/%d, %.2f tok/s]",
+                "PerformanceMetrics[model=%s, TTFT=%dms, total=%dms, tokens=%d/%d, cache=%d read/%d write, %.2f tok/s]",
                 modelType.getDisplayName(),
                 timeToFirstTokenMs,
                 totalGenerationTimeMs,
                 inputTokens,
                 outputTokens,
+                cacheReadInputTokens,
+                cacheWriteInputTokens,
                 tokensPerSecond()
         );
     }
@@ -48,6 +60,8 @@ public record PerformanceMetrics(
         private long totalGenerationTimeMs;
         private int inputTokens;
         private int outputTokens;
+        private int cacheReadInputTokens;
+        private int cacheWriteInputTokens;
         private ModelType modelType;
 
         public Builder timeToFirstTokenMs(long ttft) {
@@ -70,6 +84,16 @@ public record PerformanceMetrics(
             return this;
         }
 
+        public Builder cacheReadInputTokens(int tokens) {
+            this.cacheReadInputTokens = tokens;
+            return this;
+        }
+
+        public Builder cacheWriteInputTokens(int tokens) {
+            this.cacheWriteInputTokens = tokens;
+            return this;
+        }
+
         public Builder modelType(ModelType type) {
             this.modelType = type;
             return this;
@@ -81,6 +105,8 @@ public record PerformanceMetrics(
                     totalGenerationTimeMs,
                     inputTokens,
                     outputTokens,
+                    cacheReadInputTokens,
+                    cacheWriteInputTokens,
                     modelType
             );
         }
@@ -0,0 +1,6 @@
+package com.jmontagne.bedrock.model;
+
+public record RoutedInferenceResponse(
+        RoutingDecision routing,
+        InferenceResponse response
+) {}
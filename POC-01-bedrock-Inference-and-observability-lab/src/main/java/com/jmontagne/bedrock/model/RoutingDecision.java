@@ -0,0 +1,17 @@
+package com.jmontagne.bedrock.model;
+
+/**
+ * Why the auto router sent a request to {@code modelType}.
+ *
+ * @param reason                {@code cheapest_capable}, {@code slo_fallback} or {@code best_effort}
+ * @param complexity            prompt complexity score in [0, 1]
+ * @param requiredTier          quality tier the complexity called for
+ * @param estimatedPromptTokens whole-prompt size estimate (chars / 4), history and system prompt included
+ */
+public record RoutingDecision(
+        ModelType modelType,
+        String reason,
+        double complexity,
+        int requiredTier,
+        int estimatedPromptTokens
+) {}
@@ -0,0 +1,64 @@
+package com.jmontagne.bedrock.model;
+
+import java.util.Arrays;
+
+/**
+ * Summary of repeated measurements of one candidate. Percentiles are nearest-rank over the raw
+ * samples (runs are few, so no histogram). {@code ci95} is the half-width of the 95% confidence
+ * interval of the mean (Student's t), so two candidates whose {@code mean ± ci95} ranges do not
+ * overlap differ by more than run-to-run noise.
+ */
+public record SampleDistribution(
+        int count,
+        double min,
+        double p50,
+        double p90,
+        double p99,
+        double max,
+        double mean,
+        double stdDev,
+        double ci95
+) {
+    public static final SampleDistribution EMPTY = new SampleDistribution(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    // Two-sided 95% t critical values for 1..30 degrees of freedom
+    private static final double[] T_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+    private static final double Z_95 = 1.960;
+
+    public static SampleDistribution of(double[] samples) {
+        if (samples.length == 0) {
+            return EMPTY;
+        }
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+
+        double sum = 0;
+        for (double sample : sorted) {
+            sum += sample;
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (double sample : sorted) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        double stdDev = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+        double ci95 = n > 1 ? tCritical(n - 1) * stdDev / Math.sqrt(n) : 0;
+
+        return new SampleDistribution(n, sorted[0], percentile(sorted, 50), percentile(sorted, 90),
+                percentile(sorted, 99), sorted[n - 1], mean, stdDev, ci95);
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double tCritical(int degreesOfFreedom) {
+        return degreesOfFreedom <= T_95.length ? T_95[degreesOfFreedom - 1] : Z_95;
+    }
+}
@@ -0,0 +1,80 @@
+package com.jmontagne.bedrock.model;
+
+/**
+ * A single Server-Sent Event emitted by the token streaming endpoints.
+ *
+ * <p>Each event carries the SSE {@code event:} name and the object serialized into
+ * its {@code data:} line, so the Spring MVC ({@code SseEmitter}) and Lambda
+ * response-streaming paths produce the same wire format.</p>
+ */
+public sealed interface StreamEvent {
+
+    String eventName();
+
+    Object payload();
+
+    /**
+     * One {@code ContentBlockDeltaEvent} text fragment, forwarded as soon as it arrives.
+     */
+    record Token(String text) implements StreamEvent {
+        @Override
+        public String eventName() {
+            return "token";
+        }
+
+        @Override
+        public Object payload() {
+            return this;
+        }
+    }
+
+    /**
+     * The model's {@code MessageStopEvent} reason ({@code end_turn}, {@code max_tokens}, ...).
+     */
+    record Stop(String stopReason) implements StreamEvent {
+        @Override
+        public String eventName() {
+            return "stop";
+        }
+
+        @Override
+        public Object payload() {
+            return this;
+        }
+    }
+
+    /**
+     * Final event of a successful stream.
+     */
+    record Metrics(PerformanceMetrics metrics) implements StreamEvent {
+        @Override
+        public String eventName() {
+            return "metrics";
+        }
+
+        @Override
+        public Object payload() {
+            return metrics;
+        }
+    }
+
+    /**
+     * Terminal event sent instead of {@link Metrics} when the stream fails mid-flight,
+     * since the HTTP status has already been committed.
+     */
+    record Error(String code, String message) implements StreamEvent {
+        @Override
+        public String eventName() {
+            return "error";
+        }
+
+        @Override
+        public Object payload() {
+            return this;
+        }
+
+        public static Error from(Throwable throwable) {
+            return new Error(throwable.getClass().getSimpleName(), throwable.getMessage());
+        }
+    }
+}
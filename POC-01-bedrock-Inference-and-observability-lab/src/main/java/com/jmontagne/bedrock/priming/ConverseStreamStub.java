@@ -0,0 +1,91 @@
+package com.jmontagne.bedrock.priming;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback HTTP endpoint that answers every ConverseStream call with a short, well-formed
+ * event stream ({@code messageStart}, one text delta, {@code messageStop}, {@code metadata})
+ * without calling Bedrock. Used to drive the real client, marshallers and Netty pipeline
+ * during priming; it costs nothing and needs no network.
+ *
+ * <p>{@link #main} runs it standalone on a fixed port, as the Bedrock endpoint for the native
+ * image smoke test ({@code scripts/native-smoke-test.sh}).</p>
+ */
+public final class ConverseStreamStub implements AutoCloseable {
+
+    public static final String TEXT = "Bonjour";
+
+    private static final List<byte[]> RESPONSE = List.of(
+            EventStreamEncoder.event("messageStart", "{\"role\":\"assistant\"}"),
+            EventStreamEncoder.event("contentBlockDelta", "{\"contentBlockIndex\":0,\"delta\":{\"text\":\"" + TEXT + "\"}}"),
+            EventStreamEncoder.event("contentBlockStop", "{\"contentBlockIndex\":0}"),
+            EventStreamEncoder.event("messageStop", "{\"stopReason\":\"end_turn\"}"),
+            EventStreamEncoder.event("metadata",
+                    "{\"usage\":{\"inputTokens\":1,\"outputTokens\":1,\"totalTokens\":2},\"metrics\":{\"latencyMs\":1}}")
+    );
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private ConverseStreamStub(HttpServer server) {
+        this.server = server;
+    }
+
+    public static ConverseStreamStub start() throws IOException {
+        return start(0);
+    }
+
+    public static ConverseStreamStub start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ConverseStreamStub stub = new ConverseStreamStub(server);
+        server.createContext("/", stub::handle);
+        server.start();
+        return stub;
+    }
+
+    /**
+     * {@code java -cp <jar> com.jmontagne.bedrock.priming.ConverseStreamStub [port]}; runs until killed.
+     */
+    public static void main(String[] args) throws IOException {
+        ConverseStreamStub stub = start(args.length > 0 ? Integer.parseInt(args[0]) : 8089);
+        System.out.println("ConverseStream stub listening on " + stub.endpoint());
+    }
+
+    public URI endpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "application/vnd.amazon.eventstream");
+            exchange.getResponseHeaders().set("x-amzn-RequestId", UUID.randomUUID().toString());
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            for (byte[] frame : RESPONSE) {
+                body.write(frame);
+            }
+            body.flush();
+        }
+    }
+}
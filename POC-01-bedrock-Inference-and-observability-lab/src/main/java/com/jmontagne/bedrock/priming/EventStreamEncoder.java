@@ -0,0 +1,90 @@
+package com.jmontagne.bedrock.priming;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes AWS event stream frames ({@code application/vnd.amazon.eventstream}), the binary
+ * framing ConverseStream responses use:
+ *
+ * <pre>
+ * [total length:4][headers length:4][prelude CRC32:4][headers][payload][message CRC32:4]
+ * header = [name length:1][name][type:1 = 7 (string)][value length:2][value]
+ * </pre>
+ *
+ * Only string headers are written, which is all a ConverseStream event needs.
+ */
+public final class EventStreamEncoder {
+
+    private static final int PRELUDE_BYTES = 12;
+    private static final int CRC_BYTES = 4;
+    private static final byte STRING_HEADER = 7;
+
+    private EventStreamEncoder() {
+    }
+
+    /**
+     * One {@code event} message carrying a JSON payload, e.g. {@code contentBlockDelta}.
+     */
+    public static byte[] event(String eventType, String jsonPayload) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(":event-type", eventType);
+        headers.put(":content-type", "application/json");
+        headers.put(":message-type", "event");
+        return encode(headers, jsonPayload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A modeled exception frame, e.g. {@code throttlingException} mid-stream.
+     */
+    public static byte[] exception(String exceptionType, String message) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(":exception-type", exceptionType);
+        headers.put(":content-type", "application/json");
+        headers.put(":message-type", "exception");
+        String payload = "{\"message\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+        return encode(headers, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] encode(Map<String, String> headers, byte[] payload) {
+        byte[] encodedHeaders = encodeHeaders(headers);
+        int total = PRELUDE_BYTES + encodedHeaders.length + payload.length + CRC_BYTES;
+
+        ByteBuffer frame = ByteBuffer.allocate(total);
+        frame.putInt(total);
+        frame.putInt(encodedHeaders.length);
+        frame.putInt((int) crc32(frame.array(), 0, 8));
+        frame.put(encodedHeaders);
+        frame.put(payload);
+        frame.putInt((int) crc32(frame.array(), 0, total - CRC_BYTES));
+        return frame.array();
+    }
+
+    private static byte[] encodeHeaders(Map<String, String> headers) {
+        int size = 0;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            size += 1 + header.getKey().length() + 1 + 2 + header.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            byte[] name = header.getKey().getBytes(StandardCharsets.US_ASCII);
+            byte[] value = header.getValue().getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) name.length);
+            buffer.put(name);
+            buffer.put(STRING_HEADER);
+            buffer.putShort((short) value.length);
+            buffer.put(value);
+        }
+        return buffer.array();
+    }
+
+    private static long crc32(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+}
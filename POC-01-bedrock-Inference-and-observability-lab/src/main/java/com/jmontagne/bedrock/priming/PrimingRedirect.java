@@ -0,0 +1,42 @@
+package com.jmontagne.bedrock.priming;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.SdkHttpRequest;
+
+import java.net.URI;
+
+/**
+ * Execution interceptor on the Bedrock Runtime client that, while a priming target is set,
+ * sends requests to that loopback endpoint instead of Bedrock.
+ *
+ * <p>Redirecting the one production client (rather than building a second one) is the point:
+ * its marshallers, signer, interceptor chain and Netty event loops are what the first real
+ * request would otherwise initialize. With no target set it passes requests through untouched.</p>
+ */
+public class PrimingRedirect implements ExecutionInterceptor {
+
+    private volatile URI target;
+
+    public void redirectTo(URI endpoint) {
+        this.target = endpoint;
+    }
+
+    public void clear() {
+        this.target = null;
+    }
+
+    @Override
+    public SdkHttpRequest modifyHttpRequest(Context.ModifyHttpRequest context, ExecutionAttributes executionAttributes) {
+        URI redirect = target;
+        if (redirect == null) {
+            return context.httpRequest();
+        }
+        return context.httpRequest().toBuilder()
+                .protocol(redirect.getScheme())
+                .host(redirect.getHost())
+                .port(redirect.getPort())
+                .build();
+    }
+}
@@ -0,0 +1,215 @@
+package com.jmontagne.bedrock.priming;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.controller.InferenceController;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.resilience.AdaptiveConcurrencyLimiter;
+import com.jmontagne.bedrock.resilience.CircuitBreaker;
+import com.jmontagne.bedrock.resilience.TokenQuotaManager;
+import com.jmontagne.bedrock.service.ModelRouter;
+import com.jmontagne.bedrock.service.OutputSizeEstimator;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.async.AsyncExecuteRequest;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpResponseHandler;
+import software.amazon.awssdk.http.async.SdkHttpContentPublisher;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRaC hooks for Lambda SnapStart.
+ *
+ * <p><b>beforeCheckpoint</b>: with {@code lazy-initialization} on, the snapshot would otherwise
+ * hold a context whose request path has never run. Priming calls the real
+ * {@link InferenceController} endpoints for every model while {@link PrimingRedirect} points the
+ * production Bedrock client at a loopback {@link ConverseStreamStub}, then serializes the
+ * responses. That creates the lazy beans and loads and JIT-warms the controller, Reactor
+ * pipeline, SDK marshallers, event-stream decoder, signer, Netty event loops and Jackson
+ * serializers, all without network access or Bedrock charges. The stub is stopped before the
+ * snapshot, so no socket is captured in it.</p>
+ *
+ * <p><b>afterRestore</b>: connections cannot survive a snapshot, so one unsigned request to the
+ * Bedrock Runtime endpoint re-opens a pooled TLS connection before the first invoke needs it.</p>
+ *
+ * <p>Everything that learns from traffic is reset after priming, so the snapshot starts from the
+ * same state as a cold start: the latency percentiles and the concurrency limiter's TTFT baseline
+ * (the stub's microsecond TTFT would distort both), the {@link CostTracker} spend and the local
+ * RPM/TPM buckets (the stub's usage was never billed or counted by Bedrock), and the router's
+ * error rates, the output-size estimate and the circuit breakers' windows.</p>
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "bedrock.priming.enabled", havingValue = "true")
+public class SnapStartPriming implements Resource {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapStartPriming.class);
+
+    static final String PRIMING_MESSAGE = "Priming request";
+    private static final Duration RECONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    private final InferenceController controller;
+    private final ObjectMapper objectMapper;
+    private final PrimingRedirect redirect;
+    private final SdkAsyncHttpClient httpClient;
+    private final LatencyTelemetry telemetry;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CostTracker costTracker;
+    private final TokenQuotaManager quotaManager;
+    private final ModelRouter router;
+    private final OutputSizeEstimator outputSizes;
+    private final CircuitBreaker circuitBreaker;
+    private final URI bedrockEndpoint;
+    private final int iterations;
+
+    public SnapStartPriming(
+            InferenceController controller,
+            ObjectMapper objectMapper,
+            PrimingRedirect redirect,
+            SdkAsyncHttpClient bedrockHttpClient,
+            LatencyTelemetry telemetry,
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            CostTracker costTracker,
+            TokenQuotaManager quotaManager,
+            ModelRouter router,
+            OutputSizeEstimator outputSizes,
+            CircuitBreaker circuitBreaker,
+            @Value("${aws.region:us-east-1}") String region,
+            @Value("${bedrock.client.endpoint-override:}") String endpointOverride,
+            @Value("${bedrock.priming.iterations:3}") int iterations
+    ) {
+        this.controller = controller;
+        this.objectMapper = objectMapper;
+        this.redirect = redirect;
+        this.httpClient = bedrockHttpClient;
+        this.telemetry = telemetry;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.costTracker = costTracker;
+        this.quotaManager = quotaManager;
+        this.router = router;
+        this.outputSizes = outputSizes;
+        this.circuitBreaker = circuitBreaker;
+        this.bedrockEndpoint = URI.create(endpointOverride.isBlank()
+                ? "https://bedrock-runtime." + region + ".amazonaws.com"
+                : endpointOverride);
+        this.iterations = iterations;
+        // The global context holds resources weakly; this singleton bean keeps itself reachable
+        Core.getGlobalContext().register(this);
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        prime();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        reconnect();
+    }
+
+    /**
+     * Runs the priming requests. Never throws: a failed priming only costs the first request
+     * its lazy initialization.
+     *
+     * @return requests served by the stub
+     */
+    public int prime() {
+        long start = System.nanoTime();
+        try (ConverseStreamStub stub = ConverseStreamStub.start()) {
+            redirect.redirectTo(stub.endpoint());
+            for (int i = 0; i < iterations; i++) {
+                for (ModelType modelType : ModelType.values()) {
+                    objectMapper.writeValueAsBytes(controller.inference(modelType, PRIMING_MESSAGE, 0.7).getBody());
+                    // Already serialized by StreamResponseWriter
+                    controller.streamInference(modelType, PRIMING_MESSAGE, 0.7, 0.9, 256, null, null);
+                }
+            }
+            log.info("Primed request path with {} stub calls in {} ms", stub.requests(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return stub.requests();
+        } catch (Exception e) {
+            log.warn("Priming failed, the first request will initialize lazily: {}", e.getMessage());
+            return 0;
+        } finally {
+            redirect.clear();
+            telemetry.reset();
+            concurrencyLimiter.resetBaselines();
+            costTracker.reset();
+            quotaManager.reset();
+            router.reset();
+            outputSizes.reset();
+            circuitBreaker.reset();
+        }
+    }
+
+    /**
+     * Opens a pooled connection (TCP + TLS) to the Bedrock Runtime endpoint. The unsigned
+     * request is rejected by Bedrock, which is fine: only the connection matters.
+     */
+    public void reconnect() {
+        long start = System.nanoTime();
+        SdkHttpFullRequest request = SdkHttpFullRequest.builder()
+                .method(SdkHttpMethod.GET)
+                .uri(bedrockEndpoint)
+                .encodedPath("/")
+                .build();
+        try {
+            httpClient.execute(AsyncExecuteRequest.builder()
+                            .request(request)
+                            .requestContentPublisher(new EmptyContent())
+                            .responseHandler(new DrainingHandler())
+                            .build())
+                    .get(RECONNECT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Re-established Bedrock connection to {} in {} ms", bedrockEndpoint,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.warn("Reconnect after restore failed, the first request will connect: {}", e.getMessage());
+        }
+    }
+
+    private static final class EmptyContent implements SdkHttpContentPublisher {
+        @Override
+        public Optional<Long> contentLength() {
+            return Optional.of(0L);
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            Flux.<ByteBuffer>empty().subscribe(subscriber);
+        }
+    }
+
+    private static final class DrainingHandler implements SdkAsyncHttpResponseHandler {
+        @Override
+        public void onHeaders(SdkHttpResponse headers) {
+        }
+
+        @Override
+        public void onStream(Publisher<ByteBuffer> stream) {
+            Flux.from(stream).subscribe();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.metrics.LatencyMetric;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.bedrockruntime.model.ServiceQuotaExceededException;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive (AIMD) concurrency limiter in front of {@code BedrockRuntimeAsyncClient}, one limit per model.
+ *
+ * <p>The SDK's static {@code maxConcurrency} only caps connections; it does not know the account's
+ * per-model quota, so bursts turn into {@code ThrottlingException}s and retry storms. This limiter
+ * probes for the real capacity instead: the limit grows additively while time-to-first-token stays
+ * near its baseline and is cut multiplicatively on throttling or TTFT inflation.</p>
+ *
+ * <p>Calls over the limit wait in a bounded FIFO queue for at most {@code max-queue-wait}; when the
+ * queue is full or the wait expires the call fails fast with {@link ConcurrencyLimitExceededException},
+ * whose {@code Retry-After} is derived from the model's recent mean generation time.</p>
+ *
+ * <p>Publishes {@code bedrock.concurrency.limit}, {@code bedrock.concurrency.inflight},
+ * {@code bedrock.concurrency.queued} and {@code bedrock.concurrency.rejected}, tagged by model.</p>
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final boolean enabled;
+    private final Duration maxQueueWait;
+    private final LatencyTelemetry telemetry;
+    private final Map<ModelType, ModelConcurrencyLimit> limits = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Counter> rejected = new EnumMap<>(ModelType.class);
+
+    public AdaptiveConcurrencyLimiter(
+            MeterRegistry registry,
+            LatencyTelemetry telemetry,
+            @Value("${bedrock.concurrency.enabled:true}") boolean enabled,
+            @Value("${bedrock.concurrency.initial-limit:10}") int initialLimit,
+            @Value("${bedrock.concurrency.min-limit:1}") int minLimit,
+            @Value("${bedrock.concurrency.max-limit:50}") int maxLimit,
+            @Value("${bedrock.concurrency.backoff-ratio:0.7}") double backoffRatio,
+            @Value("${bedrock.concurrency.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${bedrock.concurrency.max-queue:100}") int maxQueue,
+            @Value("${bedrock.concurrency.max-queue-wait:PT2S}") Duration maxQueueWait) {
+        this.enabled = enabled;
+        this.maxQueueWait = maxQueueWait;
+        this.telemetry = telemetry;
+
+        for (ModelType modelType : ModelType.values()) {
+            ModelConcurrencyLimit limit = new ModelConcurrencyLimit(
+                    initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, maxQueue);
+            limits.put(modelType, limit);
+
+            String model = modelType.name();
+            Gauge.builder("bedrock.concurrency.limit", limit, ModelConcurrencyLimit::limit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("model", model)
+                    .register(registry);
+            Gauge.builder("bedrock.concurrency.inflight", limit, ModelConcurrencyLimit::inFlight)
+                    .description("Bedrock calls currently holding a concurrency permit")
+                    .tag("model", model)
+                    .register(registry);
+            Gauge.builder("bedrock.concurrency.queued", limit, ModelConcurrencyLimit::queued)
+                    .description("Calls waiting for a concurrency permit")
+                    .tag("model", model)
+                    .register(registry);
+            rejected.put(modelType, Counter.builder("bedrock.concurrency.rejected")
+                    .description("Calls rejected because the concurrency limit and wait queue were exhausted")
+                    .tag("model", model)
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Runs {@code call} once a permit for {@code modelType} is available. The permit is held until
+     * the stream terminates or is cancelled, and the outcome feeds the AIMD controller.
+     */
+    public Flux<StreamEvent> limit(ModelType modelType, Supplier<Flux<StreamEvent>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        ModelConcurrencyLimit limit = limits.get(modelType);
+        return acquire(modelType, limit).flatMapMany(permit -> {
+            if (!permit.use()) {
+                // Released by a cancellation that raced with the grant
+                return Flux.<StreamEvent>empty();
+            }
+            long start = System.nanoTime();
+            AtomicLong ttft = new AtomicLong();
+
+            return call.get()
+                    .doOnNext(event -> {
+                        if (event instanceof StreamEvent.Token && ttft.get() == 0) {
+                            ttft.compareAndSet(0, System.nanoTime() - start);
+                        }
+                    })
+                    .doOnComplete(() -> limit.onSuccess(ttft.get()))
+                    .doOnError(error -> {
+                        if (isThrottling(error)) {
+                            limit.onThrottled();
+                            log.warn("Throttled by Bedrock, concurrency limit for {} reduced to {}",
+                                    modelType.getDisplayName(), limit.limit());
+                        }
+                    })
+                    .doFinally(signal -> permit.release());
+        }).doOnDiscard(ModelConcurrencyLimit.Permit.class, ModelConcurrencyLimit.Permit::release);
+    }
+
+    /**
+     * The queue wait expires through the permit itself rather than a timeout operator: expiry and
+     * grant race on the permit's state, so a grant is never dropped with its permit still taken.
+     */
+    private Mono<ModelConcurrencyLimit.Permit> acquire(ModelType modelType, ModelConcurrencyLimit limit) {
+        return Mono.create(sink -> {
+            ModelConcurrencyLimit.Permit permit = limit.tryAcquirePermit();
+            if (permit != null) {
+                sink.success(permit);
+                return;
+            }
+
+            ModelConcurrencyLimit.Permit waiter = limit.enqueue(sink);
+            if (waiter == null) {
+                sink.error(reject(modelType, limit));
+                return;
+            }
+            sink.onDispose(Schedulers.parallel().schedule(() -> {
+                if (waiter.expire()) {
+                    sink.error(reject(modelType, limit));
+                }
+            }, maxQueueWait.toNanos(), TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private ConcurrencyLimitExceededException reject(ModelType modelType, ModelConcurrencyLimit limit) {
+        rejected.get(modelType).increment();
+        return new ConcurrencyLimitExceededException(modelType, limit.limit(), retryAfter(modelType));
+    }
+
+    /**
+     * One mean generation time is roughly how long until a permit frees up; at least one second.
+     */
+    private Duration retryAfter(ModelType modelType) {
+        double meanMs = telemetry.mean(modelType, LatencyMetric.GENERATION_TIME);
+        long seconds = Double.isNaN(meanMs) ? 1 : (long) Math.ceil(meanMs / 1000.0);
+        return Duration.ofSeconds(Math.max(1, seconds));
+    }
+
+    static boolean isThrottling(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ThrottlingException || t instanceof ServiceQuotaExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the TTFT baselines, e.g. after priming calls against a loopback stub whose
+     * near-zero TTFT would make every real call look like a latency regression.
+     */
+    public void resetBaselines() {
+        limits.values().forEach(ModelConcurrencyLimit::resetBaseline);
+    }
+
+    public int currentLimit(ModelType modelType) {
+        return limits.get(modelType).limit();
+    }
+
+    public int inFlight(ModelType modelType) {
+        return limits.get(modelType).inFlight();
+    }
+}
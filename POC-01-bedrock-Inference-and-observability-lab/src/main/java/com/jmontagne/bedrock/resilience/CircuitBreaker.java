@@ -0,0 +1,266 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.bedrockruntime.model.InternalServerException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelErrorException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelNotReadyException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelStreamErrorException;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelTimeoutException;
+import software.amazon.awssdk.services.bedrockruntime.model.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-model circuit breaker in front of the Bedrock call, so an unhealthy model fails in
+ * microseconds instead of every request waiting out {@code bedrock.client.read-timeout-ms}.
+ *
+ * <p>Each {@link ModelType} has a {@link ModelCircuit} over its last
+ * {@code bedrock.circuit-breaker.window-size} calls. A call counts as failed on
+ * {@code ModelNotReadyException}, {@code ModelTimeoutException}, Bedrock 5xx and model stream
+ * errors, and SDK client failures (connection errors, API call timeouts); as slow when the TTFT
+ * in its final metrics event is at least {@code slow-call-threshold}. Throttling, validation
+ * errors and local quota/concurrency rejections say nothing about the model's health and are not
+ * counted.</p>
+ *
+ * <p>Callers give up before the SDK's read timeout does (their 60 s timeouts start earlier and also
+ * cover queueing), so a cancelled call is judged from when the breaker admitted it: a stream that
+ * had been silent for {@code stall-timeout} counts as failed, one still without a token (or whose
+ * first token came) after {@code slow-call-threshold} as slow, anything else is not counted. The
+ * stall timeout must stay well below the callers' timeouts and above the local quota and queue
+ * waits, which it includes.</p>
+ *
+ * <p>While a circuit is open, requests go to {@code bedrock.circuit-breaker.fallback-model} if
+ * it is set and its own circuit admits them, otherwise they fail with
+ * {@link CircuitOpenException} (HTTP 503). After {@code open-duration},
+ * {@code half-open-calls} probes decide whether the model is back.</p>
+ *
+ * <p>Publishes {@code bedrock.circuit.state{state}} (1 for the current state),
+ * {@code bedrock.circuit.failure.rate}, {@code bedrock.circuit.slow.rate},
+ * {@code bedrock.circuit.rejected} and {@code bedrock.circuit.fallbacks}, tagged by model.</p>
+ */
+@Component
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final long NO_TOKEN = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final long slowCallThresholdMs;
+    private final long slowCallThresholdNanos;
+    private final long stallTimeoutNanos;
+    private final ModelType fallbackModel;
+    private final LongSupplier clock;
+    private final Map<ModelType, ModelCircuit> circuits = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Counter> rejected = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Counter> fallbacks = new EnumMap<>(ModelType.class);
+
+    @Autowired
+    public CircuitBreaker(
+            MeterRegistry registry,
+            @Value("${bedrock.circuit-breaker.enabled:true}") boolean enabled,
+            @Value("${bedrock.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${bedrock.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${bedrock.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${bedrock.circuit-breaker.slow-call-threshold:PT10S}") Duration slowCallThreshold,
+            @Value("${bedrock.circuit-breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+            @Value("${bedrock.circuit-breaker.open-duration:PT30S}") Duration openDuration,
+            @Value("${bedrock.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+            @Value("${bedrock.circuit-breaker.fallback-model:}") String fallbackModel,
+            @Value("${bedrock.circuit-breaker.stall-timeout:PT30S}") Duration stallTimeout) {
+        this(registry, enabled, windowSize, minimumCalls, failureRateThreshold, slowCallThreshold,
+                slowCallRateThreshold, openDuration, halfOpenCalls, fallbackModel, stallTimeout, System::nanoTime);
+    }
+
+    public CircuitBreaker(MeterRegistry registry, boolean enabled, int windowSize, int minimumCalls,
+                          double failureRateThreshold, Duration slowCallThreshold, double slowCallRateThreshold,
+                          Duration openDuration, int halfOpenCalls, String fallbackModel, Duration stallTimeout,
+                          LongSupplier clock) {
+        this.enabled = enabled;
+        this.slowCallThresholdMs = slowCallThreshold.toMillis();
+        this.slowCallThresholdNanos = slowCallThreshold.toNanos();
+        this.stallTimeoutNanos = stallTimeout.toNanos();
+        this.fallbackModel = fallbackModel == null || fallbackModel.isBlank() ? null : ModelType.valueOf(fallbackModel);
+        this.clock = clock;
+
+        for (ModelType modelType : ModelType.values()) {
+            ModelCircuit circuit = new ModelCircuit(windowSize, minimumCalls, failureRateThreshold,
+                    slowCallRateThreshold, openDuration, halfOpenCalls);
+            circuits.put(modelType, circuit);
+
+            String model = modelType.name();
+            for (ModelCircuit.State state : ModelCircuit.State.values()) {
+                Gauge.builder("bedrock.circuit.state", circuit, c -> c.state() == state ? 1 : 0)
+                        .description("1 for the circuit's current state, 0 otherwise")
+                        .tags("model", model, "state", state.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+            Gauge.builder("bedrock.circuit.failure.rate", circuit, ModelCircuit::failureRate)
+                    .description("Failed share of the calls in the circuit's sliding window")
+                    .tag("model", model)
+                    .register(registry);
+            Gauge.builder("bedrock.circuit.slow.rate", circuit, ModelCircuit::slowCallRate)
+                    .description("Slow share of the calls in the circuit's sliding window")
+                    .tag("model", model)
+                    .register(registry);
+            rejected.put(modelType, Counter.builder("bedrock.circuit.rejected")
+                    .description("Requests not sent to the model because its circuit was open")
+                    .tag("model", model)
+                    .register(registry));
+            fallbacks.put(modelType, Counter.builder("bedrock.circuit.fallbacks")
+                    .description("Requests sent to the fallback model because this model's circuit was open")
+                    .tag("model", model)
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Runs {@code call} for {@code request} if its model's circuit admits it, otherwise for the
+     * fallback model (when {@code allowFallback}) or fails with {@link CircuitOpenException}.
+     * The call's outcome is recorded against the circuit of the model actually called.
+     */
+    public Flux<StreamEvent> execute(InferenceRequest request, boolean allowFallback,
+                                     Function<InferenceRequest, Flux<StreamEvent>> call) {
+        if (!enabled) {
+            return call.apply(request);
+        }
+
+        return Flux.defer(() -> {
+            ModelType modelType = request.modelType();
+            ModelCircuit circuit = circuits.get(modelType);
+            long now = clock.getAsLong();
+            ModelCircuit.Permit permit = circuit.tryAcquire(now);
+            if (permit != null) {
+                return guarded(modelType, circuit, permit, request, call);
+            }
+
+            rejected.get(modelType).increment();
+            if (allowFallback && fallbackModel != null && fallbackModel != modelType) {
+                ModelCircuit fallbackCircuit = circuits.get(fallbackModel);
+                ModelCircuit.Permit fallbackPermit = fallbackCircuit.tryAcquire(now);
+                if (fallbackPermit != null) {
+                    fallbacks.get(modelType).increment();
+                    log.debug("Circuit open for {}, falling back to {}", modelType.getDisplayName(),
+                            fallbackModel.getDisplayName());
+                    return guarded(fallbackModel, fallbackCircuit, fallbackPermit,
+                            request.withModelType(fallbackModel), call);
+                }
+            }
+            return Flux.error(new CircuitOpenException(modelType, circuit.retryAfter(now)));
+        });
+    }
+
+    /**
+     * Closes every circuit with an empty window, e.g. after priming calls against a loopback stub.
+     */
+    public void reset() {
+        circuits.values().forEach(ModelCircuit::reset);
+    }
+
+    ModelCircuit.State state(ModelType modelType) {
+        return circuits.get(modelType).state();
+    }
+
+    private Flux<StreamEvent> guarded(ModelType modelType, ModelCircuit circuit, ModelCircuit.Permit permit,
+                                      InferenceRequest request, Function<InferenceRequest, Flux<StreamEvent>> call) {
+        AtomicBoolean recorded = new AtomicBoolean();
+        AtomicBoolean slow = new AtomicBoolean();
+        long admittedAt = clock.getAsLong();
+        AtomicLong firstTokenAt = new AtomicLong(NO_TOKEN);
+        AtomicLong lastEventAt = new AtomicLong(admittedAt);
+
+        return Flux.defer(() -> call.apply(request))
+                .doOnNext(event -> {
+                    long now = clock.getAsLong();
+                    lastEventAt.set(now);
+                    if (event instanceof StreamEvent.Token) {
+                        firstTokenAt.compareAndSet(NO_TOKEN, now);
+                    } else if (event instanceof StreamEvent.Metrics metrics
+                            && metrics.metrics().timeToFirstTokenMs() >= slowCallThresholdMs) {
+                        slow.set(true);
+                    }
+                })
+                .doOnComplete(() -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        record(modelType, circuit, permit, slow.get() ? ModelCircuit.Outcome.SLOW : ModelCircuit.Outcome.SUCCESS);
+                    }
+                })
+                .doOnError(error -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        record(modelType, circuit, permit, isFailure(error) ? ModelCircuit.Outcome.FAILURE : ModelCircuit.Outcome.IGNORED);
+                    }
+                })
+                .doOnCancel(() -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        record(modelType, circuit, permit,
+                                cancelled(admittedAt, firstTokenAt.get(), lastEventAt.get()));
+                    }
+                });
+    }
+
+    /**
+     * Outcome of a call the caller gave up on: failed if the stream had been silent, since
+     * admission or its last event, for the stall timeout; slow if its first token did not come
+     * within the slow-call threshold.
+     */
+    private ModelCircuit.Outcome cancelled(long admittedAt, long firstTokenAt, long lastEventAt) {
+        long now = clock.getAsLong();
+        if (now - lastEventAt >= stallTimeoutNanos) {
+            return ModelCircuit.Outcome.FAILURE;
+        }
+        long ttft = (firstTokenAt == NO_TOKEN ? now : firstTokenAt) - admittedAt;
+        return ttft >= slowCallThresholdNanos ? ModelCircuit.Outcome.SLOW : ModelCircuit.Outcome.IGNORED;
+    }
+
+    private void record(ModelType modelType, ModelCircuit circuit, ModelCircuit.Permit permit, ModelCircuit.Outcome outcome) {
+        ModelCircuit.State before = circuit.state();
+        ModelCircuit.State after = circuit.record(permit, outcome, clock.getAsLong());
+        if (before != after) {
+            if (after == ModelCircuit.State.OPEN && before == ModelCircuit.State.HALF_OPEN) {
+                log.warn("Circuit for {} re-opened after a {} probe", modelType.getDisplayName(),
+                        outcome == ModelCircuit.Outcome.SLOW ? "slow" : "failed");
+            } else if (after == ModelCircuit.State.OPEN) {
+                log.warn("Circuit for {} opened: failure rate {}%, slow-call rate {}%", modelType.getDisplayName(),
+                        Math.round(circuit.failureRate() * 100), Math.round(circuit.slowCallRate() * 100));
+            } else {
+                log.info("Circuit for {} is {}", modelType.getDisplayName(), after);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code error} says the model itself is unhealthy, as opposed to the request, the
+     * caller or the local limits.
+     */
+    static boolean isFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof ModelNotReadyException
+                || cause instanceof ModelTimeoutException
+                || cause instanceof InternalServerException
+                || cause instanceof ServiceUnavailableException
+                || cause instanceof ModelErrorException
+                || cause instanceof ModelStreamErrorException
+                || cause instanceof SdkClientException
+                || cause instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,30 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.time.Duration;
+
+/**
+ * Thrown without calling Bedrock when a model's circuit is open (or half-open with all probes
+ * taken) and no fallback model is available. Mapped to HTTP 503 with a {@code Retry-After} of
+ * when the circuit will let a probe through.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private final ModelType modelType;
+    private final Duration retryAfter;
+
+    public CircuitOpenException(ModelType modelType, Duration retryAfter) {
+        super("Circuit open for " + modelType.getDisplayName());
+        this.modelType = modelType;
+        this.retryAfter = retryAfter;
+    }
+
+    public ModelType getModelType() {
+        return modelType;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
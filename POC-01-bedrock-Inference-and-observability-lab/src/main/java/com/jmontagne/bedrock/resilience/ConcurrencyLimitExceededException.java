@@ -0,0 +1,29 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a model's adaptive concurrency limit is reached and the wait queue is full or
+ * the queued request waited too long. Mapped to HTTP 429 with a {@code Retry-After} hint.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final ModelType modelType;
+    private final Duration retryAfter;
+
+    public ConcurrencyLimitExceededException(ModelType modelType, int limit, Duration retryAfter) {
+        super("Concurrency limit of " + limit + " reached for " + modelType.getDisplayName());
+        this.modelType = modelType;
+        this.retryAfter = retryAfter;
+    }
+
+    public ModelType getModelType() {
+        return modelType;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,181 @@
+package com.jmontagne.bedrock.resilience;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker state for one model.
+ *
+ * <p>CLOSED keeps the outcomes of the last {@code windowSize} calls in a ring and opens once at
+ * least {@code minimumCalls} are recorded and the failure rate or the slow-call rate reaches its
+ * threshold. OPEN rejects everything for {@code openDuration}, then the next caller turns it
+ * HALF_OPEN, which lets {@code halfOpenCalls} probes through: one failed or slow probe re-opens
+ * it, all probes succeeding closes it with an empty window. The window is kept while the circuit
+ * is open, so the rate gauges show what opened it.</p>
+ *
+ * <p>The CLOSED admission check is one volatile read; recording outcomes and every other
+ * transition synchronize on the circuit. Regular calls only count while CLOSED and probes only
+ * while HALF_OPEN, so a slow call started before the circuit opened cannot decide a probe round.</p>
+ */
+class ModelCircuit {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * What a call was admitted as.
+     */
+    enum Permit { CALL, PROBE }
+
+    enum Outcome { SUCCESS, SLOW, FAILURE, IGNORED }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final Outcome[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAtNanos;
+
+    ModelCircuit(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold,
+                 Duration openDuration, int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new Outcome[windowSize];
+    }
+
+    /**
+     * The permit to call the model with, or {@code null} to reject the call.
+     */
+    Permit tryAcquire(long nowNanos) {
+        if (state == State.CLOSED) {
+            return Permit.CALL;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nowNanos - openedAtNanos < openNanos) {
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                probesIssued = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesIssued >= halfOpenCalls) {
+                    return null;
+                }
+                probesIssued++;
+                return Permit.PROBE;
+            }
+            return Permit.CALL;
+        }
+    }
+
+    /**
+     * Records how a call admitted with {@code permit} ended. Returns the state afterwards.
+     */
+    synchronized State record(Permit permit, Outcome outcome, long nowNanos) {
+        if (permit == Permit.PROBE) {
+            if (state == State.HALF_OPEN) {
+                switch (outcome) {
+                    case SUCCESS -> {
+                        if (++probesSucceeded >= halfOpenCalls) {
+                            close();
+                        }
+                    }
+                    case SLOW, FAILURE -> open(nowNanos);
+                    // Not the model's fault (throttled, cancelled): hand the probe to the next caller
+                    case IGNORED -> probesIssued--;
+                }
+            }
+            return state;
+        }
+
+        if (state != State.CLOSED || outcome == Outcome.IGNORED) {
+            return state;
+        }
+        if (recorded == windowSize) {
+            forget(window[next]);
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        next = (next + 1) % windowSize;
+        if (outcome == Outcome.FAILURE) {
+            failures++;
+        } else if (outcome == Outcome.SLOW) {
+            slowCalls++;
+        }
+
+        if (recorded >= minimumCalls
+                && (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+            open(nowNanos);
+        }
+        return state;
+    }
+
+    /**
+     * How long until the circuit lets a probe through (zero when half-open).
+     */
+    Duration retryAfter(long nowNanos) {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openNanos - (nowNanos - openedAtNanos)));
+    }
+
+    State state() {
+        return state;
+    }
+
+    synchronized double failureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    synchronized double slowCallRate() {
+        return recorded == 0 ? 0 : (double) slowCalls / recorded;
+    }
+
+    synchronized void reset() {
+        close();
+        probesIssued = 0;
+        probesSucceeded = 0;
+    }
+
+    private void forget(Outcome outcome) {
+        if (outcome == Outcome.FAILURE) {
+            failures--;
+        } else if (outcome == Outcome.SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open(long nowNanos) {
+        openedAtNanos = nowNanos;
+        state = State.OPEN;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,208 @@
+package com.jmontagne.bedrock.resilience;
+
+import reactor.core.publisher.MonoSink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD concurrency limit for one model.
+ *
+ * <p>Permits are taken with a CAS on {@link #inFlight}; only limit adjustments synchronize.
+ * The limit grows by {@code 1/limit} per successful call whose TTFT stays within
+ * {@code latencyTolerance} of the smoothed baseline (≈ +1 per round of calls), and is multiplied
+ * by {@code backoffRatio} on throttling or latency inflation.</p>
+ */
+class ModelConcurrencyLimit {
+
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int maxQueue;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Permit> waiters = new ConcurrentLinkedQueue<>();
+
+    private volatile double limit;
+    private double baselineTtftNanos;
+
+    ModelConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance, int maxQueue) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.maxQueue = maxQueue;
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A permit if one is free right now, otherwise {@code null}.
+     */
+    Permit tryAcquirePermit() {
+        return tryAcquire() ? new Permit(null, Permit.GRANTED) : null;
+    }
+
+    /**
+     * Queues a claim on the next free permit and completes {@code sink} with it once granted, or
+     * returns {@code null} when the queue is already full. Cancelling the sink abandons the claim,
+     * or releases the permit if the grant won the race.
+     */
+    Permit enqueue(MonoSink<Permit> sink) {
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            return null;
+        }
+        Permit waiter = new Permit(sink, Permit.WAITING);
+        sink.onCancel(waiter::abandon);
+        waiters.add(waiter);
+        drain();
+        return waiter;
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Hands free permits to queued waiters. Called after every release and enqueue so a waiter
+     * that raced with a release is never stranded.
+     */
+    void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            Permit waiter = waiters.poll();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            queued.decrementAndGet();
+            if (waiter.grant()) {
+                waiter.sink.success(waiter);
+            } else {
+                // Expired or cancelled between poll and grant: hand the permit back
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    synchronized void onSuccess(long ttftNanos) {
+        if (ttftNanos <= 0) {
+            return;
+        }
+        if (baselineTtftNanos == 0) {
+            baselineTtftNanos = ttftNanos;
+        }
+
+        if (ttftNanos > baselineTtftNanos * latencyTolerance) {
+            decrease();
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        baselineTtftNanos += BASELINE_SMOOTHING * (ttftNanos - baselineTtftNanos);
+        drain();
+    }
+
+    /**
+     * Forgets the TTFT baseline, so the next healthy call sets a new one.
+     */
+    synchronized void resetBaseline() {
+        baselineTtftNanos = 0;
+    }
+
+    synchronized void onThrottled() {
+        decrease();
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    /**
+     * One call's permit, or a queued claim on one. Grant, queue expiry, cancellation and release
+     * race on its state, so a granted permit goes back to the limit exactly once: after the call,
+     * or when the grant never reached a caller (cancelled, or dropped after a timeout).
+     */
+    final class Permit {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int IN_USE = 2;
+        private static final int RELEASED = 3;
+        private static final int ABANDONED = 4;
+
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state;
+
+        private Permit(MonoSink<Permit> sink, int state) {
+            this.sink = sink;
+            this.state = new AtomicInteger(state);
+        }
+
+        private boolean grant() {
+            return state.compareAndSet(WAITING, GRANTED);
+        }
+
+        /**
+         * Gives up a claim that has not been granted yet; {@code false} if the grant came first.
+         */
+        boolean expire() {
+            if (!state.compareAndSet(WAITING, ABANDONED)) {
+                return false;
+            }
+            if (waiters.remove(this)) {
+                queued.decrementAndGet();
+            }
+            return true;
+        }
+
+        private void abandon() {
+            if (!expire()) {
+                release();
+            }
+        }
+
+        /**
+         * Takes the granted permit for a call; {@code false} if it was already released.
+         */
+        boolean use() {
+            return state.compareAndSet(GRANTED, IN_USE);
+        }
+
+        /**
+         * Returns the permit, whether or not it was used; later calls do nothing.
+         */
+        void release() {
+            if (state.compareAndSet(IN_USE, RELEASED) || state.compareAndSet(GRANTED, RELEASED)) {
+                ModelConcurrencyLimit.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request would exceed a local RPM or TPM quota by more than the configured wait.
+ * Mapped to HTTP 429 with a {@code Retry-After} of when the quota will have room again.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    private final ModelType modelType;
+    private final String quota;
+    private final Duration retryAfter;
+
+    public QuotaExceededException(ModelType modelType, String quota, Duration retryAfter) {
+        super(quota + " quota exhausted for " + modelType.getDisplayName());
+        this.modelType = modelType;
+        this.quota = quota;
+        this.retryAfter = retryAfter;
+    }
+
+    public ModelType getModelType() {
+        return modelType;
+    }
+
+    public String getQuota() {
+        return quota;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,193 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.metrics.LatencyMetric;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Opt-in hedged requests against the long TTFT tail.
+ *
+ * <p>When the first event of a call has not arrived within the model's recent TTFT percentile
+ * ({@code bedrock.hedging.percentile}, p95 by default), a second call is fired — to the same model,
+ * or to {@code bedrock.hedging.fallback-model} — and whichever stream produces its first event
+ * first is the one returned ({@code Flux.firstWithValue}). The loser is cancelled, which cancels
+ * its Bedrock call. A primary that fails before the hedge fires fails the request as is: hedging
+ * is for slow calls, and re-sending a throttled call to the same model only adds load.</p>
+ *
+ * <p>A primary that loses to the hedge never reports its TTFT, so its elapsed time when cancelled
+ * is recorded instead (a lower bound). Otherwise the percentile would only see winners and drift
+ * down, firing ever more hedges.</p>
+ *
+ * <p>Hedging needs {@code bedrock.hedging.min-samples} TTFT samples before it engages, and the
+ * threshold is clamped to {@code [min-delay, max-delay]}. {@code bedrock.hedging.requests},
+ * {@code bedrock.hedging.fired} and {@code bedrock.hedging.wins{winner}} give the hedge rate
+ * (fired / requests) and win rate (wins{winner=hedge} / fired) to tune the percentile against the
+ * extra token cost.</p>
+ */
+@Component
+public class RequestHedger {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestHedger.class);
+
+    private final boolean enabled;
+    private final double percentile;
+    private final ModelType fallbackModel;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final long minSamples;
+    private final LatencyTelemetry telemetry;
+    private final Map<ModelType, Counter> requests = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Counter> fired = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Map<Winner, Counter>> wins = new EnumMap<>(ModelType.class);
+
+    public RequestHedger(
+            MeterRegistry registry,
+            LatencyTelemetry telemetry,
+            @Value("${bedrock.hedging.enabled:false}") boolean enabled,
+            @Value("${bedrock.hedging.percentile:95}") double percentile,
+            @Value("${bedrock.hedging.fallback-model:}") String fallbackModel,
+            @Value("${bedrock.hedging.min-delay:PT0.2S}") Duration minDelay,
+            @Value("${bedrock.hedging.max-delay:PT10S}") Duration maxDelay,
+            @Value("${bedrock.hedging.min-samples:20}") long minSamples) {
+        this.telemetry = telemetry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.fallbackModel = fallbackModel == null || fallbackModel.isBlank() ? null : ModelType.valueOf(fallbackModel);
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.minSamples = minSamples;
+
+        for (ModelType modelType : ModelType.values()) {
+            requests.put(modelType, Counter.builder("bedrock.hedging.requests")
+                    .description("Requests eligible for hedging")
+                    .tag("model", modelType.name())
+                    .register(registry));
+            fired.put(modelType, Counter.builder("bedrock.hedging.fired")
+                    .description("Hedge requests fired because the first token was late")
+                    .tag("model", modelType.name())
+                    .register(registry));
+            Map<Winner, Counter> winners = new EnumMap<>(Winner.class);
+            for (Winner winner : Winner.values()) {
+                winners.put(winner, Counter.builder("bedrock.hedging.wins")
+                        .description("Hedged requests by which call produced the first token")
+                        .tags("model", modelType.name(), "winner", winner.name().toLowerCase(Locale.ROOT))
+                        .register(registry));
+            }
+            wins.put(modelType, winners);
+        }
+    }
+
+    /**
+     * @param call issues one upstream call for a request; invoked once for the primary and,
+     *             if the threshold passes, once more for the hedge
+     */
+    public Flux<StreamEvent> hedge(InferenceRequest request, Function<InferenceRequest, Flux<StreamEvent>> call) {
+        if (!enabled) {
+            return call.apply(request);
+        }
+
+        return Flux.defer(() -> {
+            ModelType modelType = request.modelType();
+            Duration threshold = threshold(modelType);
+            if (threshold == null) {
+                return call.apply(request);
+            }
+            requests.get(modelType).increment();
+
+            InferenceRequest hedgeRequest = fallbackModel != null ? request.withModelType(fallbackModel) : request;
+            AtomicReference<Winner> winner = new AtomicReference<>();
+            AtomicBoolean hedged = new AtomicBoolean();
+            Sinks.One<Throwable> primaryFailed = Sinks.one();
+            long primaryStart = System.nanoTime();
+
+            Flux<StreamEvent> primary = call.apply(request)
+                    .doOnNext(event -> winner.compareAndSet(null, Winner.PRIMARY))
+                    .doOnError(error -> {
+                        if (!hedged.get()) {
+                            primaryFailed.tryEmitValue(error);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (winner.get() == Winner.HEDGE) {
+                            telemetry.recordTimeToFirstToken(modelType, System.nanoTime() - primaryStart);
+                        }
+                    });
+            Flux<StreamEvent> fireHedge = Mono.delay(threshold)
+                    .thenMany(Flux.defer(() -> {
+                        hedged.set(true);
+                        fired.get(modelType).increment();
+                        log.debug("No first token from {} after {} ms, hedging with {}", modelType.getDisplayName(),
+                                threshold.toMillis(), hedgeRequest.modelType().getDisplayName());
+                        return call.apply(hedgeRequest);
+                    }));
+            // An early primary error ends this source too, so firstWithValue fails at once
+            Flux<StreamEvent> hedge = Flux.firstWithSignal(fireHedge, primaryFailed.asMono().flatMapMany(Flux::error))
+                    .doOnNext(event -> winner.compareAndSet(null, Winner.HEDGE));
+
+            return Flux.firstWithValue(primary, hedge)
+                    .doFinally(signal -> {
+                        if (hedged.get() && winner.get() != null) {
+                            wins.get(modelType).get(winner.get()).increment();
+                        }
+                    })
+                    .onErrorMap(RequestHedger::firstCause);
+        });
+    }
+
+    /**
+     * Hedge delay for {@code modelType}, or {@code null} while there are too few TTFT samples to trust.
+     */
+    Duration threshold(ModelType modelType) {
+        if (telemetry.sampleCount(modelType, LatencyMetric.TIME_TO_FIRST_TOKEN) < minSamples) {
+            return null;
+        }
+        double ttftMs = telemetry.percentile(modelType, LatencyMetric.TIME_TO_FIRST_TOKEN, percentile);
+        Duration threshold = Duration.ofMillis((long) Math.ceil(ttftMs));
+        if (threshold.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return threshold.compareTo(maxDelay) > 0 ? maxDelay : threshold;
+    }
+
+    /**
+     * {@code firstWithValue} reports "all sources failed" as a NoSuchElementException; surface
+     * the primary's own error instead so the usual Bedrock error mapping still applies.
+     */
+    private static Throwable firstCause(Throwable error) {
+        if (!(error instanceof NoSuchElementException)) {
+            return error;
+        }
+        if (error.getSuppressed().length > 0) {
+            return error.getSuppressed()[0];
+        }
+        if (error.getCause() != null) {
+            List<Throwable> causes = Exceptions.unwrapMultiple(error.getCause());
+            return causes.isEmpty() ? error : causes.get(0);
+        }
+        return error;
+    }
+
+    private enum Winner { PRIMARY, HEDGE }
+}
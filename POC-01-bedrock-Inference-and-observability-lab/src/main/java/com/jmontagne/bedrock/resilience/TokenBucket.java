@@ -0,0 +1,101 @@
+package com.jmontagne.bedrock.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free per-minute token bucket, implemented as a GCRA (generic cell rate algorithm).
+ *
+ * <p>The whole state is one {@link AtomicLong}: the theoretical arrival time ({@code tat}) at
+ * which the bucket would be full again. Taking {@code n} tokens pushes it {@code n} emission
+ * intervals into the future; the request fits while {@code tat} stays within one minute of now.
+ * That makes reserve, settle and refund a single CAS or add, with no refill thread.</p>
+ *
+ * <p>The state is deliberately not striped. The bucket is touched twice per Bedrock call
+ * (reserve, then settle), not per token, so even at the largest account quotas it sees a few
+ * hundred CAS per second against calls that last seconds; a failed CAS costs one retry of a few
+ * arithmetic operations. Striping would split the quota into per-stripe shares instead: a
+ * request could be rejected by a full stripe while others have room, a request larger than one
+ * stripe's share could never fit, and {@link #available} would have to sum the stripes. A
+ * {@code LongAdder}-style split only pays off for counters updated far more often than they
+ * are checked against a limit.</p>
+ */
+final class TokenBucket {
+
+    private static final long WINDOW_NANOS = 60_000_000_000L;
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final LongSupplier clock;
+    private final AtomicLong tat;
+
+    TokenBucket(long perMinute, LongSupplier clock) {
+        if (perMinute <= 0) {
+            throw new IllegalArgumentException("Quota must be positive: " + perMinute);
+        }
+        this.capacity = perMinute;
+        this.nanosPerToken = Math.max(1, WINDOW_NANOS / perMinute);
+        this.clock = clock;
+        this.tat = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Takes {@code tokens} if they are available now or within {@code maxWaitNanos}.
+     *
+     * @return nanoseconds the caller must wait before using the tokens ({@code 0} = immediately),
+     *         or a negative value {@code -w} when rejected, {@code w} being the wait that would
+     *         have been needed
+     */
+    long reserve(long tokens, long maxWaitNanos) {
+        long cost = charge(tokens) * nanosPerToken;
+        while (true) {
+            long now = clock.getAsLong();
+            long current = tat.get();
+            long next = Math.max(current, now) + cost;
+            long wait = Math.max(0, next - now - WINDOW_NANOS);
+            if (wait > maxWaitNanos) {
+                return -wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Tokens {@link #reserve} actually takes for a request of {@code tokens}: anything larger than
+     * the bucket is capped at its capacity, so it can still run once the bucket is full.
+     */
+    long charge(long tokens) {
+        return Math.min(tokens, capacity);
+    }
+
+    /**
+     * Corrects a reservation once the real usage is known: positive charges more, negative refunds.
+     */
+    void adjust(long deltaTokens) {
+        if (deltaTokens == 0) {
+            return;
+        }
+        long delta = deltaTokens * nanosPerToken;
+        tat.updateAndGet(current -> deltaTokens > 0
+                ? Math.max(current, clock.getAsLong()) + delta
+                : current + delta);
+    }
+
+    /**
+     * Refills the bucket, forgetting every reservation.
+     */
+    void reset() {
+        tat.set(clock.getAsLong());
+    }
+
+    long available() {
+        long backlog = Math.max(0, tat.get() - clock.getAsLong());
+        return Math.max(0, (WINDOW_NANOS - backlog) / nanosPerToken);
+    }
+
+    long capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,266 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelProfile;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Local requests-per-minute / tokens-per-minute quota enforcement, so requests that Bedrock would
+ * throttle are delayed or rejected here instead of costing a 429 round trip.
+ *
+ * <p>Each {@link ModelType} has an RPM and a TPM {@link TokenBucket}, sized from its
+ * {@link ModelCatalog} quotas; with
+ * {@code bedrock.quota.per-caller-tokens-per-minute} set, every API key also gets its own TPM
+ * bucket per model. A request reserves one request plus its estimated tokens (prompt chars / 4 plus
+ * {@code maxTokens}, the same worst case Bedrock charges at admission) before
+ * {@code converseStream} is called. When the final {@link StreamEvent.Metrics} arrives the
+ * reservation is settled against the exact usage from {@code ConverseStreamMetadataEvent};
+ * cancelled or failed calls are settled from the characters actually streamed.</p>
+ *
+ * <p>If the buckets have room within {@code bedrock.quota.max-wait} the call is delayed until then,
+ * otherwise it fails with {@link QuotaExceededException}.</p>
+ */
+@Component
+public class TokenQuotaManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenQuotaManager.class);
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final boolean enabled;
+    private final long maxWaitNanos;
+    private final long perCallerTokensPerMinute;
+    private final LongSupplier clock;
+    private final Map<ModelType, TokenBucket> requestBuckets = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, TokenBucket> tokenBuckets = new EnumMap<>(ModelType.class);
+    private final Cache<String, TokenBucket> callerBuckets;
+    private final Map<ModelType, Counter> delayed = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Map<String, Counter>> rejected = new EnumMap<>(ModelType.class);
+
+    @Autowired
+    public TokenQuotaManager(
+            MeterRegistry registry,
+            ModelCatalog catalog,
+            @Value("${bedrock.quota.enabled:true}") boolean enabled,
+            @Value("${bedrock.quota.per-caller-tokens-per-minute:0}") long perCallerTokensPerMinute,
+            @Value("${bedrock.quota.max-wait:PT5S}") Duration maxWait) {
+        this(registry, enabled, limitsFrom(catalog), perCallerTokensPerMinute, maxWait, System::nanoTime);
+    }
+
+    public TokenQuotaManager(MeterRegistry registry, boolean enabled, Map<ModelType, QuotaLimits> limits,
+                             long perCallerTokensPerMinute, Duration maxWait, LongSupplier clock) {
+        this.enabled = enabled;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.perCallerTokensPerMinute = perCallerTokensPerMinute;
+        this.clock = clock;
+        this.callerBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .maximumSize(10_000)
+                .build();
+
+        for (ModelType modelType : ModelType.values()) {
+            QuotaLimits quota = limits.get(modelType);
+            TokenBucket requests = new TokenBucket(quota.requestsPerMinute(), clock);
+            TokenBucket tokens = new TokenBucket(quota.tokensPerMinute(), clock);
+            requestBuckets.put(modelType, requests);
+            tokenBuckets.put(modelType, tokens);
+
+            Gauge.builder("bedrock.quota.available", requests, TokenBucket::available)
+                    .description("Requests or tokens available in the local per-minute quota")
+                    .tags("model", modelType.name(), "quota", "RPM")
+                    .register(registry);
+            Gauge.builder("bedrock.quota.available", tokens, TokenBucket::available)
+                    .description("Requests or tokens available in the local per-minute quota")
+                    .tags("model", modelType.name(), "quota", "TPM")
+                    .register(registry);
+            delayed.put(modelType, Counter.builder("bedrock.quota.delayed")
+                    .description("Requests delayed until the local quota had room")
+                    .tag("model", modelType.name())
+                    .register(registry));
+            Map<String, Counter> rejections = new HashMap<>();
+            for (String quotaName : List.of("RPM", "TPM", "CALLER_TPM")) {
+                rejections.put(quotaName, Counter.builder("bedrock.quota.rejected")
+                        .description("Requests rejected locally because a quota had no room within the max wait")
+                        .tags("model", modelType.name(), "quota", quotaName)
+                        .register(registry));
+            }
+            rejected.put(modelType, rejections);
+        }
+    }
+
+    /**
+     * Runs {@code call} once the quota admits {@code request}, settling the reservation with the
+     * actual usage when the stream ends. The caller is read from the subscriber's {@link CallerContext}.
+     */
+    public Flux<StreamEvent> enforce(InferenceRequest request, Supplier<Flux<StreamEvent>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        return Flux.deferContextual(context -> {
+            CallerContext caller = CallerContext.from(context);
+            ModelType modelType = request.modelType();
+            long inputEstimate = request.estimatedInputTokens();
+            long reserved = inputEstimate + request.parameters().maxTokens();
+
+            Reservation reservation = reserve(modelType, caller, reserved);
+            AtomicLong streamedChars = new AtomicLong();
+            AtomicBoolean started = new AtomicBoolean();
+            AtomicBoolean settled = new AtomicBoolean();
+
+            Flux<StreamEvent> upstream = Flux.defer(() -> {
+                        started.set(true);
+                        return call.get();
+                    })
+                    .doOnNext(event -> {
+                        if (event instanceof StreamEvent.Token token) {
+                            streamedChars.addAndGet(token.text().length());
+                        } else if (event instanceof StreamEvent.Metrics metrics && settled.compareAndSet(false, true)) {
+                            reservation.settle(actualTokens(metrics.metrics()));
+                        }
+                    });
+
+            if (reservation.waitNanos() > 0) {
+                delayed.get(modelType).increment();
+                log.debug("Delaying {} request by {} ms for local quota", modelType.getDisplayName(),
+                        reservation.waitNanos() / 1_000_000);
+                upstream = Mono.delay(Duration.ofNanos(reservation.waitNanos())).thenMany(upstream);
+            }
+            // Outside the delay, so a caller that gives up while waiting gets the reservation back
+            return upstream.doFinally(signal -> {
+                if (settled.compareAndSet(false, true)) {
+                    reservation.settle(started.get()
+                            ? inputEstimate + streamedChars.get() / CHARS_PER_TOKEN
+                            : -1);
+                }
+            });
+        });
+    }
+
+    private Reservation reserve(ModelType modelType, CallerContext caller, long tokens) {
+        Reservation reservation = new Reservation();
+        reservation.take(modelType, "RPM", requestBuckets.get(modelType), 1);
+        reservation.take(modelType, "TPM", tokenBuckets.get(modelType), tokens);
+        if (perCallerTokensPerMinute > 0 && !caller.isAnonymous()) {
+            TokenBucket callerBucket = callerBuckets.get(modelType.name() + ':' + caller.caller(),
+                    key -> new TokenBucket(perCallerTokensPerMinute, clock));
+            reservation.take(modelType, "CALLER_TPM", callerBucket, tokens);
+        }
+        return reservation;
+    }
+
+    private static long actualTokens(PerformanceMetrics metrics) {
+        return (long) metrics.inputTokens() + metrics.outputTokens();
+    }
+
+    /**
+     * Refills every bucket, e.g. after priming calls that were served by a loopback stub and
+     * never counted against the account's Bedrock quotas.
+     */
+    public void reset() {
+        requestBuckets.values().forEach(TokenBucket::reset);
+        tokenBuckets.values().forEach(TokenBucket::reset);
+        callerBuckets.invalidateAll();
+    }
+
+    public long available(ModelType modelType, String quota) {
+        return switch (quota) {
+            case "RPM" -> requestBuckets.get(modelType).available();
+            case "TPM" -> tokenBuckets.get(modelType).available();
+            default -> throw new IllegalArgumentException("Unknown quota: " + quota);
+        };
+    }
+
+    private static Map<ModelType, QuotaLimits> limitsFrom(ModelCatalog catalog) {
+        Map<ModelType, QuotaLimits> limits = new EnumMap<>(ModelType.class);
+        for (ModelType modelType : ModelType.values()) {
+            ModelProfile profile = catalog.profile(modelType);
+            limits.put(modelType, new QuotaLimits(profile.requestsPerMinute(), profile.tokensPerMinute()));
+        }
+        return limits;
+    }
+
+    public record QuotaLimits(long requestsPerMinute, long tokensPerMinute) {}
+
+    /**
+     * The buckets one request has drawn from, with what each actually charged: a bucket caps a
+     * reservation at its capacity, so refunds and settlements must work from that amount rather
+     * than the request's estimate. If any bucket rejects, everything already taken is handed back
+     * before the exception propagates.
+     */
+    private final class Reservation {
+        private final List<Charge> tokenCharges = new ArrayList<>(2);
+        private TokenBucket requestBucket;
+        private long waitNanos;
+
+        void take(ModelType modelType, String quota, TokenBucket bucket, long amount) {
+            long wait = bucket.reserve(amount, maxWaitNanos);
+            if (wait < 0) {
+                release();
+                rejected.get(modelType).get(quota).increment();
+                throw new QuotaExceededException(modelType, quota, retryAfter(-wait));
+            }
+            if ("RPM".equals(quota)) {
+                requestBucket = bucket;
+            } else {
+                tokenCharges.add(new Charge(bucket, bucket.charge(amount)));
+            }
+            waitNanos = Math.max(waitNanos, wait);
+        }
+
+        long waitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * @param actualTokens real usage, or {@code -1} if the call never started (full refund)
+         */
+        void settle(long actualTokens) {
+            if (actualTokens < 0) {
+                release();
+                return;
+            }
+            tokenCharges.forEach(charge -> charge.bucket().adjust(actualTokens - charge.tokens()));
+        }
+
+        private void release() {
+            if (requestBucket != null) {
+                requestBucket.adjust(-1);
+            }
+            tokenCharges.forEach(charge -> charge.bucket().adjust(-charge.tokens()));
+        }
+
+        private Duration retryAfter(long waitNanos) {
+            return Duration.ofSeconds(Math.max(1, (long) Math.ceil(waitNanos / 1e9)));
+        }
+    }
+
+    private record Charge(TokenBucket bucket, long tokens) {}
+}
@@ -1,11 +1,21 @@
 package com.jmontagne.bedrock.service;
 
+import com.jmontagne.bedrock.cache.RequestCoalescer;
+import com.jmontagne.bedrock.cache.RequestKey;
+import com.jmontagne.bedrock.cache.ResponseCache;
 import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.metrics.CostTracker;
 import com.jmontagne.bedrock.model.InferenceParameters;
 import com.jmontagne.bedrock.model.InferenceRequest;
 import com.jmontagne.bedrock.model.InferenceResponse;
 import com.jmontagne.bedrock.model.ModelType;
-import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.RoutedInferenceResponse;
+import com.jmontagne.bedrock.model.RoutingDecision;
+import com.jmontagne.bedrock.model.StreamEvent;
+import com.jmontagne.bedrock.resilience.AdaptiveConcurrencyLimiter;
+import com.jmontagne.bedrock.resilience.CircuitBreaker;
+import com.jmontagne.bedrock.resilience.RequestHedger;
+import com.jmontagne.bedrock.resilience.TokenQuotaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -22,13 +32,53 @@ import reactor.core.publisher.Mono;
  *       total generation time.</li>
  *   <li><b>Non-streaming ({@link #inferWithJacquesMontagne}):</b> Collects the full response
  *       with {@link com.jmontagne.bedrock.model.PerformanceMetrics} (TTFT, latency, token counts).</li>
+ *   <li><b>Server-Sent Events ({@link #streamEvents}):</b> Typed {@link StreamEvent} stream —
+ *       tokens as they arrive, the stop reason and a final metrics event — for the
+ *       {@code text/event-stream} endpoints.</li>
  * </ul>
  *
+ * <h3>Buffered Responses</h3>
+ * <p>{@link #bufferWithJacquesMontagne} / {@link #bufferCustom} and the non-streaming paths
+ * append deltas into one pre-sized {@link ResponseBuffer} instead of collecting a list of
+ * strings; {@link OutputSizeEstimator} sizes it from {@code maxTokens} and the model's recent
+ * output length.</p>
+ *
+ * <h3>Response Cache</h3>
+ * <p>Deterministic requests (temperature 0, no output budget) are keyed by
+ * {@link RequestKey} and answered from {@link ResponseCache} on repeat, replaying the cached
+ * chunks to streaming callers in microseconds instead of seconds. Concurrent misses for the
+ * same key share one upstream call through {@link RequestCoalescer}.</p>
+ *
+ * <h3>Quotas and Concurrency Limiting</h3>
+ * <p>Every call that actually reaches Bedrock is first admitted by the local RPM/TPM
+ * {@link TokenQuotaManager}, then takes a permit from the per-model
+ * {@link AdaptiveConcurrencyLimiter}, so cache hits and coalesced callers never count
+ * against the model's quota or concurrency. Callers are attributed through the
+ * {@link com.jmontagne.bedrock.model.CallerContext} in the subscriber context.</p>
+ *
+ * <h3>Circuit Breaking</h3>
+ * <p>{@link CircuitBreaker} sits in front of the quota: while a model's circuit is open its
+ * requests go to the configured fallback model or fail at once with
+ * {@link com.jmontagne.bedrock.resilience.CircuitOpenException}, without taking quota,
+ * a concurrency permit or a connection.</p>
+ *
+ * <h3>Cost Accounting</h3>
+ * <p>The raw Bedrock stream of every admitted call is priced by {@link CostTracker} from the
+ * usage in its metrics event, or from estimated tokens when it was cancelled or truncated first,
+ * and attributed to the same caller and endpoint; cache hits and coalesced callers cost nothing.</p>
+ *
+ * <h3>Auto Routing</h3>
+ * <p>{@link #inferRouted} lets {@link ModelRouter} pick the model per request from prompt
+ * complexity, the {@link com.jmontagne.bedrock.config.ModelCatalog} and live latency/error stats.</p>
+ *
+ * <h3>Hedging</h3>
+ * <p>With {@code bedrock.hedging.enabled}, {@link RequestHedger} fires a second call when the
+ * first token is later than the model's recent TTFT p95 and streams whichever answers first.
+ * Each hedge goes through the quota and concurrency limiter like any other call.</p>
+ *
  * <h3>Model Comparison</h3>
- * <p>{@link #compareModels} runs Claude 3.5 Sonnet and Claude 3 Haiku in parallel
- * ({@code Mono.zip}) and returns side-by-side results with latency metrics —
- * demonstrating the cost vs. quality trade-off (Sonnet: $3/$15 vs. Haiku: $0.25/$1.25
- * per M tokens).</p>
+ * <p>{@link ModelComparator} fans a prompt out to any set of models and parameter variants
+ * through {@link #measured}, which skips the cache and hedging so every run reaches the model.</p>
  *
  * @see BedrockStreamingClient Low-level streaming bridge (Converse Stream API + Reactor Sinks)
  * @see com.jmontagne.bedrock.model.PerformanceMetrics TTFT, token usage, and latency metrics
@@ -39,9 +89,31 @@ public class InferenceService {
     private static final Logger log = LoggerFactory.getLogger(InferenceService.class);
 
     private final BedrockStreamingClient streamingClient;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    private final TokenQuotaManager quotaManager;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final RequestHedger hedger;
+    private final ModelRouter router;
+    private final OutputSizeEstimator outputSizes;
+    private final CostTracker costTracker;
+    private final CircuitBreaker circuitBreaker;
 
-    public InferenceService(BedrockStreamingClient streamingClient) {
+    public InferenceService(BedrockStreamingClient streamingClient, ResponseCache responseCache,
+                            RequestCoalescer coalescer, TokenQuotaManager quotaManager,
+                            AdaptiveConcurrencyLimiter concurrencyLimiter, RequestHedger hedger,
+                            ModelRouter router, OutputSizeEstimator outputSizes, CostTracker costTracker,
+                            CircuitBreaker circuitBreaker) {
         this.streamingClient = streamingClient;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.quotaManager = quotaManager;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.hedger = hedger;
+        this.router = router;
+        this.outputSizes = outputSizes;
+        this.costTracker = costTracker;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public Flux<String> streamWithJacquesMontagne(String userMessage, ModelType modelType) {
@@ -53,71 +125,149 @@ public class InferenceService {
                 modelType.getDisplayName(), parameters.temperature());
 
         InferenceRequest request = InferenceRequest.withJacquesMontagne(userMessage, modelType, parameters);
-        return streamingClient.streamConverse(request);
+        return textOf(streamEvents(request));
     }
 
     public Flux<String> streamCustom(String systemPrompt, String userMessage, ModelType modelType, InferenceParameters parameters) {
         log.info("Processing custom request - Model: {}", modelType.getDisplayName());
 
         InferenceRequest request = new InferenceRequest(systemPrompt, userMessage, modelType, parameters);
-        return streamingClient.streamConverse(request);
+        return textOf(streamEvents(request));
     }
 
-    public Mono<InferenceResponse> inferWithJacquesMontagne(String userMessage, ModelType modelType) {
-        return inferWithJacquesMontagne(userMessage, modelType, InferenceParameters.DEFAULT);
+    /**
+     * The whole answer of {@link #streamWithJacquesMontagne} in one {@link ResponseBuffer}.
+     */
+    public Mono<ResponseBuffer> bufferWithJacquesMontagne(String userMessage, ModelType modelType, InferenceParameters parameters) {
+        log.info("Processing request with Jacques Montagne persona - Model: {}, Temperature: {}",
+                modelType.getDisplayName(), parameters.temperature());
+
+        return buffer(InferenceRequest.withJacquesMontagne(userMessage, modelType, parameters));
     }
 
-    public Mono<InferenceResponse> inferWithJacquesMontagne(String userMessage, ModelType modelType, InferenceParameters parameters) {
-        log.info("Processing non-streaming request with Jacques Montagne - Model: {}", modelType.getDisplayName());
+    /**
+     * The whole answer of {@link #streamCustom} in one {@link ResponseBuffer}.
+     */
+    public Mono<ResponseBuffer> bufferCustom(String systemPrompt, String userMessage, ModelType modelType, InferenceParameters parameters) {
+        log.info("Processing custom request - Model: {}", modelType.getDisplayName());
+
+        return buffer(new InferenceRequest(systemPrompt, userMessage, modelType, parameters));
+    }
+
+    public Flux<StreamEvent> streamEventsWithJacquesMontagne(String userMessage, ModelType modelType, InferenceParameters parameters) {
+        log.info("Processing SSE request with Jacques Montagne persona - Model: {}", modelType.getDisplayName());
+
+        return streamEvents(InferenceRequest.withJacquesMontagne(userMessage, modelType, parameters));
+    }
 
-        long startTime = System.currentTimeMillis();
+    public Flux<StreamEvent> streamCustomEvents(String systemPrompt, String userMessage, ModelType modelType, InferenceParameters parameters) {
+        log.info("Processing custom SSE request - Model: {}", modelType.getDisplayName());
 
-        return streamWithJacquesMontagne(userMessage, modelType, parameters)
-                .collectList()
-                .map(chunks -> {
-                    String fullResponse = String.join("", chunks);
-                    long totalTime = System.currentTimeMillis() - startTime;
+        return streamEvents(new InferenceRequest(systemPrompt, userMessage, modelType, parameters));
+    }
 
-                    PerformanceMetrics metrics = PerformanceMetrics.builder()
-                            .totalGenerationTimeMs(totalTime)
-                            .modelType(modelType)
-                            .build();
+    /**
+     * Typed event stream: tokens as they arrive, the stop reason, then the per-request
+     * {@link com.jmontagne.bedrock.model.PerformanceMetrics}. Every inference path funnels
+     * through here, so deterministic requests are served from {@link ResponseCache} when possible.
+     */
+    public Flux<StreamEvent> streamEvents(InferenceRequest request) {
+        if (!responseCache.isCacheable(request)) {
+            return upstream(request);
+        }
 
-                    return InferenceResponse.of(fullResponse, modelType, metrics);
-                });
+        RequestKey key = RequestKey.of(request);
+        return Flux.defer(() -> responseCache.get(key)
+                .map(cached -> {
+                    log.debug("Response cache hit for model {}", request.modelType().getDisplayName());
+                    return cached.replay();
+                })
+                .orElseGet(() -> coalescer.coalesce(key,
+                        () -> responseCache.cacheOnComplete(key, request.modelType(), upstream(request)))));
     }
 
-    public Mono<String> compareModels(String userMessage, InferenceParameters parameters) {
-        log.info("Comparing models with message: {}", userMessage.substring(0, Math.min(50, userMessage.length())));
+    private Flux<StreamEvent> upstream(InferenceRequest request) {
+        return hedger.hedge(request, this::admitted);
+    }
 
-        Mono<String> claudeResponse = inferWithJacquesMontagne(userMessage, ModelType.CLAUDE_3_5_SONNET, parameters)
-                .map(response -> formatModelResponse("Claude 3.5 Sonnet", response));
+    private Flux<StreamEvent> admitted(InferenceRequest request) {
+        return circuitBreaker.execute(request, true, this::call);
+    }
 
-        Mono<String> haikuResponse = inferWithJacquesMontagne(userMessage, ModelType.CLAUDE_3_HAIKU, parameters)
-                .map(response -> formatModelResponse("Claude 3 Haiku", response));
+    private Flux<StreamEvent> call(InferenceRequest request) {
+        return quotaManager.enforce(request,
+                        () -> concurrencyLimiter.limit(request.modelType(),
+                                () -> costTracker.track(request, streamingClient.streamEvents(request))))
+                .doOnComplete(() -> router.recordOutcome(request.modelType(), true))
+                .doOnError(error -> router.recordOutcome(request.modelType(), false));
+    }
 
-        return Mono.zip(claudeResponse, haikuResponse)
-                .map(tuple -> String.format("""
-                        === Model Comparison Results ===
+    /**
+     * One call straight to Bedrock through the circuit breaker, quota and concurrency limiter
+     * only: no response cache, coalescing, hedging or fallback model, so the stream measures the
+     * requested model itself.
+     */
+    Flux<StreamEvent> measured(InferenceRequest request) {
+        return circuitBreaker.execute(request, false, this::call);
+    }
 
-                        %s
+    public Mono<InferenceResponse> inferWithJacquesMontagne(String userMessage, ModelType modelType) {
+        return inferWithJacquesMontagne(userMessage, modelType, InferenceParameters.DEFAULT);
+    }
 
-                        ---
+    public Mono<InferenceResponse> inferWithJacquesMontagne(String userMessage, ModelType modelType, InferenceParameters parameters) {
+        log.info("Processing non-streaming request with Jacques Montagne - Model: {}", modelType.getDisplayName());
+
+        return accumulate(InferenceRequest.withJacquesMontagne(userMessage, modelType, parameters))
+                .map(accumulator -> accumulator.toResponse(modelType));
+    }
 
-                        %s
-                        """, tuple.getT1(), tuple.getT2()));
+    /**
+     * Non-streaming inference for an arbitrary request, through the same quota, concurrency
+     * and cache pipeline as {@link #streamEvents(InferenceRequest)}.
+     */
+    public Mono<InferenceResponse> infer(InferenceRequest request) {
+        return accumulate(request)
+                .map(accumulator -> accumulator.toResponse(request.modelType()));
     }
 
-    private String formatModelResponse(String modelName, InferenceResponse response) {
-        return String.format("""
-                [%s]
-                Response: %s
+    /**
+     * Lets {@link ModelRouter} choose the model from the prompt, live latency and error stats,
+     * then runs a normal non-streaming inference on it.
+     */
+    public Mono<RoutedInferenceResponse> inferRouted(String systemPrompt, String userMessage, InferenceParameters parameters) {
+        return Mono.defer(() -> {
+            InferenceRequest unrouted = systemPrompt != null
+                    ? new InferenceRequest(systemPrompt, userMessage, null, parameters)
+                    : InferenceRequest.withJacquesMontagne(userMessage, null, parameters);
+            RoutingDecision decision = router.route(unrouted);
+            ModelType modelType = decision.modelType();
+            InferenceRequest request = unrouted.withModelType(modelType);
+
+            return accumulate(request)
+                    .map(accumulator -> new RoutedInferenceResponse(decision, accumulator.toResponse(modelType)))
+                    .doOnSuccess(response -> router.recordRoutedOutcome(decision, true))
+                    .doOnError(error -> router.recordRoutedOutcome(decision, false));
+        });
+    }
+
+    private Mono<ResponseBuffer> buffer(InferenceRequest request) {
+        return accumulate(request).map(ResponseAccumulator::buffer);
+    }
+
+    /**
+     * Collects the answer and feeds its length to {@link OutputSizeEstimator} under the model
+     * that produced it, so a fallback answer does not train the requested model's estimate.
+     */
+    private Mono<ResponseAccumulator> accumulate(InferenceRequest request) {
+        ModelType modelType = request.modelType();
+        return streamEvents(request)
+                .collect(() -> new ResponseAccumulator(outputSizes.initialCapacity(modelType, request.parameters())),
+                        ResponseAccumulator::accept)
+                .doOnNext(accumulator -> outputSizes.record(accumulator.answeredBy(modelType), accumulator.length()));
+    }
 
-                Metrics: %s
-                """,
-                modelName,
-                response.content(),
-                response.metrics()
-        );
+    private static Flux<String> textOf(Flux<StreamEvent> events) {
+        return events.ofType(StreamEvent.Token.class).map(StreamEvent.Token::text);
     }
 }
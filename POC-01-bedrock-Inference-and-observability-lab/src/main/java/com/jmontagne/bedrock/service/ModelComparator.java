@@ -0,0 +1,203 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.model.CandidateResult;
+import com.jmontagne.bedrock.model.ComparisonCandidate;
+import com.jmontagne.bedrock.model.ComparisonRequest;
+import com.jmontagne.bedrock.model.ComparisonResult;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.SampleDistribution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs one prompt against any number of {@link ComparisonCandidate}s and reports per-candidate
+ * latency, tokens/s and cost.
+ *
+ * <p>Candidates run in parallel; the runs of one candidate run one after another, so they do
+ * not queue behind each other and skew that candidate's own latency. Each run has the
+ * candidate's timeout, and a failed or timed-out run is recorded rather than failing the whole
+ * comparison. Warmup runs (connection setup, Bedrock-side cold paths) are discarded.</p>
+ *
+ * <p>Runs bypass the response cache, the request coalescer and hedging, which would report a
+ * replay or a second call instead of the model, but still go through the quota and the
+ * concurrency limiter ({@link InferenceService#measured}).</p>
+ */
+@Service
+public class ModelComparator {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelComparator.class);
+
+    private final InferenceService inferenceService;
+    private final ModelCatalog catalog;
+    private final Duration defaultTimeout;
+    private final int maxCandidates;
+    private final int maxRuns;
+
+    public ModelComparator(
+            InferenceService inferenceService,
+            ModelCatalog catalog,
+            @Value("${bedrock.comparison.timeout:PT60S}") Duration defaultTimeout,
+            @Value("${bedrock.comparison.max-candidates:8}") int maxCandidates,
+            @Value("${bedrock.comparison.max-runs:30}") int maxRuns) {
+        this.inferenceService = inferenceService;
+        this.catalog = catalog;
+        this.defaultTimeout = defaultTimeout;
+        this.maxCandidates = maxCandidates;
+        this.maxRuns = maxRuns;
+    }
+
+    /**
+     * All candidates' results once every candidate has finished.
+     */
+    public Mono<ComparisonResult> compare(ComparisonRequest request) {
+        return compareEach(request)
+                .collectList()
+                .map(results -> ComparisonResult.of(request, results));
+    }
+
+    /**
+     * Each candidate's result as soon as that candidate has finished all of its runs.
+     */
+    public Flux<CandidateResult> compareEach(ComparisonRequest request) {
+        return Flux.defer(() -> {
+            validate(request);
+            log.info("Comparing {} candidates, {} runs (+{} warmup) each",
+                    request.candidates().size(), request.runs(), request.warmupRuns());
+            return Flux.fromIterable(request.candidates())
+                    .flatMap(candidate -> runCandidate(request, candidate), request.candidates().size());
+        });
+    }
+
+    /**
+     * Upper bound on how long {@link #compare} can take, for callers that block on it.
+     */
+    public Duration maxDuration(ComparisonRequest request) {
+        return request.candidates().stream()
+                .map(candidate -> timeout(request, candidate).multipliedBy(request.runs() + request.warmupRuns()))
+                .max(Duration::compareTo)
+                .orElse(defaultTimeout);
+    }
+
+    private Mono<CandidateResult> runCandidate(ComparisonRequest request, ComparisonCandidate candidate) {
+        InferenceRequest inference = request.toInferenceRequest(candidate);
+        Duration timeout = timeout(request, candidate);
+
+        return Flux.range(0, request.warmupRuns())
+                .concatMap(i -> run(inference, timeout))
+                .thenMany(Flux.range(0, request.runs()).concatMap(i -> run(inference, timeout)))
+                .collectList()
+                .map(runs -> summarize(candidate, runs));
+    }
+
+    /**
+     * One call; never errors, a failure becomes the {@link Run}'s error.
+     */
+    private Mono<Run> run(InferenceRequest request, Duration timeout) {
+        return inferenceService.measured(request)
+                .collect(ResponseAccumulator::new, ResponseAccumulator::accept)
+                .map(accumulator -> Run.success(accumulator.toResponse(request.modelType())))
+                .timeout(timeout)
+                .onErrorResume(error -> Mono.just(Run.failure(error)));
+    }
+
+    private CandidateResult summarize(ComparisonCandidate candidate, List<Run> runs) {
+        List<InferenceResponse> responses = new ArrayList<>(runs.size());
+        int timedOut = 0;
+        Throwable lastError = null;
+        for (Run run : runs) {
+            if (run.response() != null) {
+                responses.add(run.response());
+            } else {
+                lastError = run.error();
+                if (run.error() instanceof TimeoutException) {
+                    timedOut++;
+                }
+            }
+        }
+
+        CandidateResult.Status status;
+        if (responses.size() == runs.size()) {
+            status = CandidateResult.Status.OK;
+        } else if (!responses.isEmpty()) {
+            status = CandidateResult.Status.PARTIAL;
+        } else {
+            status = timedOut == runs.size() ? CandidateResult.Status.TIMEOUT : CandidateResult.Status.FAILED;
+        }
+
+        List<PerformanceMetrics> metrics = responses.stream().map(InferenceResponse::metrics).toList();
+        double meanCost = metrics.stream()
+                .mapToDouble(m -> catalog.profile(candidate.modelType()).costOf(m))
+                .average()
+                .orElse(0);
+
+        return new CandidateResult(
+                candidate.label(),
+                candidate.modelType(),
+                candidate.parameters(),
+                status,
+                lastError != null ? describe(lastError) : null,
+                responses.isEmpty() ? null : responses.getLast(),
+                runs.size(),
+                responses.size(),
+                timedOut,
+                meanCost,
+                distribution(metrics, PerformanceMetrics::timeToFirstTokenMs),
+                distribution(metrics, PerformanceMetrics::totalGenerationTimeMs),
+                distribution(metrics, PerformanceMetrics::tokensPerSecond),
+                distribution(metrics, PerformanceMetrics::outputTokens)
+        );
+    }
+
+    private void validate(ComparisonRequest request) {
+        if (request.candidates().size() > maxCandidates) {
+            throw new IllegalArgumentException(
+                    "At most " + maxCandidates + " candidates per comparison, got " + request.candidates().size());
+        }
+        if (request.runs() + request.warmupRuns() > maxRuns) {
+            throw new IllegalArgumentException(
+                    "At most " + maxRuns + " runs (including warmup) per candidate, got "
+                            + (request.runs() + request.warmupRuns()));
+        }
+    }
+
+    private Duration timeout(ComparisonRequest request, ComparisonCandidate candidate) {
+        if (candidate.timeout() != null) {
+            return candidate.timeout();
+        }
+        return request.timeout() != null ? request.timeout() : defaultTimeout;
+    }
+
+    private static SampleDistribution distribution(List<PerformanceMetrics> metrics,
+                                                   ToDoubleFunction<PerformanceMetrics> value) {
+        return SampleDistribution.of(metrics.stream().mapToDouble(value).toArray());
+    }
+
+    private static String describe(Throwable error) {
+        return error instanceof TimeoutException
+                ? "Timed out"
+                : error.getClass().getSimpleName() + ": " + error.getMessage();
+    }
+
+    private record Run(InferenceResponse response, Throwable error) {
+        static Run success(InferenceResponse response) {
+            return new Run(response, null);
+        }
+
+        static Run failure(Throwable error) {
+            return new Run(null, error);
+        }
+    }
+}
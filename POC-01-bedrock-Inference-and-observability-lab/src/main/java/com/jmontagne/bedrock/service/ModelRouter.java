@@ -0,0 +1,249 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.metrics.LatencyMetric;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelProfile;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.RoutingDecision;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Picks a {@link ModelType} per request for the {@code /auto} endpoint.
+ *
+ * <p>The prompt's {@link PromptComplexity} score sets the quality tier it needs: one tier above the
+ * cheapest per {@code bedrock.routing.complexity-step} of score. Among models whose context window
+ * fits the whole prompt (system prompt, history and message) plus {@code maxTokens}, whose output
+ * limit covers that {@code maxTokens} and whose recent error rate is acceptable, the router then
+ * takes, in order:</p>
+ * <ol>
+ *   <li>{@code cheapest_capable} — the cheapest model of the required tier or above whose
+ *       TTFT p90 is within {@code bedrock.routing.ttft-slo};</li>
+ *   <li>{@code slo_fallback} — otherwise the most capable model that still meets the SLO;</li>
+ *   <li>{@code best_effort} — otherwise the cheapest capable model.</li>
+ * </ol>
+ *
+ * <p>Latency comes from {@link LatencyTelemetry} (all traffic). Error rates are an EWMA fed by
+ * {@link #recordOutcome} for every upstream call. Decisions and routed outcomes are counted in
+ * {@code bedrock.routing.decisions} and {@code bedrock.routing.outcomes}.</p>
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    private static final double ERROR_RATE_SMOOTHING = 0.1;
+
+    private final ModelCatalog catalog;
+    private final LatencyTelemetry telemetry;
+    private final Duration ttftSlo;
+    private final double complexityStep;
+    private final double maxErrorRate;
+    private final long minSamples;
+    private final Map<ModelType, ErrorRate> errorRates = new EnumMap<>(ModelType.class);
+    private final Map<ModelType, Map<Reason, RoutingCounters>> counters = new EnumMap<>(ModelType.class);
+
+    public ModelRouter(
+            ModelCatalog catalog,
+            LatencyTelemetry telemetry,
+            MeterRegistry registry,
+            @Value("${bedrock.routing.ttft-slo:PT2S}") Duration ttftSlo,
+            @Value("${bedrock.routing.complexity-step:0.3}") double complexityStep,
+            @Value("${bedrock.routing.max-error-rate:0.2}") double maxErrorRate,
+            @Value("${bedrock.routing.min-samples:10}") long minSamples) {
+        this.catalog = catalog;
+        this.telemetry = telemetry;
+        this.ttftSlo = ttftSlo;
+        this.complexityStep = complexityStep;
+        this.maxErrorRate = maxErrorRate;
+        this.minSamples = minSamples;
+
+        for (ModelType modelType : ModelType.values()) {
+            ErrorRate errorRate = new ErrorRate();
+            errorRates.put(modelType, errorRate);
+            Gauge.builder("bedrock.routing.error.rate", errorRate, ErrorRate::value)
+                    .description("Smoothed upstream error rate used by the model router")
+                    .tag("model", modelType.name())
+                    .register(registry);
+
+            Map<Reason, RoutingCounters> byReason = new EnumMap<>(Reason.class);
+            for (Reason reason : Reason.values()) {
+                byReason.put(reason, new RoutingCounters(registry, modelType, reason.tag()));
+            }
+            counters.put(modelType, byReason);
+        }
+    }
+
+    /**
+     * Picks the model for {@code request}; its own {@code modelType} is ignored and may be {@code null}.
+     * Complexity is judged from the new message, but the context window must hold the whole prompt.
+     */
+    public RoutingDecision route(InferenceRequest request) {
+        InferenceParameters parameters = request.parameters();
+        PromptComplexity complexity = PromptComplexity.analyze(request.userMessage());
+        double score = complexity.score();
+        int requiredTier = requiredTier(score);
+        int promptTokens = request.estimatedInputTokens();
+        int requestedTokens = promptTokens + parameters.maxTokens();
+
+        List<ModelType> candidates = catalog.byCost().stream()
+                .filter(type -> catalog.profile(type).contextWindow() >= requestedTokens)
+                .filter(type -> catalog.profile(type).maxOutputTokens() >= parameters.maxTokens())
+                .toList();
+        List<ModelType> healthy = candidates.stream()
+                .filter(type -> errorRates.get(type).value() <= maxErrorRate)
+                .toList();
+        if (!healthy.isEmpty()) {
+            candidates = healthy;
+        }
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("No model has a context window for ~" + requestedTokens
+                    + " tokens and an output limit of " + parameters.maxTokens() + " tokens");
+        }
+
+        ModelType chosen = null;
+        Reason reason = null;
+        for (ModelType type : candidates) {
+            if (tier(type) >= requiredTier && meetsSlo(type)) {
+                chosen = type;
+                reason = Reason.CHEAPEST_CAPABLE;
+                break;
+            }
+        }
+        if (chosen == null) {
+            chosen = candidates.stream()
+                    .filter(this::meetsSlo)
+                    .reduce((cheaper, pricier) -> tier(pricier) > tier(cheaper) ? pricier : cheaper)
+                    .orElse(null);
+            reason = Reason.SLO_FALLBACK;
+        }
+        if (chosen == null) {
+            chosen = candidates.stream()
+                    .filter(type -> tier(type) >= requiredTier)
+                    .findFirst()
+                    .orElse(candidates.get(candidates.size() - 1));
+            reason = Reason.BEST_EFFORT;
+        }
+
+        RoutingDecision decision = new RoutingDecision(chosen, reason.tag(), score, requiredTier, promptTokens);
+        counters.get(chosen).get(reason).decisions.increment();
+        log.info("Routed to {} ({}): complexity={}, requiredTier={}, promptTokens~{}",
+                chosen.getDisplayName(), reason.tag(), String.format("%.2f", score), requiredTier, promptTokens);
+        return decision;
+    }
+
+    /**
+     * Upstream outcome for any call, routed or not; feeds the error-rate EWMA.
+     */
+    public void recordOutcome(ModelType modelType, boolean success) {
+        errorRates.get(modelType).update(success);
+    }
+
+    /**
+     * Outcome of a routed request, to evaluate routing quality per decision reason.
+     */
+    public void recordRoutedOutcome(RoutingDecision decision, boolean success) {
+        RoutingCounters routed = counters.get(decision.modelType()).get(Reason.of(decision.reason()));
+        (success ? routed.successes : routed.errors).increment();
+    }
+
+    /**
+     * Forgets the error rates, e.g. after priming calls against a loopback stub.
+     */
+    public void reset() {
+        errorRates.values().forEach(ErrorRate::reset);
+    }
+
+    public double errorRate(ModelType modelType) {
+        return errorRates.get(modelType).value();
+    }
+
+    private int requiredTier(double score) {
+        int minTier = catalog.models().values().stream().mapToInt(ModelProfile::qualityTier).min().orElse(1);
+        int maxTier = catalog.models().values().stream().mapToInt(ModelProfile::qualityTier).max().orElse(1);
+        return Math.min(maxTier, minTier + (int) (score / complexityStep));
+    }
+
+    private int tier(ModelType modelType) {
+        return catalog.profile(modelType).qualityTier();
+    }
+
+    /**
+     * Models without enough recent TTFT samples are assumed to meet the SLO, so new or idle
+     * models still get traffic and produce samples.
+     */
+    private boolean meetsSlo(ModelType modelType) {
+        if (telemetry.sampleCount(modelType, LatencyMetric.TIME_TO_FIRST_TOKEN) < minSamples) {
+            return true;
+        }
+        return telemetry.percentile(modelType, LatencyMetric.TIME_TO_FIRST_TOKEN, 90) <= ttftSlo.toMillis();
+    }
+
+    private enum Reason {
+        CHEAPEST_CAPABLE, SLO_FALLBACK, BEST_EFFORT;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        static Reason of(String tag) {
+            return valueOf(tag.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The decision and outcome counters of one (model, reason) pair, registered up front so
+     * routing a request is only increments.
+     */
+    private static final class RoutingCounters {
+        private final Counter decisions;
+        private final Counter successes;
+        private final Counter errors;
+
+        RoutingCounters(MeterRegistry registry, ModelType modelType, String reason) {
+            decisions = Counter.builder("bedrock.routing.decisions")
+                    .description("Auto-routing decisions by chosen model and reason")
+                    .tags("model", modelType.name(), "reason", reason)
+                    .register(registry);
+            successes = outcome(registry, modelType, reason, "success");
+            errors = outcome(registry, modelType, reason, "error");
+        }
+
+        private static Counter outcome(MeterRegistry registry, ModelType modelType, String reason, String outcome) {
+            return Counter.builder("bedrock.routing.outcomes")
+                    .description("Outcomes of auto-routed requests")
+                    .tags("model", modelType.name(), "reason", reason, "outcome", outcome)
+                    .register(registry);
+        }
+    }
+
+    private static final class ErrorRate {
+        private double value;
+
+        synchronized void update(boolean success) {
+            value += ERROR_RATE_SMOOTHING * ((success ? 0.0 : 1.0) - value);
+        }
+
+        synchronized double value() {
+            return value;
+        }
+
+        synchronized void reset() {
+            value = 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Initial capacity for a {@link ResponseBuffer}, so a typical answer is collected without the
+ * buffer ever being copied to grow.
+ *
+ * <p>The estimate is the model's recent output length (an EWMA of completed buffered responses,
+ * in chars) times {@code bedrock.aggregation.headroom}, starting from
+ * {@code bedrock.aggregation.initial-estimate-chars}. It is capped by what the request can
+ * produce at most, {@code maxTokens} at up to 6 chars per token or the {@code OutputBudget}
+ * char limit, so a short {@code maxTokens} never reserves a long model's typical answer. The
+ * cap is looser than the usual ~4 chars per token: a full-length answer often averages more, and
+ * a cap below it would force the buffer to grow on exactly the longest answers.</p>
+ */
+@Component
+public class OutputSizeEstimator {
+
+    private static final int MAX_CHARS_PER_TOKEN = 6;
+    private static final int MIN_CAPACITY = 64;
+    private static final double SMOOTHING = 0.2;
+
+    private final int initialEstimateChars;
+    private final double headroom;
+    private final Map<ModelType, OutputLength> lengths = new EnumMap<>(ModelType.class);
+
+    public OutputSizeEstimator(
+            @Value("${bedrock.aggregation.initial-estimate-chars:1024}") int initialEstimateChars,
+            @Value("${bedrock.aggregation.headroom:1.25}") double headroom) {
+        this.initialEstimateChars = initialEstimateChars;
+        this.headroom = headroom;
+        for (ModelType modelType : ModelType.values()) {
+            lengths.put(modelType, new OutputLength(initialEstimateChars));
+        }
+    }
+
+    /**
+     * Standalone instance with the default settings, for callers built outside Spring.
+     */
+    public OutputSizeEstimator() {
+        this(1024, 1.25);
+    }
+
+    public int initialCapacity(ModelType modelType, InferenceParameters parameters) {
+        long ceiling = (long) parameters.maxTokens() * MAX_CHARS_PER_TOKEN;
+        if (parameters.budget() != null && parameters.budget().maxChars() != null) {
+            ceiling = Math.min(ceiling, parameters.budget().maxChars());
+        }
+        long expected = (long) Math.ceil(lengths.get(modelType).value() * headroom);
+        return (int) Math.max(MIN_CAPACITY, Math.min(expected, ceiling));
+    }
+
+    public void record(ModelType modelType, int outputChars) {
+        lengths.get(modelType).update(outputChars);
+    }
+
+    /**
+     * Back to {@code initial-estimate-chars}, e.g. after priming with a stub's short answers.
+     */
+    public void reset() {
+        lengths.values().forEach(length -> length.reset(initialEstimateChars));
+    }
+
+    private static final class OutputLength {
+        private double value;
+
+        OutputLength(double initial) {
+            this.value = initial;
+        }
+
+        synchronized void update(int chars) {
+            value += SMOOTHING * (chars - value);
+        }
+
+        synchronized double value() {
+            return value;
+        }
+
+        synchronized void reset(double initial) {
+            value = initial;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.jmontagne.bedrock.service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cheap, local features of a prompt that correlate with needing a more capable model.
+ * Computed in microseconds on the request thread — no model call.
+ *
+ * <p>The score weighs prompt length, reasoning/analysis vocabulary, embedded code and the number
+ * of distinct questions. It is a heuristic for routing, not a classifier: tune it against the
+ * {@code bedrock.routing.outcomes} metrics.</p>
+ */
+public record PromptComplexity(
+        int estimatedTokens,
+        int reasoningSignals,
+        boolean containsCode,
+        int questions
+) {
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int LONG_PROMPT_TOKENS = 1_500;
+
+    private static final List<String> REASONING_SIGNALS = List.of(
+            "why", "step by step", "compare", "analy", "trade-off", "tradeoff", "prove", "design",
+            "optimi", "evaluate", "derive", "pros and cons", "architecture", "debug", "refactor", "plan"
+    );
+
+    public static PromptComplexity analyze(String prompt) {
+        String text = prompt == null ? "" : prompt;
+        String lower = text.toLowerCase(Locale.ROOT);
+
+        int signals = 0;
+        for (String signal : REASONING_SIGNALS) {
+            if (lower.contains(signal)) {
+                signals++;
+            }
+        }
+
+        boolean code = text.contains("```") || text.contains("();") || text.contains("{\n");
+        int questions = (int) text.chars().filter(c -> c == '?').count();
+
+        return new PromptComplexity(text.length() / CHARS_PER_TOKEN, signals, code, questions);
+    }
+
+    /**
+     * Weighted score in [0, 1].
+     */
+    public double score() {
+        double length = Math.min(1.0, (double) estimatedTokens / LONG_PROMPT_TOKENS);
+        double reasoning = Math.min(1.0, reasoningSignals / 2.0);
+        double code = containsCode ? 1.0 : 0.0;
+        double multiQuestion = Math.min(1.0, Math.max(0, questions - 1) / 3.0);
+        return 0.35 * length + 0.35 * reasoning + 0.2 * code + 0.1 * multiQuestion;
+    }
+}
@@ -0,0 +1,78 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+
+/**
+ * Folds a {@link StreamEvent} stream into a single {@link InferenceResponse}, keeping the
+ * stop reason and the client-measured metrics that arrive alongside the text. The text goes
+ * into a {@link ResponseBuffer} sized by {@link OutputSizeEstimator}.
+ */
+class ResponseAccumulator {
+
+    private static final String DEFAULT_STOP_REASON = "end_turn";
+
+    private final ResponseBuffer content;
+    private String stopReason;
+    private PerformanceMetrics metrics;
+
+    ResponseAccumulator() {
+        this(256);
+    }
+
+    ResponseAccumulator(int initialCapacity) {
+        this.content = new ResponseBuffer(initialCapacity);
+    }
+
+    void accept(StreamEvent event) {
+        switch (event) {
+            case StreamEvent.Token token -> content.append(token.text());
+            case StreamEvent.Stop stop -> stopReason = stop.stopReason();
+            case StreamEvent.Metrics m -> {
+                metrics = m.metrics();
+                content.answeredBy(metrics.modelType());
+            }
+            case StreamEvent.Error error -> { }
+        }
+    }
+
+    int chunks() {
+        return content.chunks();
+    }
+
+    int length() {
+        return content.length();
+    }
+
+    String content() {
+        return content.toString();
+    }
+
+    ResponseBuffer buffer() {
+        return content;
+    }
+
+    /**
+     * The model named in the metrics event, which is not the requested one when a hedge or the
+     * circuit breaker answered with the fallback model; {@code requested} if there was none.
+     */
+    ModelType answeredBy(ModelType requested) {
+        return metrics != null && metrics.modelType() != null ? metrics.modelType() : requested;
+    }
+
+    InferenceResponse toResponse(ModelType requested) {
+        ModelType modelType = answeredBy(requested);
+        PerformanceMetrics responseMetrics = metrics != null
+                ? metrics
+                : PerformanceMetrics.builder().modelType(modelType).build();
+
+        return InferenceResponse.of(
+                content.toString(),
+                modelType,
+                responseMetrics,
+                stopReason != null ? stopReason : DEFAULT_STOP_REASON
+        );
+    }
+}
@@ -0,0 +1,103 @@
+package com.jmontagne.bedrock.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Append-only text buffer for a buffered (non-SSE) response.
+ *
+ * <p>Deltas are copied into one {@code char[]} as they arrive, so a finished answer is a single
+ * array rather than a {@code List<String>} of every delta plus the joined copy. The array is
+ * pre-sized by {@link OutputSizeEstimator} and only grows (by half) when the estimate was short.
+ * {@link #writeJsonString} hands the array to Jackson's streaming generator, so the content
+ * never becomes a {@code String} on the way out, and {@link #jsonLength} tells the writer how
+ * large that output will be.</p>
+ *
+ * <p>Not thread-safe: Reactor's {@code collect} delivers deltas serially.</p>
+ */
+public final class ResponseBuffer {
+
+    private char[] chars;
+    private int length;
+    private int chunks;
+    private int jsonLength;
+    private ModelType answeredBy;
+
+    public ResponseBuffer(int initialCapacity) {
+        this.chars = new char[Math.max(initialCapacity, 16)];
+    }
+
+    public void append(String delta) {
+        int deltaLength = delta.length();
+        if (length + deltaLength > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length + deltaLength, chars.length + (chars.length >> 1)));
+        }
+        delta.getChars(0, deltaLength, chars, length);
+        for (int i = length; i < length + deltaLength; i++) {
+            jsonLength += jsonBytes(chars[i]);
+        }
+        length += deltaLength;
+        chunks++;
+    }
+
+    /**
+     * UTF-8 bytes of the content once written by {@link #writeJsonString}, escapes included
+     * and quotes excluded.
+     */
+    public int jsonLength() {
+        return jsonLength;
+    }
+
+    /**
+     * Jackson's UTF-8 defaults: short escapes for quote, backslash and common control
+     * characters, {@code \\uXXXX} for other control characters and for each half of a
+     * surrogate pair, and everything else as plain UTF-8.
+     */
+    private static int jsonBytes(char c) {
+        if (c < 0x20) {
+            return c == '\b' || c == '\t' || c == '\n' || c == '\f' || c == '\r' ? 2 : 6;
+        }
+        if (c < 0x80) {
+            return c == '"' || c == '\\' ? 2 : 1;
+        }
+        if (c < 0x800) {
+            return 2;
+        }
+        return Character.isSurrogate(c) ? 6 : 3;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int chunks() {
+        return chunks;
+    }
+
+    /**
+     * The model that produced the content, from the stream's metrics event; {@code null} until
+     * one arrived.
+     */
+    public ModelType answeredBy() {
+        return answeredBy;
+    }
+
+    public void answeredBy(ModelType modelType) {
+        this.answeredBy = modelType;
+    }
+
+    /**
+     * Writes the content as one JSON string value, escaping straight from the buffer.
+     */
+    public void writeJsonString(JsonGenerator generator) throws IOException {
+        generator.writeString(chars, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,99 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.model.ConversationTurn;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A stored conversation turn: UTF-8 bytes, DEFLATE-compressed when that pays off, plus the
+ * token count used for history budgeting. Long assistant answers are the bulk of a session's
+ * memory and typically compress 2-3x; turns are only inflated when sent or listed.
+ */
+final class CompactTurn {
+
+    static final int COMPRESSION_THRESHOLD_BYTES = 512;
+    private static final int OVERHEAD_BYTES = 32;
+
+    private final ConversationTurn.Role role;
+    private final byte[] payload;
+    private final boolean compressed;
+    private final int length;
+    private final int tokens;
+
+    private CompactTurn(ConversationTurn.Role role, byte[] payload, boolean compressed, int length, int tokens) {
+        this.role = role;
+        this.payload = payload;
+        this.compressed = compressed;
+        this.length = length;
+        this.tokens = tokens;
+    }
+
+    static CompactTurn of(ConversationTurn turn, int tokens) {
+        byte[] utf8 = turn.text().getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= COMPRESSION_THRESHOLD_BYTES) {
+            byte[] deflated = deflate(utf8);
+            if (deflated.length < utf8.length) {
+                return new CompactTurn(turn.role(), deflated, true, utf8.length, tokens);
+            }
+        }
+        return new CompactTurn(turn.role(), utf8, false, utf8.length, tokens);
+    }
+
+    ConversationTurn expand() {
+        byte[] utf8 = compressed ? inflate(payload, length) : payload;
+        return new ConversationTurn(role, new String(utf8, StandardCharsets.UTF_8));
+    }
+
+    ConversationTurn.Role role() {
+        return role;
+    }
+
+    int tokens() {
+        return tokens;
+    }
+
+    int weightBytes() {
+        return payload.length + OVERHEAD_BYTES;
+    }
+
+    boolean isCompressed() {
+        return compressed;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            byte[] output = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                offset += inflater.inflate(output, offset, length - offset);
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt session turn", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
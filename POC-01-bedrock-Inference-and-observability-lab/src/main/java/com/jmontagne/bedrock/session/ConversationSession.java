@@ -0,0 +1,157 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-side state of one conversation. Turns are appended in complete user/assistant pairs,
+ * so any suffix of an even length is a valid Converse message list.
+ *
+ * <p>Mutations happen only while a turn holds the session ({@link #tryBegin()}); the monitor
+ * keeps concurrent reads ({@code GET /sessions/{id}}) consistent.</p>
+ */
+final class ConversationSession {
+
+    static final String SUMMARY_PREFIX = "Summary of our conversation so far:\n";
+    static final String SUMMARY_ACK = "Understood, I will continue from there.";
+
+    private static final int OVERHEAD_BYTES = 256;
+
+    private final String id;
+    private final ModelType modelType;
+    private final String persona;
+    private final String systemPrompt;
+    private final Instant createdAt;
+    private final List<CompactTurn> turns = new ArrayList<>();
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private String summary;
+    private int summaryTokens;
+    private long conversationTokens;
+    private int turnCount;
+
+    ConversationSession(String id, ModelType modelType, String persona, String systemPrompt) {
+        this.id = id;
+        this.modelType = modelType;
+        this.persona = persona;
+        this.systemPrompt = systemPrompt;
+        this.createdAt = Instant.now();
+    }
+
+    boolean tryBegin() {
+        return busy.compareAndSet(false, true);
+    }
+
+    void end() {
+        busy.set(false);
+    }
+
+    /**
+     * The most recent pairs that fit {@code budgetTokens}, after the summary if there is one.
+     */
+    synchronized HistoryWindow window(int budgetTokens) {
+        int available = budgetTokens - summaryTokens;
+        int from = turns.size();
+        int tokens = 0;
+        while (from >= 2) {
+            int pair = turns.get(from - 2).tokens() + turns.get(from - 1).tokens();
+            if (tokens + pair > available) {
+                break;
+            }
+            tokens += pair;
+            from -= 2;
+        }
+
+        List<ConversationTurn> window = new ArrayList<>(turns.size() - from + 2);
+        if (summary != null) {
+            window.add(ConversationTurn.user(SUMMARY_PREFIX + summary));
+            window.add(ConversationTurn.assistant(SUMMARY_ACK));
+            tokens += summaryTokens;
+        }
+        for (int i = from; i < turns.size(); i++) {
+            window.add(turns.get(i).expand());
+        }
+        return new HistoryWindow(window, tokens, from, summary != null);
+    }
+
+    synchronized List<ConversationTurn> oldest(int count) {
+        List<ConversationTurn> oldest = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            oldest.add(turns.get(i).expand());
+        }
+        return oldest;
+    }
+
+    /**
+     * Replaces the oldest {@code count} turns (and any previous summary) with {@code newSummary}.
+     */
+    synchronized void rollUp(int count, String newSummary, int newSummaryTokens) {
+        turns.subList(0, count).clear();
+        summary = newSummary;
+        summaryTokens = newSummaryTokens;
+    }
+
+    synchronized void append(CompactTurn user, CompactTurn assistant, int maxTurns) {
+        turns.add(user);
+        turns.add(assistant);
+        conversationTokens += user.tokens() + assistant.tokens();
+        turnCount++;
+        while (turns.size() > maxTurns) {
+            turns.subList(0, 2).clear();
+        }
+    }
+
+    synchronized List<ConversationTurn> turns() {
+        return turns.stream().map(CompactTurn::expand).toList();
+    }
+
+    synchronized int weightBytes() {
+        int weight = OVERHEAD_BYTES
+                + (summary != null ? summary.length() : 0)
+                + (persona == null && systemPrompt != null ? systemPrompt.length() : 0);
+        for (CompactTurn turn : turns) {
+            weight += turn.weightBytes();
+        }
+        return weight;
+    }
+
+    String id() {
+        return id;
+    }
+
+    ModelType modelType() {
+        return modelType;
+    }
+
+    String persona() {
+        return persona;
+    }
+
+    String systemPrompt() {
+        return systemPrompt;
+    }
+
+    Instant createdAt() {
+        return createdAt;
+    }
+
+    synchronized String summary() {
+        return summary;
+    }
+
+    /**
+     * Tokens of every turn ever exchanged: what a stateless client would resend each turn.
+     */
+    synchronized long conversationTokens() {
+        return conversationTokens;
+    }
+
+    synchronized int turnCount() {
+        return turnCount;
+    }
+}
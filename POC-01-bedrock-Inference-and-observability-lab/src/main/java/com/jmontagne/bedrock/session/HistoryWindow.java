@@ -0,0 +1,21 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.model.ConversationTurn;
+
+import java.util.List;
+
+/**
+ * The part of a session's history sent with the next turn.
+ *
+ * @param turns         turns to send, oldest first (a leading summary pair when summarized)
+ * @param tokensSent    estimated tokens of {@code turns}
+ * @param turnsOmitted  stored turns left out to fit the budget
+ * @param summarized    whether {@code turns} starts with the rolling summary
+ */
+record HistoryWindow(
+        List<ConversationTurn> turns,
+        int tokensSent,
+        int turnsOmitted,
+        boolean summarized
+) {
+}
@@ -0,0 +1,22 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.model.InferenceResponse;
+
+/**
+ * Answer to one session turn, with what the history budget did to the prompt.
+ *
+ * @param historyTokensSent  estimated history tokens sent with this turn (summary included)
+ * @param inputTokensSaved   history tokens a stateless client resending everything would have paid for
+ * @param turnsOmitted       stored turns left out to fit the budget
+ * @param summarized         whether older turns were replaced by the rolling summary
+ */
+public record SessionReply(
+        String sessionId,
+        int turn,
+        InferenceResponse response,
+        int historyTokensSent,
+        long inputTokensSaved,
+        int turnsOmitted,
+        boolean summarized
+) {
+}
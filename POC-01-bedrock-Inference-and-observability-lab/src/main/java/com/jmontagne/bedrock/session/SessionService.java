@@ -0,0 +1,201 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.service.InferenceService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Multi-turn conversations with server-side history.
+ *
+ * <p>Each turn sends the session's system prompt, the most recent user/assistant pairs that
+ * fit {@code bedrock.sessions.history-token-budget}, and the new message. Older pairs are
+ * either just left out (truncation, the default) or, with {@code bedrock.sessions.summarize},
+ * folded into a rolling summary written by {@code summary-model} and sent as a leading
+ * user/assistant pair. The summary goes in the messages rather than the system prompt so the
+ * system prompt stays a stable prompt-cache prefix.</p>
+ *
+ * <p>Token counts are estimated at 4 characters per token, except assistant turns, which use
+ * the output token count Bedrock reported. Every reply states how many history tokens were sent
+ * and how many a client resending the whole conversation would have paid for on top
+ * ({@code bedrock.sessions.tokens.saved}).</p>
+ */
+@Service
+public class SessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    static final String SUMMARY_SYSTEM_PROMPT = """
+            You maintain the running summary of a conversation between a user and an assistant.
+            Merge the previous summary (if any) with the new messages into one concise summary.
+            Keep facts, names, numbers, decisions, preferences and open questions; drop pleasantries.
+            Reply with the summary only, written in the third person.
+            """;
+
+    private final InferenceService inferenceService;
+    private final SessionStore store;
+    private final PersonaRegistry personas;
+    private final int historyTokenBudget;
+    private final int maxTurns;
+    private final boolean summarize;
+    private final ModelType summaryModel;
+    private final int summaryMaxTokens;
+    private final Counter summaries;
+    private final Map<ModelType, Counter> tokensSaved = new EnumMap<>(ModelType.class);
+
+    public SessionService(
+            InferenceService inferenceService,
+            SessionStore store,
+            PersonaRegistry personas,
+            MeterRegistry registry,
+            @Value("${bedrock.sessions.history-token-budget:4000}") int historyTokenBudget,
+            @Value("${bedrock.sessions.max-turns:100}") int maxTurns,
+            @Value("${bedrock.sessions.summarize:false}") boolean summarize,
+            @Value("${bedrock.sessions.summary-model:CLAUDE_3_HAIKU}") ModelType summaryModel,
+            @Value("${bedrock.sessions.summary-max-tokens:400}") int summaryMaxTokens
+    ) {
+        this.inferenceService = inferenceService;
+        this.store = store;
+        this.personas = personas;
+        this.historyTokenBudget = historyTokenBudget;
+        // Pairs only, so a stored suffix always starts with a user turn
+        this.maxTurns = Math.max(2, maxTurns - maxTurns % 2);
+        this.summarize = summarize;
+        this.summaryModel = summaryModel;
+        this.summaryMaxTokens = summaryMaxTokens;
+        this.summaries = Counter.builder("bedrock.sessions.summaries")
+                .description("Rolling summaries written to fit the session history budget")
+                .register(registry);
+        for (ModelType modelType : ModelType.values()) {
+            tokensSaved.put(modelType, Counter.builder("bedrock.sessions.tokens.saved")
+                    .description("Estimated history input tokens not sent thanks to the session history budget")
+                    .tag("model", modelType.name())
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Starts a session with a custom system prompt, or else a registered persona
+     * (the default persona when neither is given).
+     */
+    public SessionView create(ModelType modelType, String persona, String systemPrompt) {
+        String resolvedPersona = null;
+        String prompt = systemPrompt;
+        if (prompt == null || prompt.isBlank()) {
+            resolvedPersona = persona != null ? persona : PersonaRegistry.DEFAULT_PERSONA;
+            prompt = personas.systemPrompt(resolvedPersona);
+        }
+
+        ConversationSession session = new ConversationSession(UUID.randomUUID().toString(), modelType,
+                resolvedPersona, prompt);
+        store.save(session);
+        log.info("Created session {} on {}", session.id(), modelType.getDisplayName());
+        return SessionView.of(session);
+    }
+
+    public Optional<SessionView> find(String sessionId) {
+        return store.find(sessionId).map(SessionView::of);
+    }
+
+    public boolean delete(String sessionId) {
+        return store.remove(sessionId);
+    }
+
+    /**
+     * Runs one turn. Empty if the session does not exist (or expired); fails with
+     * {@link IllegalArgumentException} if another turn of the same session is still running.
+     */
+    public Mono<SessionReply> send(String sessionId, String message, InferenceParameters parameters) {
+        return Mono.defer(() -> {
+            Optional<ConversationSession> found = store.find(sessionId);
+            if (found.isEmpty()) {
+                return Mono.empty();
+            }
+            ConversationSession session = found.get();
+            if (!session.tryBegin()) {
+                return Mono.error(new IllegalArgumentException("A turn is already in progress for session " + sessionId));
+            }
+
+            return history(session)
+                    .flatMap(window -> inferenceService.infer(new InferenceRequest(session.systemPrompt(), message,
+                                    session.modelType(), parameters, window.turns()))
+                            .map(response -> complete(session, message, response, window)))
+                    .doFinally(signal -> session.end());
+        });
+    }
+
+    private Mono<HistoryWindow> history(ConversationSession session) {
+        HistoryWindow window = session.window(historyTokenBudget);
+        if (!summarize || window.turnsOmitted() == 0) {
+            return Mono.just(window);
+        }
+        return rollUp(session, window.turnsOmitted())
+                .then(Mono.fromSupplier(() -> session.window(historyTokenBudget)))
+                .onErrorResume(error -> {
+                    log.warn("Summarizing session {} failed, truncating instead: {}", session.id(), error.getMessage());
+                    return Mono.just(window);
+                });
+    }
+
+    private Mono<Void> rollUp(ConversationSession session, int count) {
+        StringBuilder transcript = new StringBuilder();
+        if (session.summary() != null) {
+            transcript.append("Previous summary:\n").append(session.summary()).append("\n\n");
+        }
+        transcript.append("New messages:\n");
+        for (ConversationTurn turn : session.oldest(count)) {
+            transcript.append(turn.role() == ConversationTurn.Role.USER ? "User: " : "Assistant: ")
+                    .append(turn.text())
+                    .append('\n');
+        }
+
+        InferenceParameters summaryParameters = InferenceParameters.deterministic().withMaxTokens(summaryMaxTokens);
+        return inferenceService.infer(new InferenceRequest(SUMMARY_SYSTEM_PROMPT, transcript.toString(),
+                        summaryModel, summaryParameters))
+                .doOnNext(response -> {
+                    session.rollUp(count, response.content().strip(), tokens(response.content(),
+                            response.metrics().outputTokens()));
+                    summaries.increment();
+                    log.debug("Session {}: rolled {} turns into the summary", session.id(), count);
+                })
+                .then();
+    }
+
+    private SessionReply complete(ConversationSession session, String message, InferenceResponse response,
+                                  HistoryWindow window) {
+        long resendTokens = session.conversationTokens();
+        session.append(
+                CompactTurn.of(ConversationTurn.user(message), tokens(message, 0)),
+                CompactTurn.of(ConversationTurn.assistant(response.content()),
+                        tokens(response.content(), response.metrics().outputTokens())),
+                maxTurns);
+        store.save(session);
+
+        long saved = Math.max(0, resendTokens - window.tokensSent());
+        tokensSaved.get(session.modelType()).increment(saved);
+
+        return new SessionReply(session.id(), session.turnCount(), response, window.tokensSent(), saved,
+                window.turnsOmitted(), window.summarized());
+    }
+
+    private static int tokens(String text, int reported) {
+        return reported > 0 ? reported : Math.max(1, text.length() / CHARS_PER_TOKEN);
+    }
+}
@@ -0,0 +1,60 @@
+package com.jmontagne.bedrock.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * In-memory session store: Caffeine weighted by each session's compact size against
+ * {@code bedrock.sessions.max-weight-bytes}, with idle sessions expiring after
+ * {@code bedrock.sessions.ttl}. Under memory pressure the least valuable sessions (W-TinyLFU)
+ * are evicted first.
+ *
+ * <p>Sessions live in one instance's memory: behind a load balancer, route on the session id.</p>
+ */
+@Component
+public class SessionStore {
+
+    static final String CACHE_NAME = "bedrock.sessions";
+
+    private final Cache<String, ConversationSession> cache;
+
+    public SessionStore(
+            MeterRegistry registry,
+            @Value("${bedrock.sessions.max-weight-bytes:33554432}") long maxWeightBytes,
+            @Value("${bedrock.sessions.ttl:PT30M}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String id, ConversationSession session) -> session.weightBytes())
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    Optional<ConversationSession> find(String id) {
+        return Optional.ofNullable(cache.getIfPresent(id));
+    }
+
+    /**
+     * Inserts or re-weighs a session after it changed.
+     */
+    void save(ConversationSession session) {
+        cache.put(session.id(), session);
+    }
+
+    boolean remove(String id) {
+        return cache.asMap().remove(id) != null;
+    }
+
+    long size() {
+        return cache.estimatedSize();
+    }
+}
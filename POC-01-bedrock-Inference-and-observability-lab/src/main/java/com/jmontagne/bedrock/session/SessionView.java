@@ -0,0 +1,32 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.ModelType;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Read-only snapshot of a session for the API.
+ */
+public record SessionView(
+        String sessionId,
+        ModelType modelType,
+        String persona,
+        int turns,
+        String summary,
+        List<ConversationTurn> history,
+        Instant createdAt
+) {
+    static SessionView of(ConversationSession session) {
+        return new SessionView(
+                session.id(),
+                session.modelType(),
+                session.persona(),
+                session.turnCount(),
+                session.summary(),
+                session.turns(),
+                session.createdAt()
+        );
+    }
+}
@@ -0,0 +1,191 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.serverless.proxy.internal.LambdaContainerHandler;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.HttpApiV2ProxyRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.exception.BedrockExceptionHandler;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.ComparisonCandidate;
+import com.jmontagne.bedrock.model.ComparisonRequest;
+import com.jmontagne.bedrock.model.ComparisonResult;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.resilience.QuotaExceededException;
+import com.jmontagne.bedrock.service.InferenceService;
+import com.jmontagne.bedrock.service.ModelComparator;
+import com.jmontagne.bedrock.service.ResponseBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InferenceRoutesTest {
+
+    @Mock
+    private InferenceService inferenceService;
+
+    @Mock
+    private ModelComparator comparator;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private CostTracker costTracker;
+    private InferenceRoutes routes;
+
+    @BeforeEach
+    void setUp() {
+        PersonaRegistry personas = new PersonaRegistry(Map.of("pirate", "Talk like a pirate."));
+        costTracker = new CostTracker(ModelCatalog.defaults(), new SimpleMeterRegistry(), Duration.ofMinutes(5), 0,
+                100, 20, System::nanoTime);
+        routes = new InferenceRoutes(inferenceService, ModelCatalog.defaults(), personas, comparator, costTracker,
+                new BedrockExceptionHandler(), mapper);
+    }
+
+    @Test
+    void streamGet_mapsQueryParametersAndCallerContext_returnsStreamResponse() throws Exception {
+        AtomicReference<CallerContext> caller = new AtomicReference<>();
+        when(inferenceService.bufferWithJacquesMontagne(eq("Hi"), eq(ModelType.CLAUDE_3_HAIKU), any()))
+                .thenReturn(Mono.deferContextual(context -> {
+                    caller.set(CallerContext.from(context));
+                    return Mono.just(buffer("Bon", "jour"));
+                }));
+
+        AwsProxyResponse response = routes.handle(request("GET", "/api/v1/inference/stream/CLAUDE_3_HAIKU",
+                "\"queryStringParameters\":{\"message\":\"Hi\",\"temperature\":\"0.2\",\"maxTokens\":\"64\"},"
+                        + "\"headers\":{\"x-api-key\":\"team-a\"},"));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        JsonNode body = mapper.readTree(response.getBody());
+        assertThat(body.get("content").asText()).isEqualTo("Bonjour");
+        assertThat(body.get("chunksReceived").asInt()).isEqualTo(2);
+        assertThat(caller.get()).isEqualTo(new CallerContext("team-a", "stream"));
+
+        ArgumentCaptor<InferenceParameters> parameters = ArgumentCaptor.forClass(InferenceParameters.class);
+        verify(inferenceService).bufferWithJacquesMontagne(eq("Hi"), eq(ModelType.CLAUDE_3_HAIKU), parameters.capture());
+        assertThat(parameters.getValue().temperature()).isEqualTo(0.2);
+        assertThat(parameters.getValue().maxTokens()).isEqualTo(64);
+    }
+
+    @Test
+    void streamPost_withPersona_usesPersonaSystemPrompt() {
+        when(inferenceService.bufferCustom(eq("Talk like a pirate."), eq("Hi"), eq(ModelType.CLAUDE_3_5_SONNET), any()))
+                .thenReturn(Mono.just(buffer("Ahoy")));
+
+        AwsProxyResponse response = routes.handle(request("POST", "/api/v1/inference/stream/CLAUDE_3_5_SONNET",
+                "\"body\":\"{\\\"message\\\":\\\"Hi\\\",\\\"persona\\\":\\\"pirate\\\"}\",\"isBase64Encoded\":false,"));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getBody()).contains("\"content\":\"Ahoy\"");
+    }
+
+    @Test
+    void compareGet_mapsModelsAndRunsIntoComparisonRequest() throws Exception {
+        when(comparator.maxDuration(any())).thenReturn(Duration.ofSeconds(1));
+        when(comparator.compare(any())).thenAnswer(invocation ->
+                Mono.just(ComparisonResult.of(invocation.getArgument(0), List.of())));
+
+        AwsProxyResponse response = routes.handle(request("GET", "/api/v1/inference/compare",
+                "\"queryStringParameters\":{\"message\":\"Hi\",\"models\":\"CLAUDE_3_HAIKU\",\"runs\":\"5\",\"warmup\":\"2\"},"));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(mapper.readTree(response.getBody()).get("runs").asInt()).isEqualTo(5);
+        ArgumentCaptor<ComparisonRequest> comparison = ArgumentCaptor.forClass(ComparisonRequest.class);
+        verify(comparator).compare(comparison.capture());
+        assertThat(comparison.getValue().candidates()).extracting(ComparisonCandidate::modelType)
+                .containsExactly(ModelType.CLAUDE_3_HAIKU);
+        assertThat(comparison.getValue().candidates().getFirst().parameters().temperature()).isZero();
+        assertThat(comparison.getValue().warmupRuns()).isEqualTo(2);
+    }
+
+    @Test
+    void costs_returnsSpendByModelAndCaller() throws Exception {
+        costTracker.record(new CallerContext("team-a", "stream"), PerformanceMetrics.builder()
+                .inputTokens(1_000_000)
+                .modelType(ModelType.CLAUDE_3_HAIKU)
+                .build());
+
+        AwsProxyResponse response = routes.handle(request("GET", "/api/v1/inference/costs", ""));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        JsonNode body = mapper.readTree(response.getBody());
+        assertThat(body.at("/byModel/CLAUDE_3_HAIKU/costUsd").asDouble()).isEqualTo(0.25);
+        assertThat(body.at("/topCallers/team-a/requests").asLong()).isEqualTo(1);
+        verifyNoInteractions(inferenceService);
+    }
+
+    @Test
+    void health_answersWithoutTouchingTheService() {
+        AwsProxyResponse response = routes.handle(request("GET", "/api/v1/inference/health", ""));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getBody()).contains("\"status\":\"OK\"");
+        verifyNoInteractions(inferenceService);
+    }
+
+    @Test
+    void quotaExceeded_mapsToSameStatusAndRetryAfterAsController() throws Exception {
+        when(inferenceService.inferWithJacquesMontagne(eq("Hi"), eq(ModelType.CLAUDE_3_HAIKU), any(InferenceParameters.class)))
+                .thenReturn(Mono.error(
+                        new QuotaExceededException(ModelType.CLAUDE_3_HAIKU, "TPM", Duration.ofSeconds(7))));
+
+        AwsProxyResponse response = routes.handle(request("GET", "/api/v1/inference/CLAUDE_3_HAIKU",
+                "\"queryStringParameters\":{\"message\":\"Hi\"},"));
+
+        assertThat(response.getStatusCode()).isEqualTo(429);
+        assertThat(response.getHeaders()).containsEntry("Retry-After", "7");
+        assertThat(mapper.readTree(response.getBody()).get("code").asText()).isEqualTo("QUOTA_EXCEEDED");
+    }
+
+    @Test
+    void invalidInput_returns400AndUnknownRoute_returns404() {
+        assertThat(routes.handle(request("GET", "/api/v1/inference/stream/GPT_4", "")).getStatusCode()).isEqualTo(400);
+        assertThat(routes.handle(request("GET", "/api/v1/inference/auto", "")).getStatusCode()).isEqualTo(400);
+        assertThat(routes.handle(request("GET", "/api/v1/sessions/abc", "")).getStatusCode()).isEqualTo(404);
+        assertThat(routes.handle(request("POST", "/api/v1/inference/health", "")).getStatusCode()).isEqualTo(404);
+        verifyNoInteractions(inferenceService);
+    }
+
+    private static ResponseBuffer buffer(String... chunks) {
+        ResponseBuffer buffer = new ResponseBuffer(16);
+        for (String chunk : chunks) {
+            buffer.append(chunk);
+        }
+        return buffer;
+    }
+
+    /**
+     * Built from JSON like the Lambda runtime does, rather than through the model's setters.
+     */
+    private static HttpApiV2ProxyRequest request(String method, String path, String extraFields) {
+        String json = "{\"version\":\"2.0\"," + extraFields
+                + "\"requestContext\":{\"http\":{\"method\":\"" + method + "\",\"path\":\"" + path + "\"}}}";
+        try {
+            return LambdaContainerHandler.getObjectMapper().readValue(json, HttpApiV2ProxyRequest.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.cache.RequestCoalescer;
+import com.jmontagne.bedrock.cache.ResponseCache;
+import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import com.jmontagne.bedrock.resilience.AdaptiveConcurrencyLimiter;
+import com.jmontagne.bedrock.resilience.CircuitBreaker;
+import com.jmontagne.bedrock.resilience.RequestHedger;
+import com.jmontagne.bedrock.resilience.TokenQuotaManager;
+import com.jmontagne.bedrock.service.InferenceService;
+import com.jmontagne.bedrock.service.ModelRouter;
+import com.jmontagne.bedrock.service.OutputSizeEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SseStreamLambdaHandlerTest {
+
+    private static final int PRELUDE_DELIMITER_LENGTH = 8;
+
+    @Mock
+    private BedrockStreamingClient streamingClient;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private SseStreamLambdaHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenQuotaManager.QuotaLimits generous = new TokenQuotaManager.QuotaLimits(1_000, 1_000_000);
+        InferenceService inferenceService = new InferenceService(streamingClient,
+                new ResponseCache(registry, true, 1_000_000, Duration.ofMinutes(5)),
+                new RequestCoalescer(registry, true),
+                new TokenQuotaManager(registry, true,
+                        Map.of(ModelType.CLAUDE_3_5_SONNET, generous, ModelType.CLAUDE_3_HAIKU, generous),
+                        0, Duration.ofSeconds(1), System::nanoTime),
+                new AdaptiveConcurrencyLimiter(registry, new LatencyTelemetry(), true, 10, 1, 50, 0.7, 2.0, 100,
+                        Duration.ofSeconds(2)),
+                new RequestHedger(registry, new LatencyTelemetry(), false, 95, "",
+                        Duration.ofMillis(200), Duration.ofSeconds(10), 20),
+                new ModelRouter(ModelCatalog.defaults(), new LatencyTelemetry(), registry,
+                        Duration.ofSeconds(2), 0.3, 0.2, 10),
+                new OutputSizeEstimator(),
+                new CostTracker(ModelCatalog.defaults(), registry, Duration.ofMinutes(5), 0, 100, 20, System::nanoTime),
+                new CircuitBreaker(registry, true, 20, 10, 0.5, Duration.ofSeconds(10), 0.8,
+                        Duration.ofSeconds(30), 3, "", Duration.ofSeconds(30), System::nanoTime));
+        handler = new SseStreamLambdaHandler(inferenceService,
+                new PersonaRegistry(Map.of("pirate", "Talk like a pirate.")));
+    }
+
+    @Test
+    void get_writesPreludeThenOneFramePerEvent() throws Exception {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(Flux.just(
+                new StreamEvent.Token("Bon"),
+                new StreamEvent.Token("jour"),
+                new StreamEvent.Stop("end_turn"),
+                new StreamEvent.Metrics(PerformanceMetrics.builder()
+                        .timeToFirstTokenMs(300)
+                        .outputTokens(2)
+                        .modelType(ModelType.CLAUDE_3_HAIKU)
+                        .build())));
+
+        Response response = invoke(event("GET", "/api/v1/inference/stream/CLAUDE_3_HAIKU",
+                "\"queryStringParameters\":{\"message\":\"Hi\",\"maxTokens\":\"64\"},"));
+
+        assertThat(response.prelude().get("statusCode").asInt()).isEqualTo(200);
+        assertThat(response.prelude().at("/headers/Content-Type").asText()).isEqualTo("text/event-stream");
+        String[] frames = response.body().split("\n\n");
+        assertThat(frames).hasSize(4);
+        assertThat(frames[0]).isEqualTo("event: token\ndata: {\"text\":\"Bon\"}");
+        assertThat(frames[1]).isEqualTo("event: token\ndata: {\"text\":\"jour\"}");
+        assertThat(frames[2]).isEqualTo("event: stop\ndata: {\"stopReason\":\"end_turn\"}");
+        assertThat(frames[3]).startsWith("event: metrics\ndata: {").contains("\"timeToFirstTokenMs\":300");
+
+        ArgumentCaptor<InferenceRequest> request = ArgumentCaptor.forClass(InferenceRequest.class);
+        verify(streamingClient).streamEvents(request.capture());
+        assertThat(request.getValue().userMessage()).isEqualTo("Hi");
+        assertThat(request.getValue().parameters().maxTokens()).isEqualTo(64);
+    }
+
+    @Test
+    void post_midStreamFailure_endsWithErrorFrameInsteadOfMetrics() throws Exception {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(Flux.concat(
+                Flux.just(new StreamEvent.Token("Ahoy")),
+                Flux.error(new IllegalStateException("connection reset"))));
+
+        Response response = invoke(event("POST", "/api/v1/inference/stream/CLAUDE_3_HAIKU",
+                "\"body\":\"{\\\"message\\\":\\\"Hi\\\",\\\"persona\\\":\\\"pirate\\\"}\",\"isBase64Encoded\":false,"));
+
+        assertThat(response.prelude().get("statusCode").asInt()).isEqualTo(200);
+        assertThat(response.body().split("\n\n")).containsExactly(
+                "event: token\ndata: {\"text\":\"Ahoy\"}",
+                "event: error\ndata: {\"code\":\"IllegalStateException\",\"message\":\"connection reset\"}");
+
+        ArgumentCaptor<InferenceRequest> request = ArgumentCaptor.forClass(InferenceRequest.class);
+        verify(streamingClient).streamEvents(request.capture());
+        assertThat(request.getValue().systemPrompt()).isEqualTo("Talk like a pirate.");
+    }
+
+    @Test
+    void failedWrite_cancelsTheBedrockCall() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(
+                Flux.concat(Flux.just(new StreamEvent.Token("Bon")), Flux.<StreamEvent>never())
+                        .doOnCancel(cancelled::countDown));
+        OutputStream disconnected = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                if (new String(bytes, StandardCharsets.UTF_8).startsWith("event:")) {
+                    throw new IOException("Broken pipe");
+                }
+                super.write(bytes);
+            }
+        };
+
+        String event = event("GET", "/api/v1/inference/stream/CLAUDE_3_HAIKU",
+                "\"queryStringParameters\":{\"message\":\"Hi\"},");
+        assertThatThrownBy(() -> handler.handleRequest(
+                new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)), disconnected, null))
+                .isInstanceOf(IOException.class);
+
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void tricklingStream_isCutBeforeTheInvocationDeadline() throws Exception {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(
+                Flux.interval(Duration.ofMillis(50)).map(i -> new StreamEvent.Token("x")));
+        Context context = mock(Context.class);
+        when(context.getRemainingTimeInMillis()).thenReturn(1_500);
+
+        Response response = invoke(event("GET", "/api/v1/inference/stream/CLAUDE_3_HAIKU",
+                "\"queryStringParameters\":{\"message\":\"Hi\"},"), context);
+
+        String[] frames = response.body().split("\n\n");
+        assertThat(frames.length).isGreaterThan(1);
+        assertThat(frames[frames.length - 1]).startsWith("event: error\ndata: {\"code\":\"TimeoutException\"");
+    }
+
+    @Test
+    void unknownModel_writesJsonErrorPreludeWithoutCallingBedrock() throws Exception {
+        Response response = invoke(event("GET", "/api/v1/inference/stream/GPT_4",
+                "\"queryStringParameters\":{\"message\":\"Hi\"},"));
+
+        assertThat(response.prelude().get("statusCode").asInt()).isEqualTo(400);
+        assertThat(response.prelude().at("/headers/Content-Type").asText()).isEqualTo("application/json");
+        assertThat(mapper.readTree(response.body()).get("code").asText()).isEqualTo("INVALID_ARGUMENT");
+    }
+
+    private Response invoke(String event) throws IOException {
+        return invoke(event, null);
+    }
+
+    private Response invoke(String event, Context context) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)), output, context);
+
+        byte[] bytes = output.toByteArray();
+        int delimiter = indexOfDelimiter(bytes);
+        assertThat(delimiter).as("prelude delimiter").isNotNegative();
+        JsonNode prelude = mapper.readTree(Arrays.copyOfRange(bytes, 0, delimiter));
+        String body = new String(bytes, delimiter + PRELUDE_DELIMITER_LENGTH,
+                bytes.length - delimiter - PRELUDE_DELIMITER_LENGTH, StandardCharsets.UTF_8);
+        return new Response(prelude, body);
+    }
+
+    private static int indexOfDelimiter(byte[] bytes) {
+        outer:
+        for (int i = 0; i + PRELUDE_DELIMITER_LENGTH <= bytes.length; i++) {
+            for (int j = 0; j < PRELUDE_DELIMITER_LENGTH; j++) {
+                if (bytes[i + j] != 0) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A Function URL event, built as JSON like the Lambda runtime delivers it.
+     */
+    private static String event(String method, String path, String extraFields) {
+        return "{\"version\":\"2.0\"," + extraFields
+                + "\"requestContext\":{\"http\":{\"method\":\"" + method + "\",\"path\":\"" + path + "\"}}}";
+    }
+
+    private record Response(JsonNode prelude, String body) {}
+}
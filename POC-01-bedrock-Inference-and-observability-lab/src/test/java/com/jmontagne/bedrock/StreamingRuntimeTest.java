@@ -0,0 +1,122 @@
+package com.jmontagne.bedrock;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * StreamingRuntime against a fake Lambda Runtime API: the response must arrive in streaming
+ * mode, chunk by chunk while the handler is still running.
+ */
+class StreamingRuntimeTest {
+
+    private static final String EVENT = "{\"version\":\"2.0\"}";
+
+    private HttpServer runtimeApi;
+    private final AtomicReference<Headers> responseHeaders = new AtomicReference<>();
+    private final AtomicReference<String> responseBody = new AtomicReference<>();
+    private final CountDownLatch firstChunkReceived = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        runtimeApi = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        runtimeApi.setExecutor(Executors.newCachedThreadPool());
+        runtimeApi.createContext("/2018-06-01/runtime/invocation/next", exchange -> {
+            byte[] event = EVENT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", "req-1");
+            exchange.getResponseHeaders().add("Lambda-Runtime-Deadline-Ms",
+                    String.valueOf(System.currentTimeMillis() + 60_000));
+            exchange.sendResponseHeaders(200, event.length);
+            exchange.getResponseBody().write(event);
+            exchange.close();
+        });
+        runtimeApi.createContext("/2018-06-01/runtime/invocation/req-1/response", exchange -> {
+            responseHeaders.set(exchange.getRequestHeaders());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[1024];
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+                body.write(buffer, 0, read);
+                if (body.toString(StandardCharsets.UTF_8).startsWith("first")) {
+                    firstChunkReceived.countDown();
+                }
+            }
+            responseBody.set(body.toString(StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        runtimeApi.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        runtimeApi.stop(0);
+    }
+
+    @Test
+    @Timeout(10)
+    void invokeNext_streamsEachFlushBeforeTheHandlerReturns() throws Exception {
+        AtomicReference<String> event = new AtomicReference<>();
+        AtomicReference<Context> context = new AtomicReference<>();
+        AtomicBoolean firstChunkSeenMidInvocation = new AtomicBoolean();
+
+        StreamingRuntime runtime = new StreamingRuntime("127.0.0.1:" + runtimeApi.getAddress().getPort(),
+                (input, output, invocationContext) -> {
+                    event.set(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+                    context.set(invocationContext);
+                    output.write("first".getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                    try {
+                        firstChunkSeenMidInvocation.set(firstChunkReceived.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    output.write("second".getBytes(StandardCharsets.UTF_8));
+                    output.close();
+                });
+
+        runtime.invokeNext();
+
+        assertThat(event.get()).isEqualTo(EVENT);
+        assertThat(context.get().getAwsRequestId()).isEqualTo("req-1");
+        assertThat(context.get().getRemainingTimeInMillis()).isPositive();
+        assertThat(firstChunkSeenMidInvocation).isTrue();
+        assertThat(responseBody.get()).isEqualTo("firstsecond");
+        Headers headers = responseHeaders.get();
+        assertThat(headers.getFirst(StreamingRuntime.RESPONSE_MODE_HEADER)).isEqualTo("streaming");
+        assertThat(headers.getFirst("Content-Type")).isEqualTo(StreamingRuntime.HTTP_INTEGRATION_CONTENT_TYPE);
+        assertThat(headers.getFirst("Transfer-Encoding")).isEqualTo("chunked");
+    }
+
+    @Test
+    void loadHandler_instantiatesTheClassNamedInHandlerString() throws Exception {
+        assertThat(StreamingRuntime.loadHandler(EchoHandler.class.getName() + "::handleRequest"))
+                .isInstanceOf(EchoHandler.class);
+    }
+
+    public static class EchoHandler implements RequestStreamHandler {
+        @Override
+        public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+            input.transferTo(output);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.jmontagne.bedrock.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.resilience.QuotaExceededException;
+import com.jmontagne.bedrock.service.InferenceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.bedrock.model.ModelInvocationJobStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchJobServiceTest {
+
+    private static final String INPUT = """
+            {"recordId":"r1","message":"Bonjour"}
+            {"recordId":"r2","message":"boom"}
+            {"recordId":"r3","message":"Merci","modelType":"CLAUDE_3_5_SONNET"}
+            """;
+
+    @Mock
+    private InferenceService inferenceService;
+
+    @Mock
+    private BedrockBatchJobs bedrockJobs;
+
+    @TempDir
+    Path root;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private BatchJobService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BatchJobService(inferenceService, new LocalBatchStorage(root), bedrockJobs,
+                PersonaRegistry.defaults(), mapper, 2, 2, 1000, Duration.ofMillis(1), Duration.ZERO);
+    }
+
+    @Test
+    void submit_directMode_writesResultsInInputOrder() throws Exception {
+        answerEcho();
+
+        BatchJob job = submit(INPUT.replace("boom", "Salut"));
+        BatchJob finished = awaitFinished(job.jobId());
+
+        assertThat(finished.status()).isEqualTo(BatchJob.Status.COMPLETED);
+        assertThat(finished.completedRecords()).isEqualTo(3);
+        assertThat(resultLines(job.jobId()))
+                .extracting(BatchResult::recordId, BatchResult::modelType, BatchResult::content)
+                .containsExactly(
+                        tuple("r1", ModelType.CLAUDE_3_HAIKU, "echo: Bonjour"),
+                        tuple("r2", ModelType.CLAUDE_3_HAIKU, "echo: Salut"),
+                        tuple("r3", ModelType.CLAUDE_3_5_SONNET, "echo: Merci"));
+    }
+
+    @Test
+    void resume_afterFailedRecord_rerunsOnlyThatRecord() throws Exception {
+        AtomicInteger boomAttempts = new AtomicInteger();
+        when(inferenceService.infer(any())).thenAnswer(invocation -> {
+            InferenceRequest request = invocation.getArgument(0);
+            calls.computeIfAbsent(request.userMessage(), key -> new AtomicInteger()).incrementAndGet();
+            if (request.userMessage().equals("boom") && boomAttempts.getAndIncrement() == 0) {
+                return Mono.error(new IllegalStateException("upstream failed"));
+            }
+            return Mono.just(response(request));
+        });
+
+        BatchJob job = submit(INPUT);
+        BatchJob partial = awaitFinished(job.jobId());
+        assertThat(partial.status()).isEqualTo(BatchJob.Status.PARTIALLY_FAILED);
+        assertThat(partial.failedRecords()).isEqualTo(1);
+
+        service.resume(job.jobId(), CallerContext.ANONYMOUS);
+        BatchJob resumed = awaitFinished(job.jobId());
+
+        assertThat(resumed.status()).isEqualTo(BatchJob.Status.COMPLETED);
+        assertThat(resumed.completedRecords()).isEqualTo(3);
+        assertThat(calls.get("Bonjour")).hasValue(1);
+        assertThat(calls.get("boom")).hasValue(2);
+        assertThat(resultLines(job.jobId())).allMatch(BatchResult::succeeded).hasSize(3);
+    }
+
+    @Test
+    void submit_localQuotaRejection_retriesInsteadOfFailing() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        when(inferenceService.infer(any())).thenAnswer(invocation -> {
+            InferenceRequest request = invocation.getArgument(0);
+            return Mono.defer(() -> attempts.getAndIncrement() < 2
+                    ? Mono.error(new QuotaExceededException(request.modelType(), "TPM", Duration.ofSeconds(1)))
+                    : Mono.just(response(request)));
+        });
+
+        BatchJob job = submit("{\"recordId\":\"r1\",\"message\":\"Bonjour\"}\n");
+
+        assertThat(awaitFinished(job.jobId()).status()).isEqualTo(BatchJob.Status.COMPLETED);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void submit_invalidRecord_isRejectedUpFront() {
+        assertThatThrownBy(() -> submit("{\"recordId\":\"r1\"}\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("line 1");
+        assertThatThrownBy(() -> submit("{\"recordId\":\"r1\",\"message\":\"a\"}\n{\"recordId\":\"r1\",\"message\":\"b\"}\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Duplicate recordId");
+    }
+
+    @Test
+    void submit_bedrockModeWithLocalStorage_isRejected() {
+        assertThatThrownBy(() -> service.submit(INPUT.getBytes(StandardCharsets.UTF_8), ModelType.CLAUDE_3_HAIKU,
+                BatchJob.Mode.BEDROCK, CallerContext.ANONYMOUS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("role-arn");
+    }
+
+    @Test
+    void find_concurrentWhileBedrockJobFinishes_importsOnceWithoutWaiting() throws Exception {
+        Instant now = Instant.now();
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), BatchJob.Mode.BEDROCK, BatchJob.Status.SUBMITTED,
+                ModelType.CLAUDE_3_HAIKU, 2, 0, 0, List.of("arn:job"), now, now);
+        LocalBatchStorage storage = new LocalBatchStorage(root);
+        storage.put("jobs/" + job.jobId() + "/job.json", mapper.writeValueAsBytes(job));
+        storage.put("jobs/" + job.jobId() + "/bedrock/output/CLAUDE_3_HAIKU/input.jsonl.out",
+                "r1\nr2\n".getBytes(StandardCharsets.UTF_8));
+        when(bedrockJobs.fromOutputLine(any(), any())).thenAnswer(invocation -> new BatchResult(
+                invocation.getArgument(0), ModelType.CLAUDE_3_HAIKU, "ok", "end_turn", 10, 5, null));
+
+        CountDownLatch polling = new CountDownLatch(1);
+        CountDownLatch bedrockAnswers = new CountDownLatch(1);
+        when(bedrockJobs.status("arn:job")).thenAnswer(invocation -> {
+            polling.countDown();
+            bedrockAnswers.await(5, TimeUnit.SECONDS);
+            return ModelInvocationJobStatus.COMPLETED;
+        });
+
+        CompletableFuture<BatchJob> first = CompletableFuture.supplyAsync(() -> service.find(job.jobId()).orElseThrow());
+        assertThat(polling.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.find(job.jobId()).orElseThrow().status()).isEqualTo(BatchJob.Status.SUBMITTED);
+        bedrockAnswers.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).status()).isEqualTo(BatchJob.Status.COMPLETED);
+        assertThat(service.find(job.jobId()).orElseThrow().completedRecords()).isEqualTo(2);
+        verify(bedrockJobs, times(1)).status("arn:job");
+        assertThat(storage.list("jobs/" + job.jobId() + "/results/")).hasSize(1);
+    }
+
+    private void answerEcho() {
+        when(inferenceService.infer(any())).thenAnswer(invocation ->
+                Mono.just(response(invocation.getArgument(0))));
+    }
+
+    private static InferenceResponse response(InferenceRequest request) {
+        return InferenceResponse.of("echo: " + request.userMessage(), request.modelType(),
+                PerformanceMetrics.builder().inputTokens(10).outputTokens(5).modelType(request.modelType()).build());
+    }
+
+    private BatchJob submit(String jsonl) {
+        return service.submit(jsonl.getBytes(StandardCharsets.UTF_8), ModelType.CLAUDE_3_HAIKU,
+                BatchJob.Mode.DIRECT, CallerContext.ANONYMOUS);
+    }
+
+    private BatchJob awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (System.nanoTime() < deadline) {
+            BatchJob job = service.find(jobId).orElseThrow();
+            if (job.terminal() && !service.isRunning(jobId)) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Batch job did not finish: " + jobId);
+    }
+
+    private List<BatchResult> resultLines(String jobId) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(service.writeResults(jobId, output)).isTrue();
+        return output.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> {
+                    try {
+                        return mapper.readValue(line, BatchResult.class);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,108 @@
+package com.jmontagne.bedrock.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.bedrock.BedrockAsyncClient;
+import software.amazon.awssdk.services.bedrock.model.CreateModelInvocationJobRequest;
+import software.amazon.awssdk.services.bedrock.model.CreateModelInvocationJobResponse;
+import software.amazon.awssdk.services.bedrock.model.S3InputFormat;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BedrockBatchJobsTest {
+
+    private static final String ROLE_ARN = "arn:aws:iam::123456789012:role/bedrock-batch";
+
+    @Mock
+    private BedrockAsyncClient bedrock;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private BedrockBatchJobs jobs;
+
+    @BeforeEach
+    void setUp() {
+        jobs = new BedrockBatchJobs(bedrock, mapper, ROLE_ARN);
+    }
+
+    @Test
+    void toInputLine_usesAnthropicMessagesBody() throws Exception {
+        BatchRecord record = new BatchRecord("r1", "Bonjour", null, null, null, 0.2, 512);
+
+        JsonNode line = mapper.readTree(jobs.toInputLine(record, "You are a chef.", record.toParameters()));
+
+        assertThat(line.get("recordId").asText()).isEqualTo("r1");
+        JsonNode body = line.get("modelInput");
+        assertThat(body.get("anthropic_version").asText()).isEqualTo(BedrockBatchJobs.ANTHROPIC_VERSION);
+        assertThat(body.get("max_tokens").asInt()).isEqualTo(512);
+        assertThat(body.get("temperature").asDouble()).isEqualTo(0.2);
+        assertThat(body.get("system").asText()).isEqualTo("You are a chef.");
+        assertThat(body.at("/messages/0/role").asText()).isEqualTo("user");
+        assertThat(body.at("/messages/0/content/0/text").asText()).isEqualTo("Bonjour");
+    }
+
+    @Test
+    void fromOutputLine_success_extractsTextAndUsage() {
+        String line = """
+                {"recordId":"r1","modelInput":{},"modelOutput":{"content":[{"type":"text","text":"Bon"},\
+                {"type":"text","text":"jour"}],"stop_reason":"end_turn","usage":{"input_tokens":12,"output_tokens":3}}}""";
+
+        BatchResult result = jobs.fromOutputLine(line, ModelType.CLAUDE_3_HAIKU);
+
+        assertThat(result.succeeded()).isTrue();
+        assertThat(result.content()).isEqualTo("Bonjour");
+        assertThat(result.stopReason()).isEqualTo("end_turn");
+        assertThat(result.inputTokens()).isEqualTo(12);
+        assertThat(result.outputTokens()).isEqualTo(3);
+    }
+
+    @Test
+    void fromOutputLine_error_isFailedResult() {
+        String line = """
+                {"recordId":"r2","modelInput":{},"error":{"errorCode":400,"errorMessage":"Malformed input"}}""";
+
+        BatchResult result = jobs.fromOutputLine(line, ModelType.CLAUDE_3_HAIKU);
+
+        assertThat(result.succeeded()).isFalse();
+        assertThat(result.recordId()).isEqualTo("r2");
+        assertThat(result.error()).contains("Malformed input");
+    }
+
+    @Test
+    void submit_createsJsonlJobForModel() {
+        when(bedrock.createModelInvocationJob(any(CreateModelInvocationJobRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        CreateModelInvocationJobResponse.builder().jobArn("arn:job/1").build()));
+
+        String arn = jobs.submit("batch-1", ModelType.CLAUDE_3_HAIKU, "s3://b/in.jsonl", "s3://b/out/");
+
+        ArgumentCaptor<CreateModelInvocationJobRequest> captor =
+                ArgumentCaptor.forClass(CreateModelInvocationJobRequest.class);
+        verify(bedrock).createModelInvocationJob(captor.capture());
+        CreateModelInvocationJobRequest request = captor.getValue();
+        assertThat(arn).isEqualTo("arn:job/1");
+        assertThat(request.modelId()).isEqualTo(ModelType.CLAUDE_3_HAIKU.getModelId());
+        assertThat(request.roleArn()).isEqualTo(ROLE_ARN);
+        assertThat(request.inputDataConfig().s3InputDataConfig().s3InputFormat()).isEqualTo(S3InputFormat.JSONL);
+        assertThat(request.outputDataConfig().s3OutputDataConfig().s3Uri()).isEqualTo("s3://b/out/");
+    }
+
+    @Test
+    void isConfigured_requiresRoleArn() {
+        assertThat(jobs.isConfigured()).isTrue();
+        assertThat(new BedrockBatchJobs(bedrock, mapper, "").isConfigured()).isFalse();
+    }
+}
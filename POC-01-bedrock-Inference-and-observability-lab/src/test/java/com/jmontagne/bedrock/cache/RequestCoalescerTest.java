@@ -0,0 +1,97 @@
+package com.jmontagne.bedrock.cache;
+
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCoalescerTest {
+
+    private static final RequestKey KEY = new RequestKey("abc123");
+
+    private RequestCoalescer coalescer;
+    private Sinks.Many<StreamEvent> upstream;
+    private AtomicInteger upstreamCalls;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new RequestCoalescer(new SimpleMeterRegistry(), true);
+        upstream = Sinks.many().unicast().onBackpressureBuffer();
+        upstreamCalls = new AtomicInteger();
+    }
+
+    @Test
+    void coalesce_concurrentIdenticalRequests_shareOneUpstreamCallAndReplayToLateJoiner() {
+        List<StreamEvent> firstReceived = new CopyOnWriteArrayList<>();
+        coalescer.coalesce(KEY, this::upstreamCall).subscribe(firstReceived::add);
+        upstream.tryEmitNext(new StreamEvent.Token("Bon"));
+
+        Flux<StreamEvent> lateJoiner = coalescer.coalesce(KEY, this::upstreamCall);
+        StepVerifier.create(lateJoiner)
+                .expectNext(new StreamEvent.Token("Bon"))
+                .then(() -> {
+                    upstream.tryEmitNext(new StreamEvent.Token("jour"));
+                    upstream.tryEmitComplete();
+                })
+                .expectNext(new StreamEvent.Token("jour"))
+                .verifyComplete();
+
+        assertThat(firstReceived).containsExactly(new StreamEvent.Token("Bon"), new StreamEvent.Token("jour"));
+        assertThat(upstreamCalls).hasValue(1);
+        assertThat(coalescer.coalescedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void coalesce_afterUpstreamCompletes_opensNewCall() {
+        StepVerifier.create(coalescer.coalesce(KEY, () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Flux.just(new StreamEvent.Token("a"));
+                }))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(coalescer.coalesce(KEY, () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Flux.just(new StreamEvent.Token("b"));
+                }))
+                .expectNext(new StreamEvent.Token("b"))
+                .verifyComplete();
+
+        assertThat(upstreamCalls).hasValue(2);
+        assertThat(coalescer.coalescedCount()).isZero();
+    }
+
+    @Test
+    void coalesce_fromCompletionOfTheSharedCall_opensNewCallInsteadOfResubscribing() {
+        AtomicInteger firstCallSubscriptions = new AtomicInteger();
+        List<StreamEvent> lateReceived = new CopyOnWriteArrayList<>();
+        Flux<StreamEvent> first = coalescer.coalesce(KEY, () -> Flux.<StreamEvent>just(new StreamEvent.Token("a"))
+                .doOnSubscribe(subscription -> firstCallSubscriptions.incrementAndGet()));
+
+        StepVerifier.create(first.doOnComplete(() -> coalescer.coalesce(KEY, () -> {
+                            upstreamCalls.incrementAndGet();
+                            return Flux.just(new StreamEvent.Token("b"));
+                        })
+                        .subscribe(lateReceived::add)))
+                .expectNext(new StreamEvent.Token("a"))
+                .verifyComplete();
+
+        assertThat(lateReceived).containsExactly(new StreamEvent.Token("b"));
+        assertThat(firstCallSubscriptions).hasValue(1);
+        assertThat(upstreamCalls).hasValue(1);
+        assertThat(coalescer.coalescedCount()).isZero();
+    }
+
+    private Flux<StreamEvent> upstreamCall() {
+        upstreamCalls.incrementAndGet();
+        return upstream.asFlux();
+    }
+}
@@ -0,0 +1,92 @@
+package com.jmontagne.bedrock.cache;
+
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private ResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new ResponseCache(registry, true, 1_000_000, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void isCacheable_onlyDeterministicUnbudgetedRequests() {
+        assertThat(cache.isCacheable(request("Hi", InferenceParameters.deterministic()))).isTrue();
+        assertThat(cache.isCacheable(request("Hi", InferenceParameters.DEFAULT))).isFalse();
+        assertThat(cache.isCacheable(request("Hi", InferenceParameters.deterministic()
+                .withBudget(OutputBudget.of(100, null))))).isFalse();
+    }
+
+    @Test
+    void requestKey_differsByMessageAndParameters() {
+        RequestKey base = RequestKey.of(request("Hi", InferenceParameters.deterministic()));
+
+        assertThat(RequestKey.of(request("Hi", InferenceParameters.deterministic()))).isEqualTo(base);
+        assertThat(RequestKey.of(request("Hello", InferenceParameters.deterministic()))).isNotEqualTo(base);
+        assertThat(RequestKey.of(request("Hi", InferenceParameters.deterministic().withMaxTokens(10)))).isNotEqualTo(base);
+    }
+
+    @Test
+    void cacheOnComplete_storesCompletedStreamAndReplaysChunks() {
+        RequestKey key = RequestKey.of(request("Hi", InferenceParameters.deterministic()));
+        Flux<StreamEvent> upstream = Flux.just(
+                new StreamEvent.Token("Bon"),
+                new StreamEvent.Token("jour"),
+                new StreamEvent.Stop("end_turn"),
+                new StreamEvent.Metrics(metrics()));
+
+        StepVerifier.create(cache.cacheOnComplete(key, upstream)).expectNextCount(4).verifyComplete();
+
+        assertThat(cache.get(key)).isPresent();
+        StepVerifier.create(cache.get(key).orElseThrow().replay())
+                .expectNext(new StreamEvent.Token("Bon"), new StreamEvent.Token("jour"), new StreamEvent.Stop("end_turn"))
+                .assertNext(event -> assertThat(((StreamEvent.Metrics) event).metrics().outputTokens()).isEqualTo(2))
+                .verifyComplete();
+        assertThat(cache.stats().hits()).isEqualTo(2);
+        assertThat(registry.get("cache.gets").tag("cache", ResponseCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void cacheOnComplete_failedStream_isNotCached() {
+        RequestKey key = RequestKey.of(request("Hi", InferenceParameters.deterministic()));
+        Flux<StreamEvent> upstream = Flux.<StreamEvent>just(new StreamEvent.Token("Bon"))
+                .concatWith(Flux.error(new IllegalStateException("boom")));
+
+        StepVerifier.create(cache.cacheOnComplete(key, upstream)).expectNextCount(1).verifyError();
+
+        assertThat(cache.get(key)).isEmpty();
+    }
+
+    private static InferenceRequest request(String message, InferenceParameters parameters) {
+        return InferenceRequest.withJacquesMontagne(message, ModelType.CLAUDE_3_HAIKU, parameters);
+    }
+
+    private static PerformanceMetrics metrics() {
+        return PerformanceMetrics.builder()
+                .timeToFirstTokenMs(300)
+                .totalGenerationTimeMs(900)
+                .inputTokens(10)
+                .outputTokens(2)
+                .modelType(ModelType.CLAUDE_3_HAIKU)
+                .build();
+    }
+}
@@ -0,0 +1,241 @@
+package com.jmontagne.bedrock.client;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BedrockStreamingClientTest {
+
+    @Mock
+    private BedrockRuntimeAsyncClient bedrockClient;
+
+    private BedrockStreamingClient streamingClient;
+    private CompletableFuture<Void> call;
+
+    @BeforeEach
+    void setUp() {
+        streamingClient = new BedrockStreamingClient(bedrockClient);
+        call = new CompletableFuture<>();
+    }
+
+    @Test
+    void streamEvents_happyPath_emitsTokensStopReasonAndMetrics() {
+        stubStream(List.of(
+                delta("Bon"),
+                delta("jour"),
+                MessageStopEvent.builder().stopReason(StopReason.MAX_TOKENS).build(),
+                metadata(42, 7)
+        ));
+
+        StepVerifier.create(streamingClient.streamEvents(request()))
+                .expectNext(new StreamEvent.Token("Bon"))
+                .expectNext(new StreamEvent.Token("jour"))
+                .expectNext(new StreamEvent.Stop("max_tokens"))
+                .assertNext(event -> {
+                    assertThat(event).isInstanceOf(StreamEvent.Metrics.class);
+                    var metrics = ((StreamEvent.Metrics) event).metrics();
+                    assertThat(metrics.inputTokens()).isEqualTo(42);
+                    assertThat(metrics.outputTokens()).isEqualTo(7);
+                    assertThat(metrics.modelType()).isEqualTo(ModelType.CLAUDE_3_HAIKU);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void streamEvents_withHistory_sendsAlternatingMessagesBeforeNewMessage() {
+        stubStream(List.of(delta("Oui"), metadata(30, 1)));
+        InferenceRequest request = new InferenceRequest("You are a chef.", "And the wine?", ModelType.CLAUDE_3_HAIKU,
+                InferenceParameters.DEFAULT, List.of(
+                        ConversationTurn.user("A raclette recipe?"),
+                        ConversationTurn.assistant("Melt the cheese...")));
+
+        StepVerifier.create(streamingClient.streamEvents(request).then()).verifyComplete();
+
+        ArgumentCaptor<ConverseStreamRequest> sent = ArgumentCaptor.forClass(ConverseStreamRequest.class);
+        verify(bedrockClient).converseStream(sent.capture(), any(ConverseStreamResponseHandler.class));
+        assertThat(sent.getValue().messages())
+                .extracting(Message::role, message -> message.content().get(0).text())
+                .containsExactly(
+                        tuple(ConversationRole.USER, "A raclette recipe?"),
+                        tuple(ConversationRole.ASSISTANT, "Melt the cheese..."),
+                        tuple(ConversationRole.USER, "And the wine?"));
+    }
+
+    @Test
+    void streamConverse_returnsTextOnly() {
+        stubStream(List.of(delta("Bon"), delta("jour"), metadata(1, 2)));
+
+        StepVerifier.create(streamingClient.streamConverse(request()))
+                .expectNext("Bon", "jour")
+                .verifyComplete();
+    }
+
+    @Test
+    void streamEvents_slowConsumer_boundsDemandOnSdkPublisher() {
+        List<Long> upstreamRequests = new CopyOnWriteArrayList<>();
+        List<ConverseStreamOutput> events = IntStream.range(0, 1_000)
+                .mapToObj(i -> delta("t" + i))
+                .toList();
+        stubStream(Flux.fromIterable(events).doOnRequest(upstreamRequests::add));
+
+        StepVerifier.create(streamingClient.streamEvents(request()), 1)
+                .expectNext(new StreamEvent.Token("t0"))
+                .thenCancel()
+                .verify();
+
+        assertThat(upstreamRequests).isNotEmpty();
+        assertThat(upstreamRequests).allMatch(n -> n <= BedrockStreamingClient.DEFAULT_PREFETCH);
+    }
+
+    @Test
+    void streamEvents_downstreamCancel_cancelsSdkCall() {
+        stubStream(Flux.<ConverseStreamOutput>just(delta("Bon")).concatWith(Flux.never()));
+
+        StepVerifier.create(streamingClient.streamEvents(request()))
+                .expectNext(new StreamEvent.Token("Bon"))
+                .thenCancel()
+                .verify();
+
+        assertThat(call).isCancelled();
+    }
+
+    @Test
+    void streamEvents_charBudgetSpent_truncatesAndCancelsSdkCall() {
+        stubStream(Flux.range(0, 10).map(i -> delta("abcd")));
+        InferenceRequest request = request().withParameters(
+                InferenceParameters.deterministic().withBudget(OutputBudget.of(8, null)));
+
+        StepVerifier.create(streamingClient.streamEvents(request))
+                .expectNext(new StreamEvent.Token("abcd"), new StreamEvent.Token("abcd"))
+                .expectNext(new StreamEvent.Stop(OutputBudget.STOP_REASON))
+                .assertNext(event -> assertThat(((StreamEvent.Metrics) event).metrics().outputTokens()).isEqualTo(2))
+                .verifyComplete();
+
+        assertThat(call).isCancelled();
+    }
+
+    @Test
+    void streamEvents_errorAfterStreamStarted_failsTheFlux() {
+        AtomicReference<ConverseStreamResponseHandler> handler = new AtomicReference<>();
+        when(bedrockClient.converseStream(any(ConverseStreamRequest.class), any(ConverseStreamResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    handler.set(invocation.getArgument(1));
+                    handler.get().onEventStream(SdkPublisher.adapt(
+                            Flux.<ConverseStreamOutput>just(delta("Bon")).concatWith(Flux.never())));
+                    return call;
+                });
+
+        // The SDK publisher itself never signals the error: only the handler hears about it
+        StepVerifier.create(streamingClient.streamEvents(request()))
+                .expectNext(new StreamEvent.Token("Bon"))
+                .then(() -> handler.get().exceptionOccurred(
+                        ModelStreamErrorException.builder().message("Stream broke").build()))
+                .expectError(ModelStreamErrorException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void streamEvents_errorAfterStreamStarted_logsOneError() {
+        Logger logger = (Logger) LoggerFactory.getLogger(BedrockStreamingClient.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        ModelStreamErrorException error = ModelStreamErrorException.builder().message("Stream broke").build();
+        AtomicReference<ConverseStreamResponseHandler> handler = new AtomicReference<>();
+        when(bedrockClient.converseStream(any(ConverseStreamRequest.class), any(ConverseStreamResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    handler.set(invocation.getArgument(1));
+                    handler.get().onEventStream(SdkPublisher.adapt(
+                            Flux.<ConverseStreamOutput>just(delta("Bon")).concatWith(Flux.never())));
+                    return call;
+                });
+
+        try {
+            // The SDK reports a mid-stream failure to the handler and then fails the call future
+            StepVerifier.create(streamingClient.streamEvents(request()))
+                    .expectNext(new StreamEvent.Token("Bon"))
+                    .then(() -> {
+                        handler.get().exceptionOccurred(error);
+                        call.completeExceptionally(error);
+                    })
+                    .expectError(ModelStreamErrorException.class)
+                    .verify(Duration.ofSeconds(5));
+        } finally {
+            logger.detachAppender(appender);
+        }
+
+        assertThat(appender.list)
+                .filteredOn(event -> event.getLevel() == Level.ERROR)
+                .extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly("Streaming error for model Claude 3 Haiku: Stream broke");
+    }
+
+    private void stubStream(List<ConverseStreamOutput> events) {
+        stubStream(Flux.fromIterable(events));
+    }
+
+    private void stubStream(Flux<ConverseStreamOutput> events) {
+        when(bedrockClient.converseStream(any(ConverseStreamRequest.class), any(ConverseStreamResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    ConverseStreamResponseHandler handler = invocation.getArgument(1);
+                    handler.responseReceived(ConverseStreamResponse.builder().build());
+                    handler.onEventStream(SdkPublisher.adapt(events));
+                    handler.complete();
+                    return call;
+                });
+    }
+
+    private static InferenceRequest request() {
+        return InferenceRequest.withJacquesMontagne("Hello", ModelType.CLAUDE_3_HAIKU, InferenceParameters.deterministic());
+    }
+
+    private static ConverseStreamOutput delta(String text) {
+        return ContentBlockDeltaEvent.builder()
+                .contentBlockIndex(0)
+                .delta(ContentBlockDelta.fromText(text))
+                .build();
+    }
+
+    private static ConverseStreamOutput metadata(int inputTokens, int outputTokens) {
+        return ConverseStreamMetadataEvent.builder()
+                .usage(TokenUsage.builder()
+                        .inputTokens(inputTokens)
+                        .outputTokens(outputTokens)
+                        .totalTokens(inputTokens + outputTokens)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+package com.jmontagne.bedrock.client;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelProfile;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PromptCachePolicyTest {
+
+    private static final String LONG_PERSONA = "You are a sommelier. ".repeat(300);
+
+    @Mock
+    private BedrockRuntimeAsyncClient bedrockClient;
+
+    private PromptCachePolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        ModelCatalog catalog = ModelCatalog.of(Map.of(ModelType.CLAUDE_3_HAIKU,
+                new ModelProfile(0.25, 1.25, 0.03, 0.30, 200_000, 4_096, 1, 1_000, 2_000_000, true)));
+        PersonaRegistry personas = new PersonaRegistry(Map.of("sommelier", LONG_PERSONA));
+        policy = new PromptCachePolicy(catalog, personas, true, 1024);
+    }
+
+    @Test
+    void systemBlocks_longPromptOnCachingModel_appendsCachePoint() {
+        List<SystemContentBlock> blocks = policy.systemBlocks(LONG_PERSONA, ModelType.CLAUDE_3_HAIKU);
+
+        assertThat(blocks).hasSize(2);
+        assertThat(blocks.get(0).text()).isEqualTo(LONG_PERSONA);
+        assertThat(blocks.get(1).cachePoint().type()).isEqualTo(CachePointType.DEFAULT);
+    }
+
+    @Test
+    void systemBlocks_registeredPersona_reusesPrebuiltBlocks() {
+        assertThat(policy.systemBlocks(LONG_PERSONA, ModelType.CLAUDE_3_HAIKU))
+                .isSameAs(policy.systemBlocks(LONG_PERSONA, ModelType.CLAUDE_3_HAIKU));
+    }
+
+    @Test
+    void systemBlocks_shortPromptOrUnsupportedModel_hasNoCachePoint() {
+        assertThat(policy.systemBlocks(InferenceRequest.JACQUES_MONTAGNE_SYSTEM_PROMPT, ModelType.CLAUDE_3_HAIKU))
+                .hasSize(1);
+        assertThat(policy.systemBlocks(LONG_PERSONA, ModelType.CLAUDE_3_5_SONNET)).hasSize(1);
+    }
+
+    @Test
+    void streamEvents_sendsCachePointAndCapturesCacheUsage() {
+        BedrockStreamingClient client = new BedrockStreamingClient(bedrockClient, new LatencyTelemetry(), policy, 32);
+        ArgumentCaptor<ConverseStreamRequest> sent = ArgumentCaptor.forClass(ConverseStreamRequest.class);
+        when(bedrockClient.converseStream(sent.capture(), any(ConverseStreamResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    ConverseStreamResponseHandler handler = invocation.getArgument(1);
+                    handler.onEventStream(SdkPublisher.adapt(Flux.just(
+                            ContentBlockDeltaEvent.builder().delta(ContentBlockDelta.fromText("Santé")).build(),
+                            ConverseStreamMetadataEvent.builder()
+                                    .usage(TokenUsage.builder()
+                                            .inputTokens(12)
+                                            .outputTokens(3)
+                                            .cacheReadInputTokens(1_500)
+                                            .cacheWriteInputTokens(0)
+                                            .totalTokens(1_515)
+                                            .build())
+                                    .build())));
+                    return new CompletableFuture<Void>();
+                });
+
+        InferenceRequest request = new InferenceRequest(LONG_PERSONA, "Un vin pour la raclette?",
+                ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT);
+
+        StepVerifier.create(client.streamEvents(request).ofType(StreamEvent.Metrics.class))
+                .assertNext(event -> {
+                    assertThat(event.metrics().cacheReadInputTokens()).isEqualTo(1_500);
+                    assertThat(event.metrics().cacheWriteInputTokens()).isZero();
+                    assertThat(event.metrics().cacheHitRatio()).isGreaterThan(0.99);
+                })
+                .verifyComplete();
+
+        verify(bedrockClient).converseStream(any(ConverseStreamRequest.class), any(ConverseStreamResponseHandler.class));
+        List<SystemContentBlock> system = sent.getValue().system();
+        assertThat(system).extracting(SystemContentBlock::type)
+                .containsExactly(SystemContentBlock.Type.TEXT, SystemContentBlock.Type.CACHE_POINT);
+    }
+}
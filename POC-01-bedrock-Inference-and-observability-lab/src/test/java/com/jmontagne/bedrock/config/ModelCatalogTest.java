@@ -0,0 +1,43 @@
+package com.jmontagne.bedrock.config;
+
+import com.jmontagne.bedrock.model.ModelProfile;
+import com.jmontagne.bedrock.model.ModelType;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelCatalogTest {
+
+    @Test
+    void bind_partialOverride_keepsTheOtherBuiltInFields() {
+        ModelCatalog catalog = bind(Map.of(
+                "bedrock.models.CLAUDE_3_5_SONNET.requests-per-minute", "250",
+                "bedrock.models.CLAUDE_3_HAIKU.prompt-caching", "true"));
+
+        ModelProfile sonnet = catalog.profile(ModelType.CLAUDE_3_5_SONNET);
+        ModelProfile builtIn = ModelCatalog.defaults().profile(ModelType.CLAUDE_3_5_SONNET);
+        assertThat(sonnet.requestsPerMinute()).isEqualTo(250);
+        assertThat(sonnet).usingRecursiveComparison().ignoringFields("requestsPerMinute").isEqualTo(builtIn);
+        assertThat(catalog.profile(ModelType.CLAUDE_3_HAIKU).promptCaching()).isTrue();
+        assertThat(catalog.profile(ModelType.CLAUDE_3_HAIKU).tokensPerMinute()).isEqualTo(2_000_000);
+    }
+
+    @Test
+    void bind_zeroQuota_failsNamingTheProperty() {
+        assertThatThrownBy(() -> bind(Map.of("bedrock.models.CLAUDE_3_HAIKU.tokens-per-minute", "0")))
+                .isInstanceOf(BindException.class)
+                .rootCause()
+                .hasMessage("bedrock.models.CLAUDE_3_HAIKU.tokens-per-minute must be positive, was 0");
+    }
+
+    private static ModelCatalog bind(Map<String, String> properties) {
+        return new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("bedrock", ModelCatalog.class);
+    }
+}
@@ -0,0 +1,34 @@
+package com.jmontagne.bedrock.config;
+
+import com.amazonaws.serverless.proxy.model.HttpApiV2ProxyRequest;
+import com.jmontagne.bedrock.FunctionLambdaHandler;
+import com.jmontagne.bedrock.controller.InferenceController;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeImageHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void registerHints_coversHandlerLookupAndLambdaEventBinding() throws Exception {
+        new NativeImageHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.reflection().onType(FunctionLambdaHandler.class)
+                .withMemberCategories(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(HttpApiV2ProxyRequest.class.getMethod("getRequestContext")))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(InferenceController.StreamResponse.class.getMethod("content")))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource()
+                .forResource("software/amazon/awssdk/services/s3/execution.interceptors"))
+                .accepts(hints);
+    }
+}
@@ -0,0 +1,133 @@
+package com.jmontagne.bedrock.controller;
+
+import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * The {@code text/event-stream} variants of {@code /stream/{modelType}} against a real Tomcat,
+ * with Bedrock replaced by a sink the test emits into, so each event can be checked on the
+ * wire before the next one exists.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class InferenceControllerSseTest {
+
+    @LocalServerPort
+    private int port;
+
+    @MockitoBean
+    private BedrockStreamingClient streamingClient;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Sinks.Many<StreamEvent> bedrock;
+
+    @BeforeEach
+    void setUp() {
+        bedrock = Sinks.many().unicast().onBackpressureBuffer();
+        when(streamingClient.streamEvents(any())).thenReturn(bedrock.asFlux());
+    }
+
+    @Test
+    @Timeout(10)
+    void get_sendsEachTokenAsItArrives_thenMetrics() throws Exception {
+        HttpResponse<Stream<String>> response = client.send(HttpRequest.newBuilder(
+                        URI.create(baseUrl() + "/stream/CLAUDE_3_HAIKU?message=Bonjour"))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofLines());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(type ->
+                assertThat(type).startsWith("text/event-stream"));
+        Iterator<String> lines = response.body().iterator();
+
+        bedrock.tryEmitNext(new StreamEvent.Token("Bon"));
+        assertThat(nextEvent(lines)).containsExactly("event:token", "data:{\"text\":\"Bon\"}");
+
+        bedrock.tryEmitNext(new StreamEvent.Token("jour"));
+        assertThat(nextEvent(lines)).containsExactly("event:token", "data:{\"text\":\"jour\"}");
+
+        bedrock.tryEmitNext(new StreamEvent.Stop("end_turn"));
+        bedrock.tryEmitNext(new StreamEvent.Metrics(PerformanceMetrics.builder()
+                .timeToFirstTokenMs(300)
+                .outputTokens(2)
+                .modelType(ModelType.CLAUDE_3_HAIKU)
+                .build()));
+        bedrock.tryEmitComplete();
+
+        assertThat(nextEvent(lines)).containsExactly("event:stop", "data:{\"stopReason\":\"end_turn\"}");
+        List<String> metrics = nextEvent(lines);
+        assertThat(metrics.getFirst()).isEqualTo("event:metrics");
+        assertThat(metrics.get(1)).contains("\"timeToFirstTokenMs\":300").contains("\"outputTokens\":2");
+        assertThat(lines.hasNext()).isFalse();
+    }
+
+    @Test
+    @Timeout(10)
+    void post_midStreamFailure_endsWithErrorInsteadOfMetrics() throws Exception {
+        HttpResponse<Stream<String>> response = client.send(HttpRequest.newBuilder(
+                        URI.create(baseUrl() + "/stream/CLAUDE_3_HAIKU"))
+                .header("Accept", "text/event-stream")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"message\":\"Bonjour\"}"))
+                .build(), HttpResponse.BodyHandlers.ofLines());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        Iterator<String> lines = response.body().iterator();
+
+        bedrock.tryEmitNext(new StreamEvent.Token("Bon"));
+        assertThat(nextEvent(lines)).containsExactly("event:token", "data:{\"text\":\"Bon\"}");
+
+        bedrock.tryEmitError(new IllegalStateException("connection reset"));
+
+        List<String> remaining = new ArrayList<>();
+        lines.forEachRemaining(remaining::add);
+        assertThat(remaining).contains(
+                "event:error", "data:{\"code\":\"IllegalStateException\",\"message\":\"connection reset\"}");
+        assertThat(remaining).noneMatch(line -> line.equals("event:metrics"));
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + port + "/api/v1/inference";
+    }
+
+    /**
+     * The field lines of the next event, skipping comments; blocks until the server has written
+     * its terminating blank line.
+     */
+    private static List<String> nextEvent(Iterator<String> lines) {
+        List<String> event = new ArrayList<>();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.isEmpty()) {
+                if (!event.isEmpty()) {
+                    return event;
+                }
+            } else if (!line.startsWith(":")) {
+                event.add(line);
+            }
+        }
+        return event;
+    }
+}
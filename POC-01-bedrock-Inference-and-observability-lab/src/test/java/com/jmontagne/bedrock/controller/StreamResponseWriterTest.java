@@ -0,0 +1,57 @@
+package com.jmontagne.bedrock.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jmontagne.bedrock.controller.InferenceController.StreamResponse;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.service.ResponseBuffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamResponseWriterTest {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void toBytes_matchesObjectMapperSerializationOfStreamResponse() throws Exception {
+        String[] chunks = {"Un soufflé \"parfait\"", " demande\n\t\u0007", "de la patience — et du beurre. 🧈"};
+        ResponseBuffer buffer = new ResponseBuffer(4);
+        for (String chunk : chunks) {
+            buffer.append(chunk);
+        }
+
+        byte[] written = StreamResponseWriter.toBytes(buffer, ModelType.CLAUDE_3_HAIKU);
+
+        byte[] expected = mapper.writeValueAsBytes(new StreamResponse(String.join("", chunks),
+                ModelType.CLAUDE_3_HAIKU.name(), ModelType.CLAUDE_3_HAIKU.getDisplayName(), chunks.length));
+        assertThat(new String(written, StandardCharsets.UTF_8)).isEqualTo(new String(expected, StandardCharsets.UTF_8));
+        assertThat(mapper.readValue(written, StreamResponse.class).content()).isEqualTo(String.join("", chunks));
+        assertThat(buffer.jsonLength()).isEqualTo(mapper.writeValueAsBytes(String.join("", chunks)).length - 2);
+    }
+
+    @Test
+    void toJson_emptyBuffer_writesEmptyContentAndZeroChunks() throws Exception {
+        String json = StreamResponseWriter.toJson(new ResponseBuffer(0), ModelType.CLAUDE_3_5_SONNET);
+
+        StreamResponse response = mapper.readValue(json, StreamResponse.class);
+        assertThat(response.content()).isEmpty();
+        assertThat(response.chunksReceived()).isZero();
+        assertThat(response.model()).isEqualTo(ModelType.CLAUDE_3_5_SONNET.name());
+    }
+
+    @Test
+    void toJson_answeredByFallbackModel_writesTheAnsweringModel() throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer(16);
+        buffer.append("Bonjour");
+        buffer.answeredBy(ModelType.CLAUDE_3_HAIKU);
+
+        StreamResponse response = mapper.readValue(
+                StreamResponseWriter.toJson(buffer, ModelType.CLAUDE_3_5_SONNET), StreamResponse.class);
+
+        assertThat(response.model()).isEqualTo(ModelType.CLAUDE_3_HAIKU.name());
+        assertThat(response.modelDisplayName()).isEqualTo(ModelType.CLAUDE_3_HAIKU.getDisplayName());
+    }
+}
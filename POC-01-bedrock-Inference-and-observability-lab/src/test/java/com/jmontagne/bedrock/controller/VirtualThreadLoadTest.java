@@ -0,0 +1,112 @@
+package com.jmontagne.bedrock.controller;
+
+import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test for the {@code server} profile: more concurrent blocking generations than Tomcat
+ * has platform threads.
+ *
+ * <p>Tomcat is capped at {@value #THREAD_CEILING} threads and every (stubbed) Bedrock call takes
+ * {@link #GENERATION_TIME}. On platform threads {@value #REQUESTS} requests would run in
+ * {@code REQUESTS / THREAD_CEILING} waves; on virtual threads they all park in
+ * {@code .block()} at the same time and finish in about one generation time.</p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=" + VirtualThreadLoadTest.THREAD_CEILING,
+        "bedrock.concurrency.enabled=false",
+        "bedrock.quota.enabled=false"
+})
+@ActiveProfiles("server")
+class VirtualThreadLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    static final int THREAD_CEILING = 20;
+    private static final int REQUESTS = 200;
+    private static final Duration GENERATION_TIME = Duration.ofSeconds(1);
+
+    @LocalServerPort
+    private int port;
+
+    @MockitoBean
+    private BedrockStreamingClient streamingClient;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicBoolean platformThreadSeen = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        when(streamingClient.streamEvents(any())).thenAnswer(invocation -> {
+            InferenceRequest request = invocation.getArgument(0);
+            return Flux.defer(() -> {
+                if (!Thread.currentThread().isVirtual()) {
+                    platformThreadSeen.set(true);
+                }
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return Mono.delay(GENERATION_TIME)
+                        .thenMany(Flux.<StreamEvent>just(
+                                new StreamEvent.Token("Bonjour"),
+                                new StreamEvent.Stop("end_turn"),
+                                new StreamEvent.Metrics(PerformanceMetrics.builder()
+                                        .modelType(request.modelType())
+                                        .build())))
+                        .doFinally(signal -> inFlight.decrementAndGet());
+            });
+        });
+    }
+
+    @Test
+    void blockingEndpoint_onVirtualThreads_exceedsPlatformThreadCeiling() {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        URI uri = URI.create("http://localhost:" + port + "/api/v1/inference/CLAUDE_3_HAIKU?message=Bonjour");
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = IntStream.range(0, REQUESTS)
+                .mapToObj(i -> client.sendAsync(HttpRequest.newBuilder(uri).GET().build(),
+                        HttpResponse.BodyHandlers.ofString()))
+                .toList();
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        log.info("{} requests, {} Tomcat threads max: peak {} concurrent generations, {} ms",
+                REQUESTS, THREAD_CEILING, maxInFlight.get(), elapsed.toMillis());
+
+        assertThat(responses).allSatisfy(response -> assertThat(response.join().statusCode()).isEqualTo(200));
+        assertThat(platformThreadSeen).isFalse();
+        assertThat(maxInFlight.get()).isGreaterThan(THREAD_CEILING * 2);
+        // Platform threads would need REQUESTS / THREAD_CEILING = 10 sequential waves
+        assertThat(elapsed).isLessThan(GENERATION_TIME.multipliedBy(5));
+    }
+}
@@ -0,0 +1,195 @@
+package com.jmontagne.bedrock.emulator;
+
+import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuple2;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.BedrockRuntimeException;
+import software.amazon.awssdk.services.bedrockruntime.model.ContentBlock;
+import software.amazon.awssdk.services.bedrockruntime.model.ConversationRole;
+import software.amazon.awssdk.services.bedrockruntime.model.ConverseResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.Message;
+import software.amazon.awssdk.services.bedrockruntime.model.StopReason;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End to end through the real SDK client and {@link BedrockStreamingClient}, no AWS account needed.
+ */
+class BedrockEmulatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private BedrockEmulator emulator;
+    private BedrockRuntimeAsyncClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (emulator != null) {
+            emulator.close();
+        }
+    }
+
+    @Test
+    void converseStream_sdkClient_receivesDeltasStopReasonAndUsage() {
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(LatencyProfile.INSTANT.withOutput(12, 12, 3)));
+
+        List<StreamEvent> events = streaming.streamEvents(request(InferenceParameters.DEFAULT)).collectList().block(TIMEOUT);
+
+        assertThat(events).filteredOn(StreamEvent.Token.class::isInstance).hasSize(4);
+        assertThat(events).contains(new StreamEvent.Stop("end_turn"));
+        assertThat(((StreamEvent.Metrics) events.getLast()).metrics().outputTokens()).isEqualTo(12);
+        assertThat(emulator.stats().completed()).isEqualTo(1);
+        assertThat(emulator.stats().activeStreams()).isZero();
+    }
+
+    @Test
+    void converseStream_fixedTtft_firstTokenArrivesNoEarlier() {
+        LatencyProfile profile = LatencyProfile.INSTANT
+                .withTtft(Duration.ofMillis(200), Duration.ofMillis(200))
+                .withOutput(5, 5, 1);
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(profile));
+
+        List<StreamEvent> events = streaming.streamEvents(request(InferenceParameters.DEFAULT)).collectList().block(TIMEOUT);
+
+        assertThat(((StreamEvent.Metrics) events.getLast()).metrics().timeToFirstTokenMs()).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    void converseStream_maxTokensBelowAnswerLength_stopsWithMaxTokens() {
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(LatencyProfile.INSTANT));
+
+        List<StreamEvent> events = streaming.streamEvents(request(InferenceParameters.DEFAULT.withMaxTokens(10)))
+                .collectList().block(TIMEOUT);
+
+        assertThat(events).contains(new StreamEvent.Stop("max_tokens"));
+        assertThat(((StreamEvent.Metrics) events.getLast()).metrics().outputTokens()).isEqualTo(10);
+    }
+
+    @Test
+    void throttleRate_rejectsCallWithThrottlingException() {
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(LatencyProfile.INSTANT.withFailures(1.0, 0, 0)));
+
+        StepVerifier.create(streaming.streamEvents(request(InferenceParameters.DEFAULT)))
+                .expectErrorSatisfies(error -> assertThat(sdkError(error)).isInstanceOf(ThrottlingException.class))
+                .verify(TIMEOUT);
+        assertThat(emulator.stats().throttled()).isEqualTo(1);
+    }
+
+    @Test
+    void maxConcurrentStreams_throttlesCallsBeyondLimit() {
+        LatencyProfile slow = LatencyProfile.INSTANT.withTtft(Duration.ofMillis(500), Duration.ofMillis(500));
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(slow).withMaxConcurrentStreams(1));
+
+        Mono<List<StreamEvent>> first = streaming.streamEvents(request(InferenceParameters.DEFAULT)).collectList();
+        Mono<Throwable> second = Mono.delay(Duration.ofMillis(100))
+                .then(streaming.streamEvents(request(InferenceParameters.DEFAULT))
+                        .then(Mono.<Throwable>just(new AssertionError("second stream was not throttled"))))
+                .onErrorResume(Mono::just);
+
+        Tuple2<List<StreamEvent>, Throwable> results = Mono.zip(first, second).block(TIMEOUT);
+
+        assertThat(results.getT1()).contains(new StreamEvent.Stop("end_turn"));
+        assertThat(sdkError(results.getT2())).isInstanceOf(ThrottlingException.class);
+        assertThat(emulator.stats().peakActiveStreams()).isEqualTo(1);
+    }
+
+    @Test
+    void midStreamErrorRate_failsStreamAfterDeltas() {
+        LatencyProfile failing = LatencyProfile.INSTANT.withOutput(20, 20, 1).withFailures(0, 0, 1.0);
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(failing).withSeed(7));
+
+        StepVerifier.create(streaming.streamEvents(request(InferenceParameters.DEFAULT)))
+                .thenConsumeWhile(StreamEvent.Token.class::isInstance)
+                .expectErrorSatisfies(error -> assertThat(sdkError(error)).isInstanceOf(BedrockRuntimeException.class))
+                .verify(TIMEOUT);
+        assertThat(emulator.stats().midStreamFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void converse_nonStreaming_returnsWholeMessage() {
+        start(EmulatorSettings.withProfile(LatencyProfile.INSTANT.withOutput(12, 12, 3)));
+
+        ConverseResponse response = client.converse(builder -> builder
+                        .modelId(ModelType.CLAUDE_3_HAIKU.getModelId())
+                        .messages(Message.builder()
+                                .role(ConversationRole.USER)
+                                .content(ContentBlock.fromText("Bonjour"))
+                                .build())
+                        .inferenceConfig(config -> config.maxTokens(50)))
+                .join();
+
+        assertThat(response.output().message().content().getFirst().text()).isNotBlank();
+        assertThat(response.stopReason()).isEqualTo(StopReason.END_TURN);
+        assertThat(response.usage().outputTokens()).isEqualTo(12);
+    }
+
+    @Test
+    void cancelledStream_stopsGenerationInEmulator() throws InterruptedException {
+        LatencyProfile paced = LatencyProfile.INSTANT.withOutput(1_000, 1_000, 1).withTokensPerSecond(100);
+        BedrockStreamingClient streaming = start(EmulatorSettings.withProfile(paced));
+
+        streaming.streamEvents(request(InferenceParameters.DEFAULT)).take(3).blockLast(TIMEOUT);
+
+        await(() -> emulator.stats().cancelled() == 1);
+        assertThat(emulator.stats().completed()).isZero();
+        assertThat(emulator.stats().activeStreams()).isZero();
+    }
+
+    private BedrockStreamingClient start(EmulatorSettings settings) {
+        try {
+            emulator = BedrockEmulator.start(settings);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        client = BedrockRuntimeAsyncClient.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("akid", "secret")))
+                .endpointOverride(emulator.endpoint())
+                .overrideConfiguration(config -> config.retryPolicy(RetryPolicy.none()))
+                .build();
+        return new BedrockStreamingClient(client);
+    }
+
+    private static InferenceRequest request(InferenceParameters parameters) {
+        return InferenceRequest.withJacquesMontagne("Bonjour", ModelType.CLAUDE_3_HAIKU, parameters);
+    }
+
+    /**
+     * The modeled exception, whether the SDK reports it directly or wrapped in a CompletionException.
+     */
+    private static Throwable sdkError(Throwable error) {
+        Throwable cause = error;
+        while (cause != null && !(cause instanceof BedrockRuntimeException)) {
+            cause = cause.getCause();
+        }
+        return cause != null ? cause : error;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
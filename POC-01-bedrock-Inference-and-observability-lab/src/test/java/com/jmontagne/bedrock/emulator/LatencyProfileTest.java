@@ -0,0 +1,50 @@
+package com.jmontagne.bedrock.emulator;
+
+import com.jmontagne.bedrock.model.ModelType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyProfileTest {
+
+    @Test
+    void sampleTtftNanos_logNormal_hitsConfiguredP50AndP99() {
+        LatencyProfile profile = LatencyProfile.INSTANT.withTtft(Duration.ofMillis(400), Duration.ofMillis(1_600));
+        Random random = new Random(42);
+
+        long[] samples = new long[20_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = profile.sampleTtftNanos(random);
+        }
+        Arrays.sort(samples);
+
+        assertThat(samples[samples.length / 2] / 1e6).isCloseTo(400, within(20.0));
+        assertThat(samples[(int) (samples.length * 0.99)] / 1e6).isCloseTo(1_600, within(160.0));
+    }
+
+    @Test
+    void deltaIntervalNanos_followsTokensPerSecondAndDeltaSize() {
+        LatencyProfile profile = LatencyProfile.INSTANT.withOutput(10, 10, 4).withTokensPerSecond(80);
+
+        assertThat(profile.deltaIntervalNanos()).isEqualTo(50_000_000);
+        assertThat(LatencyProfile.INSTANT.deltaIntervalNanos()).isZero();
+    }
+
+    @Test
+    void profileFor_perModelOverrideThenSharedProfileThenBuiltIn() {
+        EmulatorSettings builtIn = EmulatorSettings.defaults();
+        EmulatorSettings overridden = new EmulatorSettings(false, null, 0, 0, null, LatencyProfile.INSTANT,
+                Map.of(ModelType.CLAUDE_3_5_SONNET, LatencyProfile.HAIKU));
+
+        assertThat(builtIn.profileFor(ModelType.CLAUDE_3_5_SONNET.getModelId())).isEqualTo(LatencyProfile.SONNET);
+        assertThat(overridden.profileFor(ModelType.CLAUDE_3_5_SONNET.getModelId())).isEqualTo(LatencyProfile.HAIKU);
+        assertThat(overridden.profileFor(ModelType.CLAUDE_3_HAIKU.getModelId())).isEqualTo(LatencyProfile.INSTANT);
+        assertThat(builtIn.profileFor("amazon.nova-pro-v1:0")).isEqualTo(LatencyProfile.HAIKU);
+    }
+}
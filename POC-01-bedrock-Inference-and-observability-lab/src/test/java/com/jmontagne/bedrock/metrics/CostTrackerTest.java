@@ -0,0 +1,179 @@
+package com.jmontagne.bedrock.metrics;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.CostReport;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CostTrackerTest {
+
+    private static final CallerContext TEAM_A = new CallerContext("team-a", "stream");
+    private static final CallerContext TEAM_B = new CallerContext("team-b", "compare");
+    // 400 prompt characters: an estimated 100 input tokens
+    private static final InferenceRequest REQUEST = new InferenceRequest(
+            null, "x".repeat(400), ModelType.CLAUDE_3_5_SONNET, InferenceParameters.DEFAULT);
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private SimpleMeterRegistry registry;
+    private CostTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        tracker = new CostTracker(ModelCatalog.defaults(), registry, Duration.ofMinutes(5), 1.0, 100, 20, clock::get);
+    }
+
+    @Test
+    void record_promptCacheUsage_pricesEachTokenKindAtItsOwnRate() {
+        double cost = tracker.record(TEAM_A, usage(ModelType.CLAUDE_3_5_SONNET, 1_000, 500, 2_000, 1_000));
+
+        // 1000 x $3 + 500 x $15 + 2000 x $0.30 + 1000 x $3.75 per million
+        assertThat(cost).isCloseTo(0.01485, within(1e-12));
+        assertThat(tracker.report().total().costUsd()).isCloseTo(0.01485, within(1e-9));
+    }
+
+    @Test
+    void report_aggregatesByModelEndpointAndCaller_mostExpensiveFirst() {
+        tracker.record(TEAM_A, usage(ModelType.CLAUDE_3_HAIKU, 1_000_000, 0, 0, 0));
+        tracker.record(TEAM_B, usage(ModelType.CLAUDE_3_5_SONNET, 1_000_000, 0, 0, 0));
+        tracker.record(TEAM_B, usage(ModelType.CLAUDE_3_HAIKU, 0, 1_000_000, 0, 0));
+
+        CostReport report = tracker.report();
+
+        assertThat(report.total().requests()).isEqualTo(3);
+        assertThat(report.total().costUsd()).isCloseTo(4.50, within(1e-9));
+        assertThat(report.byModel()).containsOnlyKeys("CLAUDE_3_5_SONNET", "CLAUDE_3_HAIKU");
+        assertThat(report.byModel().get("CLAUDE_3_HAIKU").costUsd()).isCloseTo(1.50, within(1e-9));
+        assertThat(report.byEndpoint().keySet()).containsExactly("compare", "stream");
+        assertThat(report.topCallers().keySet()).containsExactly("team-b", "team-a");
+        assertThat(report.topCallers().get("team-b").outputTokens()).isEqualTo(1_000_000);
+        assertThat(registry.get("bedrock.cost").tags("model", "CLAUDE_3_5_SONNET", "endpoint", "compare")
+                .functionCounter().count()).isCloseTo(3.00, within(1e-9));
+    }
+
+    @Test
+    void report_spendOlderThanTheWindow_leavesTheRateButNotTheTotal() {
+        tracker.record(TEAM_A, usage(ModelType.CLAUDE_3_HAIKU, 1_000_000, 0, 0, 0));
+
+        CostReport recent = tracker.report();
+        assertThat(recent.windowUsd()).isCloseTo(0.25, within(1e-9));
+        assertThat(recent.usdPerHour()).isCloseTo(3.00, within(1e-9));
+        assertThat(recent.alerting()).isTrue();
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(6));
+        CostReport later = tracker.report();
+        assertThat(later.windowUsd()).isZero();
+        assertThat(later.alerting()).isFalse();
+        assertThat(later.total().costUsd()).isCloseTo(0.25, within(1e-9));
+    }
+
+    @Test
+    void track_recordsUsageFromTheMetricsEventForTheContextCaller() {
+        Flux<StreamEvent> events = Flux.just(
+                new StreamEvent.Token("Bonjour"),
+                new StreamEvent.Metrics(usage(ModelType.CLAUDE_3_HAIKU, 10, 2, 0, 0)));
+
+        StepVerifier.create(tracker.track(REQUEST, events).contextWrite(TEAM_B.asContext()))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        CostReport report = tracker.report();
+        assertThat(report.topCallers()).containsOnlyKeys("team-b");
+        assertThat(report.byEndpoint()).containsOnlyKeys("compare");
+        assertThat(report.estimated()).isEqualTo(CostReport.Spend.NONE);
+    }
+
+    @Test
+    void track_cancelledBeforeUsage_pricesTheEstimatedPromptAndReceivedOutput() {
+        Flux<StreamEvent> events = Flux.concat(Flux.just(new StreamEvent.Token("12345678")), Flux.never());
+
+        StepVerifier.create(tracker.track(REQUEST, events).contextWrite(TEAM_A.asContext()))
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        CostReport report = tracker.report();
+        double expected = ModelCatalog.defaults().profile(ModelType.CLAUDE_3_5_SONNET).costOf(100, 2);
+        assertThat(report.total().requests()).isEqualTo(1);
+        assertThat(report.total().costUsd()).isCloseTo(expected, within(1e-9));
+        assertThat(report.estimated().inputTokens()).isEqualTo(100);
+        assertThat(report.estimated().outputTokens()).isEqualTo(2);
+        assertThat(report.estimated().costUsd()).isCloseTo(expected, within(1e-9));
+        assertThat(registry.get("bedrock.cost.estimated").tag("model", "CLAUDE_3_5_SONNET")
+                .functionCounter().count()).isCloseTo(expected, within(1e-9));
+    }
+
+    @Test
+    void track_failedAfterTokens_pricesTheEstimatedPromptAndReceivedOutput() {
+        Flux<StreamEvent> events = Flux.concat(
+                Flux.just(new StreamEvent.Token("12345678")),
+                Flux.error(new IllegalStateException("connection reset")));
+
+        StepVerifier.create(tracker.track(REQUEST, events).contextWrite(TEAM_A.asContext()))
+                .expectNextCount(1)
+                .verifyError(IllegalStateException.class);
+
+        double expected = ModelCatalog.defaults().profile(ModelType.CLAUDE_3_5_SONNET).costOf(100, 2);
+        CostReport report = tracker.report();
+        assertThat(report.total().requests()).isEqualTo(1);
+        assertThat(report.estimated().outputTokens()).isEqualTo(2);
+        assertThat(report.estimated().costUsd()).isCloseTo(expected, within(1e-9));
+    }
+
+    @Test
+    void track_failedBeforeAnyToken_recordsNothing() {
+        StepVerifier.create(tracker.track(REQUEST, Flux.<StreamEvent>error(new IllegalStateException("throttled")))
+                        .contextWrite(TEAM_A.asContext()))
+                .verifyError(IllegalStateException.class);
+
+        assertThat(tracker.report().total()).isEqualTo(CostReport.Spend.NONE);
+    }
+
+    @Test
+    void track_truncatedWithoutInputUsage_estimatesTheInputFromTheRequest() {
+        Flux<StreamEvent> events = Flux.just(
+                new StreamEvent.Token("Bonjour"),
+                new StreamEvent.Metrics(usage(ModelType.CLAUDE_3_5_SONNET, 0, 2, 0, 0)));
+
+        StepVerifier.create(tracker.track(REQUEST, events).contextWrite(TEAM_A.asContext()))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        CostReport report = tracker.report();
+        assertThat(report.total().inputTokens()).isEqualTo(100);
+        assertThat(report.total().outputTokens()).isEqualTo(2);
+        assertThat(report.estimated().requests()).isEqualTo(1);
+    }
+
+    @Test
+    void shorten_longApiKey_keepsOnlyBothEnds() {
+        assertThat(CostTracker.shorten("team-a")).isEqualTo("team-a");
+        assertThat(CostTracker.shorten("a1b2c3d4e5f6g7h8i9")).isEqualTo("a1b2...h8i9");
+    }
+
+    private static PerformanceMetrics usage(ModelType modelType, int input, int output, int cacheRead, int cacheWrite) {
+        return PerformanceMetrics.builder()
+                .inputTokens(input)
+                .outputTokens(output)
+                .cacheReadInputTokens(cacheRead)
+                .cacheWriteInputTokens(cacheWrite)
+                .modelType(modelType)
+                .build();
+    }
+}
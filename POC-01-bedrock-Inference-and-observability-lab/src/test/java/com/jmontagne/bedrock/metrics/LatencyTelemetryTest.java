@@ -0,0 +1,64 @@
+package com.jmontagne.bedrock.metrics;
+
+import com.jmontagne.bedrock.model.ModelType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyTelemetryTest {
+
+    private SimpleMeterRegistry registry;
+    private LatencyTelemetry telemetry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        telemetry = new LatencyTelemetry(registry, 60, 6);
+    }
+
+    @Test
+    void recordTimeToFirstToken_publishesPercentileGaugesPerModel() {
+        for (int ms = 1; ms <= 100; ms++) {
+            telemetry.recordTimeToFirstToken(ModelType.CLAUDE_3_HAIKU, TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        Gauge p50 = registry.get("bedrock.inference.ttft")
+                .tag("model", "CLAUDE_3_HAIKU")
+                .tag("quantile", "0.5")
+                .gauge();
+        Gauge p99 = registry.get("bedrock.inference.ttft")
+                .tag("model", "CLAUDE_3_HAIKU")
+                .tag("quantile", "0.99")
+                .gauge();
+
+        assertThat(p50.value()).isCloseTo(50.0, within(0.1));
+        assertThat(p99.value()).isCloseTo(99.0, within(0.1));
+        assertThat(telemetry.sampleCount(ModelType.CLAUDE_3_5_SONNET, LatencyMetric.TIME_TO_FIRST_TOKEN)).isZero();
+    }
+
+    @Test
+    void recordGeneration_derivesTokensPerSecond() {
+        telemetry.recordGeneration(ModelType.CLAUDE_3_5_SONNET, TimeUnit.SECONDS.toNanos(2), 100);
+
+        assertThat(telemetry.percentile(ModelType.CLAUDE_3_5_SONNET, LatencyMetric.OUTPUT_TOKENS_PER_SECOND, 50.0))
+                .isCloseTo(50.0, within(0.1));
+        assertThat(telemetry.percentile(ModelType.CLAUDE_3_5_SONNET, LatencyMetric.GENERATION_TIME, 50.0))
+                .isCloseTo(2000.0, within(2.0));
+    }
+
+    @Test
+    void publishesAllQuantiles() {
+        assertThat(registry.get("bedrock.inference.inter.token.latency")
+                .tag("model", "CLAUDE_3_HAIKU")
+                .gauges())
+                .hasSize(LatencyTelemetry.PUBLISHED_PERCENTILES.length);
+        assertThat(registry.find("bedrock.inference.ttft").tag("quantile", "0.999").gauges())
+                .hasSize(ModelType.values().length);
+    }
+}
@@ -0,0 +1,102 @@
+package com.jmontagne.bedrock.priming;
+
+import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.eventstream.HeaderValue;
+import software.amazon.eventstream.Message;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConverseStreamStubTest {
+
+    private ConverseStreamStub stub;
+    private BedrockRuntimeAsyncClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = ConverseStreamStub.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        stub.close();
+    }
+
+    @Test
+    void encoder_frameDecodesWithSdkEventStreamDecoder() {
+        byte[] frame = EventStreamEncoder.event("contentBlockDelta", "{\"delta\":{\"text\":\"Bon\"}}");
+
+        Message message = Message.decode(ByteBuffer.wrap(frame));
+
+        Map<String, HeaderValue> headers = message.getHeaders();
+        assertThat(headers.get(":event-type").getString()).isEqualTo("contentBlockDelta");
+        assertThat(headers.get(":message-type").getString()).isEqualTo("event");
+        assertThat(new String(message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"delta\":{\"text\":\"Bon\"}}");
+    }
+
+    @Test
+    void stub_endpointOverride_servesConverseStreamToRealSdkClient() {
+        client = client(null, stub.endpoint());
+
+        StepVerifier.create(new BedrockStreamingClient(client).streamEvents(request()))
+                .expectNext(new StreamEvent.Token(ConverseStreamStub.TEXT))
+                .expectNext(new StreamEvent.Stop("end_turn"))
+                .assertNext(event -> assertThat(((StreamEvent.Metrics) event).metrics().outputTokens()).isEqualTo(1))
+                .expectComplete()
+                .verify(Duration.ofSeconds(10));
+        assertThat(stub.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void primingRedirect_sendsProductionClientToStubOnlyWhileSet() {
+        PrimingRedirect redirect = new PrimingRedirect();
+        client = client(redirect, null);
+        BedrockStreamingClient streamingClient = new BedrockStreamingClient(client);
+
+        redirect.redirectTo(stub.endpoint());
+        StepVerifier.create(streamingClient.streamConverse(request()))
+                .expectNext(ConverseStreamStub.TEXT)
+                .expectComplete()
+                .verify(Duration.ofSeconds(10));
+        redirect.clear();
+
+        assertThat(stub.requests()).isEqualTo(1);
+    }
+
+    private static BedrockRuntimeAsyncClient client(PrimingRedirect redirect, URI endpoint) {
+        var builder = BedrockRuntimeAsyncClient.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("akid", "secret")));
+        if (redirect != null) {
+            builder.overrideConfiguration(config -> config.addExecutionInterceptor(redirect));
+        }
+        if (endpoint != null) {
+            builder.endpointOverride(endpoint);
+        }
+        return builder.build();
+    }
+
+    private static InferenceRequest request() {
+        return InferenceRequest.withJacquesMontagne("Bonjour", ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT);
+    }
+}
@@ -0,0 +1,156 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final ModelType MODEL = ModelType.CLAUDE_3_HAIKU;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void limit_overLimitWithFullQueue_rejectsWithRetryAfter() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0, Duration.ofSeconds(1));
+        Sinks.Many<StreamEvent> held = Sinks.many().unicast().onBackpressureBuffer();
+        Disposable first = limiter.limit(MODEL, held::asFlux).subscribe();
+
+        StepVerifier.create(limiter.limit(MODEL, () -> Flux.just(new StreamEvent.Token("x"))))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(ConcurrencyLimitExceededException.class);
+                    assertThat(((ConcurrencyLimitExceededException) error).getRetryAfter())
+                            .isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+                })
+                .verify();
+
+        assertThat(registry.get("bedrock.concurrency.rejected").tag("model", MODEL.name()).counter().count())
+                .isEqualTo(1.0);
+        first.dispose();
+        assertThat(limiter.inFlight(MODEL)).isZero();
+    }
+
+    @Test
+    void limit_queuedCall_runsWhenPermitIsReleased() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 10, Duration.ofSeconds(5));
+        Sinks.Many<StreamEvent> held = Sinks.many().unicast().onBackpressureBuffer();
+        limiter.limit(MODEL, held::asFlux).subscribe();
+        AtomicInteger started = new AtomicInteger();
+
+        StepVerifier.create(limiter.limit(MODEL, () -> {
+                    started.incrementAndGet();
+                    return Flux.just(new StreamEvent.Token("queued"));
+                }))
+                .then(() -> assertThat(started).hasValue(0))
+                .then(held::tryEmitComplete)
+                .expectNext(new StreamEvent.Token("queued"))
+                .verifyComplete();
+
+        assertThat(limiter.inFlight(MODEL)).isZero();
+    }
+
+    @Test
+    void limit_queueWaitExpires_rejects() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 10, Duration.ofMillis(50));
+        Sinks.Many<StreamEvent> held = Sinks.many().unicast().onBackpressureBuffer();
+        limiter.limit(MODEL, held::asFlux).subscribe();
+
+        StepVerifier.create(limiter.limit(MODEL, () -> Flux.just(new StreamEvent.Token("late"))))
+                .expectError(ConcurrencyLimitExceededException.class)
+                .verify(Duration.ofSeconds(2));
+
+        held.tryEmitComplete();
+        assertThat(limiter.inFlight(MODEL)).isZero();
+    }
+
+    @Test
+    void limit_queueTimeoutRacingRelease_neverLeaksPermit() {
+        for (int i = 0; i < 500; i++) {
+            AdaptiveConcurrencyLimiter limiter = limiter(1, 10, Duration.ofMillis(1));
+            Sinks.Many<StreamEvent> held = Sinks.many().unicast().onBackpressureBuffer();
+            limiter.limit(MODEL, held::asFlux).subscribe();
+            CompletableFuture<Void> release = CompletableFuture.runAsync(() -> {
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(2_000_000));
+                held.tryEmitComplete();
+            });
+
+            limiter.limit(MODEL, () -> Flux.just(new StreamEvent.Token("queued")))
+                    .onErrorResume(ConcurrencyLimitExceededException.class, e -> Flux.empty())
+                    .blockLast(Duration.ofSeconds(2));
+            release.join();
+
+            assertThat(limiter.inFlight(MODEL)).as("in flight after iteration %d", i).isZero();
+        }
+    }
+
+    @Test
+    void limit_cancelRacingRelease_neverLeaksPermit() {
+        for (int i = 0; i < 500; i++) {
+            AdaptiveConcurrencyLimiter limiter = limiter(1, 10, Duration.ofSeconds(5));
+            Sinks.Many<StreamEvent> held = Sinks.many().unicast().onBackpressureBuffer();
+            limiter.limit(MODEL, held::asFlux).subscribe();
+            Disposable queued = limiter.limit(MODEL, () -> Flux.<StreamEvent>never()).subscribe();
+            CompletableFuture<Void> release = CompletableFuture.runAsync(held::tryEmitComplete);
+
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(200_000));
+            queued.dispose();
+            release.join();
+
+            assertThat(limiter.inFlight(MODEL)).as("in flight after iteration %d", i).isZero();
+        }
+    }
+
+    @Test
+    void onSuccess_stableTtft_growsLimitAdditively() {
+        ModelConcurrencyLimit limit = new ModelConcurrencyLimit(4, 1, 50, 0.7, 2.0, 10);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSuccess(400_000_000L);
+        }
+
+        assertThat(limit.limit()).isBetween(7, 8);
+    }
+
+    @Test
+    void onSuccess_ttftInflation_backsOff() {
+        ModelConcurrencyLimit limit = new ModelConcurrencyLimit(20, 1, 50, 0.5, 2.0, 10);
+        limit.onSuccess(400_000_000L);
+
+        limit.onSuccess(2_000_000_000L);
+
+        assertThat(limit.limit()).isEqualTo(10);
+    }
+
+    @Test
+    void limit_throttled_backsOffMultiplicatively() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 10, Duration.ofSeconds(1));
+
+        StepVerifier.create(limiter.limit(MODEL, () -> Flux.error(ThrottlingException.builder().message("slow down").build())))
+                .expectError(ThrottlingException.class)
+                .verify();
+
+        assertThat(limiter.currentLimit(MODEL)).isEqualTo(7);
+        assertThat(registry.get("bedrock.concurrency.limit").tag("model", MODEL.name()).gauge().value())
+                .isEqualTo(7.0);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueue, Duration maxQueueWait) {
+        return new AdaptiveConcurrencyLimiter(registry, new LatencyTelemetry(), true,
+                initialLimit, 1, 50, 0.7, 2.0, maxQueue, maxQueueWait);
+    }
+}
@@ -0,0 +1,217 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelNotReadyException;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final InferenceRequest REQUEST = InferenceRequest.withJacquesMontagne("Bonjour", ModelType.CLAUDE_3_5_SONNET);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<ModelType> calls = new CopyOnWriteArrayList<>();
+    private SimpleMeterRegistry registry;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        breaker = new CircuitBreaker(registry, true, 4, 4, 0.5, Duration.ofSeconds(1), 0.5,
+                Duration.ofSeconds(10), 2, "CLAUDE_3_HAIKU", Duration.ofSeconds(5), clock::get);
+    }
+
+    @Test
+    void execute_failureRateReached_opensAndFailsFastWithoutCalling() {
+        tripSonnet();
+        calls.clear();
+
+        StepVerifier.create(breaker.execute(REQUEST, false, this::call))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(CircuitOpenException.class);
+                    assertThat(((CircuitOpenException) error).getRetryAfter()).isEqualTo(Duration.ofSeconds(10));
+                })
+                .verify();
+
+        assertThat(calls).isEmpty();
+        assertThat(registry.get("bedrock.circuit.state").tags("model", "CLAUDE_3_5_SONNET", "state", "open")
+                .gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("bedrock.circuit.rejected").tag("model", "CLAUDE_3_5_SONNET").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void execute_openCircuitWithFallback_callsFallbackModel() {
+        tripSonnet();
+        calls.clear();
+
+        StepVerifier.create(breaker.execute(REQUEST, true, this::call))
+                .expectNextMatches(event -> event instanceof StreamEvent.Metrics metrics
+                        && metrics.metrics().modelType() == ModelType.CLAUDE_3_HAIKU)
+                .verifyComplete();
+
+        assertThat(calls).containsExactly(ModelType.CLAUDE_3_HAIKU);
+        assertThat(registry.get("bedrock.circuit.fallbacks").tag("model", "CLAUDE_3_5_SONNET").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void execute_afterOpenDuration_successfulProbesCloseTheCircuit() {
+        tripSonnet();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        breaker.execute(REQUEST, false, request -> ok(request, 100)).blockLast();
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.HALF_OPEN);
+        breaker.execute(REQUEST, false, request -> ok(request, 100)).blockLast();
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.CLOSED);
+    }
+
+    @Test
+    void execute_failedProbe_reopensTheCircuit() {
+        tripSonnet();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        StepVerifier.create(breaker.execute(REQUEST, false, request -> Flux.error(notReady())))
+                .expectError(ModelNotReadyException.class)
+                .verify();
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.OPEN);
+    }
+
+    @Test
+    void execute_slowFirstTokens_openTheCircuit() {
+        for (int i = 0; i < 4; i++) {
+            long ttftMs = i % 2 == 0 ? 1_500 : 200;
+            breaker.execute(REQUEST, false, request -> ok(request, ttftMs)).blockLast();
+        }
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.OPEN);
+    }
+
+    @Test
+    void execute_throttling_isNotCountedAsModelFailure() {
+        for (int i = 0; i < 8; i++) {
+            StepVerifier.create(breaker.execute(REQUEST, false,
+                            request -> Flux.error(ThrottlingException.builder().message("slow down").build())))
+                    .expectError(ThrottlingException.class)
+                    .verify();
+        }
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.CLOSED);
+    }
+
+    @Test
+    void execute_cancelledAfterStallTimeoutWithoutEvents_countsAsFailure() {
+        for (int i = 0; i < 4; i++) {
+            cancelAfter(Flux.never(), Duration.ofSeconds(5));
+        }
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.OPEN);
+        assertThat(registry.get("bedrock.circuit.failure.rate").tag("model", "CLAUDE_3_5_SONNET")
+                .gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void execute_hungCallsCancelledByCallerTimeoutUnderDefaults_openTheCircuit() {
+        // application.yml defaults, and a caller that gave up after its 60 s timeout of which
+        // the quota's max-wait (5 s) was spent before the breaker admitted the call
+        SimpleMeterRegistry defaultsRegistry = new SimpleMeterRegistry();
+        CircuitBreaker defaults = new CircuitBreaker(defaultsRegistry, true, 20, 10, 0.5, Duration.ofSeconds(10), 0.8,
+                Duration.ofSeconds(30), 3, "", Duration.ofSeconds(30), clock::get);
+        Duration callerTimeout = Duration.ofSeconds(60);
+        Duration waitBeforeAdmission = Duration.ofSeconds(5);
+
+        for (int i = 0; i < 10; i++) {
+            Disposable subscription = defaults.execute(REQUEST, false, request -> Flux.never()).subscribe();
+            clock.addAndGet(callerTimeout.minus(waitBeforeAdmission).toNanos());
+            subscription.dispose();
+        }
+
+        assertThat(defaults.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.OPEN);
+        assertThat(defaultsRegistry.get("bedrock.circuit.failure.rate").tag("model", "CLAUDE_3_5_SONNET")
+                .gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void execute_cancelledWithoutTokenPastSlowThreshold_countsAsSlow() {
+        for (int i = 0; i < 4; i++) {
+            cancelAfter(Flux.never(), Duration.ofSeconds(2));
+        }
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.OPEN);
+        assertThat(registry.get("bedrock.circuit.slow.rate").tag("model", "CLAUDE_3_5_SONNET")
+                .gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("bedrock.circuit.failure.rate").tag("model", "CLAUDE_3_5_SONNET")
+                .gauge().value()).isZero();
+    }
+
+    @Test
+    void execute_cancelledAfterQuickFirstToken_isNotCounted() {
+        Flux<StreamEvent> streaming = Flux.concat(Flux.just(new StreamEvent.Token("Bonjour")), Flux.never());
+        for (int i = 0; i < 8; i++) {
+            cancelAfter(streaming, Duration.ofSeconds(2));
+        }
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.CLOSED);
+    }
+
+    @Test
+    void reset_openCircuit_closesIt() {
+        tripSonnet();
+
+        breaker.reset();
+
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.CLOSED);
+        assertThat(registry.get("bedrock.circuit.failure.rate").tag("model", "CLAUDE_3_5_SONNET")
+                .gauge().value()).isZero();
+    }
+
+    private void cancelAfter(Flux<StreamEvent> events, Duration elapsed) {
+        Disposable subscription = breaker.execute(REQUEST, false, request -> events).subscribe();
+        clock.addAndGet(elapsed.toNanos());
+        subscription.dispose();
+    }
+
+    private void tripSonnet() {
+        for (int i = 0; i < 4; i++) {
+            boolean fail = i % 2 == 0;
+            breaker.execute(REQUEST, false, request -> fail ? Flux.error(notReady()) : call(request))
+                    .onErrorResume(ModelNotReadyException.class, error -> Flux.empty())
+                    .blockLast();
+        }
+        assertThat(breaker.state(ModelType.CLAUDE_3_5_SONNET)).isEqualTo(ModelCircuit.State.OPEN);
+    }
+
+    private Flux<StreamEvent> call(InferenceRequest request) {
+        calls.add(request.modelType());
+        return ok(request, 100);
+    }
+
+    private static Flux<StreamEvent> ok(InferenceRequest request, long ttftMs) {
+        return Flux.just(new StreamEvent.Metrics(PerformanceMetrics.builder()
+                .timeToFirstTokenMs(ttftMs)
+                .modelType(request.modelType())
+                .build()));
+    }
+
+    private static ModelNotReadyException notReady() {
+        return ModelNotReadyException.builder().message("Model is not ready").build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class RequestHedgerTest {
+
+    private static final InferenceRequest REQUEST = InferenceRequest.withJacquesMontagne("Bonjour", ModelType.CLAUDE_3_5_SONNET);
+
+    private SimpleMeterRegistry registry;
+    private LatencyTelemetry telemetry;
+    private RequestHedger hedger;
+    private final List<ModelType> calls = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        telemetry = new LatencyTelemetry(registry, 60, 6);
+        hedger = new RequestHedger(registry, telemetry, true, 95, "CLAUDE_3_HAIKU",
+                Duration.ofMillis(10), Duration.ofSeconds(10), 20);
+    }
+
+    @Test
+    void hedge_slowPrimary_firesFallbackAndCancelsPrimary() {
+        recordSonnetTtft();
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(REQUEST, request -> {
+                    calls.add(request.modelType());
+                    return request.modelType() == ModelType.CLAUDE_3_5_SONNET
+                            ? Flux.<StreamEvent>never().doOnCancel(() -> primaryCancelled.set(true))
+                            : Flux.just(new StreamEvent.Token("Haiku"));
+                }))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(90))
+                .thenAwait(Duration.ofMillis(10))
+                .expectNext(new StreamEvent.Token("Haiku"))
+                .verifyComplete();
+
+        assertThat(calls).containsExactly(ModelType.CLAUDE_3_5_SONNET, ModelType.CLAUDE_3_HAIKU);
+        assertThat(primaryCancelled).isTrue();
+        assertThat(counter("bedrock.hedging.fired")).isEqualTo(1.0);
+        assertThat(registry.get("bedrock.hedging.wins").tag("winner", "hedge").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void hedge_primaryLosesToHedge_recordsItsElapsedTimeAsTtft() {
+        recordSonnetTtft();
+        LatencyTelemetry spiedTelemetry = spy(telemetry);
+        RequestHedger spiedHedger = new RequestHedger(registry, spiedTelemetry, true, 95, "CLAUDE_3_HAIKU",
+                Duration.ofMillis(10), Duration.ofSeconds(10), 20);
+
+        StepVerifier.withVirtualTime(() -> spiedHedger.hedge(REQUEST, request ->
+                        request.modelType() == ModelType.CLAUDE_3_5_SONNET
+                                ? Flux.never()
+                                : Flux.just(new StreamEvent.Token("Haiku"))))
+                .thenAwait(Duration.ofMillis(100))
+                .expectNext(new StreamEvent.Token("Haiku"))
+                .verifyComplete();
+
+        verify(spiedTelemetry).recordTimeToFirstToken(eq(ModelType.CLAUDE_3_5_SONNET), anyLong());
+    }
+
+    @Test
+    void hedge_primaryThrottledBeforeThreshold_failsWithoutHedging() {
+        recordSonnetTtft();
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(REQUEST, request -> {
+                    calls.add(request.modelType());
+                    return Flux.error(ThrottlingException.builder().message("Too many requests").build());
+                }))
+                .expectSubscription()
+                .expectError(ThrottlingException.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertThat(calls).containsExactly(ModelType.CLAUDE_3_5_SONNET);
+        assertThat(counter("bedrock.hedging.fired")).isZero();
+    }
+
+    @Test
+    void hedge_fastPrimary_neverFiresHedge() {
+        recordSonnetTtft();
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(REQUEST, request -> {
+                    calls.add(request.modelType());
+                    return Flux.just(new StreamEvent.Token("Sonnet"));
+                }))
+                .expectNext(new StreamEvent.Token("Sonnet"))
+                .verifyComplete();
+
+        assertThat(calls).containsExactly(ModelType.CLAUDE_3_5_SONNET);
+        assertThat(counter("bedrock.hedging.requests")).isEqualTo(1.0);
+        assertThat(counter("bedrock.hedging.fired")).isZero();
+    }
+
+    @Test
+    void hedge_tooFewTtftSamples_doesNotHedge() {
+        StepVerifier.create(hedger.hedge(REQUEST, request -> {
+                    calls.add(request.modelType());
+                    return Flux.just(new StreamEvent.Token("Sonnet"));
+                }))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(hedger.threshold(ModelType.CLAUDE_3_5_SONNET)).isNull();
+        assertThat(counter("bedrock.hedging.requests")).isZero();
+    }
+
+    private void recordSonnetTtft() {
+        for (int ms = 1; ms <= 100; ms++) {
+            telemetry.recordTimeToFirstToken(ModelType.CLAUDE_3_5_SONNET, TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+    }
+
+    private double counter(String name) {
+        return registry.get(name).tag("model", ModelType.CLAUDE_3_5_SONNET.name()).counter().count();
+    }
+}
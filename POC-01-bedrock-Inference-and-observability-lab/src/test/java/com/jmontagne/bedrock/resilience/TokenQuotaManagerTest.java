@@ -0,0 +1,173 @@
+package com.jmontagne.bedrock.resilience;
+
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenQuotaManagerTest {
+
+    private static final ModelType MODEL = ModelType.CLAUDE_3_HAIKU;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @Test
+    void enforce_settlesReservationWithActualUsage() {
+        TokenQuotaManager quota = manager(100, 10_000, 0, Duration.ZERO);
+
+        StepVerifier.create(quota.enforce(request(1_000), () -> completion(40, 60)))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertThat(quota.available(MODEL, "TPM")).isEqualTo(10_000 - 100);
+        assertThat(quota.available(MODEL, "RPM")).isEqualTo(99);
+    }
+
+    @Test
+    void enforce_tokenQuotaExhausted_rejectsWithoutCallingBedrock() {
+        TokenQuotaManager quota = manager(100, 1_500, 0, Duration.ZERO);
+        quota.enforce(request(1_000), Flux::never).subscribe();
+
+        StepVerifier.create(quota.enforce(request(1_000), () -> completion(10, 10)))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(QuotaExceededException.class);
+                    assertThat(((QuotaExceededException) error).getQuota()).isEqualTo("TPM");
+                    assertThat(((QuotaExceededException) error).getRetryAfter()).isPositive();
+                })
+                .verify();
+
+        assertThat(upstreamCalls).hasValue(0);
+        assertThat(quota.available(MODEL, "RPM")).isEqualTo(99);
+    }
+
+    @Test
+    void enforce_roomWithinMaxWait_delaysInsteadOfRejecting() {
+        TokenQuotaManager quota = manager(1, 100_000, 0, Duration.ofMinutes(2));
+        quota.enforce(request(10), () -> completion(5, 5)).blockLast();
+
+        StepVerifier.withVirtualTime(() -> quota.enforce(request(10), () -> completion(5, 5)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(59))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void enforce_perCallerQuota_isolatesApiKeys() {
+        TokenQuotaManager quota = manager(100, 100_000, 1_500, Duration.ZERO);
+        quota.enforce(request(1_000), Flux::never)
+                .contextWrite(CallerContext.of("key-a", "test").asContext())
+                .subscribe();
+
+        StepVerifier.create(quota.enforce(request(1_000), () -> completion(10, 10))
+                        .contextWrite(CallerContext.of("key-a", "test").asContext()))
+                .expectError(QuotaExceededException.class)
+                .verify();
+        StepVerifier.create(quota.enforce(request(1_000), () -> completion(10, 10))
+                        .contextWrite(CallerContext.of("key-b", "test").asContext()))
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void enforce_cancelledBeforeAnyOutput_refundsAllButInput() {
+        TokenQuotaManager quota = manager(100, 10_000, 0, Duration.ZERO);
+
+        quota.enforce(request(1_000), Flux::never).subscribe().dispose();
+
+        assertThat(quota.available(MODEL, "TPM")).isGreaterThan(10_000 - 50);
+    }
+
+    @Test
+    void enforce_cancelledWhileWaitingForQuota_refundsTheReservation() {
+        TokenQuotaManager quota = manager(1, 100_000, 0, Duration.ofSeconds(90));
+        quota.enforce(request(10), () -> completion(5, 5)).blockLast();
+        long tokensBefore = quota.available(MODEL, "TPM");
+
+        quota.enforce(request(10), () -> completion(5, 5)).subscribe().dispose();
+
+        assertThat(quota.available(MODEL, "TPM")).isEqualTo(tokensBefore);
+        assertThat(upstreamCalls).hasValue(1);
+        // Had the abandoned request kept its RPM slot, this one would need 120 s and be rejected
+        StepVerifier.create(quota.enforce(request(10), () -> completion(5, 5)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void enforce_maxTokensAboveTpm_settlesAgainstTheCappedCharge() {
+        TokenQuotaManager quota = manager(100, 10_000, 0, Duration.ZERO);
+
+        StepVerifier.create(quota.enforce(request(20_000), () -> completion(40, 60)))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertThat(quota.available(MODEL, "TPM")).isEqualTo(10_000 - 100);
+    }
+
+    @Test
+    void enforce_maxTokensAboveTpmCancelled_refundsOnlyItsOwnCharge() {
+        TokenQuotaManager quota = manager(100, 10_000, 0, Duration.ofMinutes(2));
+        quota.enforce(request(1_000), Flux::never).subscribe();
+        long tokensBefore = quota.available(MODEL, "TPM");
+
+        quota.enforce(request(20_000), () -> completion(5, 5)).subscribe().dispose();
+
+        // Refunding the uncapped 20 000 would also free the in-flight request's tokens
+        assertThat(quota.available(MODEL, "TPM")).isEqualTo(tokensBefore);
+        assertThat(upstreamCalls).hasValue(0);
+    }
+
+    @Test
+    void reset_afterTraffic_refillsEveryBucket() {
+        TokenQuotaManager quota = manager(100, 10_000, 0, Duration.ZERO);
+        quota.enforce(request(1_000), () -> completion(400, 600)).blockLast();
+
+        quota.reset();
+
+        assertThat(quota.available(MODEL, "RPM")).isEqualTo(100);
+        assertThat(quota.available(MODEL, "TPM")).isEqualTo(10_000);
+    }
+
+    private TokenQuotaManager manager(long rpm, long tpm, long perCallerTpm, Duration maxWait) {
+        TokenQuotaManager.QuotaLimits limits = new TokenQuotaManager.QuotaLimits(rpm, tpm);
+        return new TokenQuotaManager(new SimpleMeterRegistry(), true,
+                Map.of(ModelType.CLAUDE_3_5_SONNET, limits, MODEL, limits),
+                perCallerTpm, maxWait, clock::get);
+    }
+
+    private static InferenceRequest request(int maxTokens) {
+        return new InferenceRequest("system", "Bonjour chef",
+                MODEL, new InferenceParameters(0.7, 0.9, maxTokens, List.of()));
+    }
+
+    private Flux<StreamEvent> completion(int inputTokens, int outputTokens) {
+        upstreamCalls.incrementAndGet();
+        return Flux.just(
+                new StreamEvent.Token("Bonjour"),
+                new StreamEvent.Stop("end_turn"),
+                new StreamEvent.Metrics(PerformanceMetrics.builder()
+                        .inputTokens(inputTokens)
+                        .outputTokens(outputTokens)
+                        .modelType(MODEL)
+                        .build()));
+    }
+}
@@ -0,0 +1,195 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.cache.RequestCoalescer;
+import com.jmontagne.bedrock.cache.ResponseCache;
+import com.jmontagne.bedrock.client.BedrockStreamingClient;
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.metrics.CostTracker;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.CallerContext;
+import com.jmontagne.bedrock.model.CostReport;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.StreamEvent;
+import com.jmontagne.bedrock.resilience.AdaptiveConcurrencyLimiter;
+import com.jmontagne.bedrock.resilience.CircuitBreaker;
+import com.jmontagne.bedrock.resilience.RequestHedger;
+import com.jmontagne.bedrock.resilience.TokenQuotaManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InferenceServiceTest {
+
+    @Mock
+    private BedrockStreamingClient streamingClient;
+
+    private InferenceService inferenceService;
+    private CostTracker costTracker;
+    private OutputSizeEstimator outputSizes;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResponseCache responseCache = new ResponseCache(registry, true, 1_000_000, Duration.ofMinutes(5));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                registry, new LatencyTelemetry(), true, 10, 1, 50, 0.7, 2.0, 100, Duration.ofSeconds(2));
+        TokenQuotaManager.QuotaLimits generous = new TokenQuotaManager.QuotaLimits(1_000, 1_000_000);
+        TokenQuotaManager quotaManager = new TokenQuotaManager(registry, true,
+                Map.of(ModelType.CLAUDE_3_5_SONNET, generous, ModelType.CLAUDE_3_HAIKU, generous),
+                0, Duration.ofSeconds(1), System::nanoTime);
+        RequestHedger hedger = new RequestHedger(registry, new LatencyTelemetry(), false, 95, "",
+                Duration.ofMillis(200), Duration.ofSeconds(10), 20);
+        ModelRouter router = new ModelRouter(ModelCatalog.defaults(), new LatencyTelemetry(), registry,
+                Duration.ofSeconds(2), 0.3, 0.2, 10);
+        outputSizes = spy(new OutputSizeEstimator());
+        costTracker = new CostTracker(ModelCatalog.defaults(), registry, Duration.ofMinutes(5), 0, 100, 20, System::nanoTime);
+        inferenceService = new InferenceService(streamingClient, responseCache, new RequestCoalescer(registry, true),
+                quotaManager, limiter, hedger, router, outputSizes, costTracker,
+                new CircuitBreaker(registry, true, 20, 10, 0.5, Duration.ofSeconds(10), 0.8,
+                        Duration.ofSeconds(30), 3, "", Duration.ofSeconds(30), System::nanoTime));
+    }
+
+    @Test
+    void inferWithJacquesMontagne_collectsContentStopReasonAndMetrics() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        InferenceResponse response = inferenceService
+                .inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT)
+                .block();
+
+        assertThat(response.content()).isEqualTo("Bonjour");
+        assertThat(response.finishReason()).isEqualTo("max_tokens");
+        assertThat(response.metrics().timeToFirstTokenMs()).isEqualTo(300);
+        assertThat(response.metrics().outputTokens()).isEqualTo(2);
+    }
+
+    @Test
+    void inferWithJacquesMontagne_deterministicRepeat_servedFromCache() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        InferenceResponse first = inferenceService
+                .inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.deterministic())
+                .block();
+        InferenceResponse second = inferenceService
+                .inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.deterministic())
+                .block();
+
+        assertThat(second.content()).isEqualTo(first.content());
+        assertThat(second.metrics().timeToFirstTokenMs()).isZero();
+        verify(streamingClient, times(1)).streamEvents(any(InferenceRequest.class));
+    }
+
+    @Test
+    void inferWithJacquesMontagne_cachedRepeat_chargesOnlyTheBedrockCall() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        for (int i = 0; i < 2; i++) {
+            inferenceService.inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.deterministic())
+                    .contextWrite(CallerContext.of("team-a", "inference").asContext())
+                    .block();
+        }
+
+        CostReport report = costTracker.report();
+        assertThat(report.total().requests()).isEqualTo(1);
+        assertThat(report.total().costUsd())
+                .isCloseTo(ModelCatalog.defaults().profile(ModelType.CLAUDE_3_HAIKU).costOf(10, 2), within(1e-9));
+        assertThat(report.byEndpoint()).containsOnlyKeys("inference");
+        assertThat(report.topCallers()).containsOnlyKeys("team-a");
+    }
+
+    @Test
+    void inferWithJacquesMontagne_sampledRequest_bypassesCache() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        inferenceService.inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT).block();
+        inferenceService.inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT).block();
+
+        verify(streamingClient, times(2)).streamEvents(any(InferenceRequest.class));
+    }
+
+    @Test
+    void measured_deterministicRequest_bypassesCache() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+        InferenceRequest request = InferenceRequest.withJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU,
+                InferenceParameters.deterministic());
+
+        inferenceService.measured(request).blockLast();
+        inferenceService.measured(request).blockLast();
+
+        verify(streamingClient, times(2)).streamEvents(any(InferenceRequest.class));
+    }
+
+    @Test
+    void bufferWithJacquesMontagne_appendsEveryChunkIntoOneBuffer() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        ResponseBuffer buffer = inferenceService
+                .bufferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT)
+                .block();
+
+        assertThat(buffer.toString()).isEqualTo("Bonjour");
+        assertThat(buffer.chunks()).isEqualTo(2);
+    }
+
+    @Test
+    void inferWithJacquesMontagne_answeredByFallbackModel_labelsAndLearnsTheAnsweringModel() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        InferenceResponse response = inferenceService
+                .inferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_5_SONNET, InferenceParameters.DEFAULT)
+                .block();
+
+        assertThat(response.modelType()).isEqualTo(ModelType.CLAUDE_3_HAIKU);
+        verify(outputSizes).record(ModelType.CLAUDE_3_HAIKU, 7);
+        verify(outputSizes, never()).record(eq(ModelType.CLAUDE_3_5_SONNET), anyInt());
+    }
+
+    @Test
+    void bufferWithJacquesMontagne_answeredByFallbackModel_carriesTheAnsweringModel() {
+        when(streamingClient.streamEvents(any(InferenceRequest.class))).thenReturn(upstream());
+
+        ResponseBuffer buffer = inferenceService
+                .bufferWithJacquesMontagne("Hi", ModelType.CLAUDE_3_5_SONNET, InferenceParameters.DEFAULT)
+                .block();
+
+        assertThat(buffer.answeredBy()).isEqualTo(ModelType.CLAUDE_3_HAIKU);
+        verify(outputSizes).record(ModelType.CLAUDE_3_HAIKU, 7);
+    }
+
+    private static Flux<StreamEvent> upstream() {
+        return Flux.just(
+                new StreamEvent.Token("Bon"),
+                new StreamEvent.Token("jour"),
+                new StreamEvent.Stop("max_tokens"),
+                new StreamEvent.Metrics(PerformanceMetrics.builder()
+                        .timeToFirstTokenMs(300)
+                        .totalGenerationTimeMs(900)
+                        .inputTokens(10)
+                        .outputTokens(2)
+                        .modelType(ModelType.CLAUDE_3_HAIKU)
+                        .build()));
+    }
+}
@@ -0,0 +1,150 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.model.CandidateResult;
+import com.jmontagne.bedrock.model.ComparisonCandidate;
+import com.jmontagne.bedrock.model.ComparisonRequest;
+import com.jmontagne.bedrock.model.ComparisonResult;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.model.SampleDistribution;
+import com.jmontagne.bedrock.model.StreamEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ModelComparatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private InferenceService inferenceService;
+
+    private ModelComparator comparator;
+
+    @BeforeEach
+    void setUp() {
+        comparator = new ModelComparator(inferenceService, ModelCatalog.defaults(), Duration.ofSeconds(10), 8, 30);
+    }
+
+    @Test
+    void compare_twoModels_reportsMetricsCostAndWinnersInRequestOrder() {
+        when(inferenceService.measured(forModel(ModelType.CLAUDE_3_5_SONNET)))
+                .thenReturn(answer(ModelType.CLAUDE_3_5_SONNET, 700, 4_000, 100, 400));
+        when(inferenceService.measured(forModel(ModelType.CLAUDE_3_HAIKU)))
+                .thenReturn(answer(ModelType.CLAUDE_3_HAIKU, 200, 1_000, 100, 400));
+
+        ComparisonResult result = comparator.compare(ComparisonRequest.of("Hi",
+                List.of(ModelType.CLAUDE_3_5_SONNET, ModelType.CLAUDE_3_HAIKU), InferenceParameters.deterministic()))
+                .block(TIMEOUT);
+
+        assertThat(result.candidates()).extracting(CandidateResult::label)
+                .containsExactly("CLAUDE_3_5_SONNET", "CLAUDE_3_HAIKU");
+        CandidateResult haiku = result.candidates().get(1);
+        assertThat(haiku.status()).isEqualTo(CandidateResult.Status.OK);
+        assertThat(haiku.response().content()).isEqualTo("Bonjour");
+        assertThat(haiku.ttftMs().p50()).isEqualTo(200);
+        assertThat(haiku.tokensPerSecond().p50()).isEqualTo(400);
+        assertThat(haiku.costUsd()).isCloseTo(
+                ModelCatalog.defaults().profile(ModelType.CLAUDE_3_HAIKU).costOf(100, 400), within(1e-12));
+        assertThat(result.fastestTtft()).isEqualTo("CLAUDE_3_HAIKU");
+        assertThat(result.cheapest()).isEqualTo("CLAUDE_3_HAIKU");
+    }
+
+    @Test
+    void compare_repeatedRuns_discardsWarmupAndBuildsDistribution() {
+        AtomicInteger calls = new AtomicInteger();
+        when(inferenceService.measured(any(InferenceRequest.class))).thenAnswer(invocation ->
+                Flux.defer(() -> answer(ModelType.CLAUDE_3_HAIKU, 100L * calls.incrementAndGet(), 1_000, 10, 20)));
+
+        ComparisonResult result = comparator.compare(ComparisonRequest.of("Hi",
+                List.of(ModelType.CLAUDE_3_HAIKU), InferenceParameters.deterministic()).withRuns(3, 1))
+                .block(TIMEOUT);
+
+        SampleDistribution ttft = result.candidates().getFirst().ttftMs();
+        assertThat(ttft.count()).isEqualTo(3);
+        assertThat(ttft.min()).isEqualTo(200);
+        assertThat(ttft.p50()).isEqualTo(300);
+        assertThat(ttft.mean()).isEqualTo(300);
+        assertThat(ttft.stdDev()).isCloseTo(100, within(1e-9));
+        assertThat(ttft.ci95()).isCloseTo(4.303 * 100 / Math.sqrt(3), within(1e-6));
+        verify(inferenceService, times(4)).measured(any(InferenceRequest.class));
+    }
+
+    @Test
+    void compareEach_slowCandidate_timesOutWithoutHoldingBackTheOthers() {
+        when(inferenceService.measured(forModel(ModelType.CLAUDE_3_5_SONNET)))
+                .thenReturn(Flux.never());
+        when(inferenceService.measured(forModel(ModelType.CLAUDE_3_HAIKU)))
+                .thenReturn(answer(ModelType.CLAUDE_3_HAIKU, 200, 1_000, 10, 20));
+        ComparisonRequest request = new ComparisonRequest(null, "Hi", List.of(
+                new ComparisonCandidate(null, ModelType.CLAUDE_3_5_SONNET, null, Duration.ofMillis(200)),
+                ComparisonCandidate.of(ModelType.CLAUDE_3_HAIKU, null)), 1, 0, null);
+
+        StepVerifier.create(comparator.compareEach(request))
+                .assertNext(result -> assertThat(result.label()).isEqualTo("CLAUDE_3_HAIKU"))
+                .assertNext(result -> {
+                    assertThat(result.status()).isEqualTo(CandidateResult.Status.TIMEOUT);
+                    assertThat(result.timedOut()).isEqualTo(1);
+                    assertThat(result.response()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void comparisonRequest_sameModelTwice_getsDistinctLabels() {
+        ComparisonRequest request = new ComparisonRequest(null, "Hi", List.of(
+                ComparisonCandidate.of(ModelType.CLAUDE_3_HAIKU, InferenceParameters.withTemperature(0.0)),
+                ComparisonCandidate.of(ModelType.CLAUDE_3_HAIKU, InferenceParameters.withTemperature(1.0))), 1, 0, null);
+
+        assertThat(request.candidates()).extracting(ComparisonCandidate::label)
+                .containsExactly("CLAUDE_3_HAIKU", "CLAUDE_3_HAIKU-2");
+    }
+
+    @Test
+    void compareEach_tooManyRuns_rejectedBeforeAnyCall() {
+        ComparisonRequest request = ComparisonRequest.of("Hi", List.of(ModelType.CLAUDE_3_HAIKU),
+                InferenceParameters.DEFAULT).withRuns(30, 5);
+
+        StepVerifier.create(comparator.compareEach(request))
+                .expectError(IllegalArgumentException.class)
+                .verify(TIMEOUT);
+    }
+
+    private static InferenceRequest forModel(ModelType modelType) {
+        return argThat(request -> request != null && request.modelType() == modelType);
+    }
+
+    private static Flux<StreamEvent> answer(ModelType modelType, long ttftMs, long totalMs, int inputTokens, int outputTokens) {
+        return Flux.just(
+                new StreamEvent.Token("Bon"),
+                new StreamEvent.Token("jour"),
+                new StreamEvent.Stop("end_turn"),
+                new StreamEvent.Metrics(PerformanceMetrics.builder()
+                        .timeToFirstTokenMs(ttftMs)
+                        .totalGenerationTimeMs(totalMs)
+                        .inputTokens(inputTokens)
+                        .outputTokens(outputTokens)
+                        .modelType(modelType)
+                        .build()));
+    }
+}
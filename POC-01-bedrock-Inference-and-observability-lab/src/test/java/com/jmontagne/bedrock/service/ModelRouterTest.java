@@ -0,0 +1,138 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.config.ModelCatalog;
+import com.jmontagne.bedrock.metrics.LatencyTelemetry;
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.RoutingDecision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelRouterTest {
+
+    private static final String SIMPLE = "What temperature should I bake bread at?";
+    private static final String COMPLEX = "Compare a sourdough and a poolish levain step by step: "
+            + "why does each change the crumb, and how would you design a schedule around both?";
+
+    private SimpleMeterRegistry registry;
+    private LatencyTelemetry telemetry;
+    private ModelRouter router;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        telemetry = new LatencyTelemetry(registry, 60, 6);
+        router = new ModelRouter(ModelCatalog.defaults(), telemetry, registry, Duration.ofSeconds(2), 0.3, 0.2, 10);
+    }
+
+    @Test
+    void route_simplePrompt_picksCheapestModel() {
+        RoutingDecision decision = router.route(request(SIMPLE, InferenceParameters.DEFAULT));
+
+        assertThat(decision.modelType()).isEqualTo(ModelType.CLAUDE_3_HAIKU);
+        assertThat(decision.reason()).isEqualTo("cheapest_capable");
+        assertThat(decision.requiredTier()).isEqualTo(1);
+    }
+
+    @Test
+    void route_complexPrompt_picksHigherTier() {
+        RoutingDecision decision = router.route(request(COMPLEX, InferenceParameters.DEFAULT));
+
+        assertThat(decision.modelType()).isEqualTo(ModelType.CLAUDE_3_5_SONNET);
+        assertThat(decision.requiredTier()).isEqualTo(2);
+        assertThat(registry.get("bedrock.routing.decisions")
+                .tags("model", "CLAUDE_3_5_SONNET", "reason", decision.reason()).counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void route_capableModelOverSlo_fallsBackToModelMeetingSlo() {
+        recordTtft(ModelType.CLAUDE_3_5_SONNET, 5_000);
+        recordTtft(ModelType.CLAUDE_3_HAIKU, 400);
+
+        RoutingDecision decision = router.route(request(COMPLEX, InferenceParameters.DEFAULT));
+
+        assertThat(decision.modelType()).isEqualTo(ModelType.CLAUDE_3_HAIKU);
+        assertThat(decision.reason()).isEqualTo("slo_fallback");
+    }
+
+    @Test
+    void route_maxTokensAboveCheapModelOutputLimit_skipsThatModel() {
+        int haikuLimit = ModelCatalog.defaults().profile(ModelType.CLAUDE_3_HAIKU).maxOutputTokens();
+
+        RoutingDecision decision = router.route(
+                request(SIMPLE, InferenceParameters.DEFAULT.withMaxTokens(haikuLimit + 1)));
+
+        assertThat(decision.modelType()).isEqualTo(ModelType.CLAUDE_3_5_SONNET);
+        assertThat(router.route(request(SIMPLE, InferenceParameters.DEFAULT.withMaxTokens(haikuLimit))).modelType())
+                .isEqualTo(ModelType.CLAUDE_3_HAIKU);
+    }
+
+    @Test
+    void route_historyBeyondContextWindow_isRejectedEvenForShortMessage() {
+        int largestWindow = ModelCatalog.defaults().profile(ModelType.CLAUDE_3_5_SONNET).contextWindow();
+        InferenceRequest request = new InferenceRequest("system", SIMPLE, null, InferenceParameters.DEFAULT,
+                List.of(ConversationTurn.user("a".repeat(largestWindow * 4)), ConversationTurn.assistant("Oui")));
+
+        assertThatThrownBy(() -> router.route(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("context window");
+    }
+
+    @Test
+    void route_failingModel_isAvoided() {
+        for (int i = 0; i < 20; i++) {
+            router.recordOutcome(ModelType.CLAUDE_3_HAIKU, false);
+        }
+
+        RoutingDecision decision = router.route(request(SIMPLE, InferenceParameters.DEFAULT));
+
+        assertThat(router.errorRate(ModelType.CLAUDE_3_HAIKU)).isGreaterThan(0.2);
+        assertThat(decision.modelType()).isEqualTo(ModelType.CLAUDE_3_5_SONNET);
+    }
+
+    @Test
+    void recordRoutedOutcome_countsPerModelReasonAndOutcome() {
+        RoutingDecision decision = router.route(request(SIMPLE, InferenceParameters.DEFAULT));
+
+        router.recordRoutedOutcome(decision, true);
+        router.recordRoutedOutcome(decision, false);
+        router.recordRoutedOutcome(decision, true);
+
+        assertThat(registry.get("bedrock.routing.outcomes")
+                .tags("model", "CLAUDE_3_HAIKU", "reason", "cheapest_capable", "outcome", "success")
+                .counter().count()).isEqualTo(2.0);
+        assertThat(registry.get("bedrock.routing.outcomes")
+                .tags("model", "CLAUDE_3_HAIKU", "reason", "cheapest_capable", "outcome", "error")
+                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void promptComplexity_scoresReasoningAndCodeAboveSmallTalk() {
+        double smallTalk = PromptComplexity.analyze("Bonjour chef!").score();
+        double codeReview = PromptComplexity.analyze("Why does this fail?\n```java\nrecipe.bake();\n```").score();
+
+        assertThat(smallTalk).isLessThan(0.3);
+        assertThat(codeReview).isGreaterThan(smallTalk);
+    }
+
+    private static InferenceRequest request(String userMessage, InferenceParameters parameters) {
+        return new InferenceRequest("You are a baker.", userMessage, null, parameters);
+    }
+
+    private void recordTtft(ModelType modelType, long millis) {
+        for (int i = 0; i < 20; i++) {
+            telemetry.recordTimeToFirstToken(modelType, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jmontagne.bedrock.service;
+
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.OutputBudget;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputSizeEstimatorTest {
+
+    @Test
+    void initialCapacity_noHistory_usesInitialEstimateWithHeadroom() {
+        OutputSizeEstimator estimator = new OutputSizeEstimator(1000, 1.25);
+
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT)).isEqualTo(1250);
+    }
+
+    @Test
+    void initialCapacity_cappedByMaxTokensAndOutputBudget() {
+        OutputSizeEstimator estimator = new OutputSizeEstimator(1000, 1.25);
+
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT.withMaxTokens(50)))
+                .isEqualTo(300);
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_HAIKU,
+                InferenceParameters.DEFAULT.withBudget(OutputBudget.of(100, null)))).isEqualTo(100);
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT.withMaxTokens(1)))
+                .isEqualTo(64);
+    }
+
+    @Test
+    void record_movesEstimateTowardsObservedLengthPerModel() {
+        OutputSizeEstimator estimator = new OutputSizeEstimator(1000, 1.0);
+
+        for (int i = 0; i < 50; i++) {
+            estimator.record(ModelType.CLAUDE_3_5_SONNET, 6000);
+        }
+
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_5_SONNET, InferenceParameters.DEFAULT))
+                .isBetween(5900, 6000);
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT)).isEqualTo(1000);
+    }
+
+    @Test
+    void reset_afterRecordedOutputs_returnsToInitialEstimate() {
+        OutputSizeEstimator estimator = new OutputSizeEstimator(1000, 1.0);
+        estimator.record(ModelType.CLAUDE_3_HAIKU, 20);
+
+        estimator.reset();
+
+        assertThat(estimator.initialCapacity(ModelType.CLAUDE_3_HAIKU, InferenceParameters.DEFAULT)).isEqualTo(1000);
+    }
+}
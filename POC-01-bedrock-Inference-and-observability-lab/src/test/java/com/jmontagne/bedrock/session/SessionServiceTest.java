@@ -0,0 +1,164 @@
+package com.jmontagne.bedrock.session;
+
+import com.jmontagne.bedrock.config.PersonaRegistry;
+import com.jmontagne.bedrock.model.ConversationTurn;
+import com.jmontagne.bedrock.model.InferenceParameters;
+import com.jmontagne.bedrock.model.InferenceRequest;
+import com.jmontagne.bedrock.model.InferenceResponse;
+import com.jmontagne.bedrock.model.ModelType;
+import com.jmontagne.bedrock.model.PerformanceMetrics;
+import com.jmontagne.bedrock.service.InferenceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SessionServiceTest {
+
+    // 40 chars = 10 estimated tokens; every answer reports 10 output tokens
+    private static final String MESSAGE = "Quelle sauce pour un poisson grillé ?!!!";
+    private static final int TURN_TOKENS = 10;
+
+    @Mock
+    private InferenceService inferenceService;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void send_historyWithinBudget_sendsWholeConversation() {
+        answerWith("Une sauce vierge.");
+        SessionService service = service(1_000, false);
+        String id = service.create(ModelType.CLAUDE_3_HAIKU, null, null).sessionId();
+
+        SessionReply first = service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+        SessionReply second = service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+
+        assertThat(first.turn()).isEqualTo(1);
+        assertThat(first.historyTokensSent()).isZero();
+        assertThat(second.turn()).isEqualTo(2);
+        assertThat(second.historyTokensSent()).isEqualTo(2 * TURN_TOKENS);
+        assertThat(second.inputTokensSaved()).isZero();
+        assertThat(lastRequest().history()).containsExactly(
+                ConversationTurn.user(MESSAGE),
+                ConversationTurn.assistant("Une sauce vierge."));
+        assertThat(lastRequest().systemPrompt()).isEqualTo(InferenceRequest.JACQUES_MONTAGNE_SYSTEM_PROMPT);
+    }
+
+    @Test
+    void send_historyOverBudget_keepsNewestPairsAndReportsSavings() {
+        answerWith("Une sauce vierge.");
+        // Room for two pairs of 20 tokens each
+        SessionService service = service(45, false);
+        String id = service.create(ModelType.CLAUDE_3_HAIKU, null, "You are a chef.").sessionId();
+
+        for (int i = 0; i < 4; i++) {
+            service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+        }
+        SessionReply fifth = service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+
+        assertThat(fifth.turnsOmitted()).isEqualTo(4);
+        assertThat(fifth.historyTokensSent()).isEqualTo(4 * TURN_TOKENS);
+        assertThat(fifth.inputTokensSaved()).isEqualTo(4 * TURN_TOKENS);
+        assertThat(fifth.summarized()).isFalse();
+        assertThat(lastRequest().history()).hasSize(4);
+        assertThat(registry.get("bedrock.sessions.tokens.saved").counter().count()).isEqualTo(2.0 * TURN_TOKENS + 4 * TURN_TOKENS);
+    }
+
+    @Test
+    void send_summarizeEnabled_rollsOldTurnsIntoLeadingSummaryPair() {
+        when(inferenceService.infer(any())).thenAnswer(invocation -> {
+            InferenceRequest request = invocation.getArgument(0);
+            String content = request.systemPrompt().equals(SessionService.SUMMARY_SYSTEM_PROMPT)
+                    ? "User likes fish."
+                    : "Une sauce vierge.";
+            return Mono.just(response(request, content));
+        });
+        SessionService service = service(25, true);
+        String id = service.create(ModelType.CLAUDE_3_HAIKU, null, null).sessionId();
+
+        service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+        service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+        SessionReply third = service.send(id, MESSAGE, InferenceParameters.DEFAULT).block();
+
+        assertThat(third.summarized()).isTrue();
+        assertThat(lastRequest().history().get(0).text()).endsWith("User likes fish.");
+        assertThat(lastRequest().history().get(1).role()).isEqualTo(ConversationTurn.Role.ASSISTANT);
+        assertThat(service.find(id).orElseThrow().summary()).isEqualTo("User likes fish.");
+        verify(inferenceService, atLeastOnce()).infer(argThat(request ->
+                request.modelType() == ModelType.CLAUDE_3_HAIKU
+                        && request.parameters().temperature() == 0.0
+                        && request.userMessage().contains("User: " + MESSAGE)));
+    }
+
+    @Test
+    void send_turnAlreadyRunning_isRejected() {
+        Sinks.One<InferenceResponse> pending = Sinks.one();
+        when(inferenceService.infer(any())).thenReturn(pending.asMono());
+        SessionService service = service(1_000, false);
+        String id = service.create(ModelType.CLAUDE_3_HAIKU, null, null).sessionId();
+
+        service.send(id, MESSAGE, InferenceParameters.DEFAULT).subscribe();
+
+        StepVerifier.create(service.send(id, MESSAGE, InferenceParameters.DEFAULT))
+                .expectError(IllegalArgumentException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void send_unknownSession_isEmpty() {
+        StepVerifier.create(service(1_000, false).send("missing", MESSAGE, InferenceParameters.DEFAULT))
+                .verifyComplete();
+    }
+
+    @Test
+    void compactTurn_longText_isCompressedAndRoundTrips() {
+        String answer = "Le beurre blanc est une émulsion de beurre, d'échalote et de vin blanc. ".repeat(40);
+
+        CompactTurn turn = CompactTurn.of(ConversationTurn.assistant(answer), 700);
+
+        assertThat(turn.isCompressed()).isTrue();
+        assertThat(turn.weightBytes()).isLessThan(answer.length() / 2);
+        assertThat(turn.expand()).isEqualTo(ConversationTurn.assistant(answer));
+    }
+
+    private SessionService service(int historyTokenBudget, boolean summarize) {
+        return new SessionService(inferenceService, new SessionStore(registry, 1_000_000, Duration.ofMinutes(5)),
+                PersonaRegistry.defaults(), registry, historyTokenBudget, 100, summarize, ModelType.CLAUDE_3_HAIKU, 200);
+    }
+
+    private void answerWith(String content) {
+        when(inferenceService.infer(any())).thenAnswer(invocation ->
+                Mono.just(response(invocation.getArgument(0), content)));
+    }
+
+    private static InferenceResponse response(InferenceRequest request, String content) {
+        return InferenceResponse.of(content, request.modelType(), PerformanceMetrics.builder()
+                .inputTokens(100)
+                .outputTokens(TURN_TOKENS)
+                .modelType(request.modelType())
+                .build());
+    }
+
+    private InferenceRequest lastRequest() {
+        ArgumentCaptor<InferenceRequest> captor = ArgumentCaptor.forClass(InferenceRequest.class);
+        verify(inferenceService, atLeastOnce()).infer(captor.capture());
+        List<InferenceRequest> requests = captor.getAllValues();
+        return requests.get(requests.size() - 1);
+    }
+}
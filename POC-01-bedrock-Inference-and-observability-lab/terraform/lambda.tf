@@ -66,8 +66,8 @@ resource "aws_iam_role_policy" "lambda_bedrock" {
 resource "aws_lambda_function" "bedrock_inference" {
   function_name = "${var.project_name}-${var.environment}"
   role          = aws_iam_role.lambda_role.arn
-  handler       = "com.jmontagne.bedrock.StreamLambdaHandler::handleRequest"
-  runtime       = "java21"
+  handler       = var.lambda_handler
+  runtime       = var.lambda_runtime
   timeout       = 120  # 2 minutes for LLM responses
   memory_size   = var.lambda_memory_size
 
@@ -75,9 +75,12 @@ resource "aws_lambda_function" "bedrock_inference" {
   filename         = var.lambda_jar_path
   source_code_hash = filebase64sha256(var.lambda_jar_path)
 
-  # SnapStart for fast cold starts (~200ms instead of ~5s)
-  snap_start {
-    apply_on = "PublishedVersions"
+  # SnapStart for fast cold starts (~200ms instead of ~5s); Java managed runtimes only
+  dynamic "snap_start" {
+    for_each = startswith(var.lambda_runtime, "java") ? [1] : []
+    content {
+      apply_on = "PublishedVersions"
+    }
   }
 
   # Environment variables for Powertools
@@ -91,6 +94,9 @@ resource "aws_lambda_function" "bedrock_inference" {
       # Spring Boot configuration
       SPRING_PROFILES_ACTIVE = "lambda"
 
+      # Warm the request path before the SnapStart snapshot (CRaC beforeCheckpoint)
+      BEDROCK_PRIMING_ENABLED = "true"
+
       # Java options for Lambda (AWS_REGION is already set by Lambda runtime)
       JAVA_TOOL_OPTIONS = "-XX:+TieredCompilation -XX:TieredStopAtLevel=1"
     }
@@ -120,7 +126,7 @@ resource "aws_lambda_alias" "live" {
 }
 
 # -----------------------------------------------------------------------------
-# Lambda Function URL (for direct HTTP access with streaming support)
+# Lambda Function URL (direct HTTP access; BUFFERED, see sse_stream for token streaming)
 # -----------------------------------------------------------------------------
 resource "aws_lambda_function_url" "bedrock_inference" {
   function_name      = aws_lambda_function.bedrock_inference.function_name
@@ -137,6 +143,81 @@ resource "aws_lambda_function_url" "bedrock_inference" {
   }
 }
 
+# -----------------------------------------------------------------------------
+# SSE streaming function (SseStreamLambdaHandler behind a RESPONSE_STREAM URL)
+# -----------------------------------------------------------------------------
+# The managed java21 runtime client buffers handler output until the handler returns, so this
+# function replaces it with StreamingRuntime through an exec wrapper shipped as a layer. No
+# SnapStart: snapshots are taken by the runtime's own client, which the wrapper bypasses.
+data "archive_file" "stream_runtime" {
+  type             = "zip"
+  source_file      = "${path.module}/../src/main/lambda/stream-runtime"
+  output_path      = "${path.module}/.build/stream-runtime-layer.zip"
+  output_file_mode = "0755"
+}
+
+resource "aws_lambda_layer_version" "stream_runtime" {
+  layer_name          = "${var.project_name}-${var.environment}-stream-runtime"
+  filename            = data.archive_file.stream_runtime.output_path
+  source_code_hash    = data.archive_file.stream_runtime.output_base64sha256
+  compatible_runtimes = ["java21"]
+}
+
+resource "aws_lambda_function" "sse_stream" {
+  function_name = "${var.project_name}-${var.environment}-sse"
+  role          = aws_iam_role.lambda_role.arn
+  handler       = "com.jmontagne.bedrock.SseStreamLambdaHandler::handleRequest"
+  runtime       = "java21"
+  timeout       = 120
+  memory_size   = var.lambda_memory_size
+  layers        = [aws_lambda_layer_version.stream_runtime.arn]
+
+  filename         = var.lambda_jar_path
+  source_code_hash = filebase64sha256(var.lambda_jar_path)
+
+  environment {
+    variables = {
+      AWS_LAMBDA_EXEC_WRAPPER = "/opt/stream-runtime"
+      SPRING_PROFILES_ACTIVE  = "lambda"
+      JAVA_TOOL_OPTIONS       = "-XX:+TieredCompilation -XX:TieredStopAtLevel=1"
+    }
+  }
+
+  tracing_config {
+    mode = "Active"
+  }
+
+  tags = local.common_tags
+
+  depends_on = [
+    aws_iam_role_policy_attachment.lambda_basic,
+    aws_iam_role_policy_attachment.lambda_xray,
+    aws_iam_role_policy.lambda_bedrock
+  ]
+}
+
+resource "aws_lambda_function_url" "sse_stream" {
+  function_name      = aws_lambda_function.sse_stream.function_name
+  authorization_type = "NONE"  # Public access for POC; use IAM in production
+  invoke_mode        = "RESPONSE_STREAM"
+
+  cors {
+    allow_origins     = ["*"]
+    allow_methods     = ["*"]
+    allow_headers     = ["*"]
+    expose_headers    = ["*"]
+    max_age           = 3600
+    allow_credentials = false
+  }
+}
+
+resource "aws_cloudwatch_log_group" "sse_stream" {
+  name              = "/aws/lambda/${aws_lambda_function.sse_stream.function_name}"
+  retention_in_days = var.log_retention_days
+
+  tags = local.common_tags
+}
+
 # -----------------------------------------------------------------------------
 # API Gateway HTTP API (alternative to Function URL)
 # -----------------------------------------------------------------------------
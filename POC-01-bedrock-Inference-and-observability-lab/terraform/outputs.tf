@@ -47,6 +47,11 @@ output "lambda_function_url" {
   value       = aws_lambda_function_url.bedrock_inference.function_url
 }
 
+output "sse_stream_function_url" {
+  description = "Function URL with RESPONSE_STREAM for token-by-token SSE (/api/v1/inference/stream/{model})"
+  value       = aws_lambda_function_url.sse_stream.function_url
+}
+
 output "api_gateway_url" {
   description = "API Gateway HTTP API URL"
   value       = aws_apigatewayv2_api.bedrock_api.api_endpoint
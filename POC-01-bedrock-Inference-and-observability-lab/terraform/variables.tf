@@ -51,7 +51,7 @@ variable "log_embedding_data" {
 # -----------------------------------------------------------------------------
 
 variable "lambda_jar_path" {
-  description = "Path to the Lambda deployment JAR file"
+  description = "Path to the Lambda deployment package (shaded JAR, or the native-lambda.zip for provided.al2023)"
   type        = string
   default     = "../target/bedrock-inference-lab-1.0.0-SNAPSHOT.jar"
 }
@@ -62,6 +62,18 @@ variable "lambda_memory_size" {
   default     = 2048  # 2GB for Spring Boot + Bedrock SDK
 }
 
+variable "lambda_runtime" {
+  description = "java21 (shaded JAR + SnapStart) or provided.al2023 (native-lambda.zip from mvn -Pnative package)"
+  type        = string
+  default     = "java21"
+}
+
+variable "lambda_handler" {
+  description = "Lambda entry point: StreamLambdaHandler (servlet proxy, all routes) or FunctionLambdaHandler (direct, /api/v1/inference only)"
+  type        = string
+  default     = "com.jmontagne.bedrock.StreamLambdaHandler::handleRequest"
+}
+
 variable "log_level" {
   description = "Log level for Lambda Powertools"
   type        = string